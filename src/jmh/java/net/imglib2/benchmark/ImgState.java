@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.img.sparse.NtreeImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark state holding an image of every combination of container and
+ * type given by the {@link Param}s. Images (except {@link NtreeImgFactory
+ * NtreeImg}s) are filled with a ramp, such that reading them is not
+ * optimized away. NtreeImgs are filled with 8x8x8 constant blocks, because
+ * a ramp would degenerate the tree into one node per pixel.
+ * 
+ * @author ImgLib2 developers
+ */
+@State( Scope.Benchmark )
+public class ImgState
+{
+	@Param( { "ArrayImg", "PlanarImg", "CellImg", "ListImg", "NtreeImg" } )
+	public String container;
+
+	@Param( { "UnsignedByteType", "IntType", "FloatType", "DoubleType" } )
+	public String type;
+
+	@Param( { "128,128,64" } )
+	public String dimensions;
+
+	public long[] dims;
+
+	public Img< ? extends RealType< ? > > img;
+
+	@Setup
+	public void setup()
+	{
+		final String[] parts = dimensions.split( "," );
+		dims = new long[ parts.length ];
+		for ( int d = 0; d < dims.length; ++d )
+			dims[ d ] = Long.parseLong( parts[ d ].trim() );
+		img = createImg();
+	}
+
+	/**
+	 * Create a filled image of the benchmarked container and type.
+	 */
+	public Img< ? extends RealType< ? > > createImg()
+	{
+		if ( type.equals( "UnsignedByteType" ) )
+			return create( new UnsignedByteType() );
+		else if ( type.equals( "IntType" ) )
+			return create( new IntType() );
+		else if ( type.equals( "FloatType" ) )
+			return create( new FloatType() );
+		else if ( type.equals( "DoubleType" ) )
+			return create( new DoubleType() );
+		throw new IllegalArgumentException( "unknown type: " + type );
+	}
+
+	private < T extends RealType< T > & NativeType< T > > Img< T > create( final T t )
+	{
+		final Img< T > created = factory( t ).create( dims, t );
+		fill( created, container.equals( "NtreeImg" ) );
+		return created;
+	}
+
+	private < T extends RealType< T > & NativeType< T > > ImgFactory< T > factory( final T t )
+	{
+		if ( container.equals( "ArrayImg" ) )
+			return new ArrayImgFactory< T >();
+		else if ( container.equals( "PlanarImg" ) )
+			return new PlanarImgFactory< T >();
+		else if ( container.equals( "CellImg" ) )
+			return new CellImgFactory< T >( 32 );
+		else if ( container.equals( "ListImg" ) )
+			return new ListImgFactory< T >();
+		else if ( container.equals( "NtreeImg" ) )
+			return new NtreeImgFactory< T >();
+		throw new IllegalArgumentException( "unknown container: " + container );
+	}
+
+	private static < T extends RealType< T > > void fill( final Img< T > img, final boolean blocks )
+	{
+		final Cursor< T > c = img.localizingCursor();
+		final int n = img.numDimensions();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			long value = 0;
+			for ( int d = n - 1; d >= 0; --d )
+				value = value * img.dimension( d ) + ( blocks ? c.getLongPosition( d ) / 8 : c.getLongPosition( d ) );
+			c.get().setReal( value % 100 );
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.RealType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading all pixels of an image with cursors and random accesses.
+ * 
+ * @author ImgLib2 developers
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+public class IterationBenchmark
+{
+	/**
+	 * Random positions in the image, for {@link #randomAccessRandom}.
+	 */
+	@State( Scope.Benchmark )
+	public static class RandomPositions
+	{
+		public long[][] positions;
+
+		@Setup
+		public void setup( final ImgState state )
+		{
+			final Random rnd = new Random( 1 );
+			positions = new long[ 1 << 16 ][ state.dims.length ];
+			for ( final long[] position : positions )
+				for ( int d = 0; d < position.length; ++d )
+					position[ d ] = ( long ) ( rnd.nextDouble() * state.dims[ d ] );
+		}
+	}
+
+	@Benchmark
+	public double cursor( final ImgState state )
+	{
+		double sum = 0;
+		for ( final RealType< ? > t : state.img )
+			sum += t.getRealDouble();
+		return sum;
+	}
+
+	@Benchmark
+	public double localizingCursor( final ImgState state )
+	{
+		double sum = 0;
+		final Cursor< ? extends RealType< ? > > c = state.img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			sum += c.next().getRealDouble();
+			sum += c.getLongPosition( 0 );
+		}
+		return sum;
+	}
+
+	/**
+	 * Visit all pixels in flat order by moving a random access.
+	 */
+	@Benchmark
+	public double randomAccessRaster( final ImgState state )
+	{
+		double sum = 0;
+		final long[] dims = state.dims;
+		final int n = dims.length;
+		final RandomAccess< ? extends RealType< ? > > a = state.img.randomAccess();
+		a.setPosition( new long[ n ] );
+		while ( true )
+		{
+			sum += a.get().getRealDouble();
+			int d = 0;
+			for ( ; d < n; ++d )
+			{
+				if ( a.getLongPosition( d ) < dims[ d ] - 1 )
+				{
+					a.fwd( d );
+					break;
+				}
+				a.setPosition( 0, d );
+			}
+			if ( d == n )
+				return sum;
+		}
+	}
+
+	@Benchmark
+	public double randomAccessRandom( final ImgState state, final RandomPositions random )
+	{
+		double sum = 0;
+		final RandomAccess< ? extends RealType< ? > > a = state.img.randomAccess();
+		for ( final long[] position : random.positions )
+		{
+			a.setPosition( position );
+			sum += a.get().getRealDouble();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,558 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.Arrays;
+
+import net.imglib2.util.SquareDistance;
+
+/**
+ * KDTree that supports inserting, removing, and moving points, for point sets
+ * that change slowly such that rebuilding a {@link KDTree} after every change
+ * would be wasteful.
+ * 
+ * <p>
+ * The tree uses the logarithmic method: new points are appended to a small
+ * buffer that is searched exhaustively. When the buffer is full, it is merged
+ * with levels 0 to k-1 into a new balanced level k, where k is the first
+ * empty level. Level k holds at most {@code bufferCapacity * 2^k} points and
+ * is stored like a {@link FlatKDTree}. Removed points are only marked as
+ * removed in their level, and a level is rebuilt when more than half of its
+ * points have been removed. Insertion and removal take amortized
+ * O(log<sup>2</sup> n) time, searches visit O(log n) levels.
+ * </p>
+ * 
+ * <p>
+ * Points are identified by the id returned from
+ * {@link #insert(RealLocalizable, Object)}. The id stays valid until the point
+ * is removed, and may then be reused for another point. Searches are
+ * implemented in {@link net.imglib2.neighborsearch} (e.g.,
+ * {@link net.imglib2.neighborsearch.NearestNeighborSearchOnDynamicKDTree}).
+ * Results of a search refer to ids and are not valid after the point has been
+ * removed. The tree is not thread-safe.
+ * </p>
+ * 
+ * @param <T>
+ *            type of values stored in the tree.
+ * 
+ * @author ImgLib2 developers
+ */
+public class DynamicKDTree< T > implements EuclideanSpace
+{
+	/**
+	 * {@link #idLevel} of unused ids.
+	 */
+	private static final int FREE = -2;
+
+	/**
+	 * {@link #idLevel} of ids in the buffer.
+	 */
+	private static final int BUFFER = -1;
+
+	/**
+	 * Balanced level of the tree. The nodes are in heap order, like in a
+	 * {@link FlatKDTree}.
+	 */
+	private static final class Level
+	{
+		/**
+		 * coordinates of the nodes, in heap order.
+		 */
+		final double[] positions;
+
+		/**
+		 * ids of the nodes, in heap order, or -1 for removed nodes.
+		 */
+		final int[] ids;
+
+		/**
+		 * number of removed nodes.
+		 */
+		int numRemoved;
+
+		Level( final double[] positions, final int[] ids )
+		{
+			this.positions = positions;
+			this.ids = ids;
+			this.numRemoved = 0;
+		}
+	}
+
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	/**
+	 * maximum number of points in the buffer.
+	 */
+	final protected int bufferCapacity;
+
+	/**
+	 * coordinates of the points by id. Point {@code id} occupies elements
+	 * {@code id*n} to {@code id*n+n-1}.
+	 */
+	protected double[] idPositions;
+
+	/**
+	 * values of the points by id.
+	 */
+	protected Object[] idValues;
+
+	/**
+	 * level that contains the point, {@link #BUFFER}, or {@link #FREE}.
+	 */
+	protected int[] idLevel;
+
+	/**
+	 * index of the point in its level or the buffer.
+	 */
+	protected int[] idNode;
+
+	/**
+	 * ids below this have been used.
+	 */
+	protected int numIds;
+
+	/**
+	 * stack of unused ids below {@link #numIds}.
+	 */
+	protected int[] freeIds;
+
+	protected int numFreeIds;
+
+	/**
+	 * ids of the points in the buffer.
+	 */
+	protected final int[] buffer;
+
+	protected int bufferSize;
+
+	/**
+	 * level {@code k} is null if empty.
+	 */
+	private Level[] levels;
+
+	/**
+	 * the number of points in the tree.
+	 */
+	protected int size;
+
+	/**
+	 * Create an empty tree with a default buffer capacity.
+	 * 
+	 * @param n
+	 *            number of dimensions
+	 */
+	public DynamicKDTree( final int n )
+	{
+		this( n, 32 );
+	}
+
+	/**
+	 * Create an empty tree.
+	 * 
+	 * @param n
+	 *            number of dimensions
+	 * @param bufferCapacity
+	 *            maximum number of points that are searched exhaustively
+	 *            before they are merged into the balanced levels.
+	 */
+	public DynamicKDTree( final int n, final int bufferCapacity )
+	{
+		assert bufferCapacity > 0;
+		this.n = n;
+		this.bufferCapacity = bufferCapacity;
+		this.idPositions = new double[ bufferCapacity * n ];
+		this.idValues = new Object[ bufferCapacity ];
+		this.idLevel = new int[ bufferCapacity ];
+		this.idNode = new int[ bufferCapacity ];
+		this.numIds = 0;
+		this.freeIds = new int[ 16 ];
+		this.numFreeIds = 0;
+		this.buffer = new int[ bufferCapacity ];
+		this.bufferSize = 0;
+		this.levels = new Level[ 0 ];
+		this.size = 0;
+	}
+
+	/**
+	 * Insert a point.
+	 * 
+	 * @param position
+	 *            position of the point
+	 * @param value
+	 *            value of the point
+	 * @return id of the point.
+	 */
+	public int insert( final RealLocalizable position, final T value )
+	{
+		final int id = allocateId();
+		idValues[ id ] = value;
+		setPosition( id, position );
+		attach( id );
+		++size;
+		return id;
+	}
+
+	/**
+	 * Remove a point.
+	 * 
+	 * @param id
+	 *            id of the point
+	 * @return whether the point was in the tree.
+	 */
+	public boolean remove( final int id )
+	{
+		if ( !contains( id ) )
+			return false;
+		detach( id );
+		idLevel[ id ] = FREE;
+		idValues[ id ] = null;
+		if ( numFreeIds == freeIds.length )
+			freeIds = Arrays.copyOf( freeIds, 2 * numFreeIds );
+		freeIds[ numFreeIds++ ] = id;
+		--size;
+		return true;
+	}
+
+	/**
+	 * Move a point to a new position. The id and value of the point remain
+	 * the same.
+	 * 
+	 * @param id
+	 *            id of the point
+	 * @param position
+	 *            new position of the point
+	 */
+	public void move( final int id, final RealLocalizable position )
+	{
+		if ( !contains( id ) )
+			throw new IllegalArgumentException( "no point with id " + id );
+		detach( id );
+		setPosition( id, position );
+		attach( id );
+	}
+
+	/**
+	 * @return whether the tree contains a point with the given id.
+	 */
+	public boolean contains( final int id )
+	{
+		return id >= 0 && id < numIds && idLevel[ id ] != FREE;
+	}
+
+	/**
+	 * Get the value of a point.
+	 * 
+	 * @param id
+	 *            id of the point
+	 */
+	@SuppressWarnings( "unchecked" )
+	public T getValue( final int id )
+	{
+		return ( T ) idValues[ id ];
+	}
+
+	/**
+	 * Set the value of a point.
+	 * 
+	 * @param id
+	 *            id of the point
+	 * @param value
+	 *            new value of the point
+	 */
+	public void setValue( final int id, final T value )
+	{
+		idValues[ id ] = value;
+	}
+
+	/**
+	 * Get a coordinate of a point.
+	 * 
+	 * @param id
+	 *            id of the point
+	 * @param d
+	 *            dimension
+	 */
+	public double getDoublePosition( final int id, final int d )
+	{
+		return idPositions[ id * n + d ];
+	}
+
+	/**
+	 * Compute the squared distance from p to a point.
+	 * 
+	 * @param id
+	 *            id of the point
+	 */
+	public double squDistanceTo( final int id, final double[] p )
+	{
+		return SquareDistance.squDistance( idPositions, id * n, p, n );
+	}
+
+	/**
+	 * Get the number of points in the buffer, which are not part of any
+	 * level.
+	 */
+	public int bufferSize()
+	{
+		return bufferSize;
+	}
+
+	/**
+	 * Get the id of the {@code i}th point in the buffer.
+	 */
+	public int getBufferId( final int i )
+	{
+		return buffer[ i ];
+	}
+
+	/**
+	 * Get the number of levels. Some levels may be empty.
+	 */
+	public int numLevels()
+	{
+		return levels.length;
+	}
+
+	/**
+	 * Get the number of nodes of a level, including removed nodes. Node
+	 * {@code i} of the level has children {@code 2i+1} and {@code 2i+2} and
+	 * divides the space in dimension {@code depth % n}, like in a
+	 * {@link FlatKDTree}.
+	 * 
+	 * @param level
+	 *            the level
+	 * @return number of nodes, or 0 if the level is empty.
+	 */
+	public int levelSize( final int level )
+	{
+		final Level l = levels[ level ];
+		return l == null ? 0 : l.ids.length;
+	}
+
+	/**
+	 * Get the coordinates of the nodes of a level in heap order. Node
+	 * {@code i} occupies elements {@code i*n} to {@code i*n+n-1}. The array
+	 * must not be modified and is not updated when the tree changes.
+	 * 
+	 * @param level
+	 *            non-empty level
+	 */
+	public double[] getLevelPositions( final int level )
+	{
+		return levels[ level ].positions;
+	}
+
+	/**
+	 * Get the ids of the nodes of a level in heap order, with -1 for removed
+	 * nodes. The array must not be modified.
+	 * 
+	 * @param level
+	 *            non-empty level
+	 */
+	public int[] getLevelIds( final int level )
+	{
+		return levels[ level ].ids;
+	}
+
+	/**
+	 * Create a {@link DynamicKDTreeNode} referring to the given point.
+	 * 
+	 * @param id
+	 *            id of the point
+	 */
+	public DynamicKDTreeNode< T > createNode( final int id )
+	{
+		final DynamicKDTreeNode< T > ref = new DynamicKDTreeNode< T >( this );
+		ref.setId( id );
+		return ref;
+	}
+
+	/**
+	 * Get the number of points in the tree.
+	 */
+	public int intSize()
+	{
+		return size;
+	}
+
+	/**
+	 * Get the number of points in the tree.
+	 */
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	private int allocateId()
+	{
+		if ( numFreeIds > 0 )
+			return freeIds[ --numFreeIds ];
+		if ( numIds == idLevel.length )
+		{
+			final int capacity = 2 * numIds;
+			idPositions = Arrays.copyOf( idPositions, capacity * n );
+			idValues = Arrays.copyOf( idValues, capacity );
+			idLevel = Arrays.copyOf( idLevel, capacity );
+			idNode = Arrays.copyOf( idNode, capacity );
+		}
+		return numIds++;
+	}
+
+	private void setPosition( final int id, final RealLocalizable position )
+	{
+		final int offset = id * n;
+		for ( int d = 0; d < n; ++d )
+			idPositions[ offset + d ] = position.getDoublePosition( d );
+	}
+
+	/**
+	 * Append a point to the buffer, and merge the buffer into the levels if
+	 * it is full.
+	 */
+	private void attach( final int id )
+	{
+		idLevel[ id ] = BUFFER;
+		idNode[ id ] = bufferSize;
+		buffer[ bufferSize++ ] = id;
+		if ( bufferSize == bufferCapacity )
+			mergeBuffer();
+	}
+
+	/**
+	 * Remove a point from the buffer or mark it removed in its level. The id
+	 * is not freed.
+	 */
+	private void detach( final int id )
+	{
+		final int level = idLevel[ id ];
+		final int node = idNode[ id ];
+		if ( level == BUFFER )
+		{
+			final int last = buffer[ --bufferSize ];
+			buffer[ node ] = last;
+			idNode[ last ] = node;
+		}
+		else
+		{
+			final Level l = levels[ level ];
+			l.ids[ node ] = -1;
+			if ( 2 * ++l.numRemoved > l.ids.length )
+			{
+				final int[] ids = new int[ l.ids.length - l.numRemoved ];
+				final int count = collect( l, ids, 0 );
+				levels[ level ] = count == 0 ? null : build( level, ids, count );
+			}
+		}
+	}
+
+	/**
+	 * Merge the buffer and levels 0 to k-1 into level k, where k is the first
+	 * empty level.
+	 */
+	private void mergeBuffer()
+	{
+		int k = 0;
+		int count = bufferSize;
+		while ( k < levels.length && levels[ k ] != null )
+		{
+			count += levels[ k ].ids.length - levels[ k ].numRemoved;
+			++k;
+		}
+		if ( k == levels.length )
+			levels = Arrays.copyOf( levels, k + 1 );
+
+		final int[] ids = new int[ count ];
+		System.arraycopy( buffer, 0, ids, 0, bufferSize );
+		int i = bufferSize;
+		for ( int l = 0; l < k; ++l )
+		{
+			i = collect( levels[ l ], ids, i );
+			levels[ l ] = null;
+		}
+		bufferSize = 0;
+		levels[ k ] = build( k, ids, count );
+	}
+
+	/**
+	 * Append the ids of the nodes of a level that have not been removed.
+	 * 
+	 * @return index after the last appended id.
+	 */
+	private static int collect( final Level level, final int[] ids, int i )
+	{
+		for ( final int id : level.ids )
+			if ( id >= 0 )
+				ids[ i++ ] = id;
+		return i;
+	}
+
+	/**
+	 * Build a balanced level from the first count points in ids.
+	 */
+	private Level build( final int level, final int[] ids, final int count )
+	{
+		final double[] points = new double[ count * n ];
+		for ( int i = 0; i < count; ++i )
+			System.arraycopy( idPositions, ids[ i ] * n, points, i * n, n );
+
+		final int[] permutation = new int[ count ];
+		for ( int i = 0; i < count; ++i )
+			permutation[ i ] = i;
+		final int[] order = new int[ count ];
+		FlatKDTree.build( n, points, permutation, 0, count, 0, 0, order );
+
+		final double[] positions = new double[ count * n ];
+		final int[] heapIds = new int[ count ];
+		for ( int i = 0; i < count; ++i )
+		{
+			final int p = order[ i ];
+			final int id = ids[ p ];
+			System.arraycopy( points, p * n, positions, i * n, n );
+			heapIds[ i ] = id;
+			idLevel[ id ] = level;
+			idNode[ id ] = i;
+		}
+		return new Level( positions, heapIds );
+	}
+}
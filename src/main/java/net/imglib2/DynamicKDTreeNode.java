@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+/**
+ * Refers to a point of a {@link DynamicKDTree}. It provides the coordinates of
+ * the point via the {@link RealLocalizable} interface and the value via
+ * {@link Sampler#get()}. Like {@link FlatKDTreeNode}, it is a reference that
+ * can be moved to any point with {@link #setId(int)}.
+ * 
+ * @param <T>
+ *            value type.
+ * 
+ * @author ImgLib2 developers
+ */
+public class DynamicKDTreeNode< T > implements RealLocalizable, Sampler< T >
+{
+	protected final DynamicKDTree< T > tree;
+
+	/**
+	 * number of dimensions of the space (that is, k).
+	 */
+	protected final int n;
+
+	/**
+	 * id of the point.
+	 */
+	private int id;
+
+	public DynamicKDTreeNode( final DynamicKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+	}
+
+	/**
+	 * Refer to another point.
+	 * 
+	 * @param id
+	 *            id of the point
+	 */
+	public void setId( final int id )
+	{
+		this.id = id;
+	}
+
+	/**
+	 * @return id of the point.
+	 */
+	public int getId()
+	{
+		return id;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void localize( final float[] position )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = ( float ) tree.getDoublePosition( id, d );
+	}
+
+	@Override
+	public void localize( final double[] position )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = tree.getDoublePosition( id, d );
+	}
+
+	@Override
+	public float getFloatPosition( final int d )
+	{
+		return ( float ) tree.getDoublePosition( id, d );
+	}
+
+	@Override
+	public double getDoublePosition( final int d )
+	{
+		return tree.getDoublePosition( id, d );
+	}
+
+	@Override
+	public T get()
+	{
+		return tree.getValue( id );
+	}
+
+	@Override
+	public DynamicKDTreeNode< T > copy()
+	{
+		final DynamicKDTreeNode< T > copy = new DynamicKDTreeNode< T >( tree );
+		copy.setId( id );
+		return copy;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "point " + id + " | " + get();
+	}
+}
@@ -0,0 +1,702 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * KDTree to access values at RealLocalizable positions, stored without node
+ * objects. Like {@link KDTree}, the tree splits at the median of the
+ * coordinates in dimensions cycling with the depth of the node. But the tree
+ * is left-balanced and stored in implicit heap order: the children of node
+ * {@code i} are {@code 2i+1} and {@code 2i+2}, the coordinates of all nodes
+ * are stored in a single {@code double[]} array (node {@code i} occupies
+ * elements {@code i*n} to {@code i*n+n-1}) and the values are stored in a
+ * parallel array.
+ * 
+ * <p>
+ * Searches are implemented in {@link net.imglib2.neighborsearch} (e.g.,
+ * {@link net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree}).
+ * </p>
+ * 
+ * @param <T>
+ *            type of values stored in the tree.
+ * 
+ * @author ImgLib2 developers
+ */
+public class FlatKDTree< T > implements EuclideanSpace, IterableRealInterval< T >
+{
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	/**
+	 * the number of nodes in the tree.
+	 */
+	final protected int size;
+
+	/**
+	 * coordinates of the nodes, in heap order.
+	 */
+	final protected double[] positions;
+
+	/**
+	 * values of the nodes, in heap order. These are either values of type T,
+	 * or {@link Sampler Sampler&lt;T&gt;} if {@link #valuesAreSamplers}. Null
+	 * if a subclass provides values by overriding {@link #getValue(int)}.
+	 */
+	final protected Object[] values;
+
+	/**
+	 * whether {@link #values} are {@link Sampler Sampler&lt;T&gt;}.
+	 */
+	final protected boolean valuesAreSamplers;
+
+	/**
+	 * minimum of each dimension.
+	 */
+	final protected double[] min;
+
+	/**
+	 * maximum of each dimension.
+	 */
+	final protected double[] max;
+
+	/**
+	 * Construct a FlatKDTree from the elements in the given list.
+	 * 
+	 * <p>
+	 * Note that the constructor can be called with the same list for both
+	 * {@code values == positions} if {@code T extends RealLocalizable}.
+	 * </p>
+	 * 
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions )
+	{
+		this( values, positions, null, 1 );
+	}
+
+	/**
+	 * Construct a FlatKDTree from the elements in the given list, partitioning
+	 * the top levels of the tree and building the subtrees below them in
+	 * parallel. The tree is identical to the one constructed by
+	 * {@link #FlatKDTree(List, List)}.
+	 * 
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 * @param service
+	 *            executor for building subtrees in parallel, or null to build
+	 *            on the calling thread
+	 * @param numTasks
+	 *            the minimum number of subtrees to build in parallel
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions, final ExecutorService service, final int numTasks )
+	{
+		this( positions.get( 0 ).numDimensions(), flatten( positions ), values.toArray(), false, service, numTasks );
+		assert values.size() == positions.size();
+	}
+
+	/**
+	 * Construct a FlatKDTree from the elements of the given
+	 * {@link IterableRealInterval}.
+	 * 
+	 * @param interval
+	 *            elements in the tree are obtained by iterating this
+	 */
+	public FlatKDTree( final IterableRealInterval< T > interval )
+	{
+		this( interval.numDimensions(), flatten( interval ), samplers( interval ), true );
+	}
+
+	/**
+	 * Construct a FlatKDTree from coordinates and values in input order.
+	 * 
+	 * @param n
+	 *            number of dimensions
+	 * @param points
+	 *            coordinates of the points, point {@code i} occupies elements
+	 *            {@code i*n} to {@code i*n+n-1}. The array is reordered.
+	 * @param values
+	 *            values (or {@link Sampler Sampler&lt;T&gt;}) corresponding to
+	 *            the points. The array is reordered.
+	 * @param valuesAreSamplers
+	 *            whether values are {@link Sampler Sampler&lt;T&gt;}
+	 */
+	protected FlatKDTree( final int n, final double[] points, final Object[] values, final boolean valuesAreSamplers )
+	{
+		this( n, points, values, valuesAreSamplers, null, 1 );
+	}
+
+	/**
+	 * Construct a FlatKDTree from coordinates and values in input order,
+	 * building subtrees in parallel.
+	 * 
+	 * @param n
+	 *            number of dimensions
+	 * @param points
+	 *            coordinates of the points, point {@code i} occupies elements
+	 *            {@code i*n} to {@code i*n+n-1}. The array is reordered.
+	 * @param values
+	 *            values (or {@link Sampler Sampler&lt;T&gt;}) corresponding to
+	 *            the points. The array is reordered.
+	 * @param valuesAreSamplers
+	 *            whether values are {@link Sampler Sampler&lt;T&gt;}
+	 * @param service
+	 *            executor for building subtrees in parallel, or null to build
+	 *            on the calling thread
+	 * @param numTasks
+	 *            the minimum number of subtrees to build in parallel
+	 */
+	protected FlatKDTree( final int n, final double[] points, final Object[] values, final boolean valuesAreSamplers, final ExecutorService service, final int numTasks )
+	{
+		this.n = n;
+		this.size = values.length;
+		this.valuesAreSamplers = valuesAreSamplers;
+		this.min = new double[ n ];
+		this.max = new double[ n ];
+		computeBounds( n, points, min, max );
+
+		final int[] permutation = new int[ size ];
+		for ( int k = 0; k < size; ++k )
+			permutation[ k ] = k;
+		final int[] order = new int[ size ];
+		if ( service == null || numTasks <= 1 )
+			build( n, points, permutation, 0, size, 0, 0, order );
+		else
+			buildParallel( n, points, permutation, order, service, numTasks );
+
+		this.positions = new double[ size * n ];
+		this.values = new Object[ size ];
+		reorder( n, points, values, order, this.positions, this.values );
+	}
+
+	/**
+	 * Construct a FlatKDTree from coordinates and values that are already in
+	 * heap order.
+	 */
+	protected FlatKDTree( final int n, final double[] positions, final Object[] values, final boolean valuesAreSamplers, final double[] min, final double[] max )
+	{
+		this.n = n;
+		this.size = values.length;
+		this.positions = positions;
+		this.values = values;
+		this.valuesAreSamplers = valuesAreSamplers;
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * Construct a FlatKDTree from coordinates that are already in heap order,
+	 * without a values array. Subclasses must override {@link #getValue(int)}.
+	 */
+	protected FlatKDTree( final int n, final double[] positions, final double[] min, final double[] max )
+	{
+		this.n = n;
+		this.size = positions.length / n;
+		this.positions = positions;
+		this.values = null;
+		this.valuesAreSamplers = false;
+		this.min = min;
+		this.max = max;
+	}
+
+	static < L extends RealLocalizable > double[] flatten( final List< L > positions )
+	{
+		final int n = positions.get( 0 ).numDimensions();
+		final double[] points = new double[ positions.size() * n ];
+		int i = 0;
+		for ( final L position : positions )
+		{
+			assert position.numDimensions() == n;
+			for ( int d = 0; d < n; ++d )
+				points[ i++ ] = position.getDoublePosition( d );
+		}
+		return points;
+	}
+
+	static < T > double[] flatten( final IterableRealInterval< T > interval )
+	{
+		final int n = interval.numDimensions();
+		final double[] points = new double[ ( int ) interval.size() * n ];
+		final RealCursor< T > cursor = interval.localizingCursor();
+		for ( int i = 0; cursor.hasNext(); i += n )
+		{
+			cursor.fwd();
+			for ( int d = 0; d < n; ++d )
+				points[ i + d ] = cursor.getDoublePosition( d );
+		}
+		return points;
+	}
+
+	static < T > Object[] samplers( final IterableRealInterval< T > interval )
+	{
+		final Object[] samplers = new Object[ ( int ) interval.size() ];
+		final RealCursor< T > cursor = interval.cursor();
+		for ( int i = 0; cursor.hasNext(); ++i )
+		{
+			cursor.fwd();
+			samplers[ i ] = cursor.copyCursor();
+		}
+		return samplers;
+	}
+
+	protected static void computeBounds( final int n, final double[] points, final double[] min, final double[] max )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Double.MAX_VALUE;
+			max[ d ] = -Double.MAX_VALUE;
+		}
+		for ( int i = 0; i < points.length; i += n )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				final double x = points[ i + d ];
+				if ( x < min[ d ] )
+					min[ d ] = x;
+				if ( x > max[ d ] )
+					max[ d ] = x;
+			}
+		}
+	}
+
+	/**
+	 * Copy points and values into heap order.
+	 * 
+	 * @param order
+	 *            the index of the point stored at node {@code i} is
+	 *            {@code order[i]}
+	 */
+	protected static void reorder( final int n, final double[] points, final Object[] values, final int[] order, final double[] positions, final Object[] heapValues )
+	{
+		for ( int i = 0; i < order.length; ++i )
+		{
+			final int p = order[ i ];
+			System.arraycopy( points, p * n, positions, i * n, n );
+			heapValues[ i ] = values[ p ];
+		}
+	}
+
+	/**
+	 * Construct the tree by recursively selecting nodes. The sublist of
+	 * permutation between indices {@code from} (inclusive) and {@code to}
+	 * (exclusive) is split such that the left subtree of a left-balanced tree
+	 * of that size fits before the split element, with respect to coordinates
+	 * in dimension {@code depth % n}. The split element becomes {@code node}.
+	 * The left and right partitions are processed recursively and form the
+	 * subtrees of {@code node}.
+	 * 
+	 * @param n
+	 *            number of dimensions
+	 * @param points
+	 *            coordinates of the points in input order
+	 * @param permutation
+	 *            indices of points, reordered in place
+	 * @param from
+	 *            start index of sublist to process
+	 * @param to
+	 *            end index (exclusive) of sublist to process
+	 * @param node
+	 *            heap index of the root of the subtree
+	 * @param depth
+	 *            depth of the root of the subtree
+	 * @param order
+	 *            receives the index of the point stored at each node
+	 */
+	protected static void build( final int n, final double[] points, final int[] permutation, final int from, final int to, final int node, final int depth, final int[] order )
+	{
+		final int m = to - from;
+		if ( m <= 0 )
+			return;
+		final int k = from + leftSubtreeSize( m );
+		final int d = depth % n;
+		kthElement( from, to - 1, k, permutation, points, n, d );
+		order[ node ] = permutation[ k ];
+		build( n, points, permutation, from, k, 2 * node + 1, depth + 1, order );
+		build( n, points, permutation, k + 1, to, 2 * node + 2, depth + 1, order );
+	}
+
+	/**
+	 * Construct the tree like {@link #build}, but in parallel. The top levels
+	 * of the tree are partitioned level by level, with the sublists of each
+	 * level partitioned in parallel, until there are at least numTasks
+	 * sublists. Then the subtrees of these sublists are built in parallel.
+	 */
+	protected static void buildParallel( final int n, final double[] points, final int[] permutation, final int[] order, final ExecutorService service, final int numTasks )
+	{
+		final int size = permutation.length;
+		int numLevels = 0;
+		while ( ( 1 << numLevels ) < numTasks && ( 2 << numLevels ) <= size )
+			++numLevels;
+
+		// sublists [froms[r], tos[r]) of the current level
+		int[] froms = new int[] { 0 };
+		int[] tos = new int[] { size };
+		for ( int l = 0; l < numLevels; ++l )
+		{
+			final int numSublists = 1 << l;
+			final int firstNode = numSublists - 1;
+			final int d = l % n;
+			final int[] ks = new int[ numSublists ];
+			final ArrayList< Callable< Void > > tasks = new ArrayList< Callable< Void > >();
+			for ( int r = 0; r < numSublists; ++r )
+			{
+				final int from = froms[ r ];
+				final int to = tos[ r ];
+				final int k = ks[ r ] = from + leftSubtreeSize( to - from );
+				final int node = firstNode + r;
+				if ( to > from )
+					tasks.add( new Callable< Void >()
+					{
+						@Override
+						public Void call()
+						{
+							kthElement( from, to - 1, k, permutation, points, n, d );
+							order[ node ] = permutation[ k ];
+							return null;
+						}
+					} );
+			}
+			KDTree.invokeAll( tasks, service );
+
+			final int[] nextFroms = new int[ 2 * numSublists ];
+			final int[] nextTos = new int[ 2 * numSublists ];
+			for ( int r = 0; r < numSublists; ++r )
+			{
+				final boolean empty = tos[ r ] <= froms[ r ];
+				nextFroms[ 2 * r ] = froms[ r ];
+				nextTos[ 2 * r ] = empty ? froms[ r ] : ks[ r ];
+				nextFroms[ 2 * r + 1 ] = empty ? froms[ r ] : ks[ r ] + 1;
+				nextTos[ 2 * r + 1 ] = tos[ r ];
+			}
+			froms = nextFroms;
+			tos = nextTos;
+		}
+
+		// build the subtrees below the partitioned levels
+		final int numSubtrees = 1 << numLevels;
+		final ArrayList< Callable< Void > > tasks = new ArrayList< Callable< Void > >();
+		for ( int r = 0; r < numSubtrees; ++r )
+		{
+			final int from = froms[ r ];
+			final int to = tos[ r ];
+			final int node = numSubtrees - 1 + r;
+			final int depth = numLevels;
+			tasks.add( new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					build( n, points, permutation, from, to, node, depth, order );
+					return null;
+				}
+			} );
+		}
+		KDTree.invokeAll( tasks, service );
+	}
+
+	/**
+	 * Get the number of nodes in the left subtree of a left-balanced tree with
+	 * m nodes.
+	 */
+	protected static int leftSubtreeSize( final int m )
+	{
+		if ( m <= 1 )
+			return 0;
+		// height of the tree (number of the last level)
+		final int h = 31 - Integer.numberOfLeadingZeros( m );
+		// number of nodes in the last level
+		final int last = m - ( ( 1 << h ) - 1 );
+		// capacity of the last level of the left subtree
+		final int leftLast = 1 << ( h - 1 );
+		return ( leftLast - 1 ) + Math.min( last, leftLast );
+	}
+
+	/**
+	 * Partition the sublist of permutation between indices i and j (inclusive)
+	 * such that the point with the k-th smallest coordinate in dimension d is
+	 * at position k, points before are smaller or equal and points after are
+	 * larger or equal.
+	 */
+	protected static void kthElement( int i, int j, final int k, final int[] permutation, final double[] points, final int n, final int d )
+	{
+		while ( j > i )
+		{
+			// median of three pivot
+			final double a = points[ permutation[ i ] * n + d ];
+			final double b = points[ permutation[ ( i + j ) >>> 1 ] * n + d ];
+			final double c = points[ permutation[ j ] * n + d ];
+			final double pivot = a < b ? ( b < c ? b : ( a < c ? c : a ) ) : ( a < c ? a : ( b < c ? c : b ) );
+
+			int l = i;
+			int r = j;
+			do
+			{
+				while ( points[ permutation[ l ] * n + d ] < pivot )
+					++l;
+				while ( pivot < points[ permutation[ r ] * n + d ] )
+					--r;
+				if ( l <= r )
+				{
+					final int tmp = permutation[ l ];
+					permutation[ l ] = permutation[ r ];
+					permutation[ r ] = tmp;
+					++l;
+					--r;
+				}
+			}
+			while ( l <= r );
+
+			if ( r < k )
+				i = l;
+			if ( k < l )
+				j = r;
+		}
+	}
+
+	/**
+	 * Get the dimension along which a node divides the space.
+	 * 
+	 * @param node
+	 *            heap index of the node
+	 * @return splitting dimension.
+	 */
+	public int splitDimension( final int node )
+	{
+		return ( 31 - Integer.numberOfLeadingZeros( node + 1 ) ) % n;
+	}
+
+	/**
+	 * Get the coordinates of all nodes in heap order. Node {@code i} occupies
+	 * elements {@code i*n} to {@code i*n+n-1}. The array must not be modified.
+	 * 
+	 * @return coordinates of all nodes.
+	 */
+	public double[] getPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * Get the value of a node.
+	 * 
+	 * @param node
+	 *            heap index of the node
+	 * @return value of the node.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public T getValue( final int node )
+	{
+		return valuesAreSamplers ? ( ( Sampler< T > ) values[ node ] ).get() : ( T ) values[ node ];
+	}
+
+	/**
+	 * Create a {@link FlatKDTreeNode} referring to the given node.
+	 * 
+	 * @param node
+	 *            heap index of the node
+	 */
+	public FlatKDTreeNode< T > createNode( final int node )
+	{
+		final FlatKDTreeNode< T > ref = new FlatKDTreeNode< T >( this );
+		ref.setNodeIndex( node );
+		return ref;
+	}
+
+	/**
+	 * Get the number of nodes in the tree.
+	 */
+	public int intSize()
+	{
+		return size;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public double realMin( final int d )
+	{
+		return min[ d ];
+	}
+
+	@Override
+	public void realMin( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = min[ d ];
+	}
+
+	@Override
+	public void realMin( final RealPositionable m )
+	{
+		m.setPosition( min );
+	}
+
+	@Override
+	public double realMax( final int d )
+	{
+		return max[ d ];
+	}
+
+	@Override
+	public void realMax( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = max[ d ];
+	}
+
+	@Override
+	public void realMax( final RealPositionable m )
+	{
+		m.setPosition( max );
+	}
+
+	@Override
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public Object iterationOrder()
+	{
+		return this; // iteration order is only compatible with ourselves
+	}
+
+	/**
+	 * Iterates the nodes in heap order.
+	 */
+	public final class FlatKDTreeCursor extends FlatKDTreeNode< T > implements RealCursor< T >
+	{
+		public FlatKDTreeCursor()
+		{
+			super( FlatKDTree.this );
+			reset();
+		}
+
+		public FlatKDTreeCursor( final FlatKDTreeCursor c )
+		{
+			super( FlatKDTree.this );
+			setNodeIndex( c.getNodeIndex() );
+		}
+
+		@Override
+		public FlatKDTreeCursor copy()
+		{
+			return new FlatKDTreeCursor( this );
+		}
+
+		@Override
+		public FlatKDTreeCursor copyCursor()
+		{
+			return copy();
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			setNodeIndex( ( int ) ( getNodeIndex() + steps ) );
+		}
+
+		@Override
+		public void fwd()
+		{
+			setNodeIndex( getNodeIndex() + 1 );
+		}
+
+		@Override
+		public void reset()
+		{
+			setNodeIndex( -1 );
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return getNodeIndex() < size - 1;
+		}
+
+		@Override
+		public T next()
+		{
+			fwd();
+			return get();
+		}
+
+		@Override
+		public void remove()
+		{
+			// NB: no action.
+		}
+	}
+
+	@Override
+	public FlatKDTreeCursor iterator()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public FlatKDTreeCursor cursor()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public FlatKDTreeCursor localizingCursor()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public T firstElement()
+	{
+		return getValue( 0 );
+	}
+}
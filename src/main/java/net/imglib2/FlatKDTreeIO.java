@@ -0,0 +1,291 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import net.imglib2.img.basictypeaccess.nio.MappedFile;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Reads and writes {@link FlatKDTree}s with {@link RealType} values in a
+ * binary file, such that a tree can be built once and loaded without
+ * rebuilding it.
+ * 
+ * <p>
+ * The file stores the tree in heap order: a 24 byte header, the bounding box
+ * ({@code n} minimum and {@code n} maximum coordinates), the coordinates of
+ * all nodes ({@code size * n} doubles), and the values of all nodes
+ * ({@code size} doubles, or longs for {@link IntegerType}s). The header
+ * consists of the magic bytes {@code "FKDTREE"} and a version byte, one byte
+ * that is 1 if the data is little-endian and 0 if it is big-endian, three
+ * padding bytes, and the number of dimensions, the number of nodes and the
+ * value encoding (0 for doubles, 1 for longs) as ints.
+ * </p>
+ * 
+ * <p>
+ * Files are written in native byte order, and read by memory-mapping them
+ * with a {@link MappedFile}. Coordinates are bulk-copied from the mapped
+ * regions, because the searches on {@link FlatKDTree} work on a
+ * {@code double[]}, but the tree is not rebuilt. Values are not copied, they
+ * remain in the mapped regions (shared with other processes mapping the same
+ * file) and a new value is created for every {@link FlatKDTree#getValue(int)}
+ * on the loaded tree. To write a {@link KDTree},
+ * first create a {@link FlatKDTree} from it, using
+ * {@link FlatKDTree#FlatKDTree(IterableRealInterval)}.
+ * </p>
+ * 
+ * @author ImgLib2 developers
+ */
+public class FlatKDTreeIO
+{
+	private static final byte[] MAGIC = new byte[] { 'F', 'K', 'D', 'T', 'R', 'E', 'E', 1 };
+
+	private static final int HEADER_SIZE = 24;
+
+	private static final int DOUBLE_VALUES = 0;
+
+	private static final int LONG_VALUES = 1;
+
+	/**
+	 * number of doubles that are mapped or written at a time.
+	 */
+	private static final int CHUNK_SIZE = 1 << 20;
+
+	/**
+	 * Write a tree to a file. Values that are {@link IntegerType}s are stored
+	 * as longs, other values as doubles.
+	 * 
+	 * @param tree
+	 *            the tree to write.
+	 * @param file
+	 *            the file, which is overwritten.
+	 */
+	public static < T extends RealType< T > > void write( final FlatKDTree< T > tree, final File file ) throws IOException
+	{
+		final int n = tree.numDimensions();
+		final int size = tree.intSize();
+		final boolean integer = size > 0 && tree.getValue( 0 ) instanceof IntegerType;
+		final ByteOrder order = ByteOrder.nativeOrder();
+
+		final RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+		try
+		{
+			raf.setLength( 0 );
+			final FileChannel channel = raf.getChannel();
+
+			final ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE + 16 * n ).order( order );
+			header.put( MAGIC );
+			header.put( ( byte ) ( order == ByteOrder.LITTLE_ENDIAN ? 1 : 0 ) );
+			header.position( 12 );
+			header.putInt( n );
+			header.putInt( size );
+			header.putInt( integer ? LONG_VALUES : DOUBLE_VALUES );
+			for ( int d = 0; d < n; ++d )
+				header.putDouble( tree.realMin( d ) );
+			for ( int d = 0; d < n; ++d )
+				header.putDouble( tree.realMax( d ) );
+			header.flip();
+			writeFully( channel, header );
+
+			final ByteBuffer chunk = ByteBuffer.allocateDirect( 8 * CHUNK_SIZE ).order( order );
+			final double[] positions = tree.getPositions();
+			for ( int i = 0; i < positions.length; i += CHUNK_SIZE )
+			{
+				final int length = Math.min( CHUNK_SIZE, positions.length - i );
+				chunk.clear();
+				chunk.asDoubleBuffer().put( positions, i, length );
+				chunk.limit( 8 * length );
+				writeFully( channel, chunk );
+			}
+
+			for ( int i = 0; i < size; i += CHUNK_SIZE )
+			{
+				final int length = Math.min( CHUNK_SIZE, size - i );
+				chunk.clear();
+				if ( integer )
+				{
+					final LongBuffer values = chunk.asLongBuffer();
+					for ( int j = 0; j < length; ++j )
+						values.put( j, ( ( IntegerType< ? > ) tree.getValue( i + j ) ).getIntegerLong() );
+				}
+				else
+				{
+					final DoubleBuffer values = chunk.asDoubleBuffer();
+					for ( int j = 0; j < length; ++j )
+						values.put( j, tree.getValue( i + j ).getRealDouble() );
+				}
+				chunk.limit( 8 * length );
+				writeFully( channel, chunk );
+			}
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	private static void writeFully( final FileChannel channel, final ByteBuffer buffer ) throws IOException
+	{
+		while ( buffer.hasRemaining() )
+			channel.write( buffer );
+	}
+
+	/**
+	 * Read a tree from a file written by {@link #write(FlatKDTree, File)}.
+	 * 
+	 * @param file
+	 *            the file.
+	 * @param type
+	 *            values of the tree are created by
+	 *            {@link RealType#createVariable()}. If the file stores longs,
+	 *            this must be an {@link IntegerType}.
+	 * @return the tree.
+	 * @throws IOException
+	 *             if the file cannot be read, is not a FlatKDTree file, or is
+	 *             truncated.
+	 */
+	public static < T extends RealType< T > > FlatKDTree< T > read( final File file, final T type ) throws IOException
+	{
+		final RandomAccessFile raf = new RandomAccessFile( file, "r" );
+		final ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+		try
+		{
+			raf.readFully( header.array() );
+		}
+		finally
+		{
+			raf.close();
+		}
+		for ( int i = 0; i < MAGIC.length; ++i )
+			if ( header.get( i ) != MAGIC[ i ] )
+				throw new IOException( "not a FlatKDTree file: " + file );
+		header.order( header.get( 8 ) == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN );
+		final int n = header.getInt( 12 );
+		final int size = header.getInt( 16 );
+		final int encoding = header.getInt( 20 );
+		if ( n < 1 || size < 0 || ( encoding != DOUBLE_VALUES && encoding != LONG_VALUES ) )
+			throw new IOException( "corrupt FlatKDTree file header: " + file );
+		final long numCoordinates = ( long ) size * n;
+		if ( numCoordinates > Integer.MAX_VALUE - 8 )
+			throw new IOException( "FlatKDTree file has more coordinates than fit into an array: " + numCoordinates );
+		final long fileLength = HEADER_SIZE + 16l * n + 8 * numCoordinates + 8l * size;
+		if ( file.length() < fileLength )
+			throw new IOException( "truncated FlatKDTree file: " + file + " has " + file.length() + " bytes, expected " + fileLength );
+		if ( encoding == LONG_VALUES && !( type instanceof IntegerType ) )
+			throw new IllegalArgumentException( "file stores integer values, but type is not an IntegerType: " + type.getClass().getName() );
+
+		final MappedFile mapped = new MappedFile( file, MapMode.READ_ONLY, header.order(), HEADER_SIZE );
+		try
+		{
+			final double[] min = new double[ n ];
+			final double[] max = new double[ n ];
+			final DoubleBuffer bounds = mapped.map( 16 * n ).asDoubleBuffer();
+			bounds.get( min );
+			bounds.get( max );
+
+			final double[] positions = new double[ ( int ) numCoordinates ];
+			for ( int i = 0; i < positions.length; i += CHUNK_SIZE )
+			{
+				final int length = Math.min( CHUNK_SIZE, positions.length - i );
+				mapped.map( 8 * length ).asDoubleBuffer().get( positions, i, length );
+			}
+
+			final ByteBuffer[] values = new ByteBuffer[ ( size + CHUNK_SIZE - 1 ) / CHUNK_SIZE ];
+			for ( int c = 0; c < values.length; ++c )
+				values[ c ] = mapped.map( 8l * Math.min( CHUNK_SIZE, size - c * CHUNK_SIZE ) );
+			return new MappedValuesFlatKDTree< T >( n, positions, min, max, values, encoding == LONG_VALUES, type );
+		}
+		finally
+		{
+			mapped.close();
+		}
+	}
+
+	/**
+	 * {@link FlatKDTree} whose values are read from mapped regions of the
+	 * file, in chunks of {@link FlatKDTreeIO#CHUNK_SIZE} values.
+	 */
+	private static final class MappedValuesFlatKDTree< T extends RealType< T > > extends FlatKDTree< T >
+	{
+		private final LongBuffer[] longs;
+
+		private final DoubleBuffer[] doubles;
+
+		private final T type;
+
+		MappedValuesFlatKDTree( final int n, final double[] positions, final double[] min, final double[] max, final ByteBuffer[] chunks, final boolean integer, final T type )
+		{
+			super( n, positions, min, max );
+			this.type = type;
+			if ( integer )
+			{
+				longs = new LongBuffer[ chunks.length ];
+				for ( int c = 0; c < chunks.length; ++c )
+					longs[ c ] = chunks[ c ].asLongBuffer();
+				doubles = null;
+			}
+			else
+			{
+				doubles = new DoubleBuffer[ chunks.length ];
+				for ( int c = 0; c < chunks.length; ++c )
+					doubles[ c ] = chunks[ c ].asDoubleBuffer();
+				longs = null;
+			}
+		}
+
+		@Override
+		public T getValue( final int node )
+		{
+			final T t = type.createVariable();
+			final int c = node / CHUNK_SIZE;
+			final int i = node % CHUNK_SIZE;
+			if ( longs != null )
+				( ( IntegerType< ? > ) t ).setInteger( longs[ c ].get( i ) );
+			else
+				t.setReal( doubles[ c ].get( i ) );
+			return t;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import net.imglib2.util.SquareDistance;
+
+/**
+ * Refers to a node of a {@link FlatKDTree}. It provides the coordinates of the
+ * node via the {@link RealLocalizable} interface and the value via
+ * {@link Sampler#get()}. Unlike {@link KDTreeNode}, it is not part of the tree
+ * but a reference that can be moved to any node with
+ * {@link #setNodeIndex(int)}.
+ * 
+ * @param <T>
+ *            value type.
+ * 
+ * @author ImgLib2 developers
+ */
+public class FlatKDTreeNode< T > implements RealLocalizable, Sampler< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	/**
+	 * number of dimensions of the space (that is, k).
+	 */
+	protected final int n;
+
+	/**
+	 * coordinates of all nodes of the tree.
+	 */
+	protected final double[] positions;
+
+	/**
+	 * heap index of the node.
+	 */
+	private int node;
+
+	/**
+	 * offset of the node coordinates in {@link #positions}.
+	 */
+	private int offset;
+
+	public FlatKDTreeNode( final FlatKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.positions = tree.getPositions();
+	}
+
+	/**
+	 * Refer to another node.
+	 * 
+	 * @param node
+	 *            heap index of the node
+	 */
+	public void setNodeIndex( final int node )
+	{
+		this.node = node;
+		this.offset = node * n;
+	}
+
+	/**
+	 * @return heap index of the node.
+	 */
+	public int getNodeIndex()
+	{
+		return node;
+	}
+
+	/**
+	 * Get the dimension along which this node divides the space.
+	 * 
+	 * @return splitting dimension.
+	 */
+	public int getSplitDimension()
+	{
+		return tree.splitDimension( node );
+	}
+
+	/**
+	 * Get the position along {@link #getSplitDimension()} where this node
+	 * divides the space.
+	 * 
+	 * @return splitting position.
+	 */
+	public double getSplitCoordinate()
+	{
+		return positions[ offset + getSplitDimension() ];
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void localize( final float[] position )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = ( float ) positions[ offset + d ];
+	}
+
+	@Override
+	public void localize( final double[] position )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = positions[ offset + d ];
+	}
+
+	@Override
+	public float getFloatPosition( final int d )
+	{
+		return ( float ) positions[ offset + d ];
+	}
+
+	@Override
+	public double getDoublePosition( final int d )
+	{
+		return positions[ offset + d ];
+	}
+
+	@Override
+	public T get()
+	{
+		return tree.getValue( node );
+	}
+
+	@Override
+	public FlatKDTreeNode< T > copy()
+	{
+		final FlatKDTreeNode< T > copy = new FlatKDTreeNode< T >( tree );
+		copy.setNodeIndex( node );
+		return copy;
+	}
+
+	/**
+	 * Compute the squared distance from p to this node.
+	 */
+	public double squDistanceTo( final double[] p )
+	{
+		return SquareDistance.squDistance( positions, offset, p, n );
+	}
+
+	@Override
+	public String toString()
+	{
+		return "node " + getSplitDimension() + " ? " + getSplitCoordinate() + " | " + get();
+	}
+}
@@ -0,0 +1,526 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Uniform grid to access values at RealLocalizable positions. The bounding
+ * box of the points is divided into cubic cells, and the points are sorted by
+ * cell such that the points of each cell are stored contiguously: the points
+ * of cell {@code c} are {@code cellStart[c]} to {@code cellStart[c+1]-1}. For
+ * uniformly distributed points, searches visit only a few cells around the
+ * reference, and are usually faster than searches in a {@link KDTree}. For
+ * clustered points, use a {@link KDTree} or {@link FlatKDTree}.
+ * 
+ * <p>
+ * If no cell size is given, it is chosen such that there are about
+ * {@link #DEFAULT_POINTS_PER_CELL} points per cell for uniformly distributed
+ * points. Searches are implemented in {@link net.imglib2.neighborsearch}
+ * (e.g., {@link net.imglib2.neighborsearch.NearestNeighborSearchOnGridIndex}
+ * ).
+ * </p>
+ * 
+ * @param <T>
+ *            type of values stored in the grid.
+ * 
+ * @author ImgLib2 developers
+ */
+public class GridIndex< T > implements EuclideanSpace, RealInterval
+{
+	/**
+	 * average number of points per cell for automatically chosen cell sizes.
+	 */
+	public static final double DEFAULT_POINTS_PER_CELL = 8;
+
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	/**
+	 * the number of points.
+	 */
+	final protected int size;
+
+	/**
+	 * side length of the cells.
+	 */
+	final protected double cellSize;
+
+	/**
+	 * number of cells in each dimension.
+	 */
+	final protected int[] gridDimensions;
+
+	/**
+	 * the points of cell {@code c} are {@code cellStart[c]} to
+	 * {@code cellStart[c+1]-1}. Cell {@code c} has grid coordinates
+	 * {@code c_d} where {@code c = sum c_d * prod_{e<d} gridDimensions[e]}.
+	 */
+	final protected int[] cellStart;
+
+	/**
+	 * maximum number of points in a cell.
+	 */
+	final protected int maxCellSize;
+
+	/**
+	 * coordinates of the points, sorted by cell. Point {@code i} occupies
+	 * elements {@code i*n} to {@code i*n+n-1}.
+	 */
+	final protected double[] positions;
+
+	/**
+	 * values of the points, sorted by cell. These are either values of type
+	 * T, or {@link Sampler Sampler&lt;T&gt;} if {@link #valuesAreSamplers}.
+	 */
+	final protected Object[] values;
+
+	/**
+	 * whether {@link #values} are {@link Sampler Sampler&lt;T&gt;}.
+	 */
+	final protected boolean valuesAreSamplers;
+
+	/**
+	 * minimum of each dimension. This is the origin of the grid.
+	 */
+	final protected double[] min;
+
+	/**
+	 * maximum of each dimension.
+	 */
+	final protected double[] max;
+
+	/**
+	 * Construct a GridIndex from the elements in the given list, with an
+	 * automatically chosen cell size.
+	 * 
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 */
+	public < L extends RealLocalizable > GridIndex( final List< T > values, final List< L > positions )
+	{
+		this( values, positions, 0, null, 1 );
+	}
+
+	/**
+	 * Construct a GridIndex from the elements in the given list.
+	 * 
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 * @param cellSize
+	 *            side length of the cells, or 0 to choose it automatically
+	 * @param service
+	 *            executor for sorting points into cells in parallel, or null
+	 *            to build on the calling thread
+	 * @param numTasks
+	 *            the number of parallel tasks
+	 */
+	public < L extends RealLocalizable > GridIndex( final List< T > values, final List< L > positions, final double cellSize, final ExecutorService service, final int numTasks )
+	{
+		this( positions.get( 0 ).numDimensions(), FlatKDTree.flatten( positions ), values.toArray(), false, cellSize, service, numTasks );
+		assert values.size() == positions.size();
+	}
+
+	/**
+	 * Construct a GridIndex from the elements of the given
+	 * {@link IterableRealInterval}, with an automatically chosen cell size.
+	 * 
+	 * @param interval
+	 *            elements in the grid are obtained by iterating this
+	 */
+	public GridIndex( final IterableRealInterval< T > interval )
+	{
+		this( interval, 0, null, 1 );
+	}
+
+	/**
+	 * Construct a GridIndex from the elements of the given
+	 * {@link IterableRealInterval}.
+	 * 
+	 * @param interval
+	 *            elements in the grid are obtained by iterating this
+	 * @param cellSize
+	 *            side length of the cells, or 0 to choose it automatically
+	 * @param service
+	 *            executor for sorting points into cells in parallel, or null
+	 *            to build on the calling thread
+	 * @param numTasks
+	 *            the number of parallel tasks
+	 */
+	public GridIndex( final IterableRealInterval< T > interval, final double cellSize, final ExecutorService service, final int numTasks )
+	{
+		this( interval.numDimensions(), FlatKDTree.flatten( interval ), FlatKDTree.samplers( interval ), true, cellSize, service, numTasks );
+	}
+
+	/**
+	 * Construct a GridIndex from coordinates and values in input order.
+	 * 
+	 * @param n
+	 *            number of dimensions
+	 * @param points
+	 *            coordinates of the points, point {@code i} occupies elements
+	 *            {@code i*n} to {@code i*n+n-1}.
+	 * @param values
+	 *            values (or {@link Sampler Sampler&lt;T&gt;}) corresponding to
+	 *            the points.
+	 * @param valuesAreSamplers
+	 *            whether values are {@link Sampler Sampler&lt;T&gt;}
+	 * @param cellSize
+	 *            side length of the cells, or 0 to choose it automatically
+	 * @param service
+	 *            executor for sorting points into cells in parallel, or null
+	 *            to build on the calling thread
+	 * @param numTasks
+	 *            the number of parallel tasks
+	 */
+	protected GridIndex( final int n, final double[] points, final Object[] values, final boolean valuesAreSamplers, final double cellSize, final ExecutorService service, final int numTasks )
+	{
+		this.n = n;
+		this.size = values.length;
+		this.valuesAreSamplers = valuesAreSamplers;
+		this.min = new double[ n ];
+		this.max = new double[ n ];
+		FlatKDTree.computeBounds( n, points, min, max );
+
+		this.cellSize = cellSize > 0 ? cellSize : estimateCellSize( n, min, max, size, DEFAULT_POINTS_PER_CELL );
+		this.gridDimensions = new int[ n ];
+		long numCells = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			final long s = size == 0 ? 1 : ( long ) Math.floor( ( max[ d ] - min[ d ] ) / this.cellSize ) + 1;
+			if ( s >= Integer.MAX_VALUE || ( numCells *= s ) >= Integer.MAX_VALUE )
+				throw new IllegalArgumentException( "cell size " + this.cellSize + " results in too many cells" );
+			gridDimensions[ d ] = ( int ) s;
+		}
+		this.cellStart = new int[ ( int ) numCells + 1 ];
+		this.positions = new double[ size * n ];
+		this.values = new Object[ size ];
+
+		final int parallelism = service == null ? 1 : Math.max( 1, Math.min( numTasks, size / 1024 ) );
+
+		// compute the cell of each point
+		final int[] cells = new int[ size ];
+		final ArrayList< Callable< Void > > cellTasks = new ArrayList< Callable< Void > >();
+		for ( int t = 0; t < parallelism; ++t )
+		{
+			final int from = ( int ) ( ( long ) size * t / parallelism );
+			final int to = ( int ) ( ( long ) size * ( t + 1 ) / parallelism );
+			cellTasks.add( new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					for ( int i = from; i < to; ++i )
+						cells[ i ] = cellIndex( points, i * n );
+					return null;
+				}
+			} );
+		}
+		run( cellTasks, service );
+
+		// counting sort by cell: order[j] is the input index of the j-th point
+		for ( int i = 0; i < size; ++i )
+			++cellStart[ cells[ i ] + 1 ];
+		int maxCount = 0;
+		for ( int c = 1; c < cellStart.length; ++c )
+		{
+			maxCount = Math.max( maxCount, cellStart[ c ] );
+			cellStart[ c ] += cellStart[ c - 1 ];
+		}
+		this.maxCellSize = maxCount;
+		final int[] order = new int[ size ];
+		final int[] next = cellStart.clone();
+		for ( int i = 0; i < size; ++i )
+			order[ next[ cells[ i ] ]++ ] = i;
+
+		// copy points and values in cell order
+		final ArrayList< Callable< Void > > copyTasks = new ArrayList< Callable< Void > >();
+		for ( int t = 0; t < parallelism; ++t )
+		{
+			final int from = ( int ) ( ( long ) size * t / parallelism );
+			final int to = ( int ) ( ( long ) size * ( t + 1 ) / parallelism );
+			copyTasks.add( new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					for ( int j = from; j < to; ++j )
+					{
+						final int i = order[ j ];
+						System.arraycopy( points, i * n, positions, j * n, n );
+						GridIndex.this.values[ j ] = values[ i ];
+					}
+					return null;
+				}
+			} );
+		}
+		run( copyTasks, service );
+	}
+
+	private static void run( final List< Callable< Void > > tasks, final ExecutorService service )
+	{
+		if ( service == null || tasks.size() == 1 )
+		{
+			for ( final Callable< Void > task : tasks )
+			{
+				try
+				{
+					task.call();
+				}
+				catch ( final Exception e )
+				{
+					throw new RuntimeException( e );
+				}
+			}
+		}
+		else
+			KDTree.invokeAll( tasks, service );
+	}
+
+	/**
+	 * Estimate the cell size for which uniformly distributed points in the
+	 * bounding box have the given average number of points per cell.
+	 * Dimensions in which the bounding box is flat are ignored.
+	 * 
+	 * @param n
+	 *            number of dimensions
+	 * @param min
+	 *            minimum of the bounding box
+	 * @param max
+	 *            maximum of the bounding box
+	 * @param numPoints
+	 *            number of points
+	 * @param pointsPerCell
+	 *            desired average number of points per cell
+	 * @return cell size.
+	 */
+	public static double estimateCellSize( final int n, final double[] min, final double[] max, final long numPoints, final double pointsPerCell )
+	{
+		double volume = 1;
+		double maxExtent = 0;
+		int m = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double extent = max[ d ] - min[ d ];
+			if ( extent > 0 )
+			{
+				volume *= extent;
+				maxExtent = Math.max( maxExtent, extent );
+				++m;
+			}
+		}
+		if ( m == 0 || numPoints == 0 )
+			return 1;
+
+		double cellSize = Math.pow( volume * pointsPerCell / numPoints, 1.0 / m );
+
+		// limit the number of cells, which may be large for elongated bounding
+		// boxes where some extents are smaller than the cell size
+		final double maxCells = Math.min( Integer.MAX_VALUE / 2, Math.max( 1, 4 * numPoints / pointsPerCell ) );
+		while ( true )
+		{
+			double numCells = 1;
+			for ( int d = 0; d < n; ++d )
+				numCells *= Math.floor( ( max[ d ] - min[ d ] ) / cellSize ) + 1;
+			if ( numCells <= maxCells || cellSize > maxExtent )
+				break;
+			cellSize *= 1.25;
+		}
+		return cellSize;
+	}
+
+	/**
+	 * Get the grid coordinate of a position in dimension d, clamped to the
+	 * grid.
+	 */
+	public int gridCoordinate( final double x, final int d )
+	{
+		final double c = Math.floor( ( x - min[ d ] ) / cellSize );
+		return c < 0 ? 0 : ( c >= gridDimensions[ d ] ? gridDimensions[ d ] - 1 : ( int ) c );
+	}
+
+	/**
+	 * Get the index of the cell containing the point at the given offset of
+	 * the coordinate array, clamped to the grid.
+	 */
+	protected int cellIndex( final double[] points, final int offset )
+	{
+		int cell = 0;
+		for ( int d = n - 1; d >= 0; --d )
+			cell = cell * gridDimensions[ d ] + gridCoordinate( points[ offset + d ], d );
+		return cell;
+	}
+
+	/**
+	 * Get the side length of the cells.
+	 */
+	public double cellSize()
+	{
+		return cellSize;
+	}
+
+	/**
+	 * Get the number of cells in dimension d.
+	 */
+	public int gridDimension( final int d )
+	{
+		return gridDimensions[ d ];
+	}
+
+	/**
+	 * Get the maximum number of points in a cell.
+	 */
+	public int maxCellSize()
+	{
+		return maxCellSize;
+	}
+
+	/**
+	 * Get the start indices of the cells. The points of cell {@code c} are
+	 * {@code cellStart[c]} to {@code cellStart[c+1]-1}. The array must not be
+	 * modified.
+	 */
+	public int[] getCellStarts()
+	{
+		return cellStart;
+	}
+
+	/**
+	 * Get the coordinates of all points in cell order. Point {@code i}
+	 * occupies elements {@code i*n} to {@code i*n+n-1}. The array must not be
+	 * modified.
+	 * 
+	 * @return coordinates of all points.
+	 */
+	public double[] getPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * Get the value of a point.
+	 * 
+	 * @param i
+	 *            index of the point in cell order
+	 * @return value of the point.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public T getValue( final int i )
+	{
+		return valuesAreSamplers ? ( ( Sampler< T > ) values[ i ] ).get() : ( T ) values[ i ];
+	}
+
+	/**
+	 * Create a {@link GridIndexNode} referring to the given point.
+	 * 
+	 * @param i
+	 *            index of the point in cell order
+	 */
+	public GridIndexNode< T > createNode( final int i )
+	{
+		final GridIndexNode< T > ref = new GridIndexNode< T >( this );
+		ref.setIndex( i );
+		return ref;
+	}
+
+	/**
+	 * Get the number of points.
+	 */
+	public int intSize()
+	{
+		return size;
+	}
+
+	/**
+	 * Get the number of points.
+	 */
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public double realMin( final int d )
+	{
+		return min[ d ];
+	}
+
+	@Override
+	public void realMin( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = min[ d ];
+	}
+
+	@Override
+	public void realMin( final RealPositionable m )
+	{
+		m.setPosition( min );
+	}
+
+	@Override
+	public double realMax( final int d )
+	{
+		return max[ d ];
+	}
+
+	@Override
+	public void realMax( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = max[ d ];
+	}
+
+	@Override
+	public void realMax( final RealPositionable m )
+	{
+		m.setPosition( max );
+	}
+}
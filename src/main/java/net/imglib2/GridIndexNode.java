@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+/**
+ * Refers to a point of a {@link GridIndex}. It provides the coordinates of
+ * the point via the {@link RealLocalizable} interface and the value via
+ * {@link Sampler#get()}. Like {@link FlatKDTreeNode}, it is a reference that
+ * can be moved to any point with {@link #setIndex(int)}.
+ * 
+ * @param <T>
+ *            value type.
+ * 
+ * @author ImgLib2 developers
+ */
+public class GridIndexNode< T > implements RealLocalizable, Sampler< T >
+{
+	protected final GridIndex< T > grid;
+
+	/**
+	 * number of dimensions of the space.
+	 */
+	protected final int n;
+
+	/**
+	 * coordinates of all points of the grid.
+	 */
+	protected final double[] positions;
+
+	/**
+	 * index of the point in cell order.
+	 */
+	private int index;
+
+	/**
+	 * offset of the point coordinates in {@link #positions}.
+	 */
+	private int offset;
+
+	public GridIndexNode( final GridIndex< T > grid )
+	{
+		this.grid = grid;
+		this.n = grid.numDimensions();
+		this.positions = grid.getPositions();
+	}
+
+	/**
+	 * Refer to another point.
+	 * 
+	 * @param index
+	 *            index of the point in cell order
+	 */
+	public void setIndex( final int index )
+	{
+		this.index = index;
+		this.offset = index * n;
+	}
+
+	/**
+	 * @return index of the point in cell order.
+	 */
+	public int getIndex()
+	{
+		return index;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void localize( final float[] position )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = ( float ) positions[ offset + d ];
+	}
+
+	@Override
+	public void localize( final double[] position )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = positions[ offset + d ];
+	}
+
+	@Override
+	public float getFloatPosition( final int d )
+	{
+		return ( float ) positions[ offset + d ];
+	}
+
+	@Override
+	public double getDoublePosition( final int d )
+	{
+		return positions[ offset + d ];
+	}
+
+	@Override
+	public T get()
+	{
+		return grid.getValue( index );
+	}
+
+	@Override
+	public GridIndexNode< T > copy()
+	{
+		final GridIndexNode< T > copy = new GridIndexNode< T >( grid );
+		copy.setIndex( index );
+		return copy;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "point " + index + " | " + get();
+	}
+}
@@ -39,6 +39,10 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import net.imglib2.util.KthElement;
 
@@ -188,6 +192,33 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 	 *            a list of positions corresponding to the values
 	 */
 	public < L extends RealLocalizable > KDTree( final List< T > values, final List< L > positions )
+	{
+		this( values, positions, null, 1 );
+	}
+
+	/**
+	 * Construct a KDTree from the elements in the given list, partitioning the
+	 * top levels of the tree and building the subtrees below them in parallel.
+	 * The tree is identical to the one constructed by
+	 * {@link #KDTree(List, List)}. If positions is not a
+	 * {@link java.util.RandomAccess} list, or service is null, the tree is
+	 * built on the calling thread.
+	 * 
+	 * <p>
+	 * Note that the constructor can be called with the same list for both
+	 * {@code values == positions} if {@code T extends RealLocalizable}.
+	 * </p>
+	 * 
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 * @param service
+	 *            executor for building subtrees in parallel
+	 * @param numTasks
+	 *            the minimum number of subtrees to build in parallel
+	 */
+	public < L extends RealLocalizable > KDTree( final List< T > values, final List< L > positions, final ExecutorService service, final int numTasks )
 	{
 		assert values.size() == positions.size();
 
@@ -217,9 +248,12 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 			}
 		}
 
+		final boolean parallel = service != null && numTasks > 1 && positions instanceof java.util.RandomAccess;
 		if ( values == positions )
 		{
-			if ( positions instanceof java.util.RandomAccess )
+			if ( parallel )
+				root = makeNodeParallel( positions, null, null, service, numTasks );
+			else if ( positions instanceof java.util.RandomAccess )
 				root = makeNode( positions, 0, positions.size() - 1, 0 );
 			else
 				root = makeNode( positions.listIterator(), positions.listIterator( positions.size() ), 0 );
@@ -230,7 +264,9 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 			for ( int k = 0; k < permutation.length; ++k )
 				permutation[ k ] = k;
 
-			if ( positions instanceof java.util.RandomAccess )
+			if ( parallel )
+				root = makeNodeParallel( positions, values, permutation, service, numTasks );
+			else if ( positions instanceof java.util.RandomAccess )
 				root = makeNode( positions, 0, positions.size() - 1, 0, values, permutation );
 			else
 				root = makeNode( positions.listIterator(), positions.listIterator( positions.size() ), 0, values, permutation );
@@ -482,6 +518,147 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 		}
 	}
 
+	/**
+	 * Construct the tree like {@link #makeNode(List, int, int, int, List, int[])}
+	 * (or {@link #makeNode(List, int, int, int)} if values is null), but in
+	 * parallel. The top levels of the tree are partitioned level by level, with
+	 * the sublists of each level partitioned in parallel, until there are at
+	 * least numTasks sublists. Then the subtrees of these sublists are built
+	 * in parallel, and the nodes of the top levels are created from them.
+	 * 
+	 * @param positions
+	 *            list of positions
+	 * @param values
+	 *            list of values corresponding to permuted positions, or null
+	 *            if the positions are the values
+	 * @param permutation
+	 *            the index of the values element at index k is permutation[k]
+	 *            (null if values is null)
+	 * @param service
+	 *            executor for the parallel tasks
+	 * @param numTasks
+	 *            the minimum number of subtrees to build in parallel
+	 * @return the root node of the tree.
+	 */
+	@SuppressWarnings( "unchecked" )
+	protected < L extends RealLocalizable > ValueNode< T > makeNodeParallel( final List< L > positions, final List< T > values, final int[] permutation, final ExecutorService service, final int numTasks )
+	{
+		int numLevels = 0;
+		while ( ( 1 << numLevels ) < numTasks && ( 2 << numLevels ) <= positions.size() )
+			++numLevels;
+
+		// sublists [is[l][r], js[l][r]] of level l, split at ks[l][r]
+		final int[][] is = new int[ numLevels + 1 ][];
+		final int[][] js = new int[ numLevels + 1 ][];
+		final int[][] ks = new int[ numLevels ][];
+		is[ 0 ] = new int[] { 0 };
+		js[ 0 ] = new int[] { positions.size() - 1 };
+		for ( int l = 0; l < numLevels; ++l )
+		{
+			final int numSublists = 1 << l;
+			final int[] li = is[ l ];
+			final int[] lj = js[ l ];
+			final int[] lk = ks[ l ] = new int[ numSublists ];
+			final DimComparator< L > comparator = new DimComparator< L >( l % n );
+			final ArrayList< Callable< Void > > tasks = new ArrayList< Callable< Void > >();
+			for ( int r = 0; r < numSublists; ++r )
+			{
+				final int i = li[ r ];
+				final int j = lj[ r ];
+				final int k = lk[ r ] = i + ( j - i ) / 2;
+				if ( j > i )
+					tasks.add( new Callable< Void >()
+					{
+						@Override
+						public Void call()
+						{
+							if ( permutation == null )
+								KthElement.kthElement( i, j, k, positions, comparator );
+							else
+								KthElement.kthElement( i, j, k, positions, permutation, comparator );
+							return null;
+						}
+					} );
+			}
+			invokeAll( tasks, service );
+
+			is[ l + 1 ] = new int[ 2 * numSublists ];
+			js[ l + 1 ] = new int[ 2 * numSublists ];
+			for ( int r = 0; r < numSublists; ++r )
+			{
+				final boolean empty = lj[ r ] < li[ r ];
+				is[ l + 1 ][ 2 * r ] = li[ r ];
+				js[ l + 1 ][ 2 * r ] = empty ? li[ r ] - 1 : lk[ r ] - 1;
+				is[ l + 1 ][ 2 * r + 1 ] = empty ? li[ r ] : lk[ r ] + 1;
+				js[ l + 1 ][ 2 * r + 1 ] = lj[ r ];
+			}
+		}
+
+		// build the subtrees below the partitioned levels
+		final int dSubtrees = numLevels % n;
+		final ArrayList< Callable< ValueNode< T > > > tasks = new ArrayList< Callable< ValueNode< T > > >();
+		for ( int r = 0; r < ( 1 << numLevels ); ++r )
+		{
+			final int i = is[ numLevels ][ r ];
+			final int j = js[ numLevels ][ r ];
+			tasks.add( new Callable< ValueNode< T > >()
+			{
+				@Override
+				public ValueNode< T > call()
+				{
+					if ( permutation == null )
+						return makeNode( positions, i, j, dSubtrees );
+					else
+						return makeNode( positions, i, j, dSubtrees, values, permutation );
+				}
+			} );
+		}
+		List< ValueNode< T > > children = invokeAll( tasks, service );
+
+		// create the nodes of the partitioned levels
+		for ( int l = numLevels - 1; l >= 0; --l )
+		{
+			final int numSublists = 1 << l;
+			final ArrayList< ValueNode< T > > nodes = new ArrayList< ValueNode< T > >( numSublists );
+			for ( int r = 0; r < numSublists; ++r )
+			{
+				if ( js[ l ][ r ] < is[ l ][ r ] )
+					nodes.add( null );
+				else
+				{
+					final int k = ks[ l ][ r ];
+					final T value = permutation == null ? ( T ) positions.get( k ) : values.get( permutation[ k ] );
+					nodes.add( new ValueNode< T >( value, positions.get( k ), l % n, children.get( 2 * r ), children.get( 2 * r + 1 ) ) );
+				}
+			}
+			children = nodes;
+		}
+		return children.get( 0 );
+	}
+
+	/**
+	 * Run tasks on service and return their results, in order.
+	 */
+	static < R > List< R > invokeAll( final List< ? extends Callable< R > > tasks, final ExecutorService service )
+	{
+		final ArrayList< R > results = new ArrayList< R >( tasks.size() );
+		try
+		{
+			for ( final Future< R > future : service.invokeAll( tasks ) )
+				results.add( future.get() );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			throw new RuntimeException( e.getCause() );
+		}
+		return results;
+	}
+
 	/**
 	 * Construct the tree by recursively adding nodes. The sublist of elements
 	 * between indices i and j (inclusive) is split at the median element with
@@ -34,6 +34,7 @@
 
 package net.imglib2;
 
+import net.imglib2.util.SquareDistance;
 
 /**
  * Abstract base class for nodes in a KDTree. A KDTreeNode has coordinates and a
@@ -178,12 +179,7 @@ public abstract class KDTreeNode< T > implements RealLocalizable, Sampler< T >
 	 */
 	public final double squDistanceTo( final double[] p )
 	{
-		double sum = 0;
-		for ( int d = 0; d < n; ++d )
-		{
-			sum += ( pos[ d ] - p[ d ] ) * ( pos[ d ] - p[ d ] );
-		}
-		return sum;
+		return SquareDistance.squDistance( pos, 0, p, 0, n );
 	}
 
 	/**
@@ -0,0 +1,171 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.display.projector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.CopyableConverter;
+
+/**
+ * Base class for 2D projectors that can render the target in row bands on
+ * an {@link ExecutorService}. By default, {@link #map()} runs on the calling
+ * thread. After {@link #setExecutorService(ExecutorService, int)}, the target
+ * rows are split into (at most) the given number of consecutive bands that
+ * are rendered concurrently. {@link Converter Converters} implementing
+ * {@link CopyableConverter} are copied for each band, all others are shared
+ * between threads and must be thread-safe.
+ * 
+ * @author ImgLib2 developers
+ */
+public abstract class AbstractParallelProjector2D extends AbstractProjector2D
+{
+	/**
+	 * Renders a band of the target, given as a range of pixels in the
+	 * iteration order of the target.
+	 */
+	protected interface RowBand
+	{
+		/**
+		 * @param offset
+		 *            index of the first pixel of the band.
+		 * @param size
+		 *            number of pixels in the band.
+		 */
+		public void map( long offset, long size );
+	}
+
+	protected ExecutorService executorService = null;
+
+	protected int numTasks = 1;
+
+	public AbstractParallelProjector2D( final int numDims )
+	{
+		super( numDims );
+	}
+
+	/**
+	 * Render {@link #map()} in parallel.
+	 * 
+	 * @param service
+	 *            executes the row bands. If null, {@link #map()} runs on the
+	 *            calling thread.
+	 * @param numTasks
+	 *            number of row bands to split the target into, typically the
+	 *            number of threads of the <em>service</em>.
+	 */
+	public void setExecutorService( final ExecutorService service, final int numTasks )
+	{
+		if ( numTasks < 1 )
+			throw new IllegalArgumentException( "need at least one task." );
+		this.executorService = service;
+		this.numTasks = numTasks;
+	}
+
+	public ExecutorService getExecutorService()
+	{
+		return executorService;
+	}
+
+	public int getNumTasks()
+	{
+		return numTasks;
+	}
+
+	/**
+	 * Split a target of <em>height</em> rows of <em>width</em> pixels into
+	 * row bands and {@link RowBand#map(long, long) map} them, concurrently if
+	 * an {@link ExecutorService} was set. Returns when all bands are done.
+	 */
+	protected void mapRowBands( final long width, final long height, final RowBand band )
+	{
+		final int numBands = ( int ) Math.min( executorService == null ? 1 : numTasks, height );
+		if ( numBands <= 1 )
+		{
+			band.map( 0, width * height );
+			return;
+		}
+
+		final List< Callable< Void > > tasks = new ArrayList< Callable< Void > >( numBands );
+		for ( int i = 0; i < numBands; ++i )
+		{
+			final long firstRow = height * i / numBands;
+			final long numRows = height * ( i + 1 ) / numBands - firstRow;
+			tasks.add( new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					band.map( firstRow * width, numRows * width );
+					return null;
+				}
+			} );
+		}
+
+		try
+		{
+			final List< Future< Void > > futures = executorService.invokeAll( tasks );
+			for ( final Future< Void > future : futures )
+				future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			throw new RuntimeException( e.getCause() );
+		}
+	}
+
+	/**
+	 * @return a copy of <em>converter</em> for use by one {@link RowBand}, if
+	 *         the projector is running in parallel and the converter is a
+	 *         {@link CopyableConverter}. Otherwise, <em>converter</em>
+	 *         itself.
+	 */
+	protected < A, B > Converter< A, B > converterForBand( final Converter< A, B > converter )
+	{
+		if ( executorService != null && converter instanceof CopyableConverter )
+			return ( ( CopyableConverter< A, B > ) converter ).copy();
+		return converter;
+	}
+}
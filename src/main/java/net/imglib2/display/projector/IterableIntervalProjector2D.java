@@ -48,6 +48,8 @@ import net.imglib2.view.Views;
  * result. The output of the projection is written into a {@link IterableInterval}.
  * 
  * Depending on input and output an optimal strategy is chosen in the map() method.
+ * The target can be rendered in parallel row bands, see
+ * {@link #setExecutorService(java.util.concurrent.ExecutorService, int)}.
  * 
  * Starting from the reference point two dimensions are sampled such
  * that a plain gets cut out of a higher dimensional data volume. <br>
@@ -59,7 +61,7 @@ import net.imglib2.view.Views;
  * @param <A>
  * @param <B>
  */
-public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
+public class IterableIntervalProjector2D< A, B > extends AbstractParallelProjector2D
 {
 	final protected Converter< ? super A, B > converter;
 
@@ -120,60 +122,84 @@ public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
 		// order fits in the case of one sized dims. Tobi?
 		final IterableInterval< A > ii = Views.iterable( Views.interval( source, new FinalInterval( min, max ) ) );
 
-		final Cursor< A > sourceCursor = ii.cursor();
+		final long width = target.dimension( X );
+		final long height = target.dimension( Y );
 
-		if ( target.iterationOrder().equals( ii.iterationOrder() ) && !( sourceCursor instanceof RandomAccessibleIntervalCursor ) )
+		final RowBand band;
+		if ( target.iterationOrder().equals( ii.iterationOrder() ) && !( ii.cursor() instanceof RandomAccessibleIntervalCursor ) )
 		{
-			final Cursor< B > targetCursor = target.cursor();
-			while ( targetCursor.hasNext() )
+			band = new RowBand()
 			{
-				converter.convert( sourceCursor.next(), targetCursor.next() );
-			}
+				@Override
+				public void map( final long offset, final long size )
+				{
+					final Converter< ? super A, B > c = converterForBand( converter );
+					final Cursor< A > sourceCursor = ii.cursor();
+					final Cursor< B > targetCursor = target.cursor();
+					sourceCursor.jumpFwd( offset );
+					targetCursor.jumpFwd( offset );
+					for ( long i = 0; i < size; ++i )
+						c.convert( sourceCursor.next(), targetCursor.next() );
+				}
+			};
 		}
 		else if ( target.iterationOrder() instanceof FlatIterationOrder )
 		{
-			final Cursor< B > targetCursor = target.cursor();
-			targetCursor.fwd();
 			final FinalInterval sourceInterval = new FinalInterval( min, max );
-
-			// use localizing cursor
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
-			sourceRandomAccess.setPosition( position );
-
-			final long cr = -target.dimension( dimX );
-
-			final long width = target.dimension( dimX );
-			final long height = target.dimension( dimY );
-
-			sourceRandomAccess.setPosition( min );
-			for ( long y = 0; y < height; ++y )
+			band = new RowBand()
 			{
-				for ( long x = 0; x < width; ++x )
+				@Override
+				public void map( final long offset, final long size )
 				{
-					converter.convert( sourceRandomAccess.get(), targetCursor.get() );
-					sourceRandomAccess.fwd( dimX );
-					targetCursor.fwd();
+					final Converter< ? super A, B > c = converterForBand( converter );
+					final Cursor< B > targetCursor = target.cursor();
+					targetCursor.jumpFwd( offset );
+
+					// use localizing cursor
+					final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
+					sourceRandomAccess.setPosition( min );
+					sourceRandomAccess.move( offset / width, dimY );
+
+					final long cr = -width;
+					final long numRows = size / width;
+					for ( long y = 0; y < numRows; ++y )
+					{
+						for ( long x = 0; x < width; ++x )
+						{
+							c.convert( sourceRandomAccess.get(), targetCursor.next() );
+							sourceRandomAccess.fwd( dimX );
+						}
+						sourceRandomAccess.move( cr, dimX );
+						sourceRandomAccess.fwd( dimY );
+					}
 				}
-				sourceRandomAccess.move( cr, dimX );
-				sourceRandomAccess.fwd( dimY );
-			}
-
+			};
 		}
 		else
 		{
-			final Cursor< B > targetCursor = target.localizingCursor();
-			
-			// use localizing cursor
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess();
-			sourceRandomAccess.setPosition( position );
-			while ( targetCursor.hasNext() )
+			band = new RowBand()
 			{
-				final B b = targetCursor.next();
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( X ), dimX );
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( Y ), dimY );
-
-				converter.convert( sourceRandomAccess.get(), b );
-			}
+				@Override
+				public void map( final long offset, final long size )
+				{
+					final Converter< ? super A, B > c = converterForBand( converter );
+					final Cursor< B > targetCursor = target.localizingCursor();
+					targetCursor.jumpFwd( offset );
+
+					// use localizing cursor
+					final RandomAccess< A > sourceRandomAccess = source.randomAccess();
+					sourceRandomAccess.setPosition( position );
+					for ( long i = 0; i < size; ++i )
+					{
+						final B b = targetCursor.next();
+						sourceRandomAccess.setPosition( targetCursor.getLongPosition( X ), dimX );
+						sourceRandomAccess.setPosition( targetCursor.getLongPosition( Y ), dimY );
+
+						c.convert( sourceRandomAccess.get(), b );
+					}
+				}
+			};
 		}
+		mapRowBands( width, height, band );
 	}
 }
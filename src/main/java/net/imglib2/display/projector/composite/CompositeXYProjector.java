@@ -42,7 +42,7 @@ import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
-import net.imglib2.display.projector.AbstractProjector2D;
+import net.imglib2.display.projector.AbstractParallelProjector2D;
 import net.imglib2.type.numeric.ARGBType;
 
 /**
@@ -51,7 +51,8 @@ import net.imglib2.type.numeric.ARGBType;
  * has its own {@link Converter}. The results of the conversions are summed into
  * the final value. Positions along the axis can be individually toggled for
  * inclusion in the computed composite value using the {@link #setComposite}
- * methods.
+ * methods. The target can be rendered in parallel row bands, see
+ * {@link #setExecutorService(java.util.concurrent.ExecutorService, int)}.
  * 
  * @see XYProjector for the code upon which this class was based.
  * 
@@ -60,7 +61,7 @@ import net.imglib2.type.numeric.ARGBType;
  * @author Grant Harris
  * @author Tobias Pietzsch <tobias.pietzsch@gmail.com>
  */
-public class CompositeXYProjector< A > extends AbstractProjector2D
+public class CompositeXYProjector< A > extends AbstractParallelProjector2D
 {
 
 	private final ArrayList< Converter< A, ARGBType >> converters;
@@ -153,13 +154,14 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 		max[ 0 ] = target.max( 0 );
 		max[ 1 ] = target.max( 1 );
 
+		final long width = target.dimension( 0 );
+		final long height = target.dimension( 1 );
+
 		if ( dimIndex < 0 )
 		{
 			// there is only converter[0]
 			// use it to map the current position
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( min, max ) );
-			sourceRandomAccess.setPosition( min );
-			mapSingle( sourceRandomAccess, converters.get( 0 ) );
+			mapSingle( converters.get( 0 ), width, height );
 			return;
 		}
 
@@ -171,21 +173,44 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 				min[ dimIndex ] = currentPositions[ i ];
 			else if ( currentPositions[ i ] > max[ dimIndex ] )
 				max[ dimIndex ] = currentPositions[ i ];
-		final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( min, max ) );
-		sourceRandomAccess.setPosition( min );
 
 		if ( size == 1 )
 		{
 			// there is only one active converter: converter[0]
 			// use it to map the slice at currentPositions[0]
-			mapSingle( sourceRandomAccess, currentConverters[ 0 ] );
+			mapSingle( currentConverters[ 0 ], width, height );
 			return;
 		}
 
+		final FinalInterval sourceInterval = new FinalInterval( min, max );
+		mapRowBands( width, height, new RowBand()
+		{
+			@Override
+			public void map( final long offset, final long numPixels )
+			{
+				final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
+				sourceRandomAccess.setPosition( min );
+				mapComposite( sourceRandomAccess, size, offset, numPixels );
+			}
+		} );
+	}
+
+	/**
+	 * Map <em>numPixels</em> pixels, starting at <em>offset</em> in the
+	 * iteration order of the target, summing over the first <em>size</em>
+	 * {@link #currentConverters}.
+	 */
+	protected void mapComposite( final RandomAccess< A > sourceRandomAccess, final int size, final long offset, final long numPixels )
+	{
+		final Converter< A, ARGBType >[] bandConverters = currentConverters.clone();
+		for ( int i = 0; i < size; i++ )
+			bandConverters[ i ] = converterForBand( currentConverters[ i ] );
+
 		final Cursor< ARGBType > targetCursor = target.localizingCursor();
+		targetCursor.jumpFwd( offset );
 		final ARGBType bi = new ARGBType();
 
-		while ( targetCursor.hasNext() )
+		for ( long p = 0; p < numPixels; ++p )
 		{
 			targetCursor.fwd();
 			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
@@ -194,7 +219,7 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 			for ( int i = 0; i < size; i++ )
 			{
 				sourceRandomAccess.setPosition( currentPositions[ i ], dimIndex );
-				currentConverters[ i ].convert( sourceRandomAccess.get(), bi );
+				bandConverters[ i ].convert( sourceRandomAccess.get(), bi );
 
 				// accumulate converted result
 				final int value = bi.get();
@@ -263,10 +288,41 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 		return currentSize;
 	}
 
+	/**
+	 * Map the slice at the current {@link #min} using a single converter.
+	 */
+	protected void mapSingle( final Converter< A, ARGBType > conv, final long width, final long height )
+	{
+		final FinalInterval sourceInterval = new FinalInterval( min, max );
+		mapRowBands( width, height, new RowBand()
+		{
+			@Override
+			public void map( final long offset, final long numPixels )
+			{
+				final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
+				sourceRandomAccess.setPosition( min );
+				mapSingle( sourceRandomAccess, converterForBand( conv ), offset, numPixels );
+			}
+		} );
+	}
+
+	/**
+	 * Map the whole target on the calling thread using a single converter.
+	 */
 	protected void mapSingle( final RandomAccess< A > sourceRandomAccess, final Converter< A, ARGBType > conv )
+	{
+		mapSingle( sourceRandomAccess, conv, 0, target.size() );
+	}
+
+	/**
+	 * Map <em>numPixels</em> pixels, starting at <em>offset</em> in the
+	 * iteration order of the target, using a single converter.
+	 */
+	protected void mapSingle( final RandomAccess< A > sourceRandomAccess, final Converter< A, ARGBType > conv, final long offset, final long numPixels )
 	{
 		final Cursor< ARGBType > targetCursor = target.localizingCursor();
-		while ( targetCursor.hasNext() )
+		targetCursor.jumpFwd( offset );
+		for ( long p = 0; p < numPixels; ++p )
 		{
 			targetCursor.fwd();
 			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
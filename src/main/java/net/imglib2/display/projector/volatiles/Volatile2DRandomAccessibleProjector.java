@@ -86,6 +86,7 @@ public class Volatile2DRandomAccessibleProjector< T, A extends Volatile< T >, B
 
 		final IterableInterval< A > srcIterable = Views.iterable( Views.interval( source, new FinalInterval( min, max ) ) );
 		final Cursor< B > targetCursor = target.localizingCursor();
+		boolean v = true;
 
 		if ( target.iterationOrder().equals( srcIterable.iterationOrder() ) )
 		{
@@ -93,21 +94,27 @@ public class Volatile2DRandomAccessibleProjector< T, A extends Volatile< T >, B
 			final Cursor< A > sourceCursor = srcIterable.cursor();
 			while ( targetCursor.hasNext() )
 			{
-				converter.convert( sourceCursor.next(), targetCursor.next() );
+				final A a = sourceCursor.next();
+				converter.convert( a, targetCursor.next() );
+				v &= a.isValid();
 			}
 		}
 		else
 		{
 			// use localizing cursor
 			final RandomAccess< A > sourceRandomAccess = source.randomAccess();
+			sourceRandomAccess.setPosition( position );
 			while ( targetCursor.hasNext() )
 			{
 				final B b = targetCursor.next();
 				sourceRandomAccess.setPosition( targetCursor.getLongPosition( X ), X );
 				sourceRandomAccess.setPosition( targetCursor.getLongPosition( Y ), Y );
 
-				converter.convert( sourceRandomAccess.get(), b );
+				final A a = sourceRandomAccess.get();
+				converter.convert( a, b );
+				v &= a.isValid();
 			}
 		}
+		valid = v;
 	}
 }
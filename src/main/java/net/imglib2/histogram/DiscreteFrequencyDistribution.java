@@ -46,8 +46,10 @@ import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.util.IntervalIndexer;
 
 /**
  * This class represents an n-dimensional set of counters. Histogram
@@ -64,6 +66,11 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 
 	private final RandomAccess< LongType > accessor;
 
+	/**
+	 * {@link #counts} if it is sparse, otherwise null.
+	 */
+	private final SparseFrequencyImg sparse;
+
 	private long totalValues;
 
 	// -- public api --
@@ -72,6 +79,18 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	 * Construct an n-dimensional counter with the given number of bins
 	 */
 	public DiscreteFrequencyDistribution( final long[] binCounts )
+	{
+		this( binCounts, false );
+	}
+
+	/**
+	 * Construct an n-dimensional counter with the given number of bins. If
+	 * <em>sparse</em> is true, only bins that have been counted are stored, in
+	 * a hash map keyed by the flat bin index. This allows for distributions
+	 * with many more bins than fit into memory, as long as few of them are
+	 * populated.
+	 */
+	public DiscreteFrequencyDistribution( final long[] binCounts, final boolean sparse )
 	{
 		// check inputs for issues
 
@@ -82,7 +101,16 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 
 		// then build object
 
-		counts = new ArrayImgFactory< LongType >().create( binCounts, new LongType() );
+		if ( sparse )
+		{
+			this.sparse = new SparseFrequencyImg( binCounts );
+			counts = this.sparse;
+		}
+		else
+		{
+			this.sparse = null;
+			counts = new ArrayImgFactory< LongType >().create( binCounts, new LongType() );
+		}
 
 		accessor = counts.randomAccess();
 
@@ -96,6 +124,7 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	public DiscreteFrequencyDistribution( final Img< LongType > img )
 	{
 		counts = img;
+		sparse = img instanceof SparseFrequencyImg ? ( SparseFrequencyImg ) img : null;
 		accessor = counts.randomAccess();
 		resetCounters();
 	}
@@ -105,6 +134,12 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	 */
 	public void resetCounters()
 	{
+		if ( sparse != null )
+		{
+			sparse.map().clear();
+			totalValues = 0;
+			return;
+		}
 		final Cursor< LongType > cursor = counts.cursor();
 		while ( cursor.hasNext() )
 		{
@@ -123,6 +158,8 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 			if ( binPos[ i ] < 0 || binPos[ i ] >= dimension( i ) )
 				return 0;
 		}
+		if ( sparse != null )
+			return sparse.map().get( sparse.index( binPos ) );
 		accessor.setPosition( binPos );
 		return accessor.get().get();
 	}
@@ -154,8 +191,13 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	 */
 	public void increment( final long[] binPos )
 	{
-		accessor.setPosition( binPos );
-		accessor.get().inc();
+		if ( sparse != null )
+			sparse.map().add( sparse.index( binPos ), 1 );
+		else
+		{
+			accessor.setPosition( binPos );
+			accessor.get().inc();
+		}
 		totalValues++;
 	}
 
@@ -164,11 +206,41 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	 */
 	public void decrement( final long[] binPos )
 	{
-		accessor.setPosition( binPos );
-		accessor.get().dec();
+		if ( sparse != null )
+			sparse.map().add( sparse.index( binPos ), -1 );
+		else
+		{
+			accessor.setPosition( binPos );
+			accessor.get().dec();
+		}
 		totalValues--;
 	}
 
+	/**
+	 * Adds counts to all bins. The counts are given in flat bin order, i.e.,
+	 * the index of a bin is computed from its position as in
+	 * {@link IntervalIndexer#positionToIndex(long[], long[])}.
+	 * 
+	 * @param binCounts
+	 *            counts to add, one per bin.
+	 */
+	public void addCounts( final long[] binCounts )
+	{
+		modifyCounts( binCounts, 1 );
+	}
+
+	/**
+	 * Subtracts counts from all bins. The counts are given in flat bin order,
+	 * as in {@link #addCounts(long[])}.
+	 * 
+	 * @param binCounts
+	 *            counts to subtract, one per bin.
+	 */
+	public void subtractCounts( final long[] binCounts )
+	{
+		modifyCounts( binCounts, -1 );
+	}
+
 	/**
 	 * Returns the total number of values counted by this distribution.
 	 */
@@ -183,17 +255,19 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	public long modeCount()
 	{
 		final List< long[] > modes = modePositions();
-		return frequency( modes.get( 0 ) );
+		return modes.isEmpty() ? 0 : frequency( modes.get( 0 ) );
 	}
 
 	/**
-	 * Returns a list of bin positions of the highest frequency bins.
+	 * Returns a list of bin positions of the highest frequency bins. Bins that
+	 * are empty are never modes, so the list is empty if the distribution is
+	 * empty.
 	 */
 	public List< long[] > modePositions()
 	{
 		long commonValue = 0;
 		final List< long[] > modePositions = new ArrayList< long[] >();
-		final Cursor< LongType > cursor = localizingCursor();
+		final Cursor< LongType > cursor = sparse != null ? nonZeroCursor() : localizingCursor();
 		while ( cursor.hasNext() )
 		{
 			final long val = cursor.next().get();
@@ -205,7 +279,7 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 				cursor.localize( pos );
 				modePositions.add( pos );
 			}
-			else if ( val == commonValue )
+			else if ( val == commonValue && val > 0 )
 			{
 				final long[] pos = new long[ numDimensions() ];
 				cursor.localize( pos );
@@ -215,6 +289,26 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 		return modePositions;
 	}
 
+	/**
+	 * Returns true if only populated bins are stored.
+	 */
+	public boolean isSparse()
+	{
+		return sparse != null;
+	}
+
+	/**
+	 * Returns a cursor that visits only the bins with a non-zero frequency
+	 * count. For a sparse distribution this only touches the stored bins, in
+	 * no particular order; otherwise bins are visited in iteration order.
+	 */
+	public Cursor< LongType > nonZeroCursor()
+	{
+		if ( sparse != null )
+			return new NonZeroCursor( sparse.storedCursor() );
+		return new NonZeroCursor( counts.localizingCursor() );
+	}
+
 	// -- Img methods --
 
 	@Override
@@ -367,4 +461,52 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 		return new DiscreteFrequencyDistribution( counts.copy() );
 	}
 
+	// -- helpers --
+
+	private void modifyCounts( final long[] binCounts, final long sign )
+	{
+		if ( binCounts.length != counts.size() ) { throw new IllegalArgumentException( "expected " + counts.size() + " bin counts, got " + binCounts.length ); }
+
+		long total = 0;
+		if ( sparse != null )
+		{
+			final LongCountMap map = sparse.map();
+			for ( int i = 0; i < binCounts.length; ++i )
+			{
+				if ( binCounts[ i ] != 0 )
+				{
+					map.add( i, sign * binCounts[ i ] );
+					total += binCounts[ i ];
+				}
+			}
+		}
+		else if ( counts instanceof ArrayImg )
+		{
+			// ArrayImg cursors iterate in flat bin order
+			final Cursor< LongType > cursor = counts.cursor();
+			for ( int i = 0; i < binCounts.length; ++i )
+			{
+				final LongType t = cursor.next();
+				t.set( t.get() + sign * binCounts[ i ] );
+				total += binCounts[ i ];
+			}
+		}
+		else
+		{
+			final long[] dims = new long[ numDimensions() ];
+			final long[] binPos = new long[ numDimensions() ];
+			dimensions( dims );
+			final Cursor< LongType > cursor = counts.localizingCursor();
+			while ( cursor.hasNext() )
+			{
+				final LongType t = cursor.next();
+				cursor.localize( binPos );
+				final long c = binCounts[ ( int ) IntervalIndexer.positionToIndex( binPos, dims ) ];
+				t.set( t.get() + sign * c );
+				total += c;
+			}
+		}
+		totalValues += sign * total;
+	}
+
 }
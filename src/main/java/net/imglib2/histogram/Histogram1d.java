@@ -34,10 +34,13 @@
 
 package net.imglib2.histogram;
 
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.IterableRealInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
@@ -72,6 +75,11 @@ public class Histogram1d< T > implements Img< LongType >
 
 	private long ignoredCount;
 
+	/**
+	 * Cumulative bin counts, or null if they need to be recomputed.
+	 */
+	private long[] cumulative;
+
 	// -- constructor --
 
 	/**
@@ -426,6 +434,31 @@ public class Histogram1d< T > implements Img< LongType >
 		init( data );
 	}
 
+	/**
+	 * Counts the data contained in the given data source using the underlying
+	 * bin distribution. The data is split into <em>numTasks</em> chunks that
+	 * are counted in parallel into separate bins, which are summed at the end.
+	 * 
+	 * @param data
+	 *            The total data to count
+	 * @param service
+	 *            executes the counting tasks
+	 * @param numTasks
+	 *            number of tasks to split the data into
+	 */
+	public void countData( final IterableInterval< T > data, final ExecutorService service, final int numTasks )
+	{
+		if ( ParallelCounting.numBins( Collections.singletonList( mapper ) ) < 0 )
+		{
+			init( data );
+			return;
+		}
+		reset();
+		addCounts( ParallelCounting.count( data, mapper, service, numTasks ) );
+		if ( data.size() > 0 )
+			firstValue = data.firstElement();
+	}
+
 	/**
 	 * Counts additional data contained in a given iterable collection. One can
 	 * use this to update an existing histogram with a subset of values.
@@ -458,6 +491,7 @@ public class Histogram1d< T > implements Img< LongType >
 	 */
 	public void increment( final long binPos )
 	{
+		cumulative = null;
 		pos[ 0 ] = binPos;
 		distrib.increment( pos );
 	}
@@ -470,6 +504,7 @@ public class Histogram1d< T > implements Img< LongType >
 	 */
 	public void decrement( final long binPos )
 	{
+		cumulative = null;
 		pos[ 0 ] = binPos;
 		distrib.decrement( pos );
 	}
@@ -482,6 +517,7 @@ public class Histogram1d< T > implements Img< LongType >
 	 */
 	public void increment( final T value )
 	{
+		cumulative = null;
 		final long bin = mapper.map( value );
 		if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
 		{
@@ -502,6 +538,7 @@ public class Histogram1d< T > implements Img< LongType >
 	 */
 	public void decrement( final T value )
 	{
+		cumulative = null;
 		final long bin = mapper.map( value );
 		if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
 		{
@@ -538,6 +575,121 @@ public class Histogram1d< T > implements Img< LongType >
 		return result;
 	}
 
+	/**
+	 * Adds bin counts, as obtained from the {@link BinMapper1d} of this
+	 * histogram.
+	 */
+	void addCounts( final BinCounts counts )
+	{
+		cumulative = null;
+		distrib.addCounts( counts.bins );
+		ignoredCount += counts.ignored;
+	}
+
+	/**
+	 * Subtracts bin counts, as obtained from the {@link BinMapper1d} of this
+	 * histogram.
+	 */
+	void subtractCounts( final BinCounts counts )
+	{
+		cumulative = null;
+		distrib.subtractCounts( counts.bins );
+		ignoredCount -= counts.ignored;
+	}
+
+	/**
+	 * Returns the number of values in all bins up to and including the given
+	 * bin. The cumulative counts are computed on first use after the histogram
+	 * was modified through its own methods. Modifications of the counts
+	 * through {@link #dfd()} or the {@link Img} methods are not tracked; call
+	 * {@link #invalidateCumulativeCounts()} after doing so.
+	 * 
+	 * @param binPos
+	 *            The position of the bin of interest
+	 */
+	public long cumulativeCount( final long binPos )
+	{
+		if ( binPos < 0 )
+			return 0;
+		final long[] c = cumulative();
+		return c[ ( int ) Math.min( binPos, c.length - 1 ) ];
+	}
+
+	/**
+	 * Discards the cached cumulative counts used by
+	 * {@link #cumulativeCount(long)}, {@link #rank(RealType)} and the quantile
+	 * queries, so that they are recomputed on next use. Call this after
+	 * modifying bin counts through {@link #dfd()} or the {@link Img} methods.
+	 */
+	public void invalidateCumulativeCounts()
+	{
+		cumulative = null;
+	}
+
+	/**
+	 * Returns the number of values in the distribution that are mapped to the
+	 * same bin as <em>value</em> or to a lower bin. Values below or above a
+	 * histogram without tails have rank 0 or {@link #distributionCount()},
+	 * respectively.
+	 * 
+	 * @param value
+	 *            A representative value of interest
+	 */
+	public long rank( final T value )
+	{
+		final long bin = mapper.map( value );
+		if ( bin == Long.MIN_VALUE )
+			return 0;
+		if ( bin == Long.MAX_VALUE )
+			return distributionCount();
+		return cumulativeCount( bin );
+	}
+
+	/**
+	 * Returns the bin that contains the <em>q</em>-quantile of the
+	 * distribution (including the tails), i.e., the first bin whose
+	 * cumulative count reaches <em>q</em> times {@link #distributionCount()}.
+	 * The bin is found by binary search over the cumulative counts.
+	 * 
+	 * @param q
+	 *            The quantile, in [0, 1]. E.g., 0.5 for the median.
+	 */
+	public long quantileBin( final double q )
+	{
+		if ( !( q >= 0 && q <= 1 ) )
+			throw new IllegalArgumentException( "quantile must be in [0, 1]: " + q );
+		final long[] c = cumulative();
+		final long total = c[ c.length - 1 ];
+		if ( total <= 0 )
+			throw new IllegalStateException( "the histogram is empty" );
+		final long rank = Math.max( 1, ( long ) Math.ceil( q * total ) );
+		int lo = 0;
+		int hi = c.length - 1;
+		while ( lo < hi )
+		{
+			final int mid = ( lo + hi ) >>> 1;
+			if ( c[ mid ] < rank )
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Gets the center value of the bin that contains the <em>q</em>-quantile
+	 * of the distribution (see {@link #quantileBin(double)}).
+	 * 
+	 * @param q
+	 *            The quantile, in [0, 1]. E.g., 0.5 for the median.
+	 * @param value
+	 *            The output to fill with the quantile value
+	 */
+	public void quantile( final double q, final T value )
+	{
+		getCenterValue( quantileBin( q ), value );
+	}
+
 	// -- delegated Img methods --
 
 	/**
@@ -726,15 +878,34 @@ public class Histogram1d< T > implements Img< LongType >
 
 	private void reset()
 	{
+		cumulative = null;
 		distrib.resetCounters();
 		ignoredCount = 0;
 		firstValue = null;
 	}
 
+	private long[] cumulative()
+	{
+		if ( cumulative == null )
+		{
+			final long[] c = toLongArray();
+			for ( int i = 1; i < c.length; ++i )
+				c[ i ] += c[ i - 1 ];
+			cumulative = c;
+		}
+		return cumulative;
+	}
+
 	private void init( final Iterable< T > data )
 	{
 		reset();
 
+		if ( addPrimitive( data ) )
+		{
+			firstValue = data.iterator().next();
+			return;
+		}
+
 		// record the first element
 		final Iterator<T> iter = data.iterator();
 		if ( iter.hasNext() )
@@ -752,14 +923,50 @@ public class Histogram1d< T > implements Img< LongType >
 
 	private void add( final Iterable< T > data )
 	{
+		if ( addPrimitive( data ) )
+			return;
+
 		for ( final T value : data )
 		{
 			increment( value );
 		}
 	}
 
+	/**
+	 * Counts <em>data</em> directly from its primitive storage, if
+	 * {@link PrimitiveCounting} supports it.
+	 * 
+	 * @return whether the data was counted.
+	 */
+	private boolean addPrimitive( final Iterable< T > data )
+	{
+		final BinCounts counts = PrimitiveCounting.count( data, mapper );
+		if ( counts == null )
+			return false;
+		addCounts( counts );
+		return true;
+	}
+
+	/**
+	 * Uncounts <em>data</em> directly from its primitive storage, if
+	 * {@link PrimitiveCounting} supports it.
+	 * 
+	 * @return whether the data was uncounted.
+	 */
+	private boolean subtractPrimitive( final Iterable< T > data )
+	{
+		final BinCounts counts = PrimitiveCounting.count( data, mapper );
+		if ( counts == null )
+			return false;
+		subtractCounts( counts );
+		return true;
+	}
+
 	private void subtract( final Iterable< T > data )
 	{
+		if ( subtractPrimitive( data ) )
+			return;
+
 		for ( final T value : data )
 		{
 			decrement( value );
@@ -37,9 +37,11 @@ package net.imglib2.histogram;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.IterableRealInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
@@ -91,6 +93,24 @@ public class HistogramNd< T > implements Img< LongType >
 	 *            The algorithms used to map values to bins
 	 */
 	public HistogramNd( final List< BinMapper1d< T >> mappers )
+	{
+		this( mappers, false );
+	}
+
+	/**
+	 * Construct a histogram from a list of bin mapping algorithms. Use
+	 * countData() to populate it. If <em>sparse</em> is true, only populated
+	 * bins are stored (see
+	 * {@link DiscreteFrequencyDistribution#DiscreteFrequencyDistribution(long[], boolean)}
+	 * ), which allows for joint histograms with far more bins than fit into
+	 * memory.
+	 * 
+	 * @param mappers
+	 *            The algorithms used to map values to bins
+	 * @param sparse
+	 *            Whether to store only populated bins
+	 */
+	public HistogramNd( final List< BinMapper1d< T >> mappers, final boolean sparse )
 	{
 		this.mappers = mappers;
 		final long[] dims = new long[ mappers.size() ];
@@ -98,7 +118,7 @@ public class HistogramNd< T > implements Img< LongType >
 		{
 			dims[ i ] = mappers.get( i ).getBinCount();
 		}
-		distrib = new DiscreteFrequencyDistribution( dims );
+		distrib = new DiscreteFrequencyDistribution( dims, sparse );
 		pos = new long[ mappers.size() ];
 		ignoredCount = 0;
 	}
@@ -113,7 +133,7 @@ public class HistogramNd< T > implements Img< LongType >
 	public HistogramNd( final HistogramNd< T > other )
 	{
 		final List< BinMapper1d< T >> mappersCopy = new ArrayList< BinMapper1d< T >>();
-		for ( final BinMapper1d< T > m : mappers )
+		for ( final BinMapper1d< T > m : other.mappers )
 		{
 			mappersCopy.add( m.copy() );
 		}
@@ -757,6 +777,33 @@ public class HistogramNd< T > implements Img< LongType >
 		init( data );
 	}
 
+	/**
+	 * Counts the data contained in the given data sources using the underlying
+	 * bin distribution. Each data source provides the values of one dimension
+	 * of the histogram, and all of them must have the same iteration order.
+	 * The data is split into <em>numTasks</em> chunks that are counted in
+	 * parallel into separate bins, which are summed at the end.
+	 * 
+	 * @param data
+	 *            The total data to count
+	 * @param service
+	 *            executes the counting tasks
+	 * @param numTasks
+	 *            number of tasks to split the data into
+	 */
+	public void countData( final List< ? extends IterableInterval< T > > data, final ExecutorService service, final int numTasks )
+	{
+		if ( ParallelCounting.numBins( mappers ) < 0 )
+		{
+			init( new ArrayList< Iterable< T > >( data ) );
+			return;
+		}
+		reset();
+		final BinCounts counts = ParallelCounting.count( data, mappers, service, numTasks );
+		distrib.addCounts( counts.bins );
+		ignoredCount = counts.ignored;
+	}
+
 	/**
 	 * Counts additional data contained in a given iterable collection. One can
 	 * use this to update an existing histogram with a subset of values.
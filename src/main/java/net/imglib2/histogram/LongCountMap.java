@@ -0,0 +1,222 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.Arrays;
+
+/**
+ * A map from non-negative <code>long</code> keys to <code>long</code> counts,
+ * using open addressing with linear probing in two primitive arrays. Keys that
+ * have never been set map to 0. Entries are never removed individually, only
+ * by {@link #clear()}, so slots of an unchanged key set remain stable and can
+ * be iterated with {@link #capacity()}, {@link #keyAt(int)} and
+ * {@link #valueAt(int)}.
+ * 
+ * @author ImgLib2 developers
+ */
+final class LongCountMap
+{
+	static final long EMPTY = -1;
+
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	private long[] keys;
+
+	private long[] values;
+
+	private int mask;
+
+	private int size;
+
+	LongCountMap( final int expectedSize )
+	{
+		int capacity = 16;
+		while ( capacity < MAX_CAPACITY && capacity < 2L * expectedSize )
+			capacity <<= 1;
+		allocate( capacity );
+	}
+
+	private LongCountMap( final LongCountMap other )
+	{
+		keys = other.keys.clone();
+		values = other.values.clone();
+		mask = other.mask;
+		size = other.size;
+	}
+
+	/**
+	 * Returns the count of <em>key</em>, or 0 if it is not in the map.
+	 */
+	long get( final long key )
+	{
+		for ( int slot = slot( key );; slot = ( slot + 1 ) & mask )
+		{
+			final long k = keys[ slot ];
+			if ( k == key )
+				return values[ slot ];
+			if ( k == EMPTY )
+				return 0;
+		}
+	}
+
+	/**
+	 * Sets the count of <em>key</em>.
+	 */
+	void put( final long key, final long value )
+	{
+		values[ insert( key ) ] = value;
+	}
+
+	/**
+	 * Adds <em>delta</em> to the count of <em>key</em>.
+	 * 
+	 * @return the new count.
+	 */
+	long add( final long key, final long delta )
+	{
+		final int slot = insert( key );
+		return values[ slot ] += delta;
+	}
+
+	/**
+	 * Returns the number of keys in the map, including keys whose count has
+	 * returned to 0.
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	void clear()
+	{
+		Arrays.fill( keys, EMPTY );
+		Arrays.fill( values, 0 );
+		size = 0;
+	}
+
+	int capacity()
+	{
+		return keys.length;
+	}
+
+	/**
+	 * Returns the key stored at <em>slot</em>, or {@link #EMPTY}.
+	 */
+	long keyAt( final int slot )
+	{
+		return keys[ slot ];
+	}
+
+	long valueAt( final int slot )
+	{
+		return values[ slot ];
+	}
+
+	/**
+	 * Returns the first occupied slot &ge; <em>slot</em>, or
+	 * {@link #capacity()} if there is none.
+	 */
+	int nextSlot( int slot )
+	{
+		while ( slot < keys.length && keys[ slot ] == EMPTY )
+			++slot;
+		return slot;
+	}
+
+	LongCountMap copy()
+	{
+		return new LongCountMap( this );
+	}
+
+	private int slot( final long key )
+	{
+		final long h = key * 0x9E3779B97F4A7C15L;
+		return ( int ) ( h ^ ( h >>> 32 ) ) & mask;
+	}
+
+	/**
+	 * Returns the slot of <em>key</em>, inserting it with count 0 if it is
+	 * not in the map yet.
+	 */
+	private int insert( final long key )
+	{
+		for ( int slot = slot( key );; slot = ( slot + 1 ) & mask )
+		{
+			final long k = keys[ slot ];
+			if ( k == key )
+				return slot;
+			if ( k == EMPTY )
+			{
+				if ( 2 * ( size + 1 ) > keys.length )
+				{
+					grow();
+					return insert( key );
+				}
+				keys[ slot ] = key;
+				++size;
+				return slot;
+			}
+		}
+	}
+
+	private void grow()
+	{
+		if ( keys.length >= MAX_CAPACITY )
+			throw new IllegalStateException( "too many keys: " + size );
+		final long[] oldKeys = keys;
+		final long[] oldValues = values;
+		allocate( keys.length << 1 );
+		for ( int i = 0; i < oldKeys.length; ++i )
+		{
+			final long key = oldKeys[ i ];
+			if ( key != EMPTY )
+			{
+				int slot = slot( key );
+				while ( keys[ slot ] != EMPTY )
+					slot = ( slot + 1 ) & mask;
+				keys[ slot ] = key;
+				values[ slot ] = oldValues[ i ];
+			}
+		}
+	}
+
+	private void allocate( final int capacity )
+	{
+		keys = new long[ capacity ];
+		Arrays.fill( keys, EMPTY );
+		values = new long[ capacity ];
+		mask = capacity - 1;
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import net.imglib2.Cursor;
+import net.imglib2.type.numeric.integer.LongType;
+
+/**
+ * A {@link Cursor} that visits only the elements of another cursor that are
+ * not 0. A second copy of the source cursor looks ahead for the next non-zero
+ * element, and the source cursor then jumps forward to it.
+ * 
+ * @author ImgLib2 developers
+ */
+final class NonZeroCursor implements Cursor< LongType >
+{
+	private final Cursor< LongType > current;
+
+	private final Cursor< LongType > ahead;
+
+	/**
+	 * Number of elements by which {@link #ahead} is in front of
+	 * {@link #current}.
+	 */
+	private long steps;
+
+	/**
+	 * Whether {@link #ahead} is on the next non-zero element.
+	 */
+	private boolean found;
+
+	NonZeroCursor( final Cursor< LongType > source )
+	{
+		current = source;
+		ahead = source.copyCursor();
+		steps = 0;
+		found = false;
+	}
+
+	private NonZeroCursor( final NonZeroCursor other )
+	{
+		current = other.current.copyCursor();
+		ahead = other.ahead.copyCursor();
+		steps = other.steps;
+		found = other.found;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		if ( !found )
+		{
+			while ( ahead.hasNext() )
+			{
+				ahead.fwd();
+				++steps;
+				if ( ahead.get().get() != 0 )
+				{
+					found = true;
+					break;
+				}
+			}
+		}
+		return found;
+	}
+
+	@Override
+	public void fwd()
+	{
+		hasNext();
+		current.jumpFwd( steps );
+		steps = 0;
+		found = false;
+	}
+
+	@Override
+	public void jumpFwd( final long n )
+	{
+		for ( long i = 0; i < n; ++i )
+			fwd();
+	}
+
+	@Override
+	public LongType next()
+	{
+		fwd();
+		return get();
+	}
+
+	@Override
+	public void reset()
+	{
+		current.reset();
+		ahead.reset();
+		steps = 0;
+		found = false;
+	}
+
+	@Override
+	public LongType get()
+	{
+		return current.get();
+	}
+
+	@Override
+	public void remove()
+	{
+		// NB: no action.
+	}
+
+	@Override
+	public NonZeroCursor copy()
+	{
+		return new NonZeroCursor( this );
+	}
+
+	@Override
+	public NonZeroCursor copyCursor()
+	{
+		return copy();
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return current.numDimensions();
+	}
+
+	@Override
+	public void localize( final int[] position )
+	{
+		current.localize( position );
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		current.localize( position );
+	}
+
+	@Override
+	public int getIntPosition( final int d )
+	{
+		return current.getIntPosition( d );
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		return current.getLongPosition( d );
+	}
+
+	@Override
+	public void localize( final float[] position )
+	{
+		current.localize( position );
+	}
+
+	@Override
+	public void localize( final double[] position )
+	{
+		current.localize( position );
+	}
+
+	@Override
+	public float getFloatPosition( final int d )
+	{
+		return current.getFloatPosition( d );
+	}
+
+	@Override
+	public double getDoublePosition( final int d )
+	{
+		return current.getDoublePosition( d );
+	}
+}
@@ -0,0 +1,222 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.iterator.Chunk;
+import net.imglib2.iterator.Chunks;
+import net.imglib2.util.Util;
+
+/**
+ * Counts the bins of a histogram in parallel. The input is split into
+ * {@link Chunks}, each chunk is counted into a private primitive
+ * <code>long[]</code> in flat bin order, and the partial counts are summed at
+ * the end.
+ * 
+ * @author ImgLib2 developers
+ */
+final class ParallelCounting
+{
+	private ParallelCounting()
+	{}
+
+	/**
+	 * Returns the total number of bins if it fits into a primitive array,
+	 * otherwise -1.
+	 */
+	static int numBins( final List< ? extends BinMapper1d< ? > > mappers )
+	{
+		long n = 1;
+		for ( final BinMapper1d< ? > mapper : mappers )
+		{
+			n *= mapper.getBinCount();
+			if ( n > Integer.MAX_VALUE - 8 )
+				return -1;
+		}
+		return ( int ) n;
+	}
+
+	/**
+	 * Count the values of <em>data</em> into the bins defined by
+	 * <em>mapper</em>, using <em>numTasks</em> tasks submitted to
+	 * <em>service</em>.
+	 */
+	static < T > BinCounts count( final IterableInterval< T > data, final BinMapper1d< T > mapper, final ExecutorService service, final int numTasks )
+	{
+		final int numBins = ( int ) mapper.getBinCount();
+		final List< BinCounts > partial = Chunks.map( data, service, numTasks, new Chunks.Task< T, BinCounts >()
+		{
+			@Override
+			public BinCounts run( final Cursor< T > cursor )
+			{
+				final BinMapper1d< T > m = mapper.copy();
+				final BinCounts counts = new BinCounts( numBins );
+				final long[] bins = counts.bins;
+				long ignored = 0;
+				while ( cursor.hasNext() )
+				{
+					final long bin = m.map( cursor.next() );
+					if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+						++ignored;
+					else
+						++bins[ ( int ) bin ];
+				}
+				counts.ignored = ignored;
+				return counts;
+			}
+		} );
+		return merge( partial, numBins );
+	}
+
+	/**
+	 * Count the values of the channels <em>data</em> into the n-dimensional
+	 * bins defined by <em>mappers</em> (one per channel), using
+	 * <em>numTasks</em> tasks submitted to <em>service</em>. All channels must
+	 * have the same iteration order.
+	 */
+	static < T > BinCounts count( final List< ? extends IterableInterval< T > > data, final List< BinMapper1d< T > > mappers, final ExecutorService service, final int numTasks )
+	{
+		final int n = mappers.size();
+		if ( data.size() != n )
+			throw new IllegalArgumentException( "expected " + n + " data sources, got " + data.size() );
+		if ( !Util.equalIterationOrder( data.toArray( new IterableInterval< ? >[ n ] ) ) )
+			throw new IllegalArgumentException( "data sources do not have the same iteration order" );
+
+		final int numBins = numBins( mappers );
+		final long[] strides = new long[ n ];
+		long stride = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			strides[ d ] = stride;
+			stride *= mappers.get( d ).getBinCount();
+		}
+
+		final List< Chunk > chunks = Chunks.split( data.get( 0 ), numTasks );
+		final List< Callable< BinCounts > > tasks = new ArrayList< Callable< BinCounts > >( chunks.size() );
+		for ( final Chunk chunk : chunks )
+			tasks.add( new Callable< BinCounts >()
+			{
+				@Override
+				public BinCounts call()
+				{
+					final BinCounts counts = new BinCounts( numBins );
+					countChunk( chunk, data, mappers, strides, counts );
+					return counts;
+				}
+			} );
+		return merge( invokeAll( tasks, service ), numBins );
+	}
+
+	private static < T > void countChunk( final Chunk chunk, final List< ? extends IterableInterval< T > > data, final List< BinMapper1d< T > > mappers, final long[] strides, final BinCounts counts )
+	{
+		final int n = mappers.size();
+		final List< BinMapper1d< T > > m = new ArrayList< BinMapper1d< T > >( n );
+		final List< Cursor< T > > cursors = new ArrayList< Cursor< T > >( n );
+		for ( int d = 0; d < n; ++d )
+		{
+			m.add( mappers.get( d ).copy() );
+			cursors.add( Chunks.cursor( data.get( d ), chunk ) );
+		}
+		final long[] bins = counts.bins;
+		long ignored = 0;
+		for ( long i = 0; i < chunk.getSize(); ++i )
+		{
+			long index = 0;
+			boolean ignore = false;
+			for ( int d = 0; d < n; ++d )
+			{
+				final long bin = m.get( d ).map( cursors.get( d ).next() );
+				if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+					ignore = true;
+				else
+					index += bin * strides[ d ];
+			}
+			if ( ignore )
+				++ignored;
+			else
+				++bins[ ( int ) index ];
+		}
+		counts.ignored += ignored;
+	}
+
+	private static < R > List< R > invokeAll( final List< Callable< R > > tasks, final ExecutorService service )
+	{
+		final ArrayList< R > results = new ArrayList< R >( tasks.size() );
+		try
+		{
+			if ( tasks.size() == 1 )
+				results.add( tasks.get( 0 ).call() );
+			else
+				for ( final Future< R > future : service.invokeAll( tasks ) )
+					results.add( future.get() );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			throw new RuntimeException( e.getCause() );
+		}
+		catch ( final RuntimeException e )
+		{
+			throw e;
+		}
+		catch ( final Exception e )
+		{
+			throw new RuntimeException( e );
+		}
+		return results;
+	}
+
+	private static BinCounts merge( final List< BinCounts > partial, final int numBins )
+	{
+		if ( partial.isEmpty() )
+			return new BinCounts( numBins );
+		final BinCounts total = partial.get( 0 );
+		for ( int i = 1; i < partial.size(); ++i )
+			total.add( partial.get( i ) );
+		return total;
+	}
+}
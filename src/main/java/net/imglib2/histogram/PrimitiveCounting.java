@@ -0,0 +1,216 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import net.imglib2.IterableInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Counts the values of {@link ArrayImg ArrayImgs} and {@link PlanarImg
+ * PlanarImgs} of {@link UnsignedByteType}, {@link UnsignedShortType} and
+ * {@link FloatType} by reading their primitive arrays directly.
+ * <p>
+ * For the unsigned integer types, the occurrences of every possible value are
+ * counted first and then each value is mapped to its bin once, so this works
+ * for every {@link BinMapper1d}. {@link FloatType} values are mapped per
+ * sample, which requires a {@link Real1dBinMapper}.
+ * 
+ * @author ImgLib2 developers
+ */
+final class PrimitiveCounting
+{
+	private PrimitiveCounting()
+	{}
+
+	/**
+	 * Count <em>data</em> into the bins defined by <em>mapper</em>.
+	 * 
+	 * @return the bin counts, or {@code null} if <em>data</em> and
+	 *         <em>mapper</em> are not supported.
+	 */
+	static < T > BinCounts count( final Iterable< T > data, final BinMapper1d< T > mapper )
+	{
+		final Object[] arrays = storageArrays( data );
+		if ( arrays == null )
+			return null;
+		final long binCount = mapper.getBinCount();
+		if ( binCount > Integer.MAX_VALUE - 8 )
+			return null;
+		// arrays may be larger than the image they back
+		final int length = ( int ) ( ( ( IterableInterval< ? > ) data ).size() / arrays.length );
+
+		final Object type = ( ( Iterable< ? > ) data ).iterator().next();
+		if ( type.getClass() == UnsignedByteType.class && arrays instanceof ByteArray[] )
+		{
+			final long[] values = new long[ 256 ];
+			for ( final ByteArray a : ( ByteArray[] ) arrays )
+				countUnsignedBytes( a.getCurrentStorageArray(), length, values );
+			return mapValues( values, new UnsignedByteType(), mapper );
+		}
+		else if ( type.getClass() == UnsignedShortType.class && arrays instanceof ShortArray[] )
+		{
+			final long[] values = new long[ 65536 ];
+			for ( final ShortArray a : ( ShortArray[] ) arrays )
+				countUnsignedShorts( a.getCurrentStorageArray(), length, values );
+			return mapValues( values, new UnsignedShortType(), mapper );
+		}
+		else if ( type.getClass() == FloatType.class && arrays instanceof FloatArray[] && mapper.getClass() == Real1dBinMapper.class )
+		{
+			final Real1dBinMapper< ? > m = ( Real1dBinMapper< ? > ) mapper;
+			final BinCounts counts = new BinCounts( ( int ) binCount );
+			for ( final FloatArray a : ( FloatArray[] ) arrays )
+				countFloats( a.getCurrentStorageArray(), length, m, counts );
+			return counts;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the primitive array accesses backing <em>data</em>, or
+	 * {@code null} if <em>data</em> is neither an {@link ArrayImg} nor a
+	 * {@link PlanarImg} of a supported access type.
+	 */
+	private static Object[] storageArrays( final Iterable< ? > data )
+	{
+		final Object[] arrays;
+		if ( data instanceof ArrayImg )
+		{
+			final ArrayImg< ?, ? > img = ( ArrayImg< ?, ? > ) data;
+			if ( img.size() == 0 )
+				return null;
+			arrays = newArray( img.update( null ), 1 );
+			if ( arrays == null )
+				return null;
+			arrays[ 0 ] = img.update( null );
+		}
+		else if ( data instanceof PlanarImg )
+		{
+			final PlanarImg< ?, ? > img = ( PlanarImg< ?, ? > ) data;
+			if ( img.size() == 0 )
+				return null;
+			final int numSlices = img.numSlices();
+			arrays = newArray( img.getPlane( 0 ), numSlices );
+			if ( arrays == null )
+				return null;
+			for ( int i = 0; i < numSlices; ++i )
+			{
+				final Object plane = img.getPlane( i );
+				if ( plane == null || plane.getClass() != arrays.getClass().getComponentType() )
+					return null;
+				arrays[ i ] = plane;
+			}
+		}
+		else
+			return null;
+		return arrays;
+	}
+
+	private static Object[] newArray( final Object access, final int length )
+	{
+		if ( access == null )
+			return null;
+		if ( access.getClass() == ByteArray.class )
+			return new ByteArray[ length ];
+		if ( access.getClass() == ShortArray.class )
+			return new ShortArray[ length ];
+		if ( access.getClass() == FloatArray.class )
+			return new FloatArray[ length ];
+		return null;
+	}
+
+	private static void countUnsignedBytes( final byte[] data, final int length, final long[] values )
+	{
+		for ( int i = 0; i < length; ++i )
+			++values[ data[ i ] & 0xff ];
+	}
+
+	private static void countUnsignedShorts( final short[] data, final int length, final long[] values )
+	{
+		for ( int i = 0; i < length; ++i )
+			++values[ data[ i ] & 0xffff ];
+	}
+
+	private static void countFloats( final float[] data, final int length, final Real1dBinMapper< ? > mapper, final BinCounts counts )
+	{
+		final long[] bins = counts.bins;
+		long ignored = 0;
+		for ( int i = 0; i < length; ++i )
+		{
+			final long bin = mapper.mapValue( data[ i ] );
+			if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+				++ignored;
+			else
+				++bins[ ( int ) bin ];
+		}
+		counts.ignored += ignored;
+	}
+
+	/**
+	 * Map each value that occurs in <em>values</em> to its bin.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private static < T, V > BinCounts mapValues( final long[] values, final V variable, final BinMapper1d< T > mapper )
+	{
+		final BinCounts counts = new BinCounts( ( int ) mapper.getBinCount() );
+		final T t = ( T ) variable;
+		for ( int v = 0; v < values.length; ++v )
+		{
+			if ( values[ v ] == 0 )
+				continue;
+			setValue( variable, v );
+			final long bin = mapper.map( t );
+			if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+				counts.ignored += values[ v ];
+			else
+				counts.bins[ ( int ) bin ] += values[ v ];
+		}
+		return counts;
+	}
+
+	private static void setValue( final Object variable, final int v )
+	{
+		if ( variable instanceof UnsignedByteType )
+			( ( UnsignedByteType ) variable ).set( v );
+		else
+			( ( UnsignedShortType ) variable ).set( v );
+	}
+}
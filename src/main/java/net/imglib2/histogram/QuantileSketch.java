@@ -0,0 +1,333 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * An approximate, streaming quantile estimator for real values of unknown
+ * range. Values are counted in logarithmically sized buckets, such that every
+ * quantile is estimated with a relative error of at most the given
+ * <em>relative accuracy</em>. Memory depends on the dynamic range of the
+ * values, not on how many there are: values between 1e-3 and 1e6 with 1%
+ * accuracy need about 1000 buckets. Sketches with the same accuracy can be
+ * {@link #merge(QuantileSketch) merged}, e.g., to combine sketches of chunks
+ * that were counted in parallel.
+ * <p>
+ * Values whose magnitude is smaller than {@link Double#MIN_NORMAL} are counted
+ * as 0. NaN values are ignored.
+ * 
+ * @author ImgLib2 developers
+ */
+public class QuantileSketch
+{
+	private final double relativeAccuracy;
+
+	private final double gamma;
+
+	private final double logGamma;
+
+	private final Buckets positive;
+
+	private final Buckets negative;
+
+	private long zeroCount;
+
+	private long count;
+
+	private double min;
+
+	private double max;
+
+	/**
+	 * Create a sketch with 1% relative accuracy.
+	 */
+	public QuantileSketch()
+	{
+		this( 0.01 );
+	}
+
+	/**
+	 * Create a sketch with the given relative accuracy.
+	 * 
+	 * @param relativeAccuracy
+	 *            maximum relative error of quantile estimates, in (0, 1).
+	 */
+	public QuantileSketch( final double relativeAccuracy )
+	{
+		if ( !( relativeAccuracy > 0 && relativeAccuracy < 1 ) )
+			throw new IllegalArgumentException( "relative accuracy must be in (0, 1): " + relativeAccuracy );
+		this.relativeAccuracy = relativeAccuracy;
+		gamma = ( 1 + relativeAccuracy ) / ( 1 - relativeAccuracy );
+		logGamma = Math.log( gamma );
+		positive = new Buckets();
+		negative = new Buckets();
+		clear();
+	}
+
+	public double relativeAccuracy()
+	{
+		return relativeAccuracy;
+	}
+
+	/**
+	 * Add a value.
+	 */
+	public void add( final double value )
+	{
+		if ( Double.isNaN( value ) )
+			return;
+		if ( value >= Double.MIN_NORMAL )
+			positive.add( key( value ), 1 );
+		else if ( value <= -Double.MIN_NORMAL )
+			negative.add( key( -value ), 1 );
+		else
+			++zeroCount;
+		++count;
+		if ( value < min )
+			min = value;
+		if ( value > max )
+			max = value;
+	}
+
+	/**
+	 * Add all values of <em>data</em>.
+	 */
+	public void addData( final Iterable< ? extends RealType< ? > > data )
+	{
+		for ( final RealType< ? > t : data )
+			add( t.getRealDouble() );
+	}
+
+	/**
+	 * Add all values counted by another sketch with the same relative
+	 * accuracy.
+	 */
+	public void merge( final QuantileSketch other )
+	{
+		if ( other.relativeAccuracy != relativeAccuracy )
+			throw new IllegalArgumentException( "cannot merge sketches with different relative accuracy" );
+		positive.add( other.positive );
+		negative.add( other.negative );
+		zeroCount += other.zeroCount;
+		count += other.count;
+		min = Math.min( min, other.min );
+		max = Math.max( max, other.max );
+	}
+
+	/**
+	 * Returns the number of values added.
+	 */
+	public long count()
+	{
+		return count;
+	}
+
+	/**
+	 * Returns the smallest value added, or {@link Double#NaN} if the sketch is
+	 * empty.
+	 */
+	public double min()
+	{
+		return count == 0 ? Double.NaN : min;
+	}
+
+	/**
+	 * Returns the largest value added, or {@link Double#NaN} if the sketch is
+	 * empty.
+	 */
+	public double max()
+	{
+		return count == 0 ? Double.NaN : max;
+	}
+
+	/**
+	 * Returns an estimate of the <em>q</em>-quantile of the values added, or
+	 * {@link Double#NaN} if the sketch is empty. The estimate is the value of
+	 * rank <code>q * (count() - 1)</code> up to the relative accuracy of this
+	 * sketch. The 0- and 1-quantiles are the exact {@link #min()} and
+	 * {@link #max()}.
+	 * 
+	 * @param q
+	 *            The quantile, in [0, 1]. E.g., 0.5 for the median.
+	 */
+	public double quantile( final double q )
+	{
+		if ( !( q >= 0 && q <= 1 ) )
+			throw new IllegalArgumentException( "quantile must be in [0, 1]: " + q );
+		if ( count == 0 )
+			return Double.NaN;
+
+		final long rank = ( long ) ( q * ( count - 1 ) );
+		// the extremes are known exactly
+		if ( rank == 0 )
+			return min;
+		if ( rank >= count - 1 )
+			return max;
+
+		long n = 0;
+		double value = 0;
+		boolean found = false;
+
+		// negative values, from the largest magnitude down
+		for ( int key = negative.maxKey; key >= negative.minKey && !found; --key )
+		{
+			n += negative.get( key );
+			if ( n > rank )
+			{
+				value = -value( key );
+				found = true;
+			}
+		}
+		if ( !found )
+		{
+			n += zeroCount;
+			found = n > rank;
+		}
+		for ( int key = positive.minKey; key <= positive.maxKey && !found; ++key )
+		{
+			n += positive.get( key );
+			if ( n > rank )
+			{
+				value = value( key );
+				found = true;
+			}
+		}
+		return Math.max( min, Math.min( max, value ) );
+	}
+
+	/**
+	 * Remove all values.
+	 */
+	public void clear()
+	{
+		positive.clear();
+		negative.clear();
+		zeroCount = 0;
+		count = 0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+	}
+
+	// -- helpers --
+
+	/**
+	 * Returns the bucket of a value &ge; {@link Double#MIN_NORMAL}. Bucket
+	 * <em>k</em> holds values in (gamma^(k-1), gamma^k].
+	 */
+	private int key( final double value )
+	{
+		return ( int ) Math.ceil( Math.log( value ) / logGamma );
+	}
+
+	/**
+	 * Returns the representative value of a bucket, which is within the
+	 * relative accuracy of all values in the bucket.
+	 */
+	private double value( final int key )
+	{
+		return 2 * Math.pow( gamma, key ) / ( gamma + 1 );
+	}
+
+	/**
+	 * Counts per bucket key, stored densely between the smallest and largest
+	 * key that have been counted.
+	 */
+	private static final class Buckets
+	{
+		private long[] counts;
+
+		/**
+		 * Key of <code>counts[ 0 ]</code>.
+		 */
+		private int offset;
+
+		/**
+		 * Smallest and largest counted key. If empty, minKey &gt; maxKey.
+		 */
+		int minKey;
+
+		int maxKey;
+
+		void clear()
+		{
+			counts = new long[ 0 ];
+			offset = 0;
+			minKey = Integer.MAX_VALUE;
+			maxKey = Integer.MIN_VALUE;
+		}
+
+		long get( final int key )
+		{
+			return counts[ key - offset ];
+		}
+
+		void add( final int key, final long n )
+		{
+			if ( key < minKey || key > maxKey )
+				extend( key );
+			counts[ key - offset ] += n;
+		}
+
+		void add( final Buckets other )
+		{
+			for ( int key = other.minKey; key <= other.maxKey; ++key )
+			{
+				final long n = other.get( key );
+				if ( n != 0 )
+					add( key, n );
+			}
+		}
+
+		private void extend( final int key )
+		{
+			final int newMin = Math.min( minKey, key );
+			final int newMax = Math.max( maxKey, key );
+			if ( newMin < offset || newMax >= offset + counts.length )
+			{
+				// leave some room for further growth on either side
+				final int margin = Math.max( 32, ( newMax - newMin ) / 2 );
+				final int newOffset = newMin - margin;
+				final long[] newCounts = new long[ newMax - newMin + 1 + 2 * margin ];
+				if ( minKey <= maxKey )
+					System.arraycopy( counts, minKey - offset, newCounts, minKey - newOffset, maxKey - minKey + 1 );
+				counts = newCounts;
+				offset = newOffset;
+			}
+			minKey = newMin;
+			maxKey = newMax;
+		}
+	}
+}
@@ -115,7 +115,14 @@ public class Real1dBinMapper< T extends RealType< T >> implements BinMapper1d< T
 	@Override
 	public long map( final T value )
 	{
-		final double val = value.getRealDouble();
+		return mapValue( value.getRealDouble() );
+	}
+
+	/**
+	 * Maps a primitive value to a bin, exactly like {@link #map(RealType)}.
+	 */
+	long mapValue( final double val )
+	{
 		long pos;
 		if ( val >= minVal && val <= maxVal )
 		{
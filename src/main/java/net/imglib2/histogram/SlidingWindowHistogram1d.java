@@ -0,0 +1,253 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.ArrayDeque;
+
+/**
+ * A {@link Histogram1d} over a sliding window of the most recent frames of a
+ * data stream.
+ * <p>
+ * Values are counted into the current frame, either one by one with
+ * {@link #add(Object)} and {@link #remove(Object)} or in bulk with
+ * {@link #addData(Iterable)} and {@link #removeData(Iterable)}.
+ * {@link #nextFrame()} starts a new frame, and once the window holds
+ * {@link #windowSize()} frames, starting a new frame evicts the oldest one.
+ * Each frame keeps its own bin counts, so evicting a frame costs one pass
+ * over the bins, independent of how many values it contained, and the data
+ * of old frames does not need to be retained.
+ * 
+ * @author ImgLib2 developers
+ */
+public class SlidingWindowHistogram1d< T >
+{
+	private final BinMapper1d< T > mapper;
+
+	private final Histogram1d< T > histogram;
+
+	private final int windowSize;
+
+	private final int numBins;
+
+	/**
+	 * Bin counts of the frames in the window, from oldest to current.
+	 */
+	private final ArrayDeque< BinCounts > frames;
+
+	/**
+	 * Bin counts of evicted frames, for reuse.
+	 */
+	private BinCounts recycled;
+
+	/**
+	 * Temporary counts of data that is added in bulk.
+	 */
+	private final BinCounts tmp;
+
+	/**
+	 * Create an empty sliding window histogram.
+	 * 
+	 * @param mapper
+	 *            The algorithm used to map values to bins
+	 * @param windowSize
+	 *            The maximum number of frames in the window
+	 */
+	public SlidingWindowHistogram1d( final BinMapper1d< T > mapper, final int windowSize )
+	{
+		if ( windowSize <= 0 )
+			throw new IllegalArgumentException( "window size must be > 0" );
+		if ( mapper.getBinCount() > Integer.MAX_VALUE - 8 )
+			throw new IllegalArgumentException( "too many bins for a sliding window histogram" );
+		this.mapper = mapper;
+		this.histogram = new Histogram1d< T >( mapper );
+		this.windowSize = windowSize;
+		this.numBins = ( int ) mapper.getBinCount();
+		this.frames = new ArrayDeque< BinCounts >( windowSize );
+		this.recycled = null;
+		this.tmp = new BinCounts( numBins );
+	}
+
+	/**
+	 * Returns the histogram of all values in the window. It is updated as
+	 * values are added, removed, and frames are evicted.
+	 */
+	public Histogram1d< T > histogram()
+	{
+		return histogram;
+	}
+
+	/**
+	 * Returns the maximum number of frames in the window.
+	 */
+	public int windowSize()
+	{
+		return windowSize;
+	}
+
+	/**
+	 * Returns the number of frames currently in the window.
+	 */
+	public int numFrames()
+	{
+		return frames.size();
+	}
+
+	/**
+	 * Start a new frame. If the window is full, the oldest frame is evicted
+	 * and its values are uncounted from the histogram.
+	 */
+	public void nextFrame()
+	{
+		if ( frames.size() == windowSize )
+		{
+			final BinCounts oldest = frames.removeFirst();
+			histogram.subtractCounts( oldest );
+			oldest.clear();
+			recycled = oldest;
+		}
+		final BinCounts frame;
+		if ( recycled != null )
+		{
+			frame = recycled;
+			recycled = null;
+		}
+		else
+			frame = new BinCounts( numBins );
+		frames.addLast( frame );
+	}
+
+	/**
+	 * Start a new frame (see {@link #nextFrame()}) and count all values of
+	 * <em>data</em> into it.
+	 */
+	public void addFrame( final Iterable< T > data )
+	{
+		nextFrame();
+		addData( data );
+	}
+
+	/**
+	 * Count a value into the current frame.
+	 */
+	public void add( final T value )
+	{
+		final long bin = mapper.map( value );
+		final BinCounts frame = currentFrame();
+		if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+			++frame.ignored;
+		else
+			++frame.bins[ ( int ) bin ];
+		histogram.increment( value );
+	}
+
+	/**
+	 * Uncount a value from the current frame. This is meant to revert values
+	 * added to the current frame; values of older frames are uncounted when
+	 * their frame is evicted.
+	 */
+	public void remove( final T value )
+	{
+		final long bin = mapper.map( value );
+		final BinCounts frame = currentFrame();
+		if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+			--frame.ignored;
+		else
+			--frame.bins[ ( int ) bin ];
+		histogram.decrement( value );
+	}
+
+	/**
+	 * Count all values of <em>data</em> into the current frame.
+	 */
+	public void addData( final Iterable< T > data )
+	{
+		final BinCounts counts = count( data );
+		currentFrame().add( counts );
+		histogram.addCounts( counts );
+	}
+
+	/**
+	 * Uncount all values of <em>data</em> from the current frame.
+	 */
+	public void removeData( final Iterable< T > data )
+	{
+		final BinCounts counts = count( data );
+		final BinCounts frame = currentFrame();
+		final long[] bins = frame.bins;
+		for ( int i = 0; i < numBins; ++i )
+			bins[ i ] -= counts.bins[ i ];
+		frame.ignored -= counts.ignored;
+		histogram.subtractCounts( counts );
+	}
+
+	/**
+	 * Remove all frames and reset the histogram.
+	 */
+	public void clear()
+	{
+		frames.clear();
+		histogram.resetCounters();
+	}
+
+	// -- helpers --
+
+	private BinCounts currentFrame()
+	{
+		if ( frames.isEmpty() )
+			nextFrame();
+		return frames.getLast();
+	}
+
+	private BinCounts count( final Iterable< T > data )
+	{
+		final BinCounts counts = PrimitiveCounting.count( data, mapper );
+		if ( counts != null )
+			return counts;
+
+		tmp.clear();
+		final long[] bins = tmp.bins;
+		long ignored = 0;
+		for ( final T value : data )
+		{
+			final long bin = mapper.map( value );
+			if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+				++ignored;
+			else
+				++bins[ ( int ) bin ];
+		}
+		tmp.ignored = ignored;
+		return tmp;
+	}
+}
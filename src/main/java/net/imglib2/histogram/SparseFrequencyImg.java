@@ -0,0 +1,345 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import net.imglib2.AbstractCursor;
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.AbstractImg;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * An {@link net.imglib2.img.Img} of {@link LongType} counts that only stores
+ * the bins that have been written, in a {@link LongCountMap} keyed by flat bin
+ * index. All other bins read as 0. The {@link LongType LongTypes} returned by
+ * its samplers read and write the map directly.
+ * <p>
+ * {@link #cursor()} visits all bins, like a dense image would. Use
+ * {@link #storedCursor()} to visit only the bins that are stored.
+ * 
+ * @author ImgLib2 developers
+ */
+final class SparseFrequencyImg extends AbstractImg< LongType >
+{
+	private final LongCountMap map;
+
+	SparseFrequencyImg( final long[] dimensions )
+	{
+		this( dimensions, new LongCountMap( 0 ) );
+	}
+
+	private SparseFrequencyImg( final long[] dimensions, final LongCountMap map )
+	{
+		super( dimensions );
+		long n = 1;
+		for ( int d = 0; d < dimensions.length; ++d )
+		{
+			if ( dimensions[ d ] > Long.MAX_VALUE / n )
+				throw new IllegalArgumentException( "too many bins for a sparse histogram" );
+			n *= dimensions[ d ];
+		}
+		this.map = map;
+	}
+
+	LongCountMap map()
+	{
+		return map;
+	}
+
+	/**
+	 * Returns the flat index of a bin.
+	 */
+	long index( final long[] binPos )
+	{
+		return IntervalIndexer.positionToIndex( binPos, dimension );
+	}
+
+	/**
+	 * Returns a cursor over the stored bins, in no particular order. This
+	 * includes bins whose count has returned to 0.
+	 */
+	StoredCursor storedCursor()
+	{
+		return new StoredCursor();
+	}
+
+	@Override
+	public SparseRandomAccess randomAccess()
+	{
+		return new SparseRandomAccess();
+	}
+
+	@Override
+	public FlatCursor cursor()
+	{
+		return new FlatCursor();
+	}
+
+	@Override
+	public FlatCursor localizingCursor()
+	{
+		return cursor();
+	}
+
+	/**
+	 * Returns a factory for dense images of the same type.
+	 */
+	@Override
+	public ImgFactory< LongType > factory()
+	{
+		return new ArrayImgFactory< LongType >();
+	}
+
+	@Override
+	public SparseFrequencyImg copy()
+	{
+		return new SparseFrequencyImg( dimension, map.copy() );
+	}
+
+	@Override
+	public FlatIterationOrder iterationOrder()
+	{
+		return new FlatIterationOrder( this );
+	}
+
+	/**
+	 * Reads and writes the count of the bin with flat index {@link #key}.
+	 */
+	private final class MapAccess implements LongAccess
+	{
+		long key;
+
+		@Override
+		public long getValue( final int index )
+		{
+			return map.get( key );
+		}
+
+		@Override
+		public void setValue( final int index, final long value )
+		{
+			map.put( key, value );
+		}
+	}
+
+	final class SparseRandomAccess extends Point implements RandomAccess< LongType >
+	{
+		private final MapAccess access;
+
+		private final LongType type;
+
+		SparseRandomAccess()
+		{
+			super( SparseFrequencyImg.this.n );
+			access = new MapAccess();
+			type = new LongType( access );
+		}
+
+		@Override
+		public LongType get()
+		{
+			access.key = IntervalIndexer.positionToIndex( position, dimension );
+			return type;
+		}
+
+		@Override
+		public SparseRandomAccess copy()
+		{
+			final SparseRandomAccess copy = new SparseRandomAccess();
+			copy.setPosition( this );
+			return copy;
+		}
+
+		@Override
+		public SparseRandomAccess copyRandomAccess()
+		{
+			return copy();
+		}
+	}
+
+	/**
+	 * Visits all bins in flat order.
+	 */
+	final class FlatCursor extends AbstractCursor< LongType >
+	{
+		private final MapAccess access;
+
+		private final LongType type;
+
+		private long index;
+
+		FlatCursor()
+		{
+			super( SparseFrequencyImg.this.n );
+			access = new MapAccess();
+			type = new LongType( access );
+			reset();
+		}
+
+		@Override
+		public LongType get()
+		{
+			access.key = index;
+			return type;
+		}
+
+		@Override
+		public void fwd()
+		{
+			++index;
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			index += steps;
+		}
+
+		@Override
+		public void reset()
+		{
+			index = -1;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return index < numPixels - 1;
+		}
+
+		@Override
+		public void localize( final long[] pos )
+		{
+			IntervalIndexer.indexToPosition( index, dimension, pos );
+		}
+
+		@Override
+		public long getLongPosition( final int d )
+		{
+			return IntervalIndexer.indexToPosition( index, dimension, d );
+		}
+
+		@Override
+		public FlatCursor copy()
+		{
+			final FlatCursor copy = new FlatCursor();
+			copy.index = index;
+			return copy;
+		}
+
+		@Override
+		public FlatCursor copyCursor()
+		{
+			return copy();
+		}
+	}
+
+	/**
+	 * Visits the stored bins in slot order of the {@link LongCountMap}. Keys
+	 * must not be added to the map while iterating.
+	 */
+	final class StoredCursor extends AbstractCursor< LongType >
+	{
+		private final MapAccess access;
+
+		private final LongType type;
+
+		private int slot;
+
+		StoredCursor()
+		{
+			super( SparseFrequencyImg.this.n );
+			access = new MapAccess();
+			type = new LongType( access );
+			reset();
+		}
+
+		@Override
+		public LongType get()
+		{
+			access.key = map.keyAt( slot );
+			return type;
+		}
+
+		@Override
+		public void fwd()
+		{
+			slot = map.nextSlot( slot + 1 );
+		}
+
+		@Override
+		public void reset()
+		{
+			slot = -1;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return map.nextSlot( slot + 1 ) < map.capacity();
+		}
+
+		@Override
+		public void localize( final long[] pos )
+		{
+			IntervalIndexer.indexToPosition( map.keyAt( slot ), dimension, pos );
+		}
+
+		@Override
+		public long getLongPosition( final int d )
+		{
+			return IntervalIndexer.indexToPosition( map.keyAt( slot ), dimension, d );
+		}
+
+		@Override
+		public StoredCursor copy()
+		{
+			final StoredCursor copy = new StoredCursor();
+			copy.slot = slot;
+			return copy;
+		}
+
+		@Override
+		public StoredCursor copyCursor()
+		{
+			return copy();
+		}
+	}
+}
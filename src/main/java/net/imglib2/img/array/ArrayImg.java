@@ -39,8 +39,10 @@ import net.imglib2.FlatIterationOrder;
 import net.imglib2.Interval;
 import net.imglib2.img.AbstractNativeImg;
 import net.imglib2.img.Img;
+import net.imglib2.iterator.SplittableIterable;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Fraction;
+import net.imglib2.util.ImgUtil;
 import net.imglib2.util.IntervalIndexer;
 import net.imglib2.util.Intervals;
 import net.imglib2.view.iteration.SubIntervalIterable;
@@ -59,7 +61,7 @@ import net.imglib2.view.iteration.SubIntervalIterable;
  * @author Stephan Saalfeld
  * @author Stephan Saalfeld <saalfeld@mpi-cbg.de>
  */
-public class ArrayImg< T extends NativeType< T >, A > extends AbstractNativeImg< T, A > implements SubIntervalIterable< T >
+public class ArrayImg< T extends NativeType< T >, A > extends AbstractNativeImg< T, A > implements SubIntervalIterable< T >, SplittableIterable< T >
 {
 	final int[] steps, dim;
 
@@ -133,13 +135,7 @@ public class ArrayImg< T extends NativeType< T >, A > extends AbstractNativeImg<
 	public ArrayImg< T, ? > copy()
 	{
 		final ArrayImg< T, ? > copy = factory().create( dimension, firstElement().createVariable() );
-
-		final ArrayCursor< T > source = this.cursor();
-		final ArrayCursor< T > target = copy.cursor();
-
-		while ( source.hasNext() )
-			target.next().set( source.next() );
-
+		ImgUtil.copy( this, copy );
 		return copy;
 	}
 
@@ -239,4 +235,22 @@ public class ArrayImg< T extends NativeType< T >, A > extends AbstractNativeImg<
 	{
 		return new FlatIterationOrder( interval );
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long chunkStart( final long index )
+	{
+		return index;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ArraySubIntervalCursor< T > cursor( final long offset, final long size )
+	{
+		return new ArraySubIntervalCursor< T >( this, ( int ) offset, ( int ) size );
+	}
 }
@@ -68,7 +68,7 @@ public class ArrayImgFactory< T extends NativeType< T > > extends NativeImgFacto
 		final long numEntities = entitiesPerPixel.mulCeil( AbstractImg.numElements( dimensions ) );
 
 		if ( numEntities > Integer.MAX_VALUE )
-			throw new RuntimeException( "Number of elements in Container too big, use for example CellContainer instead: " + numEntities + " > " + Integer.MAX_VALUE );
+			throw new RuntimeException( "Number of elements in Container too big, use for example CellImg or PagedArrayImg instead: " + numEntities + " > " + Integer.MAX_VALUE );
 
 		return ( int ) numEntities;
 	}
@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * Base class for basic type accesses that store their data in a
+ * {@link ByteBuffer} outside of the Java heap, either a direct buffer or a
+ * region of a {@link MappedFile}.
+ * 
+ * An access created on a {@link MappedFile} creates new accesses on the same
+ * file in {@link #createArray(int)}, that is, it maps the next region of the
+ * file. Otherwise new direct buffers are allocated.
+ * 
+ * Note that, contrary to the basic type arrays, buffer accesses cannot be
+ * serialized.
+ * 
+ * @author ImgLib2 developers
+ */
+public abstract class AbstractBufferAccess< A extends AbstractBufferAccess< A > > implements ArrayDataAccess< A >
+{
+	private static final long serialVersionUID = 1L;
+
+	protected final ByteBuffer buffer;
+
+	protected final MappedFile file;
+
+	protected AbstractBufferAccess( final ByteBuffer buffer, final MappedFile file )
+	{
+		this.buffer = buffer;
+		this.file = file;
+	}
+
+	/**
+	 * Get a buffer for <em>numEntities</em> basic type entries of
+	 * <em>bytesPerEntity</em> bytes each. If <em>file</em> is not null, the
+	 * next region of the file is mapped. Otherwise a direct buffer of native
+	 * byte order is allocated.
+	 */
+	protected static ByteBuffer allocate( final MappedFile file, final int numEntities, final int bytesPerEntity )
+	{
+		final long numBytes = ( long ) numEntities * bytesPerEntity;
+
+		if ( file != null )
+			return file.map( numBytes );
+
+		if ( numBytes > Integer.MAX_VALUE )
+			throw new RuntimeException( "Number of bytes in buffer too big, use for example CellContainer instead: " + numBytes + " > " + Integer.MAX_VALUE );
+
+		return ByteBuffer.allocateDirect( ( int ) numBytes ).order( ByteOrder.nativeOrder() );
+	}
+
+	/**
+	 * @return the {@link ByteBuffer} holding the data.
+	 */
+	public ByteBuffer getByteBuffer()
+	{
+		return buffer;
+	}
+
+	/**
+	 * @return the {@link MappedFile} this access was created on, or null if
+	 *         it is backed by a direct buffer.
+	 */
+	public MappedFile getMappedFile()
+	{
+		return file;
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.nio.ByteBuffer;
+
+import net.imglib2.img.basictypeaccess.ByteAccess;
+
+/**
+ * {@link ByteAccess} backed by a direct or memory-mapped {@link ByteBuffer}.
+ * 
+ * @author ImgLib2 developers
+ */
+public class ByteBufferAccess extends AbstractBufferAccess< ByteBufferAccess > implements ByteAccess
+{
+	private static final long serialVersionUID = 1L;
+
+	public static final int BYTES_PER_ENTITY = 1;
+
+	protected final ByteBuffer data;
+
+	protected ByteBufferAccess( final ByteBuffer buffer, final MappedFile file )
+	{
+		super( buffer, file );
+		this.data = buffer;
+	}
+
+	/**
+	 * Allocate a direct buffer of <em>numEntities</em> bytes.
+	 */
+	public ByteBufferAccess( final int numEntities )
+	{
+		this( allocate( null, numEntities, BYTES_PER_ENTITY ), null );
+	}
+
+	/**
+	 * Map the next <em>numEntities</em> bytes of <em>file</em>.
+	 */
+	public ByteBufferAccess( final MappedFile file, final int numEntities )
+	{
+		this( allocate( file, numEntities, BYTES_PER_ENTITY ), file );
+	}
+
+	/**
+	 * Wrap an existing buffer. The buffer's byte order is used.
+	 */
+	public ByteBufferAccess( final ByteBuffer buffer )
+	{
+		this( buffer, null );
+	}
+
+	@Override
+	public byte getValue( final int index )
+	{
+		return data.get( index );
+	}
+
+	@Override
+	public void setValue( final int index, final byte value )
+	{
+		data.put( index, value );
+	}
+
+	@Override
+	public ByteBufferAccess createArray( final int numEntities )
+	{
+		return new ByteBufferAccess( allocate( file, numEntities, BYTES_PER_ENTITY ), file );
+	}
+
+	@Override
+	public ByteBuffer getCurrentStorageArray()
+	{
+		return data;
+	}
+}
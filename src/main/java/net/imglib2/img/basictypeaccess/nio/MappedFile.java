@@ -0,0 +1,157 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A file that hands out consecutive memory-mapped regions. Each call to
+ * {@link #map(long)} maps the next <em>numBytes</em> of the file, starting
+ * at the current position, which is then advanced.
+ * 
+ * The {@link AbstractBufferAccess buffer accesses} created on a
+ * {@link MappedFile} use this to implement
+ * {@link AbstractBufferAccess#createArray(int)}. Because all ImgLib2
+ * containers create their basic type arrays in storage order (one array for
+ * an ArrayImg, planes in order for a PlanarImg, cells in flat cell-grid order
+ * for a CellImg), a file holding data in that order can be opened without
+ * copying.
+ * 
+ * If the file is opened {@link MapMode#READ_WRITE}, it grows as needed.
+ * Mapped regions stay valid after {@link #close()}.
+ * 
+ * @author ImgLib2 developers
+ */
+public class MappedFile implements Closeable
+{
+	protected final RandomAccessFile file;
+
+	protected final FileChannel channel;
+
+	protected final MapMode mode;
+
+	protected final ByteOrder order;
+
+	protected long position;
+
+	/**
+	 * Open a file for mapping, starting at <em>offset</em> bytes.
+	 * 
+	 * @param file
+	 *            the file to map.
+	 * @param mode
+	 *            {@link MapMode#READ_ONLY}, {@link MapMode#READ_WRITE}, or
+	 *            {@link MapMode#PRIVATE} (copy-on-write).
+	 * @param order
+	 *            byte order of the data in the file.
+	 * @param offset
+	 *            offset in bytes of the first region to be mapped (e.g., to
+	 *            skip a header).
+	 */
+	public MappedFile( final File file, final MapMode mode, final ByteOrder order, final long offset ) throws IOException
+	{
+		this.file = new RandomAccessFile( file, mode == MapMode.READ_WRITE ? "rw" : "r" );
+		this.channel = this.file.getChannel();
+		this.mode = mode;
+		this.order = order;
+		this.position = offset;
+	}
+
+	/**
+	 * Open a file for mapping, starting at the beginning of the file. Data is
+	 * in native byte order.
+	 */
+	public MappedFile( final File file, final MapMode mode ) throws IOException
+	{
+		this( file, mode, ByteOrder.nativeOrder(), 0 );
+	}
+
+	/**
+	 * Map the next <em>numBytes</em> of the file.
+	 * 
+	 * @return a {@link ByteBuffer} of the file's {@link ByteOrder}.
+	 */
+	public synchronized ByteBuffer map( final long numBytes )
+	{
+		if ( numBytes > Integer.MAX_VALUE )
+			throw new RuntimeException( "Region too big to be mapped, use for example a CellImg with smaller cells instead: " + numBytes + " > " + Integer.MAX_VALUE );
+
+		try
+		{
+			final ByteBuffer buffer = channel.map( mode, position, numBytes );
+			position += numBytes;
+			return buffer.order( order );
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( e );
+		}
+	}
+
+	/**
+	 * @return the offset in bytes of the next region to be mapped.
+	 */
+	public synchronized long position()
+	{
+		return position;
+	}
+
+	public MapMode mode()
+	{
+		return mode;
+	}
+
+	public ByteOrder order()
+	{
+		return order;
+	}
+
+	/**
+	 * Close the underlying file. Regions that have been mapped already remain
+	 * accessible.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+}
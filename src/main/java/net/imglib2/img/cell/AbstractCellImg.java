@@ -36,7 +36,11 @@ package net.imglib2.img.cell;
 
 import net.imglib2.img.AbstractNativeImg;
 import net.imglib2.img.Img;
+import net.imglib2.iterator.ChunkCursor;
+import net.imglib2.iterator.SplittableIterable;
 import net.imglib2.type.NativeType;
+import net.imglib2.util.ImgUtil;
+import net.imglib2.util.IntervalIndexer;
 
 /**
  * Abstract superclass for {@link Img} types that divide their underlying data
@@ -45,7 +49,7 @@ import net.imglib2.type.NativeType;
  * @author Mark Hiner hinerm at gmail.com
  * @author Tobias Pietzsch <tobias.pietzsch@gmail.com>
  */
-public abstract class AbstractCellImg< T extends NativeType< T >, A, C extends AbstractCell< A >, F extends AbstractCellImgFactory< T > > extends AbstractNativeImg< T, A >
+public abstract class AbstractCellImg< T extends NativeType< T >, A, C extends AbstractCell< A >, F extends AbstractCellImgFactory< T > > extends AbstractNativeImg< T, A > implements SplittableIterable< T >
 {
 
 	final protected F factory;
@@ -148,12 +152,69 @@ public abstract class AbstractCellImg< T extends NativeType< T >, A, C extends A
 		return cells;
 	}
 
-	protected void copyDataTo( final AbstractCellImg< T, ?, ?, ? > copy )
+	/**
+	 * Chunks start at cells.
+	 */
+	@Override
+	public long chunkStart( final long index )
 	{
-		final CellCursor< T, A, C > source = this.cursor();
-		final CellCursor< T, ?, ? > target = copy.cursor();
+		return cellStart( index, new long[ n ] );
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ChunkCursor< T > cursor( final long offset, final long size )
+	{
+		final long[] cellGridPosition = new long[ n ];
+		final long cellStart = cellStart( offset, cellGridPosition );
+		final long[] numCells = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			numCells[ d ] = ( dimension[ d ] - 1 ) / cellDims[ d ] + 1;
 
-		while ( source.hasNext() )
-			target.next().set( source.next() );
+		final CellCursor< T, A, C > start = cursor();
+		start.moveToCell( IntervalIndexer.positionToIndex( cellGridPosition, numCells ), ( int ) ( offset - cellStart ) );
+		return new ChunkCursor< T >( start, size );
+	}
+
+	/**
+	 * Find the cell containing the element with the given index in
+	 * {@link CellIterationOrder}.
+	 * 
+	 * @param index
+	 *            index of an element in iteration order.
+	 * @param cellGridPosition
+	 *            receives the position of the cell in the cell grid.
+	 * @return the index of the first element of the cell in iteration order.
+	 */
+	protected long cellStart( long index, final long[] cellGridPosition )
+	{
+		// Cells are iterated in flat order of the cell grid. Going from the
+		// slowest to the fastest dimension, a slab of cells with the same
+		// grid position in dimension d contains the full extent of the
+		// image in the dimensions below d, and the extent of the cells
+		// already chosen in the dimensions above d.
+		long start = 0;
+		long upper = 1;
+		for ( int d = n - 1; d >= 0; --d )
+		{
+			long lower = 1;
+			for ( int e = 0; e < d; ++e )
+				lower *= dimension[ e ];
+			final long slab = cellDims[ d ] * lower * upper;
+			final long lastCell = ( dimension[ d ] - 1 ) / cellDims[ d ];
+			final long g = Math.min( index / slab, lastCell );
+			cellGridPosition[ d ] = g;
+			index -= g * slab;
+			start += g * slab;
+			upper *= g == lastCell ? dimension[ d ] - g * cellDims[ d ] : cellDims[ d ];
+		}
+		return start;
+	}
+
+	protected void copyDataTo( final AbstractCellImg< T, ?, ?, ? > copy )
+	{
+		ImgUtil.copy( this, copy );
 	}
 }
@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+/**
+ * A cell of a {@link CellImg} whose data is created elsewhere, e.g., loaded
+ * by a {@link CellLoader}. A cell is {@link #isValid() invalid} if it is a
+ * placeholder for data that is still being loaded in the background, or whose
+ * loading {@link #getLoadFailure() failed}.
+ * 
+ * If the {@link CachedCells} have a {@link CellWriter}, the cell is
+ * {@link #isDirty() dirty} if its data was modified since it was loaded or
+ * last written. Only dirty cells are written back.
+ * 
+ * @author ImgLib2 developers
+ */
+public final class CachedCell< A > extends AbstractCell< A >
+{
+	private static final long serialVersionUID = 1L;
+
+	private final A data;
+
+	private final boolean valid;
+
+	private volatile RuntimeException loadFailure;
+
+	public CachedCell( final int[] dimensions, final long[] min, final A data, final boolean valid )
+	{
+		super( dimensions, min );
+		this.data = data;
+		this.valid = valid;
+	}
+
+	public CachedCell( final int[] dimensions, final long[] min, final A data )
+	{
+		this( dimensions, min, data, true );
+	}
+
+	@Override
+	public A getData()
+	{
+		return data;
+	}
+
+	/**
+	 * @return false if this is a placeholder whose data has not been loaded
+	 *         yet.
+	 */
+	public boolean isValid()
+	{
+		return valid;
+	}
+
+	/**
+	 * @return the exception thrown by the {@link CellLoader} if this is a
+	 *         placeholder whose data could not be loaded, or null otherwise.
+	 */
+	public RuntimeException getLoadFailure()
+	{
+		return loadFailure;
+	}
+
+	void setLoadFailure( final RuntimeException e )
+	{
+		loadFailure = e;
+	}
+
+	/**
+	 * @return true if the data of this cell was modified since it was loaded
+	 *         or last written. Always false if modifications are not tracked,
+	 *         i.e., if the {@link CachedCells} have no {@link CellWriter}.
+	 */
+	public boolean isDirty()
+	{
+		final DirtyArrays.Flag flag = DirtyArrays.flag( data );
+		return flag != null && flag.dirty;
+	}
+
+	/**
+	 * Mark this cell as modified, so that it is written back. Modifications
+	 * through the basic type access are detected automatically. This is only
+	 * needed after writing into its {@link net.imglib2.img.basictypeaccess.array.ArrayDataAccess#getCurrentStorageArray()
+	 * storage array} directly.
+	 */
+	public void markDirty()
+	{
+		final DirtyArrays.Flag flag = DirtyArrays.flag( data );
+		if ( flag != null && !flag.dirty )
+			flag.mark( data );
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.CharArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for creating {@link CellImg CellImgs} on {@link CachedCells}, that
+ * is, cells are loaded lazily by a {@link CellLoader} and only a bounded number
+ * of cells is kept in memory. The cell dimensions for a standard cell can be
+ * supplied in the constructor of the factory. If no cell dimensions are given,
+ * the factory creates cells of size <em>10 x 10 x ... x 10</em>.
+ * 
+ * The {@link CellImg#factory() factory} of the created images is a plain
+ * {@link CellImgFactory}, that is, {@link CellImg#copy() copies} are created
+ * in memory.
+ * 
+ * If a {@link CellFetchQueue} is given, cells are loaded in the background and
+ * accesses to cells that are not loaded yet return invalid placeholders
+ * instead of blocking. Wrap the created images into a {@link VolatileCellImg}
+ * to see which pixels are valid.
+ * 
+ * @author ImgLib2 developers
+ */
+public final class CachedCellImgFactory< T extends NativeType< T > > extends AbstractCellImgFactory< T >
+{
+	protected final CellLoader loader;
+
+	protected final CellWriter writer;
+
+	protected final int maxNumCachedCells;
+
+	protected final CellFetchQueue fetchQueue;
+
+	protected final int priority;
+
+	/**
+	 * @param loader
+	 *            loads cells on first access.
+	 * @param writer
+	 *            writes back cells evicted from the cache. May be null.
+	 * @param maxNumCachedCells
+	 *            maximum number of cells that are kept in memory if not
+	 *            referenced elsewhere.
+	 */
+	public CachedCellImgFactory( final CellLoader loader, final CellWriter writer, final int maxNumCachedCells )
+	{
+		this.loader = loader;
+		this.writer = writer;
+		this.maxNumCachedCells = maxNumCachedCells;
+		this.fetchQueue = null;
+		this.priority = 0;
+	}
+
+	public CachedCellImgFactory( final CellLoader loader, final CellWriter writer, final int maxNumCachedCells, final int cellSize )
+	{
+		super( cellSize );
+		this.loader = loader;
+		this.writer = writer;
+		this.maxNumCachedCells = maxNumCachedCells;
+		this.fetchQueue = null;
+		this.priority = 0;
+	}
+
+	public CachedCellImgFactory( final CellLoader loader, final CellWriter writer, final int maxNumCachedCells, final int[] cellDimensions )
+	{
+		super( cellDimensions );
+		this.loader = loader;
+		this.writer = writer;
+		this.maxNumCachedCells = maxNumCachedCells;
+		this.fetchQueue = null;
+		this.priority = 0;
+	}
+
+	public CachedCellImgFactory( final CellLoader loader, final int maxNumCachedCells, final int[] cellDimensions )
+	{
+		this( loader, null, maxNumCachedCells, cellDimensions );
+	}
+
+	/**
+	 * @param loader
+	 *            loads cells in the background.
+	 * @param fetchQueue
+	 *            queue that runs the <em>loader</em>.
+	 * @param priority
+	 *            priority of load requests in the <em>fetchQueue</em>.
+	 * @param maxNumCachedCells
+	 *            maximum number of cells that are kept in memory if not
+	 *            referenced elsewhere.
+	 * @param cellDimensions
+	 *            dimensions of a standard cell.
+	 */
+	public CachedCellImgFactory( final CellLoader loader, final CellFetchQueue fetchQueue, final int priority, final int maxNumCachedCells, final int[] cellDimensions )
+	{
+		super( cellDimensions );
+		this.loader = loader;
+		this.writer = null;
+		this.maxNumCachedCells = maxNumCachedCells;
+		this.fetchQueue = fetchQueue;
+		this.priority = priority;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Override
+	public CellImg< T, ?, CachedCell< ? > > create( final long[] dim, final T type )
+	{
+		return ( CellImg< T, ?, CachedCell< ? > > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public CellImg< T, ByteArray, CachedCell< ByteArray > > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new ByteArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, CharArray, CachedCell< CharArray > > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new CharArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, ShortArray, CachedCell< ShortArray > > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new ShortArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, IntArray, CachedCell< IntArray > > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new IntArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, LongArray, CachedCell< LongArray > > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new LongArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, FloatArray, CachedCell< FloatArray > > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new FloatArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, DoubleArray, CachedCell< DoubleArray > > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new DoubleArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new CellImgFactory( defaultCellDimensions );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	private < A extends ArrayDataAccess< A > > CellImg< T, A, CachedCell< A > > createInstance( final A creator, long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		dimensions = checkDimensions( dimensions );
+		final int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+		return new CellImg< T, A, CachedCell< A > >( new CellImgFactory< T >( cellSize ), new CachedCells< A >( creator, entitiesPerPixel, dimensions, cellSize, loader, writer, maxNumCachedCells, fetchQueue, priority ) );
+	}
+}
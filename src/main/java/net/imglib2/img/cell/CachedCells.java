@@ -0,0 +1,827 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.imglib2.AbstractCursor;
+import net.imglib2.Cursor;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * Implementation of {@link Cells} that creates {@link CachedCell}s on first
+ * access through a {@link CellLoader}, instead of allocating all cells up
+ * front like {@link ListImgCells}.
+ * 
+ * The most recently used cells are kept in a least-recently-used cache of
+ * bounded size. Cells dropped from that cache are still reused as long as
+ * their data is referenced elsewhere (e.g., by a {@link CellRandomAccess}
+ * sitting in the cell), so all samplers always see the same data for a cell.
+ * Only when the data is no longer referenced, it can be garbage collected,
+ * and will be loaded again on the next access.
+ * 
+ * Optionally, a {@link CellWriter} writes back cells when they are evicted
+ * from the cache. Then, modifications are tracked and only
+ * {@link CachedCell#isDirty() dirty} cells are written. This requires the
+ * <em>creator</em> and the data returned by the {@link CellLoader} to be one
+ * of the standard basic type arrays ({@link ByteArray}, ..., {@link DoubleArray}).
+ * Note that samplers only consult the cache when they move to another cell,
+ * so a cell can be modified after it has been evicted (by a sampler that
+ * entered it before). The data of such cells is strongly referenced until it
+ * is written on the next cache miss or {@link #flush()}. Call {@link #flush()}
+ * to write back all dirty cells, e.g., after modifying the image.
+ * 
+ * Cells are loaded and written without holding the lock of the
+ * {@link CachedCells}, so accesses to cached cells never wait for I/O. Threads
+ * that access a cell while it is being loaded by another thread wait for that
+ * load to finish. Calls to the {@link CellWriter} are serialized.
+ * 
+ * If a {@link CellFetchQueue} is given, cells are never loaded on the thread
+ * that accesses them. Instead, an {@link CachedCell#isValid() invalid}
+ * placeholder cell is returned immediately and a load request is enqueued.
+ * Once loaded, the cell is returned by subsequent accesses. Samplers that
+ * stay in a placeholder cell keep seeing the placeholder, so interactive
+ * displays should create new samplers for each repaint (which is what
+ * {@link VolatileCellImg} is meant for). If the {@link CellLoader} throws an
+ * exception, the placeholder is kept and records the
+ * {@link CachedCell#getLoadFailure() failure}, and the cell is not enqueued
+ * again until {@link #clearLoadFailures()} is called.
+ * 
+ * @author ImgLib2 developers
+ */
+public class CachedCells< A extends ArrayDataAccess< A > > implements Cells< A, CachedCell< A > >
+{
+	protected final A creator;
+
+	protected final Fraction entitiesPerPixel;
+
+	protected final int n;
+
+	protected final long[] dimensions;
+
+	protected final int[] cellDimensions;
+
+	protected final long[] numCells;
+
+	protected final long[] numCellsSteps;
+
+	protected final int[] borderSize;
+
+	protected final CellLoader loader;
+
+	protected final CellWriter writer;
+
+	protected final int maxNumCachedCells;
+
+	protected final CellFetchQueue fetchQueue;
+
+	protected final int priority;
+
+	/**
+	 * strongly referenced cells, in access order.
+	 */
+	private final LinkedHashMap< Long, CachedCell< A > > cache;
+
+	/**
+	 * weakly referenced data of all cells that have been loaded.
+	 */
+	private final HashMap< Long, DataReference< A > > loaded;
+
+	private final ReferenceQueue< A > queue;
+
+	/**
+	 * placeholders of cells that are enqueued for loading.
+	 */
+	private final HashMap< Long, CachedCell< A > > pending;
+
+	/**
+	 * placeholders of cells whose loading failed.
+	 */
+	private final HashMap< Long, CachedCell< A > > failed;
+
+	/**
+	 * strongly referenced data of dirty cells.
+	 */
+	private final HashMap< Long, A > modified;
+
+	/**
+	 * indices of cells that are being loaded on an accessing thread.
+	 */
+	private final HashSet< Long > loading;
+
+	/**
+	 * indices of dirty cells that have left the cache and are written by the
+	 * next thread that misses the cache.
+	 */
+	private final ArrayDeque< Long > evicted;
+
+	/**
+	 * held while calling the {@link #writer}.
+	 */
+	private final ReentrantLock writeLock;
+
+	private final long[] tmpGridPosition;
+
+	/**
+	 * @param creator
+	 *            passed to the <em>loader</em> to create basic type arrays.
+	 * @param entitiesPerPixel
+	 * @param dimensions
+	 *            dimensions of the image.
+	 * @param cellDimensions
+	 *            dimensions of a standard cell.
+	 * @param loader
+	 *            loads cells on first access.
+	 * @param writer
+	 *            writes back evicted dirty cells. May be null.
+	 * @param maxNumCachedCells
+	 *            maximum number of cells that are kept in memory if not
+	 *            referenced elsewhere.
+	 * @param fetchQueue
+	 *            if not null, cells are loaded in the background by this
+	 *            queue, and invalid placeholders are returned until they are
+	 *            loaded.
+	 * @param priority
+	 *            priority of load requests in the <em>fetchQueue</em>.
+	 * @throws IllegalArgumentException
+	 *             if there is a <em>writer</em> and modifications of
+	 *             <em>creator</em> can not be tracked.
+	 */
+	public CachedCells( final A creator, final Fraction entitiesPerPixel, final long[] dimensions, final int[] cellDimensions, final CellLoader loader, final CellWriter writer, final int maxNumCachedCells, final CellFetchQueue fetchQueue, final int priority )
+	{
+		if ( writer == null )
+			this.creator = creator;
+		else
+		{
+			this.creator = DirtyArrays.wrap( creator );
+			if ( this.creator == null )
+				throw new IllegalArgumentException( "Cannot track modifications of " + creator.getClass().getName() + "." );
+		}
+		this.entitiesPerPixel = entitiesPerPixel;
+		this.n = dimensions.length;
+		this.dimensions = dimensions.clone();
+		this.cellDimensions = cellDimensions.clone();
+		this.loader = loader;
+		this.writer = writer;
+		this.maxNumCachedCells = maxNumCachedCells;
+		this.fetchQueue = fetchQueue;
+		this.priority = priority;
+
+		numCells = new long[ n ];
+		borderSize = new int[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			numCells[ d ] = ( dimensions[ d ] - 1 ) / cellDimensions[ d ] + 1;
+			borderSize[ d ] = ( int ) ( dimensions[ d ] - ( numCells[ d ] - 1 ) * cellDimensions[ d ] );
+		}
+		numCellsSteps = new long[ n ];
+		IntervalIndexer.createAllocationSteps( numCells, numCellsSteps );
+
+		cache = new LinkedHashMap< Long, CachedCell< A > >( 16, 0.75f, true )
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry( final Map.Entry< Long, CachedCell< A > > eldest )
+			{
+				if ( size() <= CachedCells.this.maxNumCachedCells )
+					return false;
+				if ( modified.containsKey( eldest.getKey() ) )
+					evicted.add( eldest.getKey() );
+				return true;
+			}
+		};
+		loaded = new HashMap< Long, DataReference< A > >();
+		queue = new ReferenceQueue< A >();
+		pending = new HashMap< Long, CachedCell< A > >();
+		failed = new HashMap< Long, CachedCell< A > >();
+		modified = new HashMap< Long, A >();
+		loading = new HashSet< Long >();
+		evicted = new ArrayDeque< Long >();
+		writeLock = new ReentrantLock();
+		tmpGridPosition = new long[ n ];
+	}
+
+	/**
+	 * Create {@link CachedCells} that load cells on the accessing thread.
+	 * 
+	 * @param creator
+	 *            passed to the <em>loader</em> to create basic type arrays.
+	 * @param entitiesPerPixel
+	 * @param dimensions
+	 *            dimensions of the image.
+	 * @param cellDimensions
+	 *            dimensions of a standard cell.
+	 * @param loader
+	 *            loads cells on first access.
+	 * @param writer
+	 *            writes back evicted dirty cells. May be null.
+	 * @param maxNumCachedCells
+	 *            maximum number of cells that are kept in memory if not
+	 *            referenced elsewhere.
+	 * @throws IllegalArgumentException
+	 *             if there is a <em>writer</em> and modifications of
+	 *             <em>creator</em> can not be tracked.
+	 */
+	public CachedCells( final A creator, final Fraction entitiesPerPixel, final long[] dimensions, final int[] cellDimensions, final CellLoader loader, final CellWriter writer, final int maxNumCachedCells )
+	{
+		this( creator, entitiesPerPixel, dimensions, cellDimensions, loader, writer, maxNumCachedCells, null, 0 );
+	}
+
+	/**
+	 * Get the cell with the given flat index in the cell grid, loading it if
+	 * necessary. If there is a {@link CellFetchQueue}, an invalid placeholder
+	 * is returned for cells that are not loaded yet.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the {@link CellLoader} returns null.
+	 */
+	public CachedCell< A > get( final long index )
+	{
+		CachedCell< A > cell;
+		synchronized ( this )
+		{
+			while ( ( cell = cache.get( index ) ) == null && loading.contains( index ) )
+				awaitLoading();
+			if ( cell != null )
+				return cell;
+			final A data = getLoadedData( index );
+			if ( data != null )
+				cell = cacheCell( index, data );
+			else if ( fetchQueue != null )
+				return getPlaceholder( index );
+			else
+			{
+				loading.add( index );
+				cell = createCell( index, null );
+			}
+		}
+		if ( cell.getData() == null )
+			cell = load( index, cell );
+		writeEvicted();
+		return cell;
+	}
+
+	/**
+	 * Write back all dirty cells. Does nothing if no {@link CellWriter} was
+	 * given.
+	 */
+	public void flush()
+	{
+		writeLock.lock();
+		try
+		{
+			final ArrayList< CachedCell< A > > dirty;
+			synchronized ( this )
+			{
+				dirty = new ArrayList< CachedCell< A > >( modified.size() );
+				for ( final Map.Entry< Long, A > entry : modified.entrySet() )
+					dirty.add( markClean( entry.getKey(), entry.getValue() ) );
+				modified.clear();
+				evicted.clear();
+			}
+			for ( final CachedCell< A > cell : dirty )
+				writer.write( cell.getData(), cell.min, cell.dimensions );
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of dirty cells, i.e., cells that have been modified
+	 *         since they were loaded or last written.
+	 */
+	public synchronized int numDirtyCells()
+	{
+		return modified.size();
+	}
+
+	/**
+	 * @return number of cells that are strongly held by the cache.
+	 */
+	public synchronized int numCachedCells()
+	{
+		return cache.size();
+	}
+
+	/**
+	 * @return number of cells that are enqueued for loading in the
+	 *         background.
+	 */
+	public synchronized int numPendingCells()
+	{
+		return pending.size();
+	}
+
+	/**
+	 * @return number of cells whose loading in the background failed.
+	 */
+	public synchronized int numFailedCells()
+	{
+		return failed.size();
+	}
+
+	/**
+	 * Forget about cells whose loading in the background failed, such that
+	 * they are enqueued again on the next access.
+	 */
+	public synchronized void clearLoadFailures()
+	{
+		failed.clear();
+	}
+
+	/**
+	 * @return number of cells whose data is in memory, i.e., that have been
+	 *         loaded and not yet garbage collected.
+	 */
+	public synchronized int numLoadedCells()
+	{
+		expungeStaleEntries();
+		return loaded.size();
+	}
+
+	private A getLoadedData( final long index )
+	{
+		expungeStaleEntries();
+		final DataReference< A > ref = loaded.get( index );
+		return ref == null ? null : ref.get();
+	}
+
+	private void awaitLoading()
+	{
+		try
+		{
+			wait();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+	}
+
+	/**
+	 * Load cell <em>index</em> on the calling thread, without holding the
+	 * lock. The caller must have added <em>index</em> to {@link #loading}.
+	 */
+	private CachedCell< A > load( final long index, final CachedCell< A > skeleton )
+	{
+		final A data;
+		try
+		{
+			data = track( index, loadData( ( int ) entitiesPerPixel.mulCeil( skeleton.size() ), skeleton ) );
+		}
+		catch ( final RuntimeException e )
+		{
+			finishLoading( index, null );
+			throw e;
+		}
+		catch ( final Error e )
+		{
+			finishLoading( index, null );
+			throw e;
+		}
+		return finishLoading( index, data );
+	}
+
+	/**
+	 * Remove the loading marker of cell <em>index</em>, wake up threads
+	 * waiting for it, and put the cell into the cache if it was loaded.
+	 */
+	private synchronized CachedCell< A > finishLoading( final long index, final A data )
+	{
+		loading.remove( index );
+		notifyAll();
+		if ( data == null )
+			return null;
+		loaded.put( index, new DataReference< A >( index, data, queue ) );
+		return cacheCell( index, data );
+	}
+
+	private A loadData( final int numEntities, final CachedCell< A > cell )
+	{
+		final A data = loader.load( creator, numEntities, cell.min, cell.dimensions );
+		if ( data == null )
+			throw new IllegalStateException( loader.getClass().getName() + " returned no data." );
+		return data;
+	}
+
+	private CachedCell< A > cacheCell( final long index, final A data )
+	{
+		final CachedCell< A > cell = createCell( index, data );
+		cache.put( index, cell );
+		return cell;
+	}
+
+	private CachedCell< A > getPlaceholder( final long index )
+	{
+		CachedCell< A > placeholder = pending.get( index );
+		if ( placeholder == null )
+			placeholder = failed.get( index );
+		if ( placeholder == null )
+		{
+			final CachedCell< A > cell = createCell( index, null );
+			final int numEntities = ( int ) entitiesPerPixel.mulCeil( cell.size() );
+			placeholder = new CachedCell< A >( cell.dimensions, cell.min, creator.createArray( numEntities ), false );
+			pending.put( index, placeholder );
+			fetchQueue.enqueue( new Fetch( index, numEntities, placeholder ), priority );
+		}
+		return placeholder;
+	}
+
+	private CachedCell< A > createCell( final long index, final A data )
+	{
+		IntervalIndexer.indexToPosition( index, numCells, tmpGridPosition );
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			cellDims[ d ] = ( ( tmpGridPosition[ d ] + 1 == numCells[ d ] ) ? borderSize[ d ] : cellDimensions[ d ] );
+			cellMin[ d ] = tmpGridPosition[ d ] * cellDimensions[ d ];
+		}
+		return new CachedCell< A >( cellDims, cellMin, data );
+	}
+
+	/**
+	 * If modifications are tracked, make sure that newly loaded <em>data</em>
+	 * reports them to this {@link CachedCells}.
+	 */
+	private A track( final long index, final A data )
+	{
+		if ( writer == null )
+			return data;
+		final A tracked = DirtyArrays.wrap( data );
+		if ( tracked == null )
+			throw new IllegalArgumentException( "Cannot track modifications of " + data.getClass().getName() + " returned by " + loader.getClass().getName() + "." );
+		DirtyArrays.flag( tracked ).track( this, index );
+		return tracked;
+	}
+
+	/**
+	 * Called by the data of cell <em>index</em> when it is first modified
+	 * after loading or writing. Keeps the data strongly referenced until it is
+	 * written, and queues it for writing if the cell is no longer cached.
+	 */
+	@SuppressWarnings( "unchecked" )
+	synchronized void markDirty( final long index, final Object data )
+	{
+		final DirtyArrays.Flag flag = DirtyArrays.flag( data );
+		if ( !flag.dirty )
+		{
+			flag.dirty = true;
+			modified.put( index, ( A ) data );
+			if ( !cache.containsKey( index ) )
+				evicted.add( index );
+		}
+	}
+
+	/**
+	 * Write dirty cells that have left the cache. Returns immediately if
+	 * another thread is writing, which then also writes the cells queued in
+	 * the meantime.
+	 */
+	private void writeEvicted()
+	{
+		synchronized ( this )
+		{
+			if ( evicted.isEmpty() )
+				return;
+		}
+		if ( !writeLock.tryLock() )
+			return;
+		try
+		{
+			CachedCell< A > cell;
+			while ( ( cell = takeEvicted() ) != null )
+				writer.write( cell.getData(), cell.min, cell.dimensions );
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Remove the next evicted dirty cell from {@link #modified} and mark it
+	 * clean. Cells that have been cached again in the meantime are skipped;
+	 * they are queued again when they are evicted.
+	 * 
+	 * @return the cell to write, or null if there is none.
+	 */
+	private synchronized CachedCell< A > takeEvicted()
+	{
+		Long index;
+		while ( ( index = evicted.poll() ) != null )
+		{
+			if ( cache.containsKey( index ) )
+				continue;
+			final A data = modified.remove( index );
+			if ( data != null )
+				return markClean( index, data );
+		}
+		return null;
+	}
+
+	/**
+	 * Mark the data of cell <em>index</em> clean before writing it. The caller
+	 * must remove it from {@link #modified}.
+	 */
+	private CachedCell< A > markClean( final long index, final A data )
+	{
+		DirtyArrays.flag( data ).dirty = false;
+		return createCell( index, data );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private void expungeStaleEntries()
+	{
+		DataReference< A > ref;
+		while ( ( ref = ( DataReference< A > ) queue.poll() ) != null )
+		{
+			if ( loaded.get( ref.index ) == ref )
+				loaded.remove( ref.index );
+		}
+	}
+
+	/**
+	 * Loads a cell on a {@link CellFetchQueue} thread and puts it into the
+	 * cache. The loader is called without holding the lock, so accesses to
+	 * other cells do not block while loading. If the loader throws, the
+	 * failure is recorded on the placeholder.
+	 */
+	private class Fetch implements Runnable
+	{
+		private final long index;
+
+		private final int numEntities;
+
+		private final CachedCell< A > placeholder;
+
+		Fetch( final long index, final int numEntities, final CachedCell< A > placeholder )
+		{
+			this.index = index;
+			this.numEntities = numEntities;
+			this.placeholder = placeholder;
+		}
+
+		@Override
+		public void run()
+		{
+			A data = null;
+			RuntimeException failure = null;
+			try
+			{
+				data = track( index, loadData( numEntities, placeholder ) );
+			}
+			catch ( final RuntimeException e )
+			{
+				failure = e;
+			}
+			synchronized ( CachedCells.this )
+			{
+				pending.remove( index );
+				if ( failure == null )
+				{
+					loaded.put( index, new DataReference< A >( index, data, queue ) );
+					cacheCell( index, data );
+				}
+				else
+				{
+					placeholder.setLoadFailure( failure );
+					failed.put( index, placeholder );
+				}
+			}
+			writeEvicted();
+		}
+	}
+
+	private static class DataReference< A > extends WeakReference< A >
+	{
+		final long index;
+
+		public DataReference( final long index, final A data, final ReferenceQueue< A > queue )
+		{
+			super( data, queue );
+			this.index = index;
+		}
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void dimensions( final long[] s )
+	{
+		for ( int i = 0; i < n; ++i )
+			s[ i ] = dimensions[ i ];
+	}
+
+	@Override
+	public long dimension( final int d )
+	{
+		return dimensions[ d ];
+	}
+
+	@Override
+	public void cellDimensions( final int[] s )
+	{
+		for ( int i = 0; i < n; ++i )
+			s[ i ] = cellDimensions[ i ];
+	}
+
+	@Override
+	public int cellDimension( final int d )
+	{
+		return cellDimensions[ d ];
+	}
+
+	@Override
+	public Fraction getEntitiesPerPixel()
+	{
+		return entitiesPerPixel;
+	}
+
+	@Override
+	public RandomAccess< CachedCell< A > > randomAccess()
+	{
+		return new CellsRandomAccess();
+	}
+
+	@Override
+	public Cursor< CachedCell< A > > cursor()
+	{
+		return new CellsCursor();
+	}
+
+	@Override
+	public Cursor< CachedCell< A > > localizingCursor()
+	{
+		return new CellsCursor();
+	}
+
+	/**
+	 * {@link RandomAccess} on the cell grid.
+	 */
+	private class CellsRandomAccess extends Point implements RandomAccess< CachedCell< A > >
+	{
+		CellsRandomAccess()
+		{
+			super( CachedCells.this.n );
+		}
+
+		CellsRandomAccess( final CellsRandomAccess randomAccess )
+		{
+			super( randomAccess );
+		}
+
+		@Override
+		public CachedCell< A > get()
+		{
+			return CachedCells.this.get( IntervalIndexer.positionToIndex( position, numCells ) );
+		}
+
+		@Override
+		public CellsRandomAccess copy()
+		{
+			return new CellsRandomAccess( this );
+		}
+
+		@Override
+		public CellsRandomAccess copyRandomAccess()
+		{
+			return copy();
+		}
+	}
+
+	/**
+	 * {@link Cursor} on the cell grid, in flat iteration order.
+	 */
+	private class CellsCursor extends AbstractCursor< CachedCell< A > >
+	{
+		private final long lastIndex;
+
+		private long index;
+
+		CellsCursor()
+		{
+			super( CachedCells.this.n );
+			long size = 1;
+			for ( int d = 0; d < n; ++d )
+				size *= numCells[ d ];
+			lastIndex = size - 1;
+			index = -1;
+		}
+
+		CellsCursor( final CellsCursor cursor )
+		{
+			super( CachedCells.this.n );
+			lastIndex = cursor.lastIndex;
+			index = cursor.index;
+		}
+
+		@Override
+		public CachedCell< A > get()
+		{
+			return CachedCells.this.get( index );
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			index += steps;
+		}
+
+		@Override
+		public void fwd()
+		{
+			++index;
+		}
+
+		@Override
+		public void reset()
+		{
+			index = -1;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return index < lastIndex;
+		}
+
+		@Override
+		public void localize( final long[] position )
+		{
+			IntervalIndexer.indexToPosition( index, numCells, position );
+		}
+
+		@Override
+		public long getLongPosition( final int d )
+		{
+			return IntervalIndexer.indexToPosition( index, numCells, numCellsSteps, d );
+		}
+
+		@Override
+		public CellsCursor copy()
+		{
+			return new CellsCursor( this );
+		}
+
+		@Override
+		public CellsCursor copyCursor()
+		{
+			return copy();
+		}
+	}
+}
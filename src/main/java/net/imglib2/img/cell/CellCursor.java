@@ -170,6 +170,27 @@ public class CellCursor< T extends NativeType< T >, A, C extends AbstractCell< A
 		getCell().indexToGlobalPosition( index, position );
 	}
 
+	/**
+	 * Move cursor right before the element with the given index in the cell
+	 * with the given flat index in the cell grid, without visiting the cells
+	 * in between.
+	 * 
+	 * @param cellIndex
+	 *            flat index of the cell in the cell grid.
+	 * @param indexInCell
+	 *            index of the element in the cell.
+	 */
+	protected void moveToCell( final long cellIndex, final int indexInCell )
+	{
+		cursorOnCells.reset();
+		cursorOnCells.jumpFwd( cellIndex + 1 );
+		isNotLastCell = cursorOnCells.hasNext();
+		lastIndexInCell = ( int ) ( getCell().size() - 1 );
+		index = indexInCell - 1;
+		type.updateContainer( this );
+		type.updateIndex( index );
+	}
+
 	/**
 	 * Move cursor right before the first element of the next cell. Update type
 	 * and index variables.
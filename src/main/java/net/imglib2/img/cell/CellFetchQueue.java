@@ -0,0 +1,185 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prioritized queue of cell load requests that are processed by a fixed
+ * number of background threads. Requests with a smaller priority value are
+ * processed first. Among requests of the same priority, the most recently
+ * enqueued one is processed first, such that cells that were requested for
+ * the current view of an interactive display are loaded before those that
+ * were requested for views that are already outdated.
+ * 
+ * One queue can be shared by several {@link CachedCells}, e.g., the
+ * resolution levels of a multi-resolution image, each of them enqueueing
+ * with its own priority.
+ * 
+ * The worker threads are daemon threads, so they do not keep the application
+ * alive. Call {@link #shutdown()} to stop them explicitly. Exceptions thrown
+ * by a request are passed to the
+ * {@link Thread#getUncaughtExceptionHandler() uncaught exception handler} of
+ * the worker thread, which then continues with the next request.
+ * 
+ * @author ImgLib2 developers
+ */
+public class CellFetchQueue
+{
+	private final PriorityBlockingQueue< Request > queue;
+
+	private final AtomicLong sequence;
+
+	private final Thread[] workers;
+
+	/**
+	 * Create a queue and start <em>numThreads</em> worker threads.
+	 */
+	public CellFetchQueue( final int numThreads )
+	{
+		if ( numThreads < 1 )
+			throw new IllegalArgumentException( "need at least one fetcher thread." );
+
+		queue = new PriorityBlockingQueue< Request >();
+		sequence = new AtomicLong();
+		workers = new Thread[ numThreads ];
+		for ( int i = 0; i < numThreads; ++i )
+		{
+			workers[ i ] = new Fetcher( "CellFetchQueue-" + i );
+			workers[ i ].start();
+		}
+	}
+
+	/**
+	 * Create a queue with one worker thread.
+	 */
+	public CellFetchQueue()
+	{
+		this( 1 );
+	}
+
+	/**
+	 * Enqueue a load request.
+	 * 
+	 * @param task
+	 *            loads the cell. Runs on one of the worker threads.
+	 * @param priority
+	 *            smaller values are processed first.
+	 */
+	public void enqueue( final Runnable task, final int priority )
+	{
+		queue.add( new Request( task, priority, sequence.getAndIncrement() ) );
+	}
+
+	/**
+	 * @return number of pending requests.
+	 */
+	public int size()
+	{
+		return queue.size();
+	}
+
+	/**
+	 * Discard all pending requests and stop the worker threads. Requests that
+	 * are currently processed are finished.
+	 */
+	public void shutdown()
+	{
+		for ( final Thread worker : workers )
+			worker.interrupt();
+		queue.clear();
+	}
+
+	private static final class Request implements Comparable< Request >
+	{
+		final Runnable task;
+
+		final int priority;
+
+		final long sequence;
+
+		Request( final Runnable task, final int priority, final long sequence )
+		{
+			this.task = task;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo( final Request o )
+		{
+			if ( priority != o.priority )
+				return priority < o.priority ? -1 : 1;
+			if ( sequence != o.sequence )
+				return sequence > o.sequence ? -1 : 1;
+			return 0;
+		}
+	}
+
+	private final class Fetcher extends Thread
+	{
+		Fetcher( final String name )
+		{
+			super( name );
+			setDaemon( true );
+		}
+
+		@Override
+		public void run()
+		{
+			while ( !isInterrupted() )
+			{
+				final Request request;
+				try
+				{
+					request = queue.take();
+				}
+				catch ( final InterruptedException e )
+				{
+					break;
+				}
+				try
+				{
+					request.task.run();
+				}
+				catch ( final RuntimeException e )
+				{
+					getUncaughtExceptionHandler().uncaughtException( this, e );
+				}
+			}
+		}
+	}
+}
@@ -58,6 +58,12 @@ public class CellRandomAccess< T extends NativeType< T >, A, C extends AbstractC
 
 	protected final long[] tmp;
 
+	/**
+	 * the cell containing the current position. Remains the last visited cell
+	 * while out of bounds.
+	 */
+	protected C currentCell;
+
 	protected int[] currentCellSteps;
 
 	protected long[] currentCellMin;
@@ -87,6 +93,7 @@ public class CellRandomAccess< T extends NativeType< T >, A, C extends AbstractC
 
 		randomAccess.localize( position );
 
+		currentCell = randomAccess.currentCell;
 		currentCellSteps = randomAccess.currentCellSteps;
 		currentCellMin = randomAccess.currentCellMin;
 		currentCellMax = randomAccess.currentCellMax;
@@ -127,7 +134,7 @@ public class CellRandomAccess< T extends NativeType< T >, A, C extends AbstractC
 	@Override
 	public C getCell()
 	{
-		return randomAccessOnCells.get();
+		return currentCell;
 	}
 
 	@Override
@@ -467,8 +474,9 @@ public class CellRandomAccess< T extends NativeType< T >, A, C extends AbstractC
 				randomAccessOnCells.setPosition( tmp );
 			}
 
-			final C cell = getCell();
+			final C cell = randomAccessOnCells.get();
 
+			currentCell = cell;
 			currentCellSteps = cell.steps;
 			currentCellMin = cell.min;
 			currentCellMax = cell.max;
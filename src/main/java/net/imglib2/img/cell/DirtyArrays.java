@@ -0,0 +1,360 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.CharArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+
+/**
+ * Basic type arrays that remember whether they were modified, used by
+ * {@link CachedCells} to write back only modified cells.
+ * 
+ * Modifications through <em>setValue</em> are tracked. Code that writes into
+ * the {@link ArrayDataAccess#getCurrentStorageArray() storage array} directly
+ * must call {@link CachedCell#markDirty()} afterwards.
+ * 
+ * @author ImgLib2 developers
+ */
+final class DirtyArrays
+{
+	private DirtyArrays()
+	{}
+
+	/**
+	 * A basic type array with a {@link Flag}.
+	 */
+	interface Access
+	{
+		public Flag getDirtyFlag();
+	}
+
+	/**
+	 * Whether the data of a cell was modified since it was loaded or last
+	 * written. Modifications are reported to the {@link CachedCells} that
+	 * {@link #track(CachedCells, long) tracks} the data. Modifications before
+	 * that, e.g., by the {@link CellLoader}, are ignored.
+	 */
+	static final class Flag
+	{
+		volatile boolean dirty;
+
+		private CachedCells< ? > cells;
+
+		private long index;
+
+		void track( final CachedCells< ? > cells, final long index )
+		{
+			this.cells = cells;
+			this.index = index;
+		}
+
+		void mark( final Object data )
+		{
+			if ( cells != null )
+				cells.markDirty( index, data );
+		}
+	}
+
+	/**
+	 * @return <em>access</em> if it tracks modifications, a tracking array
+	 *         sharing the storage array of <em>access</em> if it is one of the
+	 *         standard basic type arrays, or null otherwise.
+	 */
+	@SuppressWarnings( "unchecked" )
+	static < A extends ArrayDataAccess< A > > A wrap( final A access )
+	{
+		if ( access instanceof Access )
+			return access;
+		final Class< ? > c = access.getClass();
+		final Object array = access.getCurrentStorageArray();
+		final Object dirty;
+		if ( c == ByteArray.class )
+			dirty = new DirtyByteArray( ( byte[] ) array );
+		else if ( c == CharArray.class )
+			dirty = new DirtyCharArray( ( char[] ) array );
+		else if ( c == ShortArray.class )
+			dirty = new DirtyShortArray( ( short[] ) array );
+		else if ( c == IntArray.class )
+			dirty = new DirtyIntArray( ( int[] ) array );
+		else if ( c == LongArray.class )
+			dirty = new DirtyLongArray( ( long[] ) array );
+		else if ( c == FloatArray.class )
+			dirty = new DirtyFloatArray( ( float[] ) array );
+		else if ( c == DoubleArray.class )
+			dirty = new DirtyDoubleArray( ( double[] ) array );
+		else
+			return null;
+		return ( A ) dirty;
+	}
+
+	/**
+	 * @return the {@link Flag} of <em>data</em>, or null if it does not track
+	 *         modifications.
+	 */
+	static Flag flag( final Object data )
+	{
+		return data instanceof Access ? ( ( Access ) data ).getDirtyFlag() : null;
+	}
+
+	static final class DirtyByteArray extends ByteArray implements Access
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Flag flag = new Flag();
+
+		DirtyByteArray( final byte[] data )
+		{
+			super( data );
+		}
+
+		@Override
+		public void setValue( final int index, final byte value )
+		{
+			data[ index ] = value;
+			if ( !flag.dirty )
+				flag.mark( this );
+		}
+
+		@Override
+		public ByteArray createArray( final int numEntities )
+		{
+			return new DirtyByteArray( new byte[ numEntities ] );
+		}
+
+		@Override
+		public Flag getDirtyFlag()
+		{
+			return flag;
+		}
+	}
+
+	static final class DirtyCharArray extends CharArray implements Access
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Flag flag = new Flag();
+
+		DirtyCharArray( final char[] data )
+		{
+			super( data );
+		}
+
+		@Override
+		public void setValue( final int index, final char value )
+		{
+			data[ index ] = value;
+			if ( !flag.dirty )
+				flag.mark( this );
+		}
+
+		@Override
+		public CharArray createArray( final int numEntities )
+		{
+			return new DirtyCharArray( new char[ numEntities ] );
+		}
+
+		@Override
+		public Flag getDirtyFlag()
+		{
+			return flag;
+		}
+	}
+
+	static final class DirtyShortArray extends ShortArray implements Access
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Flag flag = new Flag();
+
+		DirtyShortArray( final short[] data )
+		{
+			super( data );
+		}
+
+		@Override
+		public void setValue( final int index, final short value )
+		{
+			data[ index ] = value;
+			if ( !flag.dirty )
+				flag.mark( this );
+		}
+
+		@Override
+		public ShortArray createArray( final int numEntities )
+		{
+			return new DirtyShortArray( new short[ numEntities ] );
+		}
+
+		@Override
+		public Flag getDirtyFlag()
+		{
+			return flag;
+		}
+	}
+
+	static final class DirtyIntArray extends IntArray implements Access
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Flag flag = new Flag();
+
+		DirtyIntArray( final int[] data )
+		{
+			super( data );
+		}
+
+		@Override
+		public void setValue( final int index, final int value )
+		{
+			data[ index ] = value;
+			if ( !flag.dirty )
+				flag.mark( this );
+		}
+
+		@Override
+		public IntArray createArray( final int numEntities )
+		{
+			return new DirtyIntArray( new int[ numEntities ] );
+		}
+
+		@Override
+		public Flag getDirtyFlag()
+		{
+			return flag;
+		}
+	}
+
+	static final class DirtyLongArray extends LongArray implements Access
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Flag flag = new Flag();
+
+		DirtyLongArray( final long[] data )
+		{
+			super( data );
+		}
+
+		@Override
+		public void setValue( final int index, final long value )
+		{
+			data[ index ] = value;
+			if ( !flag.dirty )
+				flag.mark( this );
+		}
+
+		@Override
+		public LongArray createArray( final int numEntities )
+		{
+			return new DirtyLongArray( new long[ numEntities ] );
+		}
+
+		@Override
+		public Flag getDirtyFlag()
+		{
+			return flag;
+		}
+	}
+
+	static final class DirtyFloatArray extends FloatArray implements Access
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Flag flag = new Flag();
+
+		DirtyFloatArray( final float[] data )
+		{
+			super( data );
+		}
+
+		@Override
+		public void setValue( final int index, final float value )
+		{
+			data[ index ] = value;
+			if ( !flag.dirty )
+				flag.mark( this );
+		}
+
+		@Override
+		public FloatArray createArray( final int numEntities )
+		{
+			return new DirtyFloatArray( new float[ numEntities ] );
+		}
+
+		@Override
+		public Flag getDirtyFlag()
+		{
+			return flag;
+		}
+	}
+
+	static final class DirtyDoubleArray extends DoubleArray implements Access
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Flag flag = new Flag();
+
+		DirtyDoubleArray( final double[] data )
+		{
+			super( data );
+		}
+
+		@Override
+		public void setValue( final int index, final double value )
+		{
+			data[ index ] = value;
+			if ( !flag.dirty )
+				flag.mark( this );
+		}
+
+		@Override
+		public DoubleArray createArray( final int numEntities )
+		{
+			return new DirtyDoubleArray( new double[ numEntities ] );
+		}
+
+		@Override
+		public Flag getDirtyFlag()
+		{
+			return flag;
+		}
+	}
+}
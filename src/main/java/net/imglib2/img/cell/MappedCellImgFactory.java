@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.MappedFile;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for {@link CellImg CellImgs} whose cells are memory-mapped regions
+ * of a {@link MappedFile}. The file is expected to hold the cells one after
+ * the other in flat iteration order of the cell grid, each cell in flat
+ * iteration order. Cells on the max border of the image are truncated, i.e.,
+ * they take up only as many bytes as they have pixels. Every image created by
+ * the factory maps the next region of the file.
+ * 
+ * The {@link CellImg#factory() factory} of the created images is a plain
+ * {@link CellImgFactory}, that is, {@link CellImg#copy() copies} are created
+ * on the Java heap.
+ * 
+ * @author ImgLib2 developers
+ */
+public final class MappedCellImgFactory< T extends NativeType< T > > extends AbstractCellImgFactory< T >
+{
+	protected final MappedFile file;
+
+	public MappedCellImgFactory( final MappedFile file )
+	{
+		this.file = file;
+	}
+
+	public MappedCellImgFactory( final MappedFile file, final int cellSize )
+	{
+		super( cellSize );
+		this.file = file;
+	}
+
+	public MappedCellImgFactory( final MappedFile file, final int[] cellDimensions )
+	{
+		super( cellDimensions );
+		this.file = file;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Override
+	public CellImg< T, ?, ? > create( final long[] dim, final T type )
+	{
+		return ( CellImg< T, ?, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public CellImg< T, ByteBufferAccess, DefaultCell< ByteBufferAccess > > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new ByteBufferAccess( file, 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, CharBufferAccess, DefaultCell< CharBufferAccess > > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new CharBufferAccess( file, 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, DoubleBufferAccess, DefaultCell< DoubleBufferAccess > > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new DoubleBufferAccess( file, 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, FloatBufferAccess, DefaultCell< FloatBufferAccess > > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new FloatBufferAccess( file, 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, IntBufferAccess, DefaultCell< IntBufferAccess > > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new IntBufferAccess( file, 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, LongBufferAccess, DefaultCell< LongBufferAccess > > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new LongBufferAccess( file, 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, ShortBufferAccess, DefaultCell< ShortBufferAccess > > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new ShortBufferAccess( file, 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new MappedCellImgFactory( file, defaultCellDimensions );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	private < A extends ArrayDataAccess< A > > CellImg< T, A, DefaultCell< A > > createInstance( final A creator, long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		dimensions = checkDimensions( dimensions );
+		final int[] cellSize = checkCellSize( defaultCellDimensions, dimensions );
+		return new CellImg< T, A, DefaultCell< A > >( new CellImgFactory< T >( cellSize ), new ListImgCells< A >( creator, entitiesPerPixel, dimensions, cellSize ) );
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.AbstractWrappedInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.volatiles.VolatileRealType;
+
+/**
+ * Presents a {@link CellImg} on {@link CachedCells} as
+ * {@link VolatileRealType} pixels, whose {@link VolatileRealType#isValid()
+ * validity} tells whether the cell containing the pixel has been loaded.
+ * 
+ * Together with a {@link CellFetchQueue} (see {@link CachedCellImgFactory}),
+ * accessing pixels never blocks on I/O: cells that are not loaded yet are
+ * presented as invalid placeholders and loaded in the background. Interactive
+ * displays, e.g., using a
+ * {@link net.imglib2.display.projector.volatiles.Volatile2DRandomAccessibleProjector},
+ * can repaint until all pixels are valid. New samplers should be created for
+ * each repaint, because samplers only pick up loaded cells when entering
+ * them.
+ * 
+ * @param <T>
+ *            pixel type of the underlying {@link CellImg}.
+ * 
+ * @author ImgLib2 developers
+ */
+public class VolatileCellImg< T extends RealType< T > & NativeType< T > > extends AbstractWrappedInterval< CellImg< T, ?, ? extends CachedCell< ? > > > implements RandomAccessibleInterval< VolatileRealType< T > >
+{
+	public VolatileCellImg( final CellImg< T, ?, ? extends CachedCell< ? > > img )
+	{
+		super( img );
+	}
+
+	/**
+	 * @return the underlying {@link CellImg}.
+	 */
+	public CellImg< T, ?, ? extends CachedCell< ? > > getSource()
+	{
+		return sourceInterval;
+	}
+
+	@Override
+	public VolatileCellRandomAccess< T > randomAccess()
+	{
+		return new VolatileCellRandomAccess< T >( sourceInterval.randomAccess() );
+	}
+
+	@Override
+	public VolatileCellRandomAccess< T > randomAccess( final Interval interval )
+	{
+		return randomAccess();
+	}
+}
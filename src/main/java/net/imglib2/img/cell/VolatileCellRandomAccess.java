@@ -0,0 +1,99 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.converter.AbstractConvertedRandomAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.volatiles.VolatileRealType;
+
+/**
+ * {@link net.imglib2.RandomAccess} on a {@link VolatileCellImg}. The returned
+ * {@link VolatileRealType} wraps the pixel of the underlying
+ * {@link CellRandomAccess} and is valid if the current cell is a loaded
+ * {@link CachedCell}. Validity is only re-evaluated when the underlying
+ * access moved to another cell.
+ * 
+ * @author ImgLib2 developers
+ */
+public class VolatileCellRandomAccess< T extends RealType< T > & NativeType< T > > extends AbstractConvertedRandomAccess< T, VolatileRealType< T > >
+{
+	protected final CellRandomAccess< T, ?, ? extends CachedCell< ? > > cellAccess;
+
+	protected final VolatileRealType< T > type;
+
+	/**
+	 * min of the cell for which the validity of {@link #type} was determined.
+	 * Cells are immutable, so a different min array means a different cell.
+	 */
+	private long[] lastCellMin;
+
+	protected VolatileCellRandomAccess( final VolatileCellRandomAccess< T > randomAccess )
+	{
+		this( randomAccess.cellAccess.copy() );
+	}
+
+	public VolatileCellRandomAccess( final CellRandomAccess< T, ?, ? extends CachedCell< ? > > cellAccess )
+	{
+		super( cellAccess );
+		this.cellAccess = cellAccess;
+		type = new VolatileRealType< T >( cellAccess.get() );
+		lastCellMin = null;
+	}
+
+	@Override
+	public VolatileRealType< T > get()
+	{
+		final long[] cellMin = cellAccess.currentCellMin;
+		if ( cellMin != lastCellMin )
+		{
+			lastCellMin = cellMin;
+			type.setValid( !cellAccess.isOutOfBounds && cellAccess.getCell().isValid() );
+		}
+		return type;
+	}
+
+	@Override
+	public VolatileCellRandomAccess< T > copy()
+	{
+		return new VolatileCellRandomAccess< T >( this );
+	}
+
+	@Override
+	public VolatileCellRandomAccess< T > copyRandomAccess()
+	{
+		return copy();
+	}
+}
@@ -39,6 +39,8 @@ import java.util.ArrayList;
 import net.imglib2.FlatIterationOrder;
 import net.imglib2.img.AbstractImg;
 import net.imglib2.img.Img;
+import net.imglib2.iterator.ChunkCursor;
+import net.imglib2.iterator.SplittableIterable;
 import net.imglib2.type.Type;
 import net.imglib2.util.IntervalIndexer;
 
@@ -64,7 +66,7 @@ import net.imglib2.util.IntervalIndexer;
  * @author Stephan Saalfeld
  * @author Tobias Pietzsch <tobias.pietzsch@gmail.com>
  */
-public abstract class AbstractListImg< T > extends AbstractImg< T >
+public abstract class AbstractListImg< T > extends AbstractImg< T > implements SplittableIterable< T >
 {
 	final protected int[] step;
 
@@ -115,4 +117,18 @@ public abstract class AbstractListImg< T > extends AbstractImg< T >
 	{
 		return new FlatIterationOrder( this );
 	}
+
+	@Override
+	public long chunkStart( final long index )
+	{
+		return index;
+	}
+
+	@Override
+	public ChunkCursor< T > cursor( final long offset, final long size )
+	{
+		final ListCursor< T > start = cursor();
+		start.jumpFwd( offset );
+		return new ChunkCursor< T >( start, size );
+	}
 }
@@ -0,0 +1,190 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.paged;
+
+import net.imglib2.AbstractCursor;
+import net.imglib2.Cursor;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * {@link Cursor} on a {@link PagedArrayImg}.
+ * 
+ * Within a page, {@link #fwd()} only increments an <code>int</code> index.
+ * The flat <code>long</code> index is only computed for localization.
+ * 
+ * @param <T>
+ * 
+ * @author ImgLib2 developers
+ */
+public class PagedArrayCursor< T extends NativeType< T > > extends AbstractCursor< T > implements PagedArrayImg.PagedContainerSampler
+{
+	protected final T type;
+
+	protected final PagedArrayImg< T, ? > img;
+
+	protected final int lastPage;
+
+	protected final int lastIndexInLastPage;
+
+	protected int page;
+
+	protected int lastIndexInPage;
+
+	/**
+	 * The current index of the type within the current page. It is faster to
+	 * duplicate this here than to access it through type.getIndex().
+	 */
+	protected int index;
+
+	protected PagedArrayCursor( final PagedArrayCursor< T > cursor )
+	{
+		super( cursor.numDimensions() );
+
+		img = cursor.img;
+		type = img.createLinkedType();
+		lastPage = cursor.lastPage;
+		lastIndexInLastPage = cursor.lastIndexInLastPage;
+		page = cursor.page;
+		lastIndexInPage = cursor.lastIndexInPage;
+		index = cursor.index;
+
+		type.updateContainer( this );
+		type.updateIndex( index );
+	}
+
+	public PagedArrayCursor( final PagedArrayImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+
+		this.img = img;
+		type = img.createLinkedType();
+		lastPage = img.numPages - 1;
+		lastIndexInLastPage = ( int ) ( ( img.size() - 1 ) & img.pageMask );
+
+		reset();
+	}
+
+	@Override
+	public int getCurrentPageIndex()
+	{
+		return page;
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public PagedArrayCursor< T > copy()
+	{
+		return new PagedArrayCursor< T >( this );
+	}
+
+	@Override
+	public PagedArrayCursor< T > copyCursor()
+	{
+		return copy();
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return ( index < lastIndexInPage ) || ( page < lastPage );
+	}
+
+	@Override
+	public void fwd()
+	{
+		if ( ++index > lastIndexInPage )
+		{
+			setPage( page + 1 );
+			index = 0;
+		}
+		type.updateIndex( index );
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		final long flatIndex = getFlatIndex() + steps;
+		setPage( ( int ) ( flatIndex >> img.pageShift ) );
+		index = ( int ) ( flatIndex & img.pageMask );
+		type.updateIndex( index );
+	}
+
+	@Override
+	public void reset()
+	{
+		setPage( 0 );
+		index = -1;
+		type.updateIndex( index );
+	}
+
+	/**
+	 * @return the index of the current element in flat iteration order.
+	 */
+	public long getFlatIndex()
+	{
+		return ( ( long ) page << img.pageShift ) + index;
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		return IntervalIndexer.indexToPosition( getFlatIndex(), img.dim, img.steps, d );
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		IntervalIndexer.indexToPosition( getFlatIndex(), img.dim, position );
+	}
+
+	@Override
+	public String toString()
+	{
+		return type.toString();
+	}
+
+	private void setPage( final int p )
+	{
+		page = p;
+		lastIndexInPage = ( page == lastPage ) ? lastIndexInLastPage : img.pageSize - 1;
+		type.updateContainer( this );
+	}
+}
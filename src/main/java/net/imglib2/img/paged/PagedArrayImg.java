@@ -0,0 +1,230 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.paged;
+
+import java.util.ArrayList;
+
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.Interval;
+import net.imglib2.img.AbstractNativeImg;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.iterator.ChunkCursor;
+import net.imglib2.iterator.SplittableIterable;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.ImgUtil;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * This {@link Img} stores an image in flat iteration order, like an
+ * {@link ArrayImg}, but splits the linear storage into pages of
+ * 2<sup><em>pageShift</em></sup> pixels each. Pixels are addressed by a
+ * <code>long</code> index, so the number of pixels is not limited to
+ * {@link Integer#MAX_VALUE}.
+ * 
+ * The page containing a pixel and the index within that page are computed by
+ * shifting and masking the flat index, so access costs only little more than
+ * for an {@link ArrayImg}. Cursors only switch pages every
+ * 2<sup><em>pageShift</em></sup> pixels.
+ * 
+ * @param <T>
+ * @param <A>
+ * 
+ * @author ImgLib2 developers
+ */
+public class PagedArrayImg< T extends NativeType< T >, A extends ArrayDataAccess< A > > extends AbstractNativeImg< T, A > implements SplittableIterable< T >
+{
+	/**
+	 * This interface is implemented by all samplers on the
+	 * {@link PagedArrayImg}. It allows the container to ask for the page the
+	 * sampler is currently in.
+	 */
+	public interface PagedContainerSampler
+	{
+		/**
+		 * @return the index of the page the sampler is currently accessing.
+		 */
+		public int getCurrentPageIndex();
+	}
+
+	final protected int pageShift;
+
+	final protected int pageSize;
+
+	final protected long pageMask;
+
+	final protected int numPages;
+
+	/**
+	 * dimensions and allocation steps of the flat storage.
+	 */
+	final protected long[] dim, steps;
+
+	final protected ArrayList< A > pages;
+
+	/**
+	 * Create a {@link PagedArrayImg}. Pages are created through
+	 * {@link ArrayDataAccess#createArray(int)} of <em>creator</em>.
+	 * 
+	 * @param creator
+	 *            used to create the pages.
+	 * @param dim
+	 *            dimensions of the image.
+	 * @param entitiesPerPixel
+	 * @param pageShift
+	 *            base 2 logarithm of the number of pixels per page.
+	 */
+	public PagedArrayImg( final A creator, final long[] dim, final Fraction entitiesPerPixel, final int pageShift )
+	{
+		super( dim, entitiesPerPixel );
+
+		this.pageShift = pageShift;
+		pageSize = 1 << pageShift;
+		pageMask = pageSize - 1;
+
+		final long numEntitiesPerPage = entitiesPerPixel.mulCeil( pageSize );
+		if ( numEntitiesPerPage > Integer.MAX_VALUE || numEntitiesPerPage * entitiesPerPixel.getDenominator() != pageSize * entitiesPerPixel.getNumerator() )
+			throw new RuntimeException( "Page size 2^" + pageShift + " does not hold a whole number of entities or is too big: " + numEntitiesPerPage );
+
+		final long np = ( ( numPixels - 1 ) >> pageShift ) + 1;
+		if ( np > Integer.MAX_VALUE )
+			throw new RuntimeException( "Number of pages in Container too big, use for example a bigger page size instead: " + np + " > " + Integer.MAX_VALUE );
+		numPages = ( int ) np;
+
+		this.dim = dim.clone();
+		steps = new long[ n ];
+		IntervalIndexer.createAllocationSteps( dim, steps );
+
+		pages = new ArrayList< A >( numPages );
+		for ( int i = 0; i < numPages - 1; ++i )
+			pages.add( creator.createArray( ( int ) numEntitiesPerPage ) );
+		final long pixelsInLastPage = numPixels - ( ( long ) ( numPages - 1 ) << pageShift );
+		pages.add( creator.createArray( ( int ) entitiesPerPixel.mulCeil( pixelsInLastPage ) ) );
+	}
+
+	@Override
+	public A update( final Object o )
+	{
+		final int i = ( ( PagedContainerSampler ) o ).getCurrentPageIndex();
+		return pages.get( i < 0 ? 0 : ( i >= numPages ? numPages - 1 : i ) );
+	}
+
+	/**
+	 * @return base 2 logarithm of the number of pixels per page.
+	 */
+	public int getPageShift()
+	{
+		return pageShift;
+	}
+
+	/**
+	 * @return total number of pages.
+	 */
+	public int numPages()
+	{
+		return numPages;
+	}
+
+	/**
+	 * Get the basic type array that stores page <em>no</em>.
+	 */
+	public A getPage( final int no )
+	{
+		return pages.get( no );
+	}
+
+	@Override
+	public PagedArrayCursor< T > cursor()
+	{
+		return new PagedArrayCursor< T >( this );
+	}
+
+	@Override
+	public PagedArrayLocalizingCursor< T > localizingCursor()
+	{
+		return new PagedArrayLocalizingCursor< T >( this );
+	}
+
+	@Override
+	public PagedArrayRandomAccess< T > randomAccess()
+	{
+		return new PagedArrayRandomAccess< T >( this );
+	}
+
+	@Override
+	public PagedArrayRandomAccess< T > randomAccess( final Interval interval )
+	{
+		return randomAccess();
+	}
+
+	@Override
+	public FlatIterationOrder iterationOrder()
+	{
+		return new FlatIterationOrder( this );
+	}
+
+	@Override
+	public PagedArrayImgFactory< T > factory()
+	{
+		return new PagedArrayImgFactory< T >( pageShift );
+	}
+
+	@Override
+	public PagedArrayImg< T, ? > copy()
+	{
+		final PagedArrayImg< T, ? > copy = factory().create( dimension, firstElement().createVariable() );
+		ImgUtil.copy( this, copy );
+		return copy;
+	}
+
+	/**
+	 * Chunks start at pages.
+	 */
+	@Override
+	public long chunkStart( final long index )
+	{
+		return index & ~pageMask;
+	}
+
+	@Override
+	public ChunkCursor< T > cursor( final long offset, final long size )
+	{
+		final PagedArrayCursor< T > start = cursor();
+		start.jumpFwd( offset );
+		return new ChunkCursor< T >( start, size );
+	}
+}
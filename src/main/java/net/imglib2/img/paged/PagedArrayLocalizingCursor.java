@@ -0,0 +1,201 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.paged;
+
+import net.imglib2.AbstractLocalizingCursor;
+import net.imglib2.Cursor;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * Localizing {@link Cursor} on a {@link PagedArrayImg}.
+ * 
+ * @param <T>
+ * 
+ * @author ImgLib2 developers
+ */
+public class PagedArrayLocalizingCursor< T extends NativeType< T > > extends AbstractLocalizingCursor< T > implements PagedArrayImg.PagedContainerSampler
+{
+	protected final T type;
+
+	protected final PagedArrayImg< T, ? > img;
+
+	protected final int lastPage;
+
+	protected final int lastIndexInLastPage;
+
+	/**
+	 * Maximum of the {@link PagedArrayImg} in every dimension.
+	 */
+	protected final long[] max;
+
+	protected int page;
+
+	protected int lastIndexInPage;
+
+	/**
+	 * The current index of the type within the current page. It is faster to
+	 * duplicate this here than to access it through type.getIndex().
+	 */
+	protected int index;
+
+	protected PagedArrayLocalizingCursor( final PagedArrayLocalizingCursor< T > cursor )
+	{
+		super( cursor.numDimensions() );
+
+		img = cursor.img;
+		type = img.createLinkedType();
+		lastPage = cursor.lastPage;
+		lastIndexInLastPage = cursor.lastIndexInLastPage;
+		max = cursor.max;
+		page = cursor.page;
+		lastIndexInPage = cursor.lastIndexInPage;
+		index = cursor.index;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = cursor.position[ d ];
+
+		type.updateContainer( this );
+		type.updateIndex( index );
+	}
+
+	public PagedArrayLocalizingCursor( final PagedArrayImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+
+		this.img = img;
+		type = img.createLinkedType();
+		lastPage = img.numPages - 1;
+		lastIndexInLastPage = ( int ) ( ( img.size() - 1 ) & img.pageMask );
+		max = new long[ n ];
+		img.max( max );
+
+		reset();
+	}
+
+	@Override
+	public int getCurrentPageIndex()
+	{
+		return page;
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public PagedArrayLocalizingCursor< T > copy()
+	{
+		return new PagedArrayLocalizingCursor< T >( this );
+	}
+
+	@Override
+	public PagedArrayLocalizingCursor< T > copyCursor()
+	{
+		return copy();
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return ( index < lastIndexInPage ) || ( page < lastPage );
+	}
+
+	@Override
+	public void fwd()
+	{
+		if ( ++index > lastIndexInPage )
+		{
+			setPage( page + 1 );
+			index = 0;
+		}
+		type.updateIndex( index );
+
+		if ( ++position[ 0 ] <= max[ 0 ] )
+			return;
+
+		position[ 0 ] = 0;
+		for ( int d = 1; d < n; ++d )
+		{
+			if ( ++position[ d ] <= max[ d ] )
+				break;
+			position[ d ] = 0;
+		}
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		final long flatIndex = getFlatIndex() + steps;
+		setPage( ( int ) ( flatIndex >> img.pageShift ) );
+		index = ( int ) ( flatIndex & img.pageMask );
+		type.updateIndex( index );
+		IntervalIndexer.indexToPosition( flatIndex, img.dim, position );
+	}
+
+	@Override
+	public void reset()
+	{
+		setPage( 0 );
+		index = -1;
+		type.updateIndex( index );
+
+		position[ 0 ] = -1;
+		for ( int d = 1; d < n; ++d )
+			position[ d ] = 0;
+	}
+
+	/**
+	 * @return the index of the current element in flat iteration order.
+	 */
+	public long getFlatIndex()
+	{
+		return ( ( long ) page << img.pageShift ) + index;
+	}
+
+	@Override
+	public String toString()
+	{
+		return type.toString();
+	}
+
+	private void setPage( final int p )
+	{
+		page = p;
+		lastIndexInPage = ( page == lastPage ) ? lastIndexInLastPage : img.pageSize - 1;
+		type.updateContainer( this );
+	}
+}
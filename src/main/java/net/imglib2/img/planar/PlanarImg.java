@@ -43,8 +43,11 @@ import net.imglib2.img.AbstractNativeImg;
 import net.imglib2.img.NativeImg;
 import net.imglib2.img.basictypeaccess.PlanarAccess;
 import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.iterator.ChunkCursor;
+import net.imglib2.iterator.SplittableIterable;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Fraction;
+import net.imglib2.util.ImgUtil;
 import net.imglib2.util.Intervals;
 import net.imglib2.view.iteration.SubIntervalIterable;
 
@@ -62,7 +65,7 @@ import net.imglib2.view.iteration.SubIntervalIterable;
  * @author Johannes Schindelin
  * @author Tobias Pietzsch
  */
-public class PlanarImg< T extends NativeType< T >, A extends ArrayDataAccess< A > > extends AbstractNativeImg< T, A > implements PlanarAccess< A >, SubIntervalIterable< T >
+public class PlanarImg< T extends NativeType< T >, A extends ArrayDataAccess< A > > extends AbstractNativeImg< T, A > implements PlanarAccess< A >, SubIntervalIterable< T >, SplittableIterable< T >
 {
 	final protected int numSlices;
 
@@ -291,13 +294,7 @@ public class PlanarImg< T extends NativeType< T >, A extends ArrayDataAccess< A
 	public PlanarImg< T, ? > copy()
 	{
 		final PlanarImg< T, ? > copy = factory().create( dimension, firstElement().createVariable() );
-
-		final PlanarCursor< T > cursor1 = this.cursor();
-		final PlanarCursor< T > cursor2 = copy.cursor();
-
-		while ( cursor1.hasNext() )
-			cursor2.next().set( cursor1.next() );
-
+		ImgUtil.copy( this, copy );
 		return copy;
 	}
 
@@ -391,4 +388,25 @@ public class PlanarImg< T extends NativeType< T >, A extends ArrayDataAccess< A
 			return new PlanarPlaneSubsetLocalizingCursor< T >( this, interval );
 		return new PlanarSubsetLocalizingCursor< T >( this, interval );
 	}
+
+	/**
+	 * Chunks start at planes.
+	 */
+	@Override
+	public long chunkStart( final long index )
+	{
+		final long planeSize = n > 1 ? ( long ) dimensions[ 0 ] * dimensions[ 1 ] : dimensions[ 0 ];
+		return index - index % planeSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ChunkCursor< T > cursor( final long offset, final long size )
+	{
+		final PlanarCursor< T > start = cursor();
+		start.jumpFwd( offset );
+		return new ChunkCursor< T >( start, size );
+	}
 }
@@ -34,9 +34,27 @@
 
 package net.imglib2.img.sparse;
 
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 /**
  * N-dimensional equivalent of a quad/oct-tree.
  * 
+ * <p>
+ * Reads ({@link #getNode(long[])}) do not lock. Nodes are only ever published
+ * fully initialized (children arrays are filled before they are attached, and
+ * a parent takes its children's value before they are detached), so a
+ * concurrent reader always sees a consistent value for its position.
+ * </p>
+ * 
+ * <p>
+ * Writes lock only the subtree they modify. The nodes at depth
+ * {@link #stripeDepth} partition the image into subtrees, each of which is
+ * guarded by one of {@link #NUM_STRIPES} stripe locks. A write that stays
+ * within its subtree holds the stripe lock and a shared structure lock. A
+ * write that has to split or merge a node above the stripe depth falls back
+ * to holding the structure lock exclusively.
+ * </p>
+ * 
  * @author Tobias Pietzsch
  */
 public final class Ntree< T extends Comparable< T >>
@@ -45,11 +63,11 @@ public final class Ntree< T extends Comparable< T >>
 	public static final class NtreeNode< T >
 	{
 
-		private T value;
+		private volatile T value;
 
 		private final NtreeNode< T > parent;
 
-		private NtreeNode< T >[] children;
+		private volatile NtreeNode< T >[] children;
 
 		public NtreeNode( final NtreeNode< T > parent, final T value )
 		{
@@ -84,6 +102,57 @@ public final class Ntree< T extends Comparable< T >>
 
 	}
 
+	/**
+	 * Statistics of a {@link Ntree#compact()} run.
+	 */
+	public static class CompactionStatistics
+	{
+		private final long numNodesBefore;
+
+		private final long numNodesAfter;
+
+		public CompactionStatistics( final long numNodesBefore, final long numNodesAfter )
+		{
+			this.numNodesBefore = numNodesBefore;
+			this.numNodesAfter = numNodesAfter;
+		}
+
+		/**
+		 * @return number of nodes before compaction.
+		 */
+		public long getNumNodesBefore()
+		{
+			return numNodesBefore;
+		}
+
+		/**
+		 * @return number of nodes after compaction.
+		 */
+		public long getNumNodesAfter()
+		{
+			return numNodesAfter;
+		}
+
+		/**
+		 * @return number of nodes removed by compaction.
+		 */
+		public long getNumNodesFreed()
+		{
+			return numNodesBefore - numNodesAfter;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format( "freed %d of %d nodes", getNumNodesFreed(), numNodesBefore );
+		}
+	}
+
+	/**
+	 * number of locks guarding the subtrees at {@link #stripeDepth}.
+	 */
+	static final int NUM_STRIPES = 64;
+
 	/**
 	 * number of dimensions.
 	 */
@@ -102,13 +171,31 @@ public final class Ntree< T extends Comparable< T >>
 	/**
 	 * Root of the tree
 	 */
-	NtreeNode< T > root;
+	final NtreeNode< T > root;
 
 	/**
 	 * dimensions of tree
 	 */
 	final long[] dimensions;
 
+	/**
+	 * depth of the nodes whose subtrees are guarded by the stripe locks. Nodes
+	 * above this depth are only modified while holding the structure lock
+	 * exclusively.
+	 */
+	final int stripeDepth;
+
+	/**
+	 * stripe locks for writes within a subtree at {@link #stripeDepth}.
+	 */
+	private final Object[] stripes;
+
+	/**
+	 * held shared by writes within a subtree, and exclusively by writes that
+	 * modify nodes above {@link #stripeDepth}.
+	 */
+	private final ReentrantReadWriteLock structureLock;
+
 	// /**
 	// * KNIME requirements, empty constructor for fast serialization
 	// */
@@ -142,6 +229,10 @@ public final class Ntree< T extends Comparable< T >>
 		this.numChildren = 1 << n;
 
 		this.root = new NtreeNode< T >( null, value );
+
+		this.stripeDepth = computeStripeDepth( numTreeLevels, numChildren );
+		this.stripes = createStripes();
+		this.structureLock = new ReentrantReadWriteLock();
 	}
 
 	/**
@@ -152,13 +243,15 @@ public final class Ntree< T extends Comparable< T >>
 	private NtreeNode< T > copyRecursively( final NtreeNode< T > node, final NtreeNode< T > newParent )
 	{
 		final NtreeNode< T > copy = new NtreeNode< T >( newParent, node.getValue() );
-		if ( node.hasChildren() )
+		final NtreeNode< T >[] children = node.children;
+		if ( children != null )
 		{
-			copy.children = new NtreeNode[ numChildren ];
+			final NtreeNode< T >[] copyChildren = new NtreeNode[ numChildren ];
 			for ( int i = 0; i < numChildren; ++i )
 			{
-				copy.children[ i ] = copyRecursively( node.children[ i ], copy );
+				copyChildren[ i ] = copyRecursively( children[ i ], copy );
 			}
+			copy.children = copyChildren;
 		}
 		return copy;
 	}
@@ -172,7 +265,67 @@ public final class Ntree< T extends Comparable< T >>
 		n = ntree.n;
 		numTreeLevels = ntree.numTreeLevels;
 		numChildren = ntree.numChildren;
-		root = copyRecursively( ntree.root, null );
+		stripeDepth = ntree.stripeDepth;
+		stripes = createStripes();
+		structureLock = new ReentrantReadWriteLock();
+		ntree.structureLock.writeLock().lock();
+		try
+		{
+			root = copyRecursively( ntree.root, null );
+		}
+		finally
+		{
+			ntree.structureLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Find the smallest depth at which there are at least {@link #NUM_STRIPES}
+	 * subtrees (or the leaf depth, if there are fewer).
+	 */
+	private static int computeStripeDepth( final int numTreeLevels, final int numChildren )
+	{
+		int depth = 0;
+		long numSubtrees = 1;
+		while ( numSubtrees < NUM_STRIPES && depth < numTreeLevels - 1 )
+		{
+			numSubtrees *= numChildren;
+			++depth;
+		}
+		return depth;
+	}
+
+	private Object[] createStripes()
+	{
+		final Object[] locks = new Object[ NUM_STRIPES ];
+		for ( int i = 0; i < NUM_STRIPES; ++i )
+			locks[ i ] = new Object();
+		return locks;
+	}
+
+	/**
+	 * Index of the child containing position on tree level l.
+	 */
+	private int childIndex( final long[] position, final int l )
+	{
+		final long bitmask = 1l << l;
+		int childindex = 0;
+		for ( int d = 0; d < n; ++d )
+			if ( ( position[ d ] & bitmask ) != 0 )
+				childindex |= 1 << d;
+		return childindex;
+	}
+
+	/**
+	 * Get the stripe lock guarding the subtree at {@link #stripeDepth} that
+	 * contains position.
+	 */
+	private Object stripe( final long[] position )
+	{
+		long subtree = 0;
+		for ( int l = numTreeLevels - 2; l > numTreeLevels - 2 - stripeDepth; --l )
+			subtree = subtree * numChildren + childIndex( position, l );
+		return stripes[ ( int ) ( subtree % NUM_STRIPES ) ];
 	}
 
 	/**
@@ -184,20 +337,15 @@ public final class Ntree< T extends Comparable< T >>
 	 *            a position inside the image.
 	 * @return the lowest-level node containing position.
 	 */
-	synchronized NtreeNode< T > getNode( final long[] position )
+	NtreeNode< T > getNode( final long[] position )
 	{
 		NtreeNode< T > current = root;
 		for ( int l = numTreeLevels - 2; l >= 0; --l )
 		{
-			if ( !current.hasChildren() )
+			final NtreeNode< T >[] children = current.children;
+			if ( children == null )
 				break;
-
-			final long bitmask = 1 << l;
-			int childindex = 0;
-			for ( int d = 0; d < n; ++d )
-				if ( ( position[ d ] & bitmask ) != 0 )
-					childindex |= 1 << d;
-			current = current.children[ childindex ];
+			current = children[ childIndex( position, l ) ];
 		}
 		return current;
 	}
@@ -210,25 +358,53 @@ public final class Ntree< T extends Comparable< T >>
 	 *            a position inside the image.
 	 * @return node containing exactly position.
 	 */
-	@SuppressWarnings( "unchecked" )
-	synchronized NtreeNode< T > createNode( final long[] position )
+	NtreeNode< T > createNode( final long[] position )
+	{
+		structureLock.readLock().lock();
+		try
+		{
+			synchronized ( stripe( position ) )
+			{
+				final NtreeNode< T > node = createNode( position, stripeDepth );
+				if ( node != null )
+					return node;
+			}
+		}
+		finally
+		{
+			structureLock.readLock().unlock();
+		}
+
+		structureLock.writeLock().lock();
+		try
+		{
+			return createNode( position, 0 );
+		}
+		finally
+		{
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Create a node containing only position, modifying only nodes at depth
+	 * minDepth or below.
+	 * 
+	 * @return node containing exactly position, or null if a node above
+	 *         minDepth would have to be split.
+	 */
+	private NtreeNode< T > createNode( final long[] position, final int minDepth )
 	{
 		NtreeNode< T > current = root;
-		for ( int l = numTreeLevels - 2; l >= 0; --l )
+		for ( int l = numTreeLevels - 2, depth = 0; l >= 0; --l, ++depth )
 		{
 			if ( !current.hasChildren() )
 			{
-				current.children = new NtreeNode[ numChildren ];
-				for ( int i = 0; i < numChildren; ++i )
-					current.children[ i ] = new NtreeNode< T >( current, current.getValue() );
+				if ( depth < minDepth )
+					return null;
+				split( current );
 			}
-
-			final long bitmask = 1 << l;
-			int childindex = 0;
-			for ( int d = 0; d < n; ++d )
-				if ( ( position[ d ] & bitmask ) != 0 )
-					childindex |= 1 << d;
-			current = current.children[ childindex ];
+			current = current.children[ childIndex( position, l ) ];
 		}
 		return current;
 	}
@@ -245,33 +421,105 @@ public final class Ntree< T extends Comparable< T >>
 	 *            value to store at position.
 	 * @return node containing position.
 	 */
-	@SuppressWarnings( "unchecked" )
-	synchronized NtreeNode< T > createNodeWithValue( final long[] position, final T value )
+	NtreeNode< T > createNodeWithValue( final long[] position, final T value )
+	{
+		NtreeNode< T > node;
+		structureLock.readLock().lock();
+		try
+		{
+			synchronized ( stripe( position ) )
+			{
+				node = createNodeWithValue( position, value, stripeDepth );
+			}
+		}
+		finally
+		{
+			structureLock.readLock().unlock();
+		}
+
+		// a node above the stripe depth has to be split, or the subtree
+		// became uniform and may be merged into its parent
+		if ( node == null || ( node.parent != null && isMergeable( node.parent ) ) )
+		{
+			structureLock.writeLock().lock();
+			try
+			{
+				if ( node == null )
+					return createNodeWithValue( position, value, 0 );
+				return mergeUpwards( node, 0 );
+			}
+			finally
+			{
+				structureLock.writeLock().unlock();
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Set the value at position, modifying only nodes at depth minDepth or
+	 * below.
+	 * 
+	 * @return node containing position, or null if a node above minDepth would
+	 *         have to be split.
+	 */
+	private NtreeNode< T > createNodeWithValue( final long[] position, final T value, final int minDepth )
 	{
 		NtreeNode< T > current = root;
-		for ( int l = numTreeLevels - 2; l >= 0; --l )
+		int depth = 0;
+		for ( int l = numTreeLevels - 2; l >= 0; --l, ++depth )
 		{
 			if ( !current.hasChildren() )
 			{
 				if ( current.getValue().compareTo( value ) == 0 )
 					return current;
-
-				current.children = new NtreeNode[ numChildren ];
-				for ( int i = 0; i < numChildren; ++i )
-					current.children[ i ] = new NtreeNode< T >( current, current.getValue() );
+				if ( depth < minDepth )
+					return null;
+				split( current );
 			}
-
-			final long bitmask = 1 << l;
-			int childindex = 0;
-			for ( int d = 0; d < n; ++d )
-				if ( ( position[ d ] & bitmask ) != 0 )
-					childindex |= 1 << d;
-			current = current.children[ childindex ];
+			current = current.children[ childIndex( position, l ) ];
 		}
 		if ( current.getValue().compareTo( value ) == 0 )
 			return current;
+		if ( depth < minDepth )
+			return null;
 		current.setValue( value );
-		return mergeUpwards( current );
+		return mergeUpwards( current, minDepth );
+	}
+
+	/**
+	 * Attach children to a leaf node, all of which have the value of the node.
+	 * The children array is filled before it is published, so that concurrent
+	 * readers never see a partially initialized array.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private void split( final NtreeNode< T > node )
+	{
+		final NtreeNode< T >[] children = new NtreeNode[ numChildren ];
+		for ( int i = 0; i < numChildren; ++i )
+			children[ i ] = new NtreeNode< T >( node, node.getValue() );
+		node.children = children;
+	}
+
+	/**
+	 * Check whether node has children which are all leaves with the same
+	 * value.
+	 */
+	private boolean isMergeable( final NtreeNode< T > node )
+	{
+		final NtreeNode< T >[] children = node.children;
+		if ( children == null )
+			return false;
+		final NtreeNode< T > child0 = children[ 0 ];
+		if ( child0.hasChildren() )
+			return false;
+		for ( int i = 1; i < numChildren; ++i )
+		{
+			final NtreeNode< T > child = children[ i ];
+			if ( child.hasChildren() || child0.getValue().compareTo( child.getValue() ) != 0 )
+				return false;
+		}
+		return true;
 	}
 
 	/**
@@ -285,21 +533,103 @@ public final class Ntree< T extends Comparable< T >>
 	 */
 	NtreeNode< T > mergeUpwards( final NtreeNode< T > node )
 	{
-		final NtreeNode< T > parent = node.parent;
-		if ( parent == null )
-			return node;
-		final NtreeNode< T > child0 = parent.children[ 0 ];
-		if ( child0.hasChildren() )
-			return node;
-		for ( int i = 1; i < numChildren; ++i )
+		return mergeUpwards( node, 0 );
+	}
+
+	/**
+	 * If all the children of our parent have the same value remove them all.
+	 * Call recursively for parent, but do not merge into nodes above minDepth.
+	 */
+	private NtreeNode< T > mergeUpwards( final NtreeNode< T > node, final int minDepth )
+	{
+		NtreeNode< T > current = node;
+		int depth = minDepth > 0 ? depth( node ) : Integer.MAX_VALUE;
+		while ( depth > minDepth )
 		{
-			final NtreeNode< T > child = parent.children[ i ];
-			if ( child.hasChildren() || child0.getValue().compareTo( child.getValue() ) != 0 )
-				return node;
+			final NtreeNode< T > parent = current.parent;
+			if ( parent == null )
+				return current;
+			if ( !isMergeable( parent ) )
+				return current;
+			// take the value before detaching the children, so that
+			// concurrent readers never see a stale value
+			parent.setValue( parent.children[ 0 ].getValue() );
+			parent.children = null;
+			current = parent;
+			--depth;
+		}
+		return current;
+	}
+
+	private int depth( final NtreeNode< T > node )
+	{
+		int d = 0;
+		for ( NtreeNode< T > p = node.parent; p != null; p = p.parent )
+			++d;
+		return d;
+	}
+
+	/**
+	 * Merge all subtrees whose leaves have uniform values. Writes through
+	 * {@link #createNodeWithValue(long[], Object)} merge incrementally, but
+	 * nodes created by {@link #createNode(long[])} or modified through
+	 * {@link NtreeNode#setValue(Object)} are not merged until compaction.
+	 * 
+	 * @return the number of nodes before and after compaction.
+	 */
+	public CompactionStatistics compact()
+	{
+		structureLock.writeLock().lock();
+		try
+		{
+			final long numNodes = numNodes( root );
+			final long numNodesFreed = compactRecursively( root );
+			return new CompactionStatistics( numNodes, numNodes - numNodesFreed );
+		}
+		finally
+		{
+			structureLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Merge uniform subtrees below node, bottom-up.
+	 * 
+	 * @return number of nodes removed.
+	 */
+	private long compactRecursively( final NtreeNode< T > node )
+	{
+		final NtreeNode< T >[] children = node.children;
+		if ( children == null )
+			return 0;
+		long numNodesFreed = 0;
+		for ( int i = 0; i < numChildren; ++i )
+			numNodesFreed += compactRecursively( children[ i ] );
+		if ( isMergeable( node ) )
+		{
+			node.setValue( children[ 0 ].getValue() );
+			node.children = null;
+			numNodesFreed += numChildren;
 		}
-		parent.setValue( child0.getValue() );
-		parent.children = null;
-		return mergeUpwards( parent );
+		return numNodesFreed;
+	}
+
+	/**
+	 * @return the number of nodes in the tree.
+	 */
+	public long numNodes()
+	{
+		return numNodes( root );
+	}
+
+	private long numNodes( final NtreeNode< T > node )
+	{
+		final NtreeNode< T >[] children = node.children;
+		long numNodes = 1;
+		if ( children != null )
+			for ( int i = 0; i < numChildren; ++i )
+				numNodes += numNodes( children[ i ] );
+		return numNodes;
 	}
 
 	/**
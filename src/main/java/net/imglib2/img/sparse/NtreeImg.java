@@ -39,6 +39,9 @@ import java.io.Serializable;
 import net.imglib2.FlatIterationOrder;
 import net.imglib2.img.AbstractNativeImg;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.iterator.ChunkCursor;
+import net.imglib2.iterator.SplittableIterable;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Fraction;
 
@@ -46,7 +49,7 @@ import net.imglib2.util.Fraction;
  * @author Tobias Pietzsch
  * 
  */
-public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?, A >> extends AbstractNativeImg< T, A > implements Serializable
+public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?, A >> extends AbstractNativeImg< T, A > implements Serializable, SplittableIterable< T >
 {
 
 	/**
@@ -57,12 +60,25 @@ public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?
 	// final Ntree<?> ntree;
 	final A data;
 
+	private final NativeImgFactory< T > factory;
+
 	public NtreeImg( final A data, final long[] dim, final Fraction entitiesPerPixel )
+	{
+		this( data, dim, entitiesPerPixel, new NtreeImgFactory< T >() );
+	}
+
+	/**
+	 * @param factory
+	 *            the factory that creates images with the same kind of
+	 *            storage, returned by {@link #factory()}.
+	 */
+	public NtreeImg( final A data, final long[] dim, final Fraction entitiesPerPixel, final NativeImgFactory< T > factory )
 	{
 		super( dim, entitiesPerPixel );
 
 		// this.ntree = new Ntree<Integer>(dimensions, 0);
 		this.data = data;
+		this.factory = factory;
 	}
 
 	private NtreeImg( final NtreeImg< T, A > img )
@@ -71,6 +87,7 @@ public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?
 
 		// this.ntree = new Ntree<Integer>(img.dimension, 0);
 		this.data = img.data;
+		this.factory = img.factory;
 	}
 
 	public static interface PositionProvider
@@ -112,7 +129,7 @@ public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?
 	@Override
 	public ImgFactory< T > factory()
 	{
-		return new NtreeImgFactory< T >();
+		return factory;
 	}
 
 	@Override
@@ -131,9 +148,35 @@ public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?
 		return copy;
 	}
 
+	/**
+	 * Merge all uniform subtrees of the storage and release unused memory.
+	 * 
+	 * @return statistics on the nodes freed.
+	 */
+	public Ntree.CompactionStatistics compact()
+	{
+		if ( data instanceof PackedNtreeAccess )
+			return ( ( PackedNtreeAccess ) data ).getPackedNtree().compact();
+		return data.getCurrentStorageNtree().compact();
+	}
+
 	@Override
 	public FlatIterationOrder iterationOrder()
 	{
 		return new FlatIterationOrder( this );
 	}
+
+	@Override
+	public long chunkStart( final long index )
+	{
+		return index;
+	}
+
+	@Override
+	public ChunkCursor< T > cursor( final long offset, final long size )
+	{
+		final NtreeCursor< T > start = cursor();
+		start.jumpFwd( offset );
+		return new ChunkCursor< T >( start, size );
+	}
 }
@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import net.imglib2.img.basictypeaccess.DoubleAccess;
+
+/**
+ * DoubleAccess based on a {@link PackedNtree}.
+ * 
+ * @author ImgLib2 developers
+ */
+public final class PackedDoubleNtree implements DoubleAccess, NtreeAccess< Double, PackedDoubleNtree >, PackedNtreeAccess
+{
+	private static final PackedNtree.Decoder< Double > decoder = new PackedNtree.Decoder< Double >()
+	{
+		@Override
+		public Double decode( final long bits )
+		{
+			return Double.longBitsToDouble( bits );
+		}
+	};
+
+	private final long[] position;
+
+	private final PackedNtree data;
+
+	public PackedDoubleNtree( final long[] dimensions, final long[] position, final double value )
+	{
+		this.data = new PackedNtree( dimensions, bits( value ) );
+		this.position = position;
+	}
+
+	/* Copy constructor */
+	private PackedDoubleNtree( final PackedNtree data, final long[] position )
+	{
+		this.data = data;
+		this.position = position;
+	}
+
+	private static long bits( final double value )
+	{
+		return Double.doubleToLongBits( value );
+	}
+
+	@Override
+	public double getValue( final int index )
+	{
+		// ignore index, get tree position from RandomAccess/Cursor
+		final long bits = data.get( position );
+		return Double.longBitsToDouble( bits );
+	}
+
+	@Override
+	public void setValue( final int index, final double value )
+	{
+		// ignore index, get tree position from RandomAccess/Cursor
+		data.set( position, bits( value ) );
+	}
+
+	/**
+	 * Returns an object-based copy of the current content.
+	 */
+	@Override
+	public Ntree< Double > getCurrentStorageNtree()
+	{
+		return data.toNtree( decoder );
+	}
+
+	@Override
+	public PackedNtree getPackedNtree()
+	{
+		return data;
+	}
+
+	@Override
+	public PackedDoubleNtree createInstance( final long[] pos )
+	{
+		return new PackedDoubleNtree( data, pos );
+	}
+}
@@ -0,0 +1,473 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Pointer-free variant of {@link Ntree}. Instead of one object per node, nodes
+ * are stored in primitive arrays. The children of a node are allocated as a
+ * block of {@link #numChildren} consecutive slots, ordered by their Morton
+ * (bit-interleaved) child index, so a node is described by the index of its
+ * first child and the bits of its value. Blocks released by merging are
+ * recycled for later splits.
+ * 
+ * <p>
+ * Values are stored as the raw bits of a primitive (see the typed accesses,
+ * e.g., {@link PackedIntNtree}). Nodes are merged when their values are
+ * bit-wise equal.
+ * </p>
+ * 
+ * <p>
+ * Reads do not lock. The node arrays are replaced as a whole when they grow
+ * or are compacted, and readers work on the arrays they found when they
+ * started. Splits initialize a block of children before linking it, and
+ * merges set the value of the parent before unlinking its children, so a
+ * reader always finds a value. A read that overlaps with the release of a
+ * block, which might be recycled by a concurrent split, is repeated while
+ * holding the lock. Writes are synchronized.
+ * </p>
+ * 
+ * @author ImgLib2 developers
+ */
+public final class PackedNtree
+{
+	/**
+	 * Converts value bits back to the (boxed) value type, see
+	 * {@link PackedNtree#toNtree(Decoder)}.
+	 */
+	static interface Decoder< L >
+	{
+		L decode( long bits );
+	}
+
+	/**
+	 * marks a leaf in {@link #firstChild}.
+	 */
+	private static final int LEAF = -1;
+
+	/**
+	 * number of dimensions.
+	 */
+	final int n;
+
+	/**
+	 * maximum depth of the tree.
+	 */
+	final int numTreeLevels;
+
+	/**
+	 * how many children (if any) each node has.
+	 */
+	final int numChildren;
+
+	/**
+	 * dimensions of tree
+	 */
+	final long[] dimensions;
+
+	/**
+	 * Node arrays, replaced as a whole when they grow or are compacted.
+	 */
+	private static final class Nodes
+	{
+		/**
+		 * for each node, the index of its first child, or
+		 * {@link PackedNtree#LEAF}. The root is node 0.
+		 */
+		final AtomicIntegerArray firstChild;
+
+		/**
+		 * for each node, the bits of its value.
+		 */
+		final AtomicLongArray values;
+
+		Nodes( final int capacity )
+		{
+			firstChild = new AtomicIntegerArray( capacity );
+			values = new AtomicLongArray( capacity );
+		}
+
+		/**
+		 * Copy the first <em>size</em> nodes of <em>nodes</em>.
+		 */
+		Nodes( final Nodes nodes, final int size, final int capacity )
+		{
+			this( capacity );
+			for ( int i = 0; i < size; ++i )
+			{
+				firstChild.lazySet( i, nodes.firstChild.get( i ) );
+				values.lazySet( i, nodes.values.get( i ) );
+			}
+		}
+
+		int capacity()
+		{
+			return firstChild.length();
+		}
+	}
+
+	private volatile Nodes nodes;
+
+	/**
+	 * incremented whenever a block is released, so that readers can detect
+	 * that a block they followed might have been recycled.
+	 */
+	private volatile long numReleases;
+
+	/**
+	 * number of node slots in use or on the free list.
+	 */
+	private int size;
+
+	/**
+	 * first child indices of released blocks.
+	 */
+	private int[] freeBlocks;
+
+	private int numFreeBlocks;
+
+	/**
+	 * node indices along the path of the last write.
+	 */
+	private final int[] path;
+
+	/**
+	 * Create a ntree structure capable of representing an array of the given
+	 * dimensions. Initially, the tree contains only a root node and represents
+	 * an array of uniform values.
+	 * 
+	 * @param dimensions
+	 *            of the array
+	 * @param value
+	 *            bits of the uniform value of all pixels in the array
+	 */
+	public PackedNtree( final long[] dimensions, final long value )
+	{
+		this.n = dimensions.length;
+
+		this.dimensions = dimensions.clone();
+
+		long maxdim = 0;
+		for ( int d = 0; d < n; ++d )
+			maxdim = Math.max( maxdim, dimensions[ d ] );
+		this.numTreeLevels = ( int ) Math.ceil( Math.log( maxdim ) / Math.log( 2 ) ) + 1;
+
+		this.numChildren = 1 << n;
+
+		final Nodes nodes = new Nodes( 1 );
+		nodes.firstChild.set( 0, LEAF );
+		nodes.values.set( 0, value );
+		this.nodes = nodes;
+		this.size = 1;
+		this.freeBlocks = new int[ 4 ];
+		this.numFreeBlocks = 0;
+		this.path = new int[ numTreeLevels ];
+	}
+
+	/**
+	 * Copy constructor. Create a deep copy of ntree.
+	 */
+	PackedNtree( final PackedNtree ntree )
+	{
+		synchronized ( ntree )
+		{
+			n = ntree.n;
+			numTreeLevels = ntree.numTreeLevels;
+			numChildren = ntree.numChildren;
+			dimensions = ntree.dimensions;
+			nodes = new Nodes( ntree.nodes, ntree.size, ntree.size );
+			size = ntree.size;
+			freeBlocks = Arrays.copyOf( ntree.freeBlocks, Math.max( 4, ntree.numFreeBlocks ) );
+			numFreeBlocks = ntree.numFreeBlocks;
+			path = new int[ numTreeLevels ];
+		}
+	}
+
+	/**
+	 * Index of the child containing position on tree level l.
+	 */
+	private int childIndex( final long[] position, final int l )
+	{
+		final long bitmask = 1l << l;
+		int childindex = 0;
+		for ( int d = 0; d < n; ++d )
+			if ( ( position[ d ] & bitmask ) != 0 )
+				childindex |= 1 << d;
+		return childindex;
+	}
+
+	/**
+	 * Get the bits of the value at position.
+	 * 
+	 * @param position
+	 *            a position inside the image.
+	 */
+	public long get( final long[] position )
+	{
+		final long releases = numReleases;
+		final long value = get( nodes, position );
+		if ( numReleases == releases )
+			return value;
+		synchronized ( this )
+		{
+			return get( nodes, position );
+		}
+	}
+
+	private long get( final Nodes nodes, final long[] position )
+	{
+		final AtomicIntegerArray firstChild = nodes.firstChild;
+		int node = 0;
+		for ( int l = numTreeLevels - 2; l >= 0; --l )
+		{
+			final int child = firstChild.get( node );
+			if ( child == LEAF )
+				break;
+			node = child + childIndex( position, l );
+		}
+		return nodes.values.get( node );
+	}
+
+	/**
+	 * Set the value at position. If necessary, nodes will be split. If
+	 * possible, nodes will be merged.
+	 * 
+	 * @param position
+	 *            a position inside the image.
+	 * @param value
+	 *            bits of the value to store at position.
+	 */
+	public synchronized void set( final long[] position, final long value )
+	{
+		int node = 0;
+		int depth = 0;
+		for ( int l = numTreeLevels - 2; l >= 0; --l, ++depth )
+		{
+			if ( nodes.firstChild.get( node ) == LEAF )
+			{
+				if ( nodes.values.get( node ) == value )
+					return;
+				split( node );
+			}
+			path[ depth ] = node;
+			node = nodes.firstChild.get( node ) + childIndex( position, l );
+		}
+		if ( nodes.values.get( node ) == value )
+			return;
+		nodes.values.lazySet( node, value );
+
+		// merge upwards
+		while ( depth > 0 && isMergeable( path[ depth - 1 ] ) )
+			merge( path[ --depth ] );
+	}
+
+	/**
+	 * Attach a block of children to a leaf node, all of which have the value of
+	 * the node.
+	 */
+	private void split( final int node )
+	{
+		final int child = allocateBlock();
+		final Nodes nodes = this.nodes;
+		final long value = nodes.values.get( node );
+		for ( int i = 0; i < numChildren; ++i )
+		{
+			nodes.firstChild.lazySet( child + i, LEAF );
+			nodes.values.lazySet( child + i, value );
+		}
+		nodes.firstChild.lazySet( node, child );
+	}
+
+	/**
+	 * Check whether node has children which are all leaves with the same
+	 * value.
+	 */
+	private boolean isMergeable( final int node )
+	{
+		final Nodes nodes = this.nodes;
+		final int child = nodes.firstChild.get( node );
+		if ( child == LEAF )
+			return false;
+		final long value = nodes.values.get( child );
+		for ( int i = 0; i < numChildren; ++i )
+			if ( nodes.firstChild.get( child + i ) != LEAF || nodes.values.get( child + i ) != value )
+				return false;
+		return true;
+	}
+
+	/**
+	 * Remove the children of node, which must be leaves with the same value.
+	 */
+	private void merge( final int node )
+	{
+		final Nodes nodes = this.nodes;
+		final int child = nodes.firstChild.get( node );
+		nodes.values.lazySet( node, nodes.values.get( child ) );
+		nodes.firstChild.lazySet( node, LEAF );
+		releaseBlock( child );
+	}
+
+	private int allocateBlock()
+	{
+		if ( numFreeBlocks > 0 )
+			return freeBlocks[ --numFreeBlocks ];
+
+		final int child = size;
+		final long newSize = ( long ) size + numChildren;
+		if ( newSize > Integer.MAX_VALUE - 8 )
+			throw new RuntimeException( "PackedNtree exceeds " + ( Integer.MAX_VALUE - 8 ) + " nodes." );
+		if ( newSize > nodes.capacity() )
+		{
+			final int capacity = ( int ) Math.min( Integer.MAX_VALUE - 8, Math.max( newSize, ( long ) nodes.capacity() * 3 / 2 ) );
+			nodes = new Nodes( nodes, size, capacity );
+		}
+		size = ( int ) newSize;
+		return child;
+	}
+
+	private void releaseBlock( final int child )
+	{
+		if ( numFreeBlocks == freeBlocks.length )
+			freeBlocks = Arrays.copyOf( freeBlocks, freeBlocks.length * 2 );
+		freeBlocks[ numFreeBlocks++ ] = child;
+		++numReleases;
+	}
+
+	/**
+	 * @return the number of nodes in the tree.
+	 */
+	public synchronized long numNodes()
+	{
+		return size - ( long ) numFreeBlocks * numChildren;
+	}
+
+	/**
+	 * @return the approximate number of bytes occupied by the node arrays.
+	 */
+	public synchronized long sizeInBytes()
+	{
+		return ( long ) nodes.capacity() * ( 4 + 8 ) + ( long ) freeBlocks.length * 4;
+	}
+
+	/**
+	 * Merge all subtrees whose leaves have uniform values and move the
+	 * remaining nodes into arrays without unused slots. Blocks released by
+	 * merging on write are otherwise only recycled by later splits, so this
+	 * returns the memory of a tree that has shrunk back to the allocator.
+	 * 
+	 * @return the number of nodes before and after compaction.
+	 */
+	public synchronized Ntree.CompactionStatistics compact()
+	{
+		final long numNodesBefore = numNodes();
+		compactRecursively( 0 );
+
+		final Nodes newNodes = new Nodes( ( int ) numNodes() );
+		newNodes.values.lazySet( 0, nodes.values.get( 0 ) );
+		final int newSize = relocate( 0, 0, newNodes, 1 );
+
+		nodes = newNodes;
+		size = newSize;
+		freeBlocks = new int[ 4 ];
+		numFreeBlocks = 0;
+		return new Ntree.CompactionStatistics( numNodesBefore, numNodes() );
+	}
+
+	/**
+	 * Merge uniform subtrees below node, bottom-up.
+	 */
+	private void compactRecursively( final int node )
+	{
+		final int child = nodes.firstChild.get( node );
+		if ( child == LEAF )
+			return;
+		for ( int i = 0; i < numChildren; ++i )
+			compactRecursively( child + i );
+		if ( isMergeable( node ) )
+			merge( node );
+	}
+
+	/**
+	 * Copy the children of node to newNode in the new arrays, depth-first.
+	 * 
+	 * @return the new number of used slots.
+	 */
+	private int relocate( final int node, final int newNode, final Nodes newNodes, int newSize )
+	{
+		final int child = nodes.firstChild.get( node );
+		if ( child == LEAF )
+		{
+			newNodes.firstChild.lazySet( newNode, LEAF );
+			return newSize;
+		}
+		final int newChild = newSize;
+		newNodes.firstChild.lazySet( newNode, newChild );
+		newSize += numChildren;
+		for ( int i = 0; i < numChildren; ++i )
+		{
+			newNodes.values.lazySet( newChild + i, nodes.values.get( child + i ) );
+			newSize = relocate( child + i, newChild + i, newNodes, newSize );
+		}
+		return newSize;
+	}
+
+	/**
+	 * Create an object-based {@link Ntree} with the same content.
+	 */
+	synchronized < L extends Comparable< L > > Ntree< L > toNtree( final Decoder< L > decoder )
+	{
+		final Ntree< L > ntree = new Ntree< L >( dimensions, decoder.decode( nodes.values.get( 0 ) ) );
+		copyChildren( 0, ntree.root, decoder );
+		return ntree;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private < L > void copyChildren( final int node, final Ntree.NtreeNode< L > ntreeNode, final Decoder< L > decoder )
+	{
+		final int child = nodes.firstChild.get( node );
+		if ( child == LEAF )
+			return;
+		final Ntree.NtreeNode< L >[] children = new Ntree.NtreeNode[ numChildren ];
+		for ( int i = 0; i < numChildren; ++i )
+		{
+			children[ i ] = new Ntree.NtreeNode< L >( ntreeNode, decoder.decode( nodes.values.get( child + i ) ) );
+			copyChildren( child + i, children[ i ], decoder );
+		}
+		ntreeNode.setChildren( children );
+	}
+}
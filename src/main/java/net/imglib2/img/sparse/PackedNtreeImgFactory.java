@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for {@link NtreeImg}s backed by the pointer-free
+ * {@link PackedNtree} instead of {@link Ntree}.
+ * 
+ * @author ImgLib2 developers
+ */
+public class PackedNtreeImgFactory< T extends NativeType< T >> extends NativeImgFactory< T >
+{
+	@Override
+	public NtreeImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( NtreeImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public NtreeImg< T, PackedByteNtree > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new NtreeImg< T, PackedByteNtree >( new PackedByteNtree( dimensions, new long[ dimensions.length ], ( byte ) 0 ), dimensions, entitiesPerPixel, this );
+	}
+
+	@Override
+	public NtreeImg< T, PackedCharNtree > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new NtreeImg< T, PackedCharNtree >( new PackedCharNtree( dimensions, new long[ dimensions.length ], ( char ) 0 ), dimensions, entitiesPerPixel, this );
+	}
+
+	@Override
+	public NtreeImg< T, PackedShortNtree > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new NtreeImg< T, PackedShortNtree >( new PackedShortNtree( dimensions, new long[ dimensions.length ], ( short ) 0 ), dimensions, entitiesPerPixel, this );
+	}
+
+	@Override
+	public NtreeImg< T, PackedIntNtree > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new NtreeImg< T, PackedIntNtree >( new PackedIntNtree( dimensions, new long[ dimensions.length ], 0 ), dimensions, entitiesPerPixel, this );
+	}
+
+	@Override
+	public NtreeImg< T, PackedLongNtree > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new NtreeImg< T, PackedLongNtree >( new PackedLongNtree( dimensions, new long[ dimensions.length ], 0 ), dimensions, entitiesPerPixel, this );
+	}
+
+	@Override
+	public NtreeImg< T, PackedFloatNtree > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new NtreeImg< T, PackedFloatNtree >( new PackedFloatNtree( dimensions, new long[ dimensions.length ], 0.0f ), dimensions, entitiesPerPixel, this );
+	}
+
+	@Override
+	public NtreeImg< T, PackedDoubleNtree > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new NtreeImg< T, PackedDoubleNtree >( new PackedDoubleNtree( dimensions, new long[ dimensions.length ], 0.0d ), dimensions, entitiesPerPixel, this );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new PackedNtreeImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
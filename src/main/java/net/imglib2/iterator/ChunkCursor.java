@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.iterator;
+
+import net.imglib2.AbstractCursor;
+import net.imglib2.Cursor;
+
+/**
+ * A {@link Cursor} that iterates a fixed number of elements of another
+ * {@link Cursor}, e.g., a {@link Chunk} of an
+ * {@link net.imglib2.IterableInterval}.
+ * 
+ * @author ImgLib2 developers
+ */
+public class ChunkCursor< T > extends AbstractCursor< T >
+{
+	/**
+	 * source cursor positioned before the first element of the chunk.
+	 */
+	protected final Cursor< T > start;
+
+	protected final long lastIndex;
+
+	protected Cursor< T > cursor;
+
+	protected long index;
+
+	protected ChunkCursor( final ChunkCursor< T > cursor )
+	{
+		super( cursor.numDimensions() );
+		start = cursor.start;
+		lastIndex = cursor.lastIndex;
+		this.cursor = cursor.cursor.copyCursor();
+		index = cursor.index;
+	}
+
+	/**
+	 * @param start
+	 *            cursor positioned right before the first element to iterate.
+	 *            It is not modified, but copied.
+	 * @param size
+	 *            number of elements to iterate.
+	 */
+	public ChunkCursor( final Cursor< T > start, final long size )
+	{
+		super( start.numDimensions() );
+		this.start = start.copyCursor();
+		lastIndex = size - 1;
+		reset();
+	}
+
+	@Override
+	public T get()
+	{
+		return cursor.get();
+	}
+
+	@Override
+	public void fwd()
+	{
+		cursor.fwd();
+		++index;
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		cursor.jumpFwd( steps );
+		index += steps;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return index < lastIndex;
+	}
+
+	@Override
+	public void reset()
+	{
+		cursor = start.copyCursor();
+		index = -1;
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		cursor.localize( position );
+	}
+
+	@Override
+	public void localize( final int[] position )
+	{
+		cursor.localize( position );
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		return cursor.getLongPosition( d );
+	}
+
+	@Override
+	public int getIntPosition( final int d )
+	{
+		return cursor.getIntPosition( d );
+	}
+
+	@Override
+	public ChunkCursor< T > copy()
+	{
+		return new ChunkCursor< T >( this );
+	}
+
+	@Override
+	public ChunkCursor< T > copyCursor()
+	{
+		return copy();
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.iterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+
+/**
+ * Split {@link IterableInterval IterableIntervals} into disjoint
+ * {@link Chunk Chunks} of their iteration order and process them in
+ * parallel.
+ * 
+ * If the {@link IterableInterval} implements {@link SplittableIterable}, the
+ * chunks are aligned to its storage, e.g., planes of a
+ * {@link net.imglib2.img.planar.PlanarImg} or cells of a
+ * {@link net.imglib2.img.cell.CellImg}, and the chunk cursors are created by
+ * the container. Otherwise, the iteration order is split into chunks of equal
+ * size, and the chunk cursors are created using {@link Cursor#jumpFwd(long)}.
+ * 
+ * <pre>
+ * final List&lt; Double &gt; sums = Chunks.map( img, service, numThreads, new Chunks.Task&lt; FloatType, Double &gt;()
+ * {
+ *   public Double run( final Cursor&lt; FloatType &gt; cursor )
+ *   {
+ *     double sum = 0;
+ *     while ( cursor.hasNext() )
+ *       sum += cursor.next().get();
+ *     return sum;
+ *   }
+ * } );
+ * </pre>
+ * 
+ * @author ImgLib2 developers
+ */
+public class Chunks
+{
+	/**
+	 * Processes one {@link Chunk}.
+	 * 
+	 * @param <T>
+	 *            pixel type.
+	 * @param <R>
+	 *            result type.
+	 */
+	public interface Task< T, R >
+	{
+		/**
+		 * @param cursor
+		 *            iterates the elements of the chunk.
+		 * 
+		 * @return the result for this chunk.
+		 */
+		public R run( Cursor< T > cursor );
+	}
+
+	/**
+	 * Split the iteration order of <em>ii</em> into at most
+	 * <em>numChunks</em> non-empty chunks of approximately equal size. If
+	 * <em>ii</em> is a {@link SplittableIterable}, chunk boundaries are moved
+	 * back to the start of the storage block they fall into, so there may be
+	 * less chunks than requested.
+	 */
+	public static List< Chunk > split( final IterableInterval< ? > ii, final int numChunks )
+	{
+		final long size = ii.size();
+		final SplittableIterable< ? > splittable = ii instanceof SplittableIterable ? ( SplittableIterable< ? > ) ii : null;
+		final ArrayList< Chunk > chunks = new ArrayList< Chunk >( numChunks );
+		long offset = 0;
+		for ( int i = 1; i <= numChunks && offset < size; ++i )
+		{
+			long end = i == numChunks ? size : size / numChunks * i + size % numChunks * i / numChunks;
+			if ( end < size && splittable != null )
+				end = splittable.chunkStart( end );
+			if ( end > offset )
+			{
+				chunks.add( new Chunk( offset, end - offset ) );
+				offset = end;
+			}
+		}
+		return chunks;
+	}
+
+	/**
+	 * Create a {@link Cursor} that iterates the elements of a {@link Chunk} of
+	 * <em>ii</em>.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public static < T > Cursor< T > cursor( final IterableInterval< T > ii, final Chunk chunk )
+	{
+		if ( ii instanceof SplittableIterable )
+			return ( ( SplittableIterable< T > ) ii ).cursor( chunk.getOffset(), chunk.getSize() );
+		final Cursor< T > start = ii.cursor();
+		start.jumpFwd( chunk.getOffset() );
+		return new ChunkCursor< T >( start, chunk.getSize() );
+	}
+
+	/**
+	 * Split <em>ii</em> into at most <em>numChunks</em> chunks (see
+	 * {@link #split(IterableInterval, int)}) and run <em>task</em> on each of
+	 * them, using the given {@link ExecutorService}.
+	 * 
+	 * @return the results of all chunks, in iteration order.
+	 */
+	public static < T, R > List< R > map( final IterableInterval< T > ii, final ExecutorService service, final int numChunks, final Task< T, R > task )
+	{
+		final List< Chunk > chunks = split( ii, numChunks );
+		final ArrayList< R > results = new ArrayList< R >( chunks.size() );
+		if ( chunks.size() == 1 )
+		{
+			results.add( task.run( cursor( ii, chunks.get( 0 ) ) ) );
+			return results;
+		}
+
+		final ArrayList< Callable< R > > tasks = new ArrayList< Callable< R > >( chunks.size() );
+		for ( final Chunk chunk : chunks )
+			tasks.add( new Callable< R >()
+			{
+				@Override
+				public R call()
+				{
+					return task.run( cursor( ii, chunk ) );
+				}
+			} );
+
+		try
+		{
+			for ( final Future< R > future : service.invokeAll( tasks ) )
+				results.add( future.get() );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			throw new RuntimeException( e.getCause() );
+		}
+		return results;
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.EuclideanSpace;
+import net.imglib2.GridIndex;
+import net.imglib2.util.SquareDistance;
+
+/**
+ * Cell traversal shared by the searches on {@link GridIndex}. Nearest and
+ * k-nearest neighbor searches visit shells of cells with increasing Chebyshev
+ * distance from the cell containing the reference, until no cell outside the
+ * visited shells can contain a closer point. Radius searches visit the cells
+ * overlapping the bounding box of the search sphere. Cells that are farther
+ * from the reference than {@link #squBound()} are skipped.
+ * 
+ * @author ImgLib2 developers
+ */
+abstract class AbstractGridIndexSearch< T > implements EuclideanSpace
+{
+	protected final GridIndex< T > grid;
+
+	protected final int n;
+
+	protected final double cellSize;
+
+	protected final int[] gridDimensions;
+
+	/**
+	 * origin of the grid.
+	 */
+	protected final double[] origin;
+
+	protected final int[] cellStart;
+
+	protected final double[] positions;
+
+	protected final double[] pos;
+
+	/**
+	 * squared distances of the points in the current cell, computed by
+	 * {@link #computeSquDistances(int)}.
+	 */
+	protected final double[] cellSquDistances;
+
+	/**
+	 * grid coordinates of the cell containing the reference, clamped to the
+	 * grid.
+	 */
+	protected final int[] center;
+
+	private final int[] lo;
+
+	private final int[] hi;
+
+	private final int[] c;
+
+	public AbstractGridIndexSearch( final GridIndex< T > grid )
+	{
+		this.grid = grid;
+		this.n = grid.numDimensions();
+		this.cellSize = grid.cellSize();
+		this.gridDimensions = new int[ n ];
+		this.origin = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+			gridDimensions[ d ] = grid.gridDimension( d );
+		grid.realMin( origin );
+		this.cellStart = grid.getCellStarts();
+		this.positions = grid.getPositions();
+		this.pos = new double[ n ];
+		this.cellSquDistances = new double[ grid.maxCellSize() ];
+		this.center = new int[ n ];
+		this.lo = new int[ n ];
+		this.hi = new int[ n ];
+		this.c = new int[ n ];
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Consider the points {@code cellStart[cell]} to
+	 * {@code cellStart[cell+1]-1}.
+	 */
+	protected abstract void searchCell( final int cell );
+
+	/**
+	 * Compute the squared distances from the reference to the points of a
+	 * cell into {@link #cellSquDistances}.
+	 * 
+	 * @return index of the first point of the cell.
+	 */
+	protected int computeSquDistances( final int cell )
+	{
+		final int from = cellStart[ cell ];
+		SquareDistance.squDistances( positions, from, cellStart[ cell + 1 ], pos, n, cellSquDistances );
+		return from;
+	}
+
+	/**
+	 * @return squared distance beyond which points are not of interest.
+	 */
+	protected abstract double squBound();
+
+	/**
+	 * Search shells of cells around the reference {@link #pos} until
+	 * {@link #squBound()} is less than the distance to any unvisited cell.
+	 */
+	protected void searchShells()
+	{
+		int maxR = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			center[ d ] = grid.gridCoordinate( pos[ d ], d );
+			maxR = Math.max( maxR, Math.max( center[ d ], gridDimensions[ d ] - 1 - center[ d ] ) );
+		}
+		for ( int r = 0; r <= maxR; ++r )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				lo[ d ] = Math.max( 0, center[ d ] - r );
+				hi[ d ] = Math.min( gridDimensions[ d ] - 1, center[ d ] + r );
+			}
+			searchCells( r );
+			if ( squBound() <= squDistanceBeyondShell( r ) )
+				break;
+		}
+	}
+
+	/**
+	 * Search the cells overlapping the bounding box of the sphere with the
+	 * given radius around the reference {@link #pos}.
+	 */
+	protected void searchBox( final double radius )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( pos[ d ] + radius < origin[ d ] || pos[ d ] - radius >= origin[ d ] + gridDimensions[ d ] * cellSize )
+				return;
+			lo[ d ] = grid.gridCoordinate( pos[ d ] - radius, d );
+			hi[ d ] = grid.gridCoordinate( pos[ d ] + radius, d );
+		}
+		searchCells( 0 );
+	}
+
+	/**
+	 * Search the cells in the box {@link #lo} to {@link #hi} that have
+	 * Chebyshev distance at least minR from {@link #center}.
+	 */
+	private void searchCells( final int minR )
+	{
+		for ( int d = 0; d < n; ++d )
+			c[ d ] = lo[ d ];
+		while ( true )
+		{
+			if ( minR == 0 || onShell( minR ) )
+			{
+				if ( squDistanceToCell() <= squBound() )
+				{
+					int cell = 0;
+					for ( int d = n - 1; d >= 0; --d )
+						cell = cell * gridDimensions[ d ] + c[ d ];
+					if ( cellStart[ cell ] < cellStart[ cell + 1 ] )
+						searchCell( cell );
+				}
+			}
+			else
+			{
+				// skip to the last interior cell of this row
+				c[ 0 ] = Math.min( hi[ 0 ], center[ 0 ] + minR - 1 );
+			}
+
+			int d = 0;
+			for ( ; d < n; ++d )
+			{
+				if ( ++c[ d ] <= hi[ d ] )
+					break;
+				c[ d ] = lo[ d ];
+			}
+			if ( d == n )
+				return;
+		}
+	}
+
+	private boolean onShell( final int r )
+	{
+		for ( int d = 0; d < n; ++d )
+			if ( Math.abs( c[ d ] - center[ d ] ) >= r )
+				return true;
+		return false;
+	}
+
+	/**
+	 * Squared distance from the reference to the current cell {@link #c}.
+	 */
+	private double squDistanceToCell()
+	{
+		double sum = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double cellMin = origin[ d ] + c[ d ] * cellSize;
+			final double diff = pos[ d ] < cellMin ? cellMin - pos[ d ] : pos[ d ] - ( cellMin + cellSize );
+			if ( diff > 0 )
+				sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Squared distance from the reference to the nearest cell with Chebyshev
+	 * distance greater than r from {@link #center}.
+	 */
+	private double squDistanceBeyondShell( final int r )
+	{
+		double distance = Double.MAX_VALUE;
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( center[ d ] - r > 0 )
+				distance = Math.min( distance, pos[ d ] - ( origin[ d ] + ( center[ d ] - r ) * cellSize ) );
+			if ( center[ d ] + r < gridDimensions[ d ] - 1 )
+				distance = Math.min( distance, origin[ d ] + ( center[ d ] + r + 1 ) * cellSize - pos[ d ] );
+		}
+		return distance == Double.MAX_VALUE ? Double.MAX_VALUE : distance * distance;
+	}
+}
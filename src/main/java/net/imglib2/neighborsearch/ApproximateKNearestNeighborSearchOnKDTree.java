@@ -0,0 +1,126 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.KDTree;
+import net.imglib2.KDTreeNode;
+
+/**
+ * Approximate {@link KNearestNeighborSearch} for kd-trees. A branch of the
+ * tree is only searched if it may contain a point that is closer than the
+ * current <em>k</em><sup>th</sup> best distance divided by
+ * {@code 1 + epsilon}. The <em>i</em><sup>th</sup> returned neighbor is
+ * therefore at most {@code 1 + epsilon} times farther from the reference than
+ * the true <em>i</em><sup>th</sup> nearest neighbor. With
+ * {@code epsilon = 0}, the search is exact.
+ * 
+ * @author ImgLib2 developers
+ */
+public class ApproximateKNearestNeighborSearchOnKDTree< T > extends KNearestNeighborSearchOnKDTree< T >
+{
+	protected final double epsilon;
+
+	/**
+	 * {@code (1 + epsilon)^2}
+	 */
+	protected final double squFactor;
+
+	/**
+	 * @param tree
+	 *            the tree to search
+	 * @param k
+	 *            the number of neighbors to search
+	 * @param epsilon
+	 *            the maximal relative error of the distances to the returned
+	 *            neighbors.
+	 */
+	public ApproximateKNearestNeighborSearchOnKDTree( final KDTree< T > tree, final int k, final double epsilon )
+	{
+		super( tree, k );
+		assert epsilon >= 0;
+		this.epsilon = epsilon;
+		this.squFactor = ( 1 + epsilon ) * ( 1 + epsilon );
+	}
+
+	public double getEpsilon()
+	{
+		return epsilon;
+	}
+
+	@Override
+	protected void searchNode( final KDTreeNode< T > current )
+	{
+		// consider the current node
+		final double squDistance = current.squDistanceTo( pos );
+		if ( squDistance < bestSquDistances[ k - 1 ] )
+		{
+			int i = k - 1;
+			for ( int j = i - 1; i > 0 && squDistance < bestSquDistances[ j ]; --i, --j )
+			{
+				bestSquDistances[ i ] = bestSquDistances[ j ];
+				bestPoints[ i ] = bestPoints[ j ];
+			}
+			bestSquDistances[ i ] = squDistance;
+			bestPoints[ i ] = current;
+		}
+
+		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final KDTreeNode< T > nearChild = leftIsNearBranch ? current.left : current.right;
+		final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
+		if ( nearChild != null )
+			searchNode( nearChild );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance * squFactor <= bestSquDistances[ k - 1 ] ) && ( awayChild != null ) )
+			searchNode( awayChild );
+	}
+
+	@Override
+	public ApproximateKNearestNeighborSearchOnKDTree< T > copy()
+	{
+		final ApproximateKNearestNeighborSearchOnKDTree< T > copy = new ApproximateKNearestNeighborSearchOnKDTree< T >( tree, k, epsilon );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		for ( int i = 0; i < k; ++i )
+		{
+			copy.bestPoints[ i ] = bestPoints[ i ];
+			copy.bestSquDistances[ i ] = bestSquDistances[ i ];
+		}
+		return copy;
+	}
+}
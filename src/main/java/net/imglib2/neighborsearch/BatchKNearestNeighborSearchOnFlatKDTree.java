@@ -0,0 +1,274 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.IterableRealInterval;
+import net.imglib2.RealCursor;
+import net.imglib2.util.SquareDistance;
+
+/**
+ * <em>k</em>-nearest-neighbor search for many reference points at once on a
+ * {@link FlatKDTree}. Results are written to primitive arrays provided by the
+ * caller: for the <em>q</em><sup>th</sup> reference point, the heap indices
+ * (see {@link FlatKDTree#getValue(int)}) and square Euclidean distances of its
+ * neighbors, ordered by distance, are stored at elements {@code q*k} to
+ * {@code q*k+k-1}. If the tree has less than <em>k</em> nodes, the remaining
+ * elements are set to index -1 and distance {@link Double#MAX_VALUE}.
+ * 
+ * <p>
+ * The tree is traversed iteratively with an explicit stack. Apart from one
+ * stack per task, no memory is allocated during a search. Unlike
+ * {@link KNearestNeighborSearchOnFlatKDTree}, instances have no mutable state
+ * and can be shared between threads.
+ * </p>
+ * 
+ * @author ImgLib2 developers
+ */
+public class BatchKNearestNeighborSearchOnFlatKDTree< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final int size;
+
+	protected final double[] positions;
+
+	protected final int k;
+
+	public BatchKNearestNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree, final int k )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.size = tree.intSize();
+		this.positions = tree.getPositions();
+		this.k = k;
+	}
+
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	public int getK()
+	{
+		return k;
+	}
+
+	/**
+	 * Search the neighbors of all reference points on the calling thread.
+	 * 
+	 * @param references
+	 *            coordinates of the reference points, reference {@code q}
+	 *            occupies elements {@code q*n} to {@code q*n+n-1}.
+	 * @param indices
+	 *            receives the heap indices of the neighbors
+	 * @param squDistances
+	 *            receives the square distances of the neighbors
+	 */
+	public void search( final double[] references, final int[] indices, final double[] squDistances )
+	{
+		search( references, indices, squDistances, 0, references.length / n );
+	}
+
+	/**
+	 * Search the neighbors of all reference points in parallel.
+	 * 
+	 * @param references
+	 *            coordinates of the reference points, reference {@code q}
+	 *            occupies elements {@code q*n} to {@code q*n+n-1}.
+	 * @param indices
+	 *            receives the heap indices of the neighbors
+	 * @param squDistances
+	 *            receives the square distances of the neighbors
+	 * @param service
+	 *            executor for the parallel tasks
+	 * @param numTasks
+	 *            the number of tasks among which the reference points are
+	 *            divided
+	 */
+	public void search( final double[] references, final int[] indices, final double[] squDistances, final ExecutorService service, final int numTasks )
+	{
+		final int numReferences = references.length / n;
+		if ( service == null || numTasks <= 1 )
+		{
+			search( references, indices, squDistances, 0, numReferences );
+			return;
+		}
+
+		final List< Callable< Void > > tasks = new ArrayList< Callable< Void > >( numTasks );
+		for ( int t = 0; t < numTasks; ++t )
+		{
+			final int from = ( int ) ( ( long ) numReferences * t / numTasks );
+			final int to = ( int ) ( ( long ) numReferences * ( t + 1 ) / numTasks );
+			if ( to > from )
+				tasks.add( new Callable< Void >()
+				{
+					@Override
+					public Void call()
+					{
+						search( references, indices, squDistances, from, to );
+						return null;
+					}
+				} );
+		}
+		try
+		{
+			for ( final Future< Void > future : service.invokeAll( tasks ) )
+				future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			throw new RuntimeException( e.getCause() );
+		}
+	}
+
+	/**
+	 * Search the neighbors of all elements of references in parallel.
+	 * 
+	 * @param references
+	 *            the reference points, results are ordered by the iteration
+	 *            order of references.
+	 * @param indices
+	 *            receives the heap indices of the neighbors
+	 * @param squDistances
+	 *            receives the square distances of the neighbors
+	 * @param service
+	 *            executor for the parallel tasks, or null to search on the
+	 *            calling thread
+	 * @param numTasks
+	 *            the number of tasks among which the reference points are
+	 *            divided
+	 */
+	public void search( final IterableRealInterval< ? > references, final int[] indices, final double[] squDistances, final ExecutorService service, final int numTasks )
+	{
+		final double[] coordinates = new double[ ( int ) references.size() * n ];
+		final RealCursor< ? > cursor = references.localizingCursor();
+		for ( int i = 0; cursor.hasNext(); i += n )
+		{
+			cursor.fwd();
+			for ( int d = 0; d < n; ++d )
+				coordinates[ i + d ] = cursor.getDoublePosition( d );
+		}
+		search( coordinates, indices, squDistances, service, numTasks );
+	}
+
+	/**
+	 * Search the neighbors of reference points {@code from} (inclusive) to
+	 * {@code to} (exclusive).
+	 */
+	protected void search( final double[] references, final int[] indices, final double[] squDistances, final int from, final int to )
+	{
+		// the stack holds away branches that may have to be searched, and
+		// their distance to the reference along the split axis. It never
+		// holds more than one branch per level of the tree.
+		final int capacity = 33 - Integer.numberOfLeadingZeros( Math.max( size, 1 ) );
+		final int[] stackNodes = new int[ capacity ];
+		final double[] stackSquDistances = new double[ capacity ];
+
+		for ( int q = from; q < to; ++q )
+		{
+			final int r = q * n;
+			final int offset = q * k;
+			for ( int i = 0; i < k; ++i )
+			{
+				indices[ offset + i ] = -1;
+				squDistances[ offset + i ] = Double.MAX_VALUE;
+			}
+			if ( size == 0 )
+				continue;
+
+			final int last = offset + k - 1;
+			int top = 0;
+			stackNodes[ 0 ] = 0;
+			stackSquDistances[ 0 ] = 0;
+			++top;
+			while ( top > 0 )
+			{
+				--top;
+				if ( stackSquDistances[ top ] > squDistances[ last ] )
+					continue;
+
+				// descend to a leaf, along the near branches
+				int current = stackNodes[ top ];
+				int d = tree.splitDimension( current );
+				while ( true )
+				{
+					final int p = current * n;
+					final double squDistance = SquareDistance.squDistance( positions, p, references, r, n );
+					if ( squDistance < squDistances[ last ] )
+					{
+						int i = last;
+						for ( int j = i - 1; i > offset && squDistance < squDistances[ j ]; --i, --j )
+						{
+							squDistances[ i ] = squDistances[ j ];
+							indices[ i ] = indices[ j ];
+						}
+						squDistances[ i ] = squDistance;
+						indices[ i ] = current;
+					}
+
+					final double axisDiff = references[ r + d ] - positions[ p + d ];
+					final int left = 2 * current + 1;
+					final int nearChild = axisDiff < 0 ? left : left + 1;
+					final int awayChild = axisDiff < 0 ? left + 1 : left;
+					if ( awayChild < size )
+					{
+						stackNodes[ top ] = awayChild;
+						stackSquDistances[ top ] = axisDiff * axisDiff;
+						++top;
+					}
+					if ( nearChild >= size )
+						break;
+					current = nearChild;
+					d = ( d + 1 == n ) ? 0 : d + 1;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.KDTree;
+import net.imglib2.KDTreeNode;
+import net.imglib2.RealLocalizable;
+
+/**
+ * Best-bin-first {@link KNearestNeighborSearch} for kd-trees. Unexplored
+ * branches are kept in a priority queue ordered by their distance to the
+ * reference along the split axis, and the closest branch is explored next.
+ * The search stops when the queue holds no branch that may contain a point
+ * closer than the current <em>k</em><sup>th</sup> best distance divided by
+ * {@code 1 + epsilon}, or after visiting {@code maxNodes} nodes, whichever
+ * comes first. The latter bounds the time of a search, at the cost of
+ * potentially missing the true nearest neighbors.
+ * 
+ * @author ImgLib2 developers
+ */
+public class BestBinFirstKNearestNeighborSearchOnKDTree< T > extends KNearestNeighborSearchOnKDTree< T >
+{
+	protected final int maxNodes;
+
+	protected final double epsilon;
+
+	/**
+	 * {@code (1 + epsilon)^2}
+	 */
+	protected final double squFactor;
+
+	/**
+	 * binary min-heap of branches to explore, ordered by
+	 * {@link #queueSquDistances}.
+	 */
+	protected KDTreeNode< T >[] queueNodes;
+
+	protected double[] queueSquDistances;
+
+	protected int queueSize;
+
+	protected int numVisitedNodes;
+
+	/**
+	 * @param tree
+	 *            the tree to search
+	 * @param k
+	 *            the number of neighbors to search
+	 * @param maxNodes
+	 *            the maximal number of nodes to visit in one search
+	 */
+	public BestBinFirstKNearestNeighborSearchOnKDTree( final KDTree< T > tree, final int k, final int maxNodes )
+	{
+		this( tree, k, maxNodes, 0 );
+	}
+
+	/**
+	 * @param tree
+	 *            the tree to search
+	 * @param k
+	 *            the number of neighbors to search
+	 * @param maxNodes
+	 *            the maximal number of nodes to visit in one search
+	 * @param epsilon
+	 *            the maximal relative error of the distances to the returned
+	 *            neighbors, if the search is not stopped by maxNodes.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public BestBinFirstKNearestNeighborSearchOnKDTree( final KDTree< T > tree, final int k, final int maxNodes, final double epsilon )
+	{
+		super( tree, k );
+		assert maxNodes > 0;
+		assert epsilon >= 0;
+		this.maxNodes = maxNodes;
+		this.epsilon = epsilon;
+		this.squFactor = ( 1 + epsilon ) * ( 1 + epsilon );
+		this.queueNodes = new KDTreeNode[ 64 ];
+		this.queueSquDistances = new double[ 64 ];
+	}
+
+	public int getMaxNodes()
+	{
+		return maxNodes;
+	}
+
+	public double getEpsilon()
+	{
+		return epsilon;
+	}
+
+	/**
+	 * @return the number of nodes visited by the last search.
+	 */
+	public int getNumVisitedNodes()
+	{
+		return numVisitedNodes;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		reference.localize( pos );
+		for ( int i = 0; i < k; ++i )
+		{
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+			bestPoints[ i ] = null;
+		}
+		numVisitedNodes = 0;
+		queueSize = 0;
+		push( tree.getRoot(), 0 );
+		while ( queueSize > 0 && numVisitedNodes < maxNodes )
+		{
+			if ( queueSquDistances[ 0 ] * squFactor > bestSquDistances[ k - 1 ] )
+				break;
+			KDTreeNode< T > current = pop();
+
+			// descend to a leaf, along the near branches
+			while ( current != null && numVisitedNodes < maxNodes )
+			{
+				++numVisitedNodes;
+				final double squDistance = current.squDistanceTo( pos );
+				if ( squDistance < bestSquDistances[ k - 1 ] )
+				{
+					int i = k - 1;
+					for ( int j = i - 1; i > 0 && squDistance < bestSquDistances[ j ]; --i, --j )
+					{
+						bestSquDistances[ i ] = bestSquDistances[ j ];
+						bestPoints[ i ] = bestPoints[ j ];
+					}
+					bestSquDistances[ i ] = squDistance;
+					bestPoints[ i ] = current;
+				}
+
+				final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
+				final double axisSquDistance = axisDiff * axisDiff;
+				final boolean leftIsNearBranch = axisDiff < 0;
+				final KDTreeNode< T > nearChild = leftIsNearBranch ? current.left : current.right;
+				final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
+				if ( awayChild != null && axisSquDistance * squFactor <= bestSquDistances[ k - 1 ] )
+					push( awayChild, axisSquDistance );
+				current = nearChild;
+			}
+		}
+		Arrays.fill( queueNodes, 0, queueSize, null );
+		queueSize = 0;
+	}
+
+	protected void push( final KDTreeNode< T > node, final double squDistance )
+	{
+		if ( queueSize == queueNodes.length )
+		{
+			queueNodes = Arrays.copyOf( queueNodes, 2 * queueSize );
+			queueSquDistances = Arrays.copyOf( queueSquDistances, 2 * queueSize );
+		}
+		int i = queueSize++;
+		while ( i > 0 )
+		{
+			final int parent = ( i - 1 ) >>> 1;
+			if ( queueSquDistances[ parent ] <= squDistance )
+				break;
+			queueNodes[ i ] = queueNodes[ parent ];
+			queueSquDistances[ i ] = queueSquDistances[ parent ];
+			i = parent;
+		}
+		queueNodes[ i ] = node;
+		queueSquDistances[ i ] = squDistance;
+	}
+
+	protected KDTreeNode< T > pop()
+	{
+		final KDTreeNode< T > top = queueNodes[ 0 ];
+		final int last = --queueSize;
+		final KDTreeNode< T > node = queueNodes[ last ];
+		final double squDistance = queueSquDistances[ last ];
+		queueNodes[ last ] = null;
+		int i = 0;
+		while ( true )
+		{
+			int child = 2 * i + 1;
+			if ( child >= last )
+				break;
+			if ( child + 1 < last && queueSquDistances[ child + 1 ] < queueSquDistances[ child ] )
+				++child;
+			if ( squDistance <= queueSquDistances[ child ] )
+				break;
+			queueNodes[ i ] = queueNodes[ child ];
+			queueSquDistances[ i ] = queueSquDistances[ child ];
+			i = child;
+		}
+		if ( last > 0 )
+		{
+			queueNodes[ i ] = node;
+			queueSquDistances[ i ] = squDistance;
+		}
+		return top;
+	}
+
+	@Override
+	public BestBinFirstKNearestNeighborSearchOnKDTree< T > copy()
+	{
+		final BestBinFirstKNearestNeighborSearchOnKDTree< T > copy = new BestBinFirstKNearestNeighborSearchOnKDTree< T >( tree, k, maxNodes, epsilon );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		for ( int i = 0; i < k; ++i )
+		{
+			copy.bestPoints[ i ] = bestPoints[ i ];
+			copy.bestSquDistances[ i ] = bestSquDistances[ i ];
+		}
+		copy.numVisitedNodes = numVisitedNodes;
+		return copy;
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.DynamicKDTreeNode;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.util.SquareDistance;
+
+/**
+ * Implementation of {@link KNearestNeighborSearch} search for
+ * {@link DynamicKDTree}s.
+ * 
+ * @author ImgLib2 developers
+ */
+public class KNearestNeighborSearchOnDynamicKDTree< T > implements KNearestNeighborSearch< T >
+{
+	protected final DynamicKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final int k;
+
+	protected final int[] bestIds;
+
+	protected final double[] bestSquDistances;
+
+	protected final DynamicKDTreeNode< T >[] bestPoints;
+
+	@SuppressWarnings( "unchecked" )
+	public KNearestNeighborSearchOnDynamicKDTree( final DynamicKDTree< T > tree, final int k )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.k = k;
+		this.bestIds = new int[ k ];
+		this.bestSquDistances = new double[ k ];
+		this.bestPoints = new DynamicKDTreeNode[ k ];
+		for ( int i = 0; i < k; ++i )
+		{
+			bestIds[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+			bestPoints[ i ] = new DynamicKDTreeNode< T >( tree );
+		}
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int getK()
+	{
+		return k;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		reference.localize( pos );
+		for ( int i = 0; i < k; ++i )
+		{
+			bestIds[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+		for ( int i = 0; i < tree.bufferSize(); ++i )
+		{
+			final int id = tree.getBufferId( i );
+			final double squDistance = tree.squDistanceTo( id, pos );
+			if ( squDistance < bestSquDistances[ k - 1 ] )
+				insert( id, squDistance );
+		}
+		for ( int l = 0; l < tree.numLevels(); ++l )
+		{
+			final int size = tree.levelSize( l );
+			if ( size > 0 )
+				searchNode( tree.getLevelPositions( l ), tree.getLevelIds( l ), size, 0, 0 );
+		}
+		for ( int i = 0; i < k; ++i )
+			bestPoints[ i ].setId( bestIds[ i ] );
+	}
+
+	protected void insert( final int id, final double squDistance )
+	{
+		int i = k - 1;
+		for ( int j = i - 1; i > 0 && squDistance < bestSquDistances[ j ]; --i, --j )
+		{
+			bestSquDistances[ i ] = bestSquDistances[ j ];
+			bestIds[ i ] = bestIds[ j ];
+		}
+		bestSquDistances[ i ] = squDistance;
+		bestIds[ i ] = id;
+	}
+
+	protected void searchNode( final double[] positions, final int[] ids, final int size, final int current, final int d )
+	{
+		// consider the current node
+		final int offset = current * n;
+		final double squDistance = SquareDistance.squDistance( positions, offset, pos, n );
+		if ( squDistance < bestSquDistances[ k - 1 ] && ids[ current ] >= 0 )
+			insert( ids[ current ], squDistance );
+
+		final double axisDiff = pos[ d ] - positions[ offset + d ];
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final int left = 2 * current + 1;
+		final int nearChild = leftIsNearBranch ? left : left + 1;
+		final int awayChild = leftIsNearBranch ? left + 1 : left;
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+		if ( nearChild < size )
+			searchNode( positions, ids, size, nearChild, dChild );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance <= bestSquDistances[ k - 1 ] ) && ( awayChild < size ) )
+			searchNode( positions, ids, size, awayChild, dChild );
+	}
+
+	/**
+	 * @return id of the <em>i</em><sup>th</sup> nearest neighbor, or -1 if the
+	 *         tree has less than i+1 points.
+	 */
+	public int getId( final int i )
+	{
+		return bestIds[ i ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return bestSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( bestSquDistances[ i ] );
+	}
+
+	/* NearestNeighborSearch */
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return getPosition( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return getSampler( 0 );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return getSquareDistance( 0 );
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return getDistance( 0 );
+	}
+
+	@Override
+	public KNearestNeighborSearchOnDynamicKDTree< T > copy()
+	{
+		final KNearestNeighborSearchOnDynamicKDTree< T > copy = new KNearestNeighborSearchOnDynamicKDTree< T >( tree, k );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		for ( int i = 0; i < k; ++i )
+		{
+			copy.bestIds[ i ] = bestIds[ i ];
+			copy.bestSquDistances[ i ] = bestSquDistances[ i ];
+			copy.bestPoints[ i ].setId( bestIds[ i ] );
+		}
+		return copy;
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.GridIndex;
+import net.imglib2.GridIndexNode;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link KNearestNeighborSearch} search for
+ * {@link GridIndex}es.
+ * 
+ * @author ImgLib2 developers
+ */
+public class KNearestNeighborSearchOnGridIndex< T > extends AbstractGridIndexSearch< T > implements KNearestNeighborSearch< T >
+{
+	protected final int k;
+
+	protected final int[] bestIndices;
+
+	protected final double[] bestSquDistances;
+
+	protected final GridIndexNode< T >[] bestPoints;
+
+	@SuppressWarnings( "unchecked" )
+	public KNearestNeighborSearchOnGridIndex( final GridIndex< T > grid, final int k )
+	{
+		super( grid );
+		this.k = k;
+		this.bestIndices = new int[ k ];
+		this.bestSquDistances = new double[ k ];
+		this.bestPoints = new GridIndexNode[ k ];
+		for ( int i = 0; i < k; ++i )
+		{
+			bestIndices[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+			bestPoints[ i ] = new GridIndexNode< T >( grid );
+		}
+	}
+
+	@Override
+	public int getK()
+	{
+		return k;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		reference.localize( pos );
+		for ( int i = 0; i < k; ++i )
+		{
+			bestIndices[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+		searchShells();
+		for ( int i = 0; i < k; ++i )
+			bestPoints[ i ].setIndex( bestIndices[ i ] );
+	}
+
+	@Override
+	protected double squBound()
+	{
+		return bestSquDistances[ k - 1 ];
+	}
+
+	@Override
+	protected void searchCell( final int cell )
+	{
+		final int from = computeSquDistances( cell );
+		final int end = cellStart[ cell + 1 ];
+		for ( int j = from; j < end; ++j )
+		{
+			final double squDistance = cellSquDistances[ j - from ];
+			if ( squDistance < bestSquDistances[ k - 1 ] )
+			{
+				int i = k - 1;
+				for ( int l = i - 1; i > 0 && squDistance < bestSquDistances[ l ]; --i, --l )
+				{
+					bestSquDistances[ i ] = bestSquDistances[ l ];
+					bestIndices[ i ] = bestIndices[ l ];
+				}
+				bestSquDistances[ i ] = squDistance;
+				bestIndices[ i ] = j;
+			}
+		}
+	}
+
+	/**
+	 * @return index in cell order of the <em>i</em><sup>th</sup> nearest
+	 *         neighbor, or -1 if the grid has less than i+1 points.
+	 */
+	public int getIndex( final int i )
+	{
+		return bestIndices[ i ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return bestSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( bestSquDistances[ i ] );
+	}
+
+	/* NearestNeighborSearch */
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return getPosition( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return getSampler( 0 );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return getSquareDistance( 0 );
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return getDistance( 0 );
+	}
+
+	@Override
+	public KNearestNeighborSearchOnGridIndex< T > copy()
+	{
+		final KNearestNeighborSearchOnGridIndex< T > copy = new KNearestNeighborSearchOnGridIndex< T >( grid, k );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		for ( int i = 0; i < k; ++i )
+		{
+			copy.bestIndices[ i ] = bestIndices[ i ];
+			copy.bestSquDistances[ i ] = bestSquDistances[ i ];
+			copy.bestPoints[ i ].setIndex( bestIndices[ i ] );
+		}
+		return copy;
+	}
+}
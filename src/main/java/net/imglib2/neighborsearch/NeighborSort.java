@@ -0,0 +1,228 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+/**
+ * Stable in-place sorting of neighbor search results by distance, without
+ * boxing. Neighbors at equal distance keep the order in which they were
+ * found. The scratch arrays of the merge sort are kept and reused, so each
+ * search should have its own {@link NeighborSort}.
+ * 
+ * @author ImgLib2 developers
+ */
+final class NeighborSort
+{
+	/**
+	 * length of the runs that are sorted by insertion sort before merging.
+	 */
+	private static final int RUN = 16;
+
+	private double[] tmpKeys = new double[ 0 ];
+
+	private int[] tmpInts = new int[ 0 ];
+
+	private Object[] tmpObjects = new Object[ 0 ];
+
+	/**
+	 * Sort keys and values between indices i and j (inclusive) by ascending
+	 * keys.
+	 */
+	void sort( final double[] keys, final int[] values, final int i, final int j )
+	{
+		final int length = j - i + 1;
+		for ( int lo = i; lo <= j; lo += RUN )
+			insertionSort( keys, values, lo, Math.min( lo + RUN - 1, j ) );
+		if ( length <= RUN )
+			return;
+
+		if ( tmpKeys.length < length )
+			tmpKeys = new double[ length ];
+		if ( tmpInts.length < length )
+			tmpInts = new int[ length ];
+
+		double[] srcKeys = keys, dstKeys = tmpKeys;
+		int[] srcValues = values, dstValues = tmpInts;
+		int srcOffset = i, dstOffset = 0;
+		for ( long width = RUN; width < length; width *= 2 )
+		{
+			for ( long lo = 0; lo < length; lo += 2 * width )
+			{
+				final int mid = ( int ) Math.min( lo + width, length );
+				final int hi = ( int ) Math.min( lo + 2 * width, length );
+				int a = srcOffset + ( int ) lo;
+				int b = srcOffset + mid;
+				final int aEnd = b;
+				final int bEnd = srcOffset + hi;
+				int k = dstOffset + ( int ) lo;
+				while ( a < aEnd && b < bEnd )
+				{
+					if ( srcKeys[ b ] < srcKeys[ a ] )
+					{
+						dstKeys[ k ] = srcKeys[ b ];
+						dstValues[ k++ ] = srcValues[ b++ ];
+					}
+					else
+					{
+						dstKeys[ k ] = srcKeys[ a ];
+						dstValues[ k++ ] = srcValues[ a++ ];
+					}
+				}
+				System.arraycopy( srcKeys, a, dstKeys, k, aEnd - a );
+				System.arraycopy( srcValues, a, dstValues, k, aEnd - a );
+				k += aEnd - a;
+				System.arraycopy( srcKeys, b, dstKeys, k, bEnd - b );
+				System.arraycopy( srcValues, b, dstValues, k, bEnd - b );
+			}
+			final double[] tk = srcKeys;
+			srcKeys = dstKeys;
+			dstKeys = tk;
+			final int[] tv = srcValues;
+			srcValues = dstValues;
+			dstValues = tv;
+			final int to = srcOffset;
+			srcOffset = dstOffset;
+			dstOffset = to;
+		}
+		if ( srcKeys != keys )
+		{
+			System.arraycopy( srcKeys, srcOffset, keys, i, length );
+			System.arraycopy( srcValues, srcOffset, values, i, length );
+		}
+	}
+
+	/**
+	 * Sort keys and values between indices i and j (inclusive) by ascending
+	 * keys.
+	 */
+	void sort( final double[] keys, final Object[] values, final int i, final int j )
+	{
+		final int length = j - i + 1;
+		for ( int lo = i; lo <= j; lo += RUN )
+			insertionSort( keys, values, lo, Math.min( lo + RUN - 1, j ) );
+		if ( length <= RUN )
+			return;
+
+		if ( tmpKeys.length < length )
+			tmpKeys = new double[ length ];
+		if ( tmpObjects.length < length )
+			tmpObjects = new Object[ length ];
+
+		double[] srcKeys = keys, dstKeys = tmpKeys;
+		Object[] srcValues = values, dstValues = tmpObjects;
+		int srcOffset = i, dstOffset = 0;
+		for ( long width = RUN; width < length; width *= 2 )
+		{
+			for ( long lo = 0; lo < length; lo += 2 * width )
+			{
+				final int mid = ( int ) Math.min( lo + width, length );
+				final int hi = ( int ) Math.min( lo + 2 * width, length );
+				int a = srcOffset + ( int ) lo;
+				int b = srcOffset + mid;
+				final int aEnd = b;
+				final int bEnd = srcOffset + hi;
+				int k = dstOffset + ( int ) lo;
+				while ( a < aEnd && b < bEnd )
+				{
+					if ( srcKeys[ b ] < srcKeys[ a ] )
+					{
+						dstKeys[ k ] = srcKeys[ b ];
+						dstValues[ k++ ] = srcValues[ b++ ];
+					}
+					else
+					{
+						dstKeys[ k ] = srcKeys[ a ];
+						dstValues[ k++ ] = srcValues[ a++ ];
+					}
+				}
+				System.arraycopy( srcKeys, a, dstKeys, k, aEnd - a );
+				System.arraycopy( srcValues, a, dstValues, k, aEnd - a );
+				k += aEnd - a;
+				System.arraycopy( srcKeys, b, dstKeys, k, bEnd - b );
+				System.arraycopy( srcValues, b, dstValues, k, bEnd - b );
+			}
+			final double[] tk = srcKeys;
+			srcKeys = dstKeys;
+			dstKeys = tk;
+			final Object[] tv = srcValues;
+			srcValues = dstValues;
+			dstValues = tv;
+			final int to = srcOffset;
+			srcOffset = dstOffset;
+			dstOffset = to;
+		}
+		if ( srcKeys != keys )
+		{
+			System.arraycopy( srcKeys, srcOffset, keys, i, length );
+			System.arraycopy( srcValues, srcOffset, values, i, length );
+		}
+		Arrays.fill( tmpObjects, 0, length, null );
+	}
+
+	private static void insertionSort( final double[] keys, final int[] values, final int i, final int j )
+	{
+		for ( int a = i + 1; a <= j; ++a )
+		{
+			final double key = keys[ a ];
+			final int value = values[ a ];
+			int b = a - 1;
+			for ( ; b >= i && keys[ b ] > key; --b )
+			{
+				keys[ b + 1 ] = keys[ b ];
+				values[ b + 1 ] = values[ b ];
+			}
+			keys[ b + 1 ] = key;
+			values[ b + 1 ] = value;
+		}
+	}
+
+	private static void insertionSort( final double[] keys, final Object[] values, final int i, final int j )
+	{
+		for ( int a = i + 1; a <= j; ++a )
+		{
+			final double key = keys[ a ];
+			final Object value = values[ a ];
+			int b = a - 1;
+			for ( ; b >= i && keys[ b ] > key; --b )
+			{
+				keys[ b + 1 ] = keys[ b ];
+				values[ b + 1 ] = values[ b ];
+			}
+			keys[ b + 1 ] = key;
+			values[ b + 1 ] = value;
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.DynamicKDTreeNode;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.util.SquareDistance;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for
+ * {@link DynamicKDTree}s. Results are collected in primitive arrays that are
+ * reused between searches.
+ * 
+ * @author ImgLib2 developers
+ */
+public class RadiusNeighborSearchOnDynamicKDTree< T > implements RadiusNeighborSearch< T >
+{
+	protected final DynamicKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected int numNeighbors;
+
+	protected int[] resultIds;
+
+	protected double[] resultSquDistances;
+
+	private final NeighborSort sorter = new NeighborSort();
+
+	protected DynamicKDTreeNode< T >[] resultPoints;
+
+	@SuppressWarnings( "unchecked" )
+	public RadiusNeighborSearchOnDynamicKDTree( final DynamicKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.numNeighbors = 0;
+		this.resultIds = new int[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
+		this.resultPoints = new DynamicKDTreeNode[ 0 ];
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numNeighbors = 0;
+		final double squRadius = radius * radius;
+		for ( int i = 0; i < tree.bufferSize(); ++i )
+		{
+			final int id = tree.getBufferId( i );
+			final double squDistance = tree.squDistanceTo( id, pos );
+			if ( squDistance <= squRadius )
+				add( id, squDistance );
+		}
+		for ( int l = 0; l < tree.numLevels(); ++l )
+		{
+			final int size = tree.levelSize( l );
+			if ( size > 0 )
+				searchNode( tree.getLevelPositions( l ), tree.getLevelIds( l ), size, 0, 0, squRadius );
+		}
+		if ( sortResults )
+			sorter.sort( resultSquDistances, resultIds, 0, numNeighbors - 1 );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	protected void add( final int id, final double squDistance )
+	{
+		if ( numNeighbors == resultIds.length )
+		{
+			resultIds = Arrays.copyOf( resultIds, 2 * numNeighbors );
+			resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numNeighbors );
+		}
+		resultIds[ numNeighbors ] = id;
+		resultSquDistances[ numNeighbors ] = squDistance;
+		++numNeighbors;
+	}
+
+	protected void searchNode( final double[] positions, final int[] ids, final int size, final int current, final int d, final double squRadius )
+	{
+		// consider the current node
+		final int offset = current * n;
+		final double squDistance = SquareDistance.squDistance( positions, offset, pos, n );
+		if ( squDistance <= squRadius && ids[ current ] >= 0 )
+			add( ids[ current ], squDistance );
+
+		final double axisDiff = pos[ d ] - positions[ offset + d ];
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final int left = 2 * current + 1;
+		final int nearChild = leftIsNearBranch ? left : left + 1;
+		final int awayChild = leftIsNearBranch ? left + 1 : left;
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+		if ( nearChild < size )
+			searchNode( positions, ids, size, nearChild, dChild, squRadius );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance <= squRadius ) && ( awayChild < size ) )
+			searchNode( positions, ids, size, awayChild, dChild, squRadius );
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	/**
+	 * @return id of the <em>i</em><sup>th</sup> neighbor.
+	 */
+	public int getId( final int i )
+	{
+		return resultIds[ i ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return getPoint( i );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return getPoint( i );
+	}
+
+	protected DynamicKDTreeNode< T > getPoint( final int i )
+	{
+		if ( i >= resultPoints.length )
+		{
+			final int oldLength = resultPoints.length;
+			resultPoints = Arrays.copyOf( resultPoints, Math.max( i + 1, resultIds.length ) );
+			for ( int j = oldLength; j < resultPoints.length; ++j )
+				resultPoints[ j ] = new DynamicKDTreeNode< T >( tree );
+		}
+		resultPoints[ i ].setId( resultIds[ i ] );
+		return resultPoints[ i ];
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.GridIndex;
+import net.imglib2.GridIndexNode;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for
+ * {@link GridIndex}es. Results are collected in primitive arrays that are
+ * reused between searches.
+ * 
+ * @author ImgLib2 developers
+ */
+public class RadiusNeighborSearchOnGridIndex< T > extends AbstractGridIndexSearch< T > implements RadiusNeighborSearch< T >
+{
+	protected double squRadius;
+
+	protected int numNeighbors;
+
+	protected int[] resultIndices;
+
+	protected double[] resultSquDistances;
+
+	private final NeighborSort sorter = new NeighborSort();
+
+	protected GridIndexNode< T >[] resultPoints;
+
+	@SuppressWarnings( "unchecked" )
+	public RadiusNeighborSearchOnGridIndex( final GridIndex< T > grid )
+	{
+		super( grid );
+		this.numNeighbors = 0;
+		this.resultIndices = new int[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
+		this.resultPoints = new GridIndexNode[ 0 ];
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numNeighbors = 0;
+		squRadius = radius * radius;
+		searchBox( radius );
+		if ( sortResults )
+			sorter.sort( resultSquDistances, resultIndices, 0, numNeighbors - 1 );
+	}
+
+	@Override
+	protected double squBound()
+	{
+		return squRadius;
+	}
+
+	@Override
+	protected void searchCell( final int cell )
+	{
+		final int from = computeSquDistances( cell );
+		final int end = cellStart[ cell + 1 ];
+		for ( int j = from; j < end; ++j )
+		{
+			final double squDistance = cellSquDistances[ j - from ];
+			if ( squDistance <= squRadius )
+			{
+				if ( numNeighbors == resultIndices.length )
+				{
+					resultIndices = Arrays.copyOf( resultIndices, 2 * numNeighbors );
+					resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numNeighbors );
+				}
+				resultIndices[ numNeighbors ] = j;
+				resultSquDistances[ numNeighbors ] = squDistance;
+				++numNeighbors;
+			}
+		}
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	/**
+	 * @return index in cell order of the <em>i</em><sup>th</sup> neighbor.
+	 */
+	public int getIndex( final int i )
+	{
+		return resultIndices[ i ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return getPoint( i );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return getPoint( i );
+	}
+
+	protected GridIndexNode< T > getPoint( final int i )
+	{
+		if ( i >= resultPoints.length )
+		{
+			final int oldLength = resultPoints.length;
+			resultPoints = Arrays.copyOf( resultPoints, Math.max( i + 1, resultIndices.length ) );
+			for ( int j = oldLength; j < resultPoints.length; ++j )
+				resultPoints[ j ] = new GridIndexNode< T >( grid );
+		}
+		resultPoints[ i ].setIndex( resultIndices[ i ] );
+		return resultPoints[ i ];
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+}
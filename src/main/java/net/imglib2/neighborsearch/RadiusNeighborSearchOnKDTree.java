@@ -34,37 +34,71 @@
 
 package net.imglib2.neighborsearch;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 
 import net.imglib2.KDTree;
 import net.imglib2.KDTreeNode;
 import net.imglib2.RealLocalizable;
 import net.imglib2.Sampler;
-import net.imglib2.util.ValuePair;
 
 /**
  * Implementation of {@link RadiusNeighborSearch} search for kd-trees.
  * 
+ * <p>
+ * Results are collected in arrays that are reused between searches, and
+ * sorted in place, so a search does not allocate memory once the arrays have
+ * grown to the number of neighbors. Sorting is stable, i.e., neighbors at
+ * equal distance keep the order in which they were found. In addition to
+ * {@link #search(RealLocalizable, double, boolean)},
+ * {@link #count(RealLocalizable, double)} counts neighbors without collecting
+ * them, and {@link #visit(RealLocalizable, double, Visitor)} passes each
+ * neighbor to a callback.
+ * </p>
+ * 
  * @author Tobias Pietzsch
  */
 public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch< T >
 {
+	/**
+	 * Callback for {@link RadiusNeighborSearchOnKDTree#visit}.
+	 */
+	public static interface Visitor< T >
+	{
+		/**
+		 * Called for every neighbor within radius, in no particular order.
+		 * 
+		 * @param neighbor
+		 *            the neighbor node, providing position and value.
+		 * @param squDistance
+		 *            square Euclidean distance between the reference and the
+		 *            neighbor.
+		 */
+		public void visit( KDTreeNode< T > neighbor, double squDistance );
+	}
+
 	protected KDTree< T > tree;
 
 	protected final int n;
 
 	protected final double[] pos;
 
-	protected ArrayList< ValuePair< KDTreeNode< T >, Double > > resultPoints;
+	protected int numNeighbors;
+
+	protected KDTreeNode< T >[] resultPoints;
+
+	protected double[] resultSquDistances;
 
+	private final NeighborSort sorter = new NeighborSort();
+
+	@SuppressWarnings( "unchecked" )
 	public RadiusNeighborSearchOnKDTree( final KDTree< T > tree )
 	{
 		this.tree = tree;
 		this.n = tree.numDimensions();
 		this.pos = new double[ n ];
-		this.resultPoints = new ArrayList< ValuePair< KDTreeNode< T >, Double > >();
+		this.numNeighbors = 0;
+		this.resultPoints = new KDTreeNode[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
 	}
 
 	@Override
@@ -72,19 +106,48 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 	{
 		assert radius >= 0;
 		reference.localize( pos );
-		resultPoints.clear();
+		Arrays.fill( resultPoints, 0, numNeighbors, null );
+		numNeighbors = 0;
 		searchNode( tree.getRoot(), radius * radius );
 		if ( sortResults )
-		{
-			Collections.sort( resultPoints, new Comparator< ValuePair< KDTreeNode< T >, Double > >()
-			{
-				@Override
-				public int compare( final ValuePair< KDTreeNode< T >, Double > o1, final ValuePair< KDTreeNode< T >, Double > o2 )
-				{
-					return Double.compare( o1.b, o2.b );
-				}
-			} );
-		}
+			sorter.sort( resultSquDistances, resultPoints, 0, numNeighbors - 1 );
+	}
+
+	/**
+	 * Count the points within radius about a reference coordinate. This does
+	 * not change the results of the last
+	 * {@link #search(RealLocalizable, double, boolean)}.
+	 * 
+	 * @param reference
+	 *            the reference coordinate.
+	 * @param radius
+	 *            the radius about the reference coordinate.
+	 * @return the number of points within radius.
+	 */
+	public int count( final RealLocalizable reference, final double radius )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		return countNode( tree.getRoot(), radius * radius );
+	}
+
+	/**
+	 * Pass every point within radius about a reference coordinate to a
+	 * visitor. This does not change the results of the last
+	 * {@link #search(RealLocalizable, double, boolean)}.
+	 * 
+	 * @param reference
+	 *            the reference coordinate.
+	 * @param radius
+	 *            the radius about the reference coordinate.
+	 * @param visitor
+	 *            is called for every point within radius.
+	 */
+	public void visit( final RealLocalizable reference, final double radius, final Visitor< T > visitor )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		visitNode( tree.getRoot(), radius * radius, visitor );
 	}
 
 	@Override
@@ -99,7 +162,14 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 		final double squDistance = current.squDistanceTo( pos );
 		if ( squDistance <= squRadius )
 		{
-			resultPoints.add( new ValuePair< KDTreeNode< T >, Double >( current, squDistance ) );
+			if ( numNeighbors == resultPoints.length )
+			{
+				resultPoints = Arrays.copyOf( resultPoints, 2 * numNeighbors );
+				resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numNeighbors );
+			}
+			resultPoints[ numNeighbors ] = current;
+			resultSquDistances[ numNeighbors ] = squDistance;
+			++numNeighbors;
 		}
 
 		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
@@ -117,33 +187,68 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 			searchNode( awayChild, squRadius );
 	}
 
+	protected int countNode( final KDTreeNode< T > current, final double squRadius )
+	{
+		int count = current.squDistanceTo( pos ) <= squRadius ? 1 : 0;
+
+		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		final KDTreeNode< T > nearChild = leftIsNearBranch ? current.left : current.right;
+		final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
+		if ( nearChild != null )
+			count += countNode( nearChild, squRadius );
+		if ( ( axisSquDistance <= squRadius ) && ( awayChild != null ) )
+			count += countNode( awayChild, squRadius );
+		return count;
+	}
+
+	protected void visitNode( final KDTreeNode< T > current, final double squRadius, final Visitor< T > visitor )
+	{
+		final double squDistance = current.squDistanceTo( pos );
+		if ( squDistance <= squRadius )
+			visitor.visit( current, squDistance );
+
+		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		final KDTreeNode< T > nearChild = leftIsNearBranch ? current.left : current.right;
+		final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
+		if ( nearChild != null )
+			visitNode( nearChild, squRadius, visitor );
+		if ( ( axisSquDistance <= squRadius ) && ( awayChild != null ) )
+			visitNode( awayChild, squRadius, visitor );
+	}
+
 	@Override
 	public int numNeighbors()
 	{
-		return resultPoints.size();
+		return numNeighbors;
 	}
 
 	@Override
 	public Sampler< T > getSampler( final int i )
 	{
-		return resultPoints.get( i ).a;
+		return resultPoints[ i ];
 	}
 
 	@Override
 	public RealLocalizable getPosition( final int i )
 	{
-		return resultPoints.get( i ).a;
+		return resultPoints[ i ];
 	}
 
 	@Override
 	public double getSquareDistance( final int i )
 	{
-		return resultPoints.get( i ).b;
+		return resultSquDistances[ i ];
 	}
 
 	@Override
 	public double getDistance( final int i )
 	{
-		return Math.sqrt( resultPoints.get( i ).b );
+		return Math.sqrt( resultSquDistances[ i ] );
 	}
 }
@@ -34,11 +34,36 @@
 
 package net.imglib2.util;
 
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCell;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.CachedCell;
+import net.imglib2.img.paged.PagedArrayImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.iterator.Chunk;
+import net.imglib2.iterator.Chunks;
 import net.imglib2.type.BooleanType;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.Type;
 import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
 
 /**
  * This class contains static methods for copying image data to and from Img
@@ -46,6 +71,12 @@ import net.imglib2.type.numeric.RealType;
  * that can't rely on JIT compilation and that access imglib via the JVM or
  * through JNI (specifically CellProfiler).
  * 
+ * {@link #copy(Img, Img, ExecutorService, int)} copies between images. If
+ * source and destination store their pixels in the same layout, the storage
+ * arrays are copied with {@link System#arraycopy}. The copy methods for
+ * primitive arrays do the same if the array is addressed densely in flat
+ * iteration order and matches the storage of the image.
+ * 
  * 
  * @author Tobias Pietzsch
  * @author Stephan Preibisch
@@ -80,6 +111,8 @@ public class ImgUtil
 	 */
 	public static < T extends RealType< T >> void copy( final double[] src, final int offset, final int[] stride, final Img< T > dest )
 	{
+		if ( copyDense( src, offset, stride, dest, DoubleType.class, true ) )
+			return;
 		final Cursor< T > c = dest.localizingCursor();
 		final int[] location = new int[ dest.numDimensions() ];
 		while ( c.hasNext() )
@@ -100,6 +133,8 @@ public class ImgUtil
 	 */
 	public static < T extends RealType< T >> void copy( final float[] src, final int offset, final int[] stride, final Img< T > dest )
 	{
+		if ( copyDense( src, offset, stride, dest, FloatType.class, true ) )
+			return;
 		final Cursor< T > c = dest.localizingCursor();
 		final int[] location = new int[ dest.numDimensions() ];
 		while ( c.hasNext() )
@@ -120,6 +155,8 @@ public class ImgUtil
 	 */
 	public static < T extends IntegerType< T >> void copy( final long[] src, final int offset, final int[] stride, final Img< T > dest )
 	{
+		if ( copyDense( src, offset, stride, dest, LongType.class, true ) )
+			return;
 		final Cursor< T > c = dest.localizingCursor();
 		final int[] location = new int[ dest.numDimensions() ];
 		while ( c.hasNext() )
@@ -140,6 +177,8 @@ public class ImgUtil
 	 */
 	public static < T extends IntegerType< T >> void copy( final int[] src, final int offset, final int[] stride, final Img< T > dest )
 	{
+		if ( copyDense( src, offset, stride, dest, IntType.class, true ) )
+			return;
 		final Cursor< T > c = dest.localizingCursor();
 		final int[] location = new int[ dest.numDimensions() ];
 		while ( c.hasNext() )
@@ -194,6 +233,8 @@ public class ImgUtil
 	 */
 	public static < T extends RealType< T >> void copy( final Img< T > src, final double[] dest, final int offset, final int[] stride )
 	{
+		if ( copyDense( dest, offset, stride, src, DoubleType.class, false ) )
+			return;
 		final Cursor< T > c = src.localizingCursor();
 		final int[] location = new int[ src.numDimensions() ];
 		while ( c.hasNext() )
@@ -214,6 +255,8 @@ public class ImgUtil
 	 */
 	public static < T extends RealType< T >> void copy( final Img< T > src, final float[] dest, final int offset, final int[] stride )
 	{
+		if ( copyDense( dest, offset, stride, src, FloatType.class, false ) )
+			return;
 		final Cursor< T > c = src.localizingCursor();
 		final int[] location = new int[ src.numDimensions() ];
 		while ( c.hasNext() )
@@ -234,6 +277,8 @@ public class ImgUtil
 	 */
 	public static < T extends IntegerType< T >> void copy( final Img< T > src, final long[] dest, final int offset, final int[] stride )
 	{
+		if ( copyDense( dest, offset, stride, src, LongType.class, false ) )
+			return;
 		final Cursor< T > c = src.localizingCursor();
 		final int[] location = new int[ src.numDimensions() ];
 		while ( c.hasNext() )
@@ -254,6 +299,8 @@ public class ImgUtil
 	 */
 	public static < T extends IntegerType< T >> void copy( final Img< T > src, final int[] dest, final int offset, final int[] stride )
 	{
+		if ( copyDense( dest, offset, stride, src, IntType.class, false ) )
+			return;
 		final Cursor< T > c = src.localizingCursor();
 		final int[] location = new int[ src.numDimensions() ];
 		while ( c.hasNext() )
@@ -288,4 +335,447 @@ public class ImgUtil
 			dest[ this_offset ] = t.get();
 		}
 	}
+
+	/**
+	 * Throughput of a {@link ImgUtil#copy(Img, Img, ExecutorService, int)
+	 * copy} between images.
+	 */
+	public static class CopyStatistics
+	{
+		private final long numPixels;
+
+		private final long nanoTime;
+
+		private final boolean bulk;
+
+		public CopyStatistics( final long numPixels, final long nanoTime, final boolean bulk )
+		{
+			this.numPixels = numPixels;
+			this.nanoTime = nanoTime;
+			this.bulk = bulk;
+		}
+
+		/**
+		 * @return number of pixels copied.
+		 */
+		public long getNumPixels()
+		{
+			return numPixels;
+		}
+
+		/**
+		 * @return time taken in nanoseconds.
+		 */
+		public long getNanoTime()
+		{
+			return nanoTime;
+		}
+
+		/**
+		 * @return true if the storage arrays were copied directly, false if
+		 *         the pixels were copied through cursors.
+		 */
+		public boolean isBulk()
+		{
+			return bulk;
+		}
+
+		public double getPixelsPerSecond()
+		{
+			return nanoTime == 0 ? Double.POSITIVE_INFINITY : numPixels * 1e9 / nanoTime;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format( "copied %d pixels in %.3f ms (%.1f Mpixels/s, %s)", numPixels, nanoTime / 1e6, getPixelsPerSecond() / 1e6, bulk ? "bulk" : "cursor" );
+		}
+	}
+
+	/**
+	 * Copy the pixels of an Img to another Img of the same dimensions on the
+	 * calling thread.
+	 * 
+	 * @see ImgUtil#copy(Img, Img, ExecutorService, int)
+	 */
+	public static < T extends Type< T > > CopyStatistics copy( final Img< T > src, final Img< T > dest )
+	{
+		return copy( src, dest, null, 1 );
+	}
+
+	/**
+	 * Copy the pixels of an Img to another Img of the same dimensions.
+	 * 
+	 * If both images store their pixels in arrays of the same type and layout,
+	 * the arrays are copied with {@link System#arraycopy}. This is the case
+	 * for any combination of {@link ArrayImg}, {@link PlanarImg} and
+	 * {@link PagedArrayImg} (all of them store pixels in flat iteration order),
+	 * and for two {@link AbstractCellImg CellImgs} with the same cell
+	 * dimensions. Otherwise, pixels are copied through cursors.
+	 * 
+	 * In both cases, the work is split into <em>numTasks</em> parts that are
+	 * executed on <em>service</em>.
+	 * 
+	 * @param src
+	 *            copy data from this Img
+	 * @param dest
+	 *            copy data to this Img
+	 * @param service
+	 *            executes the parts. If null, the copy runs on the calling
+	 *            thread.
+	 * @param numTasks
+	 *            number of parts to split the copy into.
+	 * @return throughput of the copy.
+	 */
+	public static < T extends Type< T > > CopyStatistics copy( final Img< T > src, final Img< T > dest, final ExecutorService service, final int numTasks )
+	{
+		if ( !Intervals.equalDimensions( src, dest ) )
+			throw new IllegalArgumentException( "Source and destination dimensions differ: " + Util.printInterval( src ) + " vs. " + Util.printInterval( dest ) );
+
+		final int n = service == null ? 1 : Math.max( 1, numTasks );
+		final long start = System.nanoTime();
+		final boolean bulk = copyStorage( src, dest, service, n );
+		if ( !bulk )
+			copyCursors( src, dest, service, n );
+		return new CopyStatistics( src.size(), System.nanoTime() - start, bulk );
+	}
+
+	/**
+	 * Copy storage arrays if source and destination have the same layout.
+	 * 
+	 * @return false if the layouts are incompatible and nothing was copied.
+	 */
+	private static boolean copyStorage( final Img< ? > src, final Img< ? > dest, final ExecutorService service, final int numTasks )
+	{
+		if ( src.size() == 0 )
+			return true;
+
+		final Object srcType = src.firstElement();
+		if ( !( srcType instanceof NativeType ) || srcType.getClass() != dest.firstElement().getClass() )
+			return false;
+
+		if ( src instanceof AbstractCellImg && dest instanceof AbstractCellImg )
+			return copyCells( ( AbstractCellImg< ?, ?, ?, ? > ) src, ( AbstractCellImg< ?, ?, ?, ? > ) dest, service, numTasks );
+
+		final List< Object > srcArrays = flatStorage( src );
+		final List< Object > destArrays = flatStorage( dest );
+		if ( srcArrays == null || destArrays == null )
+			return false;
+
+		final Class< ? > arrayClass = srcArrays.get( 0 ).getClass();
+		final long[] srcStarts = blockStarts( srcArrays, arrayClass );
+		final long[] destStarts = blockStarts( destArrays, arrayClass );
+		if ( srcStarts == null || destStarts == null || srcStarts[ srcArrays.size() ] != destStarts[ destArrays.size() ] )
+			return false;
+
+		// with a fractional number of entities per pixel, blocks may be
+		// padded, so only identically structured storage can be copied
+		final Fraction entitiesPerPixel = ( ( NativeType< ? > ) srcType ).getEntitiesPerPixel();
+		if ( entitiesPerPixel.getNumerator() % entitiesPerPixel.getDenominator() != 0 && !Arrays.equals( srcStarts, destStarts ) )
+			return false;
+
+		final long total = srcStarts[ srcArrays.size() ];
+		final ArrayList< Callable< Void > > tasks = new ArrayList< Callable< Void > >( numTasks );
+		for ( int i = 0; i < numTasks; ++i )
+		{
+			final long from = total / numTasks * i + total % numTasks * i / numTasks;
+			final long to = total / numTasks * ( i + 1 ) + total % numTasks * ( i + 1 ) / numTasks;
+			tasks.add( new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					copyFlatRange( srcArrays, srcStarts, destArrays, destStarts, from, to );
+					return null;
+				}
+			} );
+		}
+		runTasks( tasks, service );
+		return true;
+	}
+
+	/**
+	 * @return the storage arrays of an image that stores its pixels in flat
+	 *         iteration order, or null.
+	 */
+	private static List< Object > flatStorage( final Img< ? > img )
+	{
+		final ArrayList< Object > accesses = new ArrayList< Object >();
+		if ( img instanceof ArrayImg )
+			accesses.add( ( ( ArrayImg< ?, ? > ) img ).update( null ) );
+		else if ( img instanceof PlanarImg )
+		{
+			final PlanarImg< ?, ? > planarImg = ( PlanarImg< ?, ? > ) img;
+			for ( int i = 0; i < planarImg.numSlices(); ++i )
+				accesses.add( planarImg.getPlane( i ) );
+		}
+		else if ( img instanceof PagedArrayImg )
+		{
+			final PagedArrayImg< ?, ? > pagedImg = ( PagedArrayImg< ?, ? > ) img;
+			for ( int i = 0; i < pagedImg.numPages(); ++i )
+				accesses.add( pagedImg.getPage( i ) );
+		}
+		else
+			return null;
+
+		final ArrayList< Object > arrays = new ArrayList< Object >( accesses.size() );
+		for ( final Object access : accesses )
+		{
+			final Object array = storageArray( access );
+			if ( array == null )
+				return null;
+			arrays.add( array );
+		}
+		return arrays;
+	}
+
+	/**
+	 * @return the primitive array behind an {@link ArrayDataAccess}, or null.
+	 */
+	private static Object storageArray( final Object access )
+	{
+		if ( !( access instanceof ArrayDataAccess ) )
+			return null;
+		final Object array = ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray();
+		return array != null && array.getClass().isArray() ? array : null;
+	}
+
+	/**
+	 * @return start index of each array in the concatenation of all arrays,
+	 *         followed by the total length, or null if not all arrays are of
+	 *         class <em>arrayClass</em>.
+	 */
+	private static long[] blockStarts( final List< Object > arrays, final Class< ? > arrayClass )
+	{
+		final long[] starts = new long[ arrays.size() + 1 ];
+		for ( int i = 0; i < arrays.size(); ++i )
+		{
+			final Object array = arrays.get( i );
+			if ( array.getClass() != arrayClass )
+				return null;
+			starts[ i + 1 ] = starts[ i ] + Array.getLength( array );
+		}
+		return starts;
+	}
+
+	/**
+	 * Copy range [from, to) of the concatenation of the <em>src</em> arrays
+	 * to the same range of the concatenation of the <em>dest</em> arrays.
+	 */
+	private static void copyFlatRange( final List< Object > src, final long[] srcStarts, final List< Object > dest, final long[] destStarts, final long from, final long to )
+	{
+		int si = blockIndex( srcStarts, from );
+		int di = blockIndex( destStarts, from );
+		long pos = from;
+		while ( pos < to )
+		{
+			final long srcEnd = srcStarts[ si + 1 ];
+			final long destEnd = destStarts[ di + 1 ];
+			final long end = Math.min( to, Math.min( srcEnd, destEnd ) );
+			System.arraycopy( src.get( si ), ( int ) ( pos - srcStarts[ si ] ), dest.get( di ), ( int ) ( pos - destStarts[ di ] ), ( int ) ( end - pos ) );
+			pos = end;
+			if ( pos == srcEnd )
+				++si;
+			if ( pos == destEnd )
+				++di;
+		}
+	}
+
+	/**
+	 * @return index of the block containing <em>pos</em>.
+	 */
+	private static int blockIndex( final long[] starts, final long pos )
+	{
+		int lo = 0;
+		int hi = starts.length - 2;
+		while ( lo < hi )
+		{
+			final int mid = ( lo + hi + 1 ) >>> 1;
+			if ( starts[ mid ] <= pos )
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		return lo;
+	}
+
+	/**
+	 * Copy the storage arrays of cell images with identical cell grids, cell
+	 * by cell.
+	 * 
+	 * @return false if the cell grids differ or cells are not stored in
+	 *         arrays, and nothing was copied.
+	 */
+	private static boolean copyCells( final AbstractCellImg< ?, ?, ?, ? > src, final AbstractCellImg< ?, ?, ?, ? > dest, final ExecutorService service, final int numTasks )
+	{
+		final int n = src.numDimensions();
+		long numCells = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			final int cellDim = src.getCells().cellDimension( d );
+			if ( cellDim != dest.getCells().cellDimension( d ) )
+				return false;
+			numCells *= ( src.dimension( d ) - 1 ) / cellDim + 1;
+		}
+
+		final Object srcArray = storageArray( src.getCells().cursor().next().getData() );
+		final Object destArray = storageArray( dest.getCells().cursor().next().getData() );
+		if ( srcArray == null || destArray == null || srcArray.getClass() != destArray.getClass() )
+			return false;
+
+		final long total = numCells;
+		final int numParts = ( int ) Math.min( numTasks, numCells );
+		final ArrayList< Callable< Void > > tasks = new ArrayList< Callable< Void > >( numParts );
+		for ( int i = 0; i < numParts; ++i )
+		{
+			final long from = total * i / numParts;
+			final long to = total * ( i + 1 ) / numParts;
+			tasks.add( new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					final Cursor< ? extends AbstractCell< ? > > srcCells = src.getCells().cursor();
+					final Cursor< ? extends AbstractCell< ? > > destCells = dest.getCells().cursor();
+					srcCells.jumpFwd( from );
+					destCells.jumpFwd( from );
+					for ( long c = from; c < to; ++c )
+					{
+						final Object s = storageArray( srcCells.next().getData() );
+						final AbstractCell< ? > destCell = destCells.next();
+						final Object t = storageArray( destCell.getData() );
+						final int length = Array.getLength( s );
+						if ( t == null || Array.getLength( t ) != length )
+							throw new RuntimeException( "Cell storage of source and destination differs." );
+						System.arraycopy( s, 0, t, 0, length );
+						if ( destCell instanceof CachedCell )
+							( ( CachedCell< ? > ) destCell ).markDirty();
+					}
+					return null;
+				}
+			} );
+		}
+		runTasks( tasks, service );
+		return true;
+	}
+
+	/**
+	 * Copy pixels through cursors, in parallel chunks of the iteration order
+	 * of <em>dest</em>.
+	 */
+	private static < T extends Type< T > > void copyCursors( final Img< T > src, final Img< T > dest, final ExecutorService service, final int numTasks )
+	{
+		final boolean sameIterationOrder = src.iterationOrder().equals( dest.iterationOrder() );
+		final List< Chunk > chunks = Chunks.split( dest, numTasks );
+		final ArrayList< Callable< Void > > tasks = new ArrayList< Callable< Void > >( chunks.size() );
+		for ( final Chunk chunk : chunks )
+		{
+			tasks.add( new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					final Cursor< T > destCursor = Chunks.cursor( dest, chunk );
+					if ( sameIterationOrder )
+					{
+						final Cursor< T > srcCursor = Chunks.cursor( src, chunk );
+						while ( destCursor.hasNext() )
+							destCursor.next().set( srcCursor.next() );
+					}
+					else
+					{
+						final RandomAccess< T > srcAccess = src.randomAccess();
+						while ( destCursor.hasNext() )
+						{
+							destCursor.fwd();
+							srcAccess.setPosition( destCursor );
+							destCursor.get().set( srcAccess.get() );
+						}
+					}
+					return null;
+				}
+			} );
+		}
+		runTasks( tasks, service );
+	}
+
+	/**
+	 * Run <em>tasks</em> on <em>service</em> and wait for them to finish. If
+	 * <em>service</em> is null or there is only one task, run on the calling
+	 * thread.
+	 */
+	private static void runTasks( final List< Callable< Void > > tasks, final ExecutorService service )
+	{
+		try
+		{
+			if ( service == null || tasks.size() == 1 )
+			{
+				for ( final Callable< Void > task : tasks )
+					task.call();
+				return;
+			}
+			for ( final Future< Void > future : service.invokeAll( tasks ) )
+				future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			throw new RuntimeException( e.getCause() );
+		}
+		catch ( final RuntimeException e )
+		{
+			throw e;
+		}
+		catch ( final Exception e )
+		{
+			throw new RuntimeException( e );
+		}
+	}
+
+	/**
+	 * Copy between a primitive array and the storage of <em>img</em> with
+	 * {@link System#arraycopy}, if <em>stride</em> addresses the array densely
+	 * in flat iteration order and <em>img</em> stores pixels of class
+	 * <em>typeClass</em> in flat iteration order in arrays of the same type.
+	 * 
+	 * @param toImg
+	 *            whether to copy from the array to the image or vice versa.
+	 * @return false if nothing was copied.
+	 */
+	private static boolean copyDense( final Object array, final int offset, final int[] stride, final Img< ? > img, final Class< ? > typeClass, final boolean toImg )
+	{
+		final int n = img.numDimensions();
+		if ( stride.length != n || img.size() == 0 || img.firstElement().getClass() != typeClass )
+			return false;
+		long step = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( stride[ d ] != step )
+				return false;
+			step *= img.dimension( d );
+		}
+
+		final List< Object > blocks = flatStorage( img );
+		if ( blocks == null )
+			return false;
+		for ( final Object block : blocks )
+			if ( block.getClass() != array.getClass() )
+				return false;
+
+		int pos = offset;
+		for ( final Object block : blocks )
+		{
+			final int length = Array.getLength( block );
+			if ( toImg )
+				System.arraycopy( array, pos, block, 0, length );
+			else
+				System.arraycopy( block, 0, array, pos, length );
+			pos += length;
+		}
+		return true;
+	}
 }
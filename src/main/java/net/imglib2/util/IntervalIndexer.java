@@ -280,7 +280,7 @@ public class IntervalIndexer
 
 	final static public long indexToPosition( final long index, final long[] dimensions, final int dimension )
 	{
-		int step = 1;
+		long step = 1;
 		for ( int d = 0; d < dimension; ++d )
 			step *= dimensions[ d ];
 		return ( index / step ) % dimensions[ dimension ];
@@ -89,11 +89,7 @@ public class LinAlgHelpers
 	public static double squareDistance( final double[] a, final double[] b )
 	{
 		assert rows( a ) == rows( b );
-		final int rows = rows( a );
-		double squ_len = 0.0;
-		for ( int i = 0; i < rows; ++i )
-			squ_len += ( a[ i ] - b[ i ] ) * ( a[ i ] - b[ i ] );
-		return squ_len;
+		return SquareDistance.squDistance( a, b );
 	}
 
 	/**
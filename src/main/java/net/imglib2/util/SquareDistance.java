@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+/**
+ * Squared Euclidean distance kernels on {@code double[]} coordinates, with
+ * unrolled code for 2D and 3D. Coordinates of many points are expected in a
+ * flat array where point {@code i} occupies elements {@code i*n} to
+ * {@code i*n+n-1}, as in {@link net.imglib2.FlatKDTree}.
+ * 
+ * <p>
+ * The kernels dispatch with a switch on the number of dimensions rather than
+ * through kernel objects. For a given search the number of dimensions is
+ * fixed, so the branch is always predicted, while a virtual call would become
+ * megamorphic (and not inlined) as soon as searches of different
+ * dimensionality run in the same JVM.
+ * </p>
+ * 
+ * @author ImgLib2 developers
+ */
+public class SquareDistance
+{
+	/**
+	 * Get the squared distance between a and b.
+	 */
+	public static double squDistance( final double[] a, final double[] b )
+	{
+		return squDistance( a, 0, b, a.length );
+	}
+
+	/**
+	 * Get the squared distance between point p and the point stored at offset
+	 * in positions.
+	 * 
+	 * @param positions
+	 *            flat array of coordinates
+	 * @param offset
+	 *            index of the first coordinate of the point in positions
+	 * @param p
+	 *            coordinates of the other point
+	 * @param n
+	 *            number of dimensions
+	 */
+	public static double squDistance( final double[] positions, final int offset, final double[] p, final int n )
+	{
+		return squDistance( positions, offset, p, 0, n );
+	}
+
+	/**
+	 * Get the squared distance between the points stored at aOffset in a and
+	 * at bOffset in b.
+	 * 
+	 * @param a
+	 *            flat array of coordinates
+	 * @param aOffset
+	 *            index of the first coordinate of the first point in a
+	 * @param b
+	 *            flat array of coordinates
+	 * @param bOffset
+	 *            index of the first coordinate of the second point in b
+	 * @param n
+	 *            number of dimensions
+	 */
+	public static double squDistance( final double[] a, final int aOffset, final double[] b, final int bOffset, final int n )
+	{
+		switch ( n )
+		{
+		case 1:
+		{
+			final double dx = a[ aOffset ] - b[ bOffset ];
+			return dx * dx;
+		}
+		case 2:
+		{
+			final double dx = a[ aOffset ] - b[ bOffset ];
+			final double dy = a[ aOffset + 1 ] - b[ bOffset + 1 ];
+			return dx * dx + dy * dy;
+		}
+		case 3:
+		{
+			final double dx = a[ aOffset ] - b[ bOffset ];
+			final double dy = a[ aOffset + 1 ] - b[ bOffset + 1 ];
+			final double dz = a[ aOffset + 2 ] - b[ bOffset + 2 ];
+			return dx * dx + dy * dy + dz * dz;
+		}
+		default:
+		{
+			double sum = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				final double diff = a[ aOffset + d ] - b[ bOffset + d ];
+				sum += diff * diff;
+			}
+			return sum;
+		}
+		}
+	}
+
+	/**
+	 * Compute the squared distances between point p and points {@code from}
+	 * to {@code to-1} stored in positions.
+	 * 
+	 * @param positions
+	 *            flat array of coordinates
+	 * @param from
+	 *            index of the first point
+	 * @param to
+	 *            index after the last point
+	 * @param p
+	 *            coordinates of the other point
+	 * @param n
+	 *            number of dimensions
+	 * @param squDistances
+	 *            receives the squared distance of point {@code i} at index
+	 *            {@code i-from}
+	 */
+	public static void squDistances( final double[] positions, final int from, final int to, final double[] p, final int n, final double[] squDistances )
+	{
+		final int m = to - from;
+		switch ( n )
+		{
+		case 2:
+		{
+			final double x = p[ 0 ];
+			final double y = p[ 1 ];
+			for ( int i = 0, o = from * 2; i < m; ++i, o += 2 )
+			{
+				final double dx = positions[ o ] - x;
+				final double dy = positions[ o + 1 ] - y;
+				squDistances[ i ] = dx * dx + dy * dy;
+			}
+			break;
+		}
+		case 3:
+		{
+			final double x = p[ 0 ];
+			final double y = p[ 1 ];
+			final double z = p[ 2 ];
+			for ( int i = 0, o = from * 3; i < m; ++i, o += 3 )
+			{
+				final double dx = positions[ o ] - x;
+				final double dy = positions[ o + 1 ] - y;
+				final double dz = positions[ o + 2 ] - z;
+				squDistances[ i ] = dx * dx + dy * dy + dz * dz;
+			}
+			break;
+		}
+		default:
+		{
+			// accumulate one dimension at a time for all points
+			for ( int i = 0; i < m; ++i )
+				squDistances[ i ] = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				final double x = p[ d ];
+				for ( int i = 0, o = from * n + d; i < m; ++i, o += n )
+				{
+					final double diff = positions[ o ] - x;
+					squDistances[ i ] += diff * diff;
+				}
+			}
+		}
+		}
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.display.projector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.CopyableConverter;
+import net.imglib2.converter.RealARGBConverter;
+import net.imglib2.display.projector.composite.CompositeXYProjector;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that projectors rendering in parallel row bands produce the same
+ * result as on a single thread.
+ * 
+ * @author ImgLib2 developers
+ */
+public class ParallelProjectorTest
+{
+	static ExecutorService service;
+
+	/**
+	 * Converter with a temporary variable, counting its copies.
+	 */
+	static class StatefulConverter implements CopyableConverter< FloatType, ARGBType >
+	{
+		static final AtomicInteger numCopies = new AtomicInteger();
+
+		final FloatType tmp = new FloatType();
+
+		final RealARGBConverter< FloatType > converter = new RealARGBConverter< FloatType >( 0, 1 );
+
+		@Override
+		public void convert( final FloatType input, final ARGBType output )
+		{
+			tmp.set( input );
+			converter.convert( tmp, output );
+		}
+
+		@Override
+		public StatefulConverter copy()
+		{
+			numCopies.incrementAndGet();
+			return new StatefulConverter();
+		}
+	}
+
+	@BeforeClass
+	public static void createService()
+	{
+		service = Executors.newFixedThreadPool( 4 );
+	}
+
+	@AfterClass
+	public static void shutdownService()
+	{
+		service.shutdown();
+	}
+
+	static Img< FloatType > randomImg( final long... dimensions )
+	{
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		final Random rnd = new Random( 1234 );
+		for ( final FloatType t : img )
+			t.set( rnd.nextFloat() );
+		return img;
+	}
+
+	static void assertSameValues( final IterableInterval< ARGBType > expected, final IterableInterval< ARGBType > actual )
+	{
+		final Cursor< ARGBType > e = expected.cursor();
+		final Cursor< ARGBType > a = actual.cursor();
+		while ( e.hasNext() )
+			assertEquals( e.next().get(), a.next().get() );
+	}
+
+	void testIterableIntervalProjector( final Img< FloatType > source, final ImgFactory< ARGBType > targetFactory )
+	{
+		final long[] targetDims = new long[] { source.dimension( 0 ), source.dimension( 1 ) };
+		final Img< ARGBType > expected = targetFactory.create( targetDims, new ARGBType() );
+		final Img< ARGBType > actual = targetFactory.create( targetDims, new ARGBType() );
+
+		final IterableIntervalProjector2D< FloatType, ARGBType > single = new IterableIntervalProjector2D< FloatType, ARGBType >( 0, 1, source, expected, new StatefulConverter() );
+		final IterableIntervalProjector2D< FloatType, ARGBType > parallel = new IterableIntervalProjector2D< FloatType, ARGBType >( 0, 1, source, actual, new StatefulConverter() );
+		parallel.setExecutorService( service, 4 );
+		for ( int d = 2; d < source.numDimensions(); ++d )
+		{
+			single.setPosition( 1, d );
+			parallel.setPosition( 1, d );
+		}
+
+		final int numCopies = StatefulConverter.numCopies.get();
+		single.map();
+		assertEquals( numCopies, StatefulConverter.numCopies.get() );
+		parallel.map();
+		assertEquals( numCopies + 4, StatefulConverter.numCopies.get() );
+
+		assertSameValues( expected, actual );
+	}
+
+	@Test
+	public void testIterableIntervalProjector2D()
+	{
+		// same iteration order
+		testIterableIntervalProjector( randomImg( 37, 23 ), new ArrayImgFactory< ARGBType >() );
+		// flat iteration order
+		testIterableIntervalProjector( randomImg( 37, 23, 3 ), new ArrayImgFactory< ARGBType >() );
+		// any iteration order
+		testIterableIntervalProjector( randomImg( 37, 23, 3 ), new CellImgFactory< ARGBType >( 10 ) );
+	}
+
+	@Test
+	public void testCompositeXYProjector()
+	{
+		final Img< FloatType > source = randomImg( 37, 23, 3 );
+		final long[] targetDims = new long[] { 37, 23 };
+		final Img< ARGBType > expected = new ArrayImgFactory< ARGBType >().create( targetDims, new ARGBType() );
+		final Img< ARGBType > actual = new ArrayImgFactory< ARGBType >().create( targetDims, new ARGBType() );
+
+		final ArrayList< Converter< FloatType, ARGBType > > converters = new ArrayList< Converter< FloatType, ARGBType > >();
+		for ( int i = 0; i < 3; ++i )
+			converters.add( new StatefulConverter() );
+
+		final CompositeXYProjector< FloatType > single = new CompositeXYProjector< FloatType >( source, expected, converters, 2 );
+		final CompositeXYProjector< FloatType > parallel = new CompositeXYProjector< FloatType >( source, actual, converters, 2 );
+		parallel.setExecutorService( service, 3 );
+
+		// single position
+		single.map();
+		parallel.map();
+		assertSameValues( expected, actual );
+
+		// composite of all positions
+		single.setComposite( true );
+		parallel.setComposite( true );
+		single.map();
+		parallel.map();
+		assertSameValues( expected, actual );
+
+		boolean nonZero = false;
+		for ( final ARGBType t : actual )
+			nonZero |= ( t.get() & 0xffffff ) != 0;
+		assertTrue( nonZero );
+	}
+}
@@ -34,12 +34,30 @@
 
 package net.imglib2.histogram;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.IterableRandomAccessibleInterval;
 
 import org.junit.Test;
 
@@ -104,6 +122,193 @@ public class Histogram1dTest
 		assertEquals( 0, hist.upperTailCount() );
 	}
 
+	@Test
+	public void testParallelCountData()
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			final Random random = new Random( 42 );
+			final long[] dims = new long[] { 64, 48, 5 };
+			final List< Img< UnsignedShortType > > imgs = new ArrayList< Img< UnsignedShortType > >();
+			imgs.add( new ArrayImgFactory< UnsignedShortType >().create( dims, new UnsignedShortType() ) );
+			imgs.add( new PlanarImgFactory< UnsignedShortType >().create( dims, new UnsignedShortType() ) );
+			for ( final Img< UnsignedShortType > img : imgs )
+			{
+				for ( final UnsignedShortType t : img )
+					t.set( random.nextInt( 1200 ) );
+
+				for ( final boolean tails : new boolean[] { false, true } )
+				{
+					final Integer1dBinMapper< UnsignedShortType > binMapper =
+							new Integer1dBinMapper< UnsignedShortType >( 100, 1000, tails );
+					final Histogram1d< UnsignedShortType > expected =
+							new Histogram1d< UnsignedShortType >( img, binMapper );
+					for ( final int numTasks : new int[] { 1, 3, 7 } )
+					{
+						final Histogram1d< UnsignedShortType > hist =
+								new Histogram1d< UnsignedShortType >( binMapper );
+						hist.countData( img, service, numTasks );
+						assertArrayEquals( expected.toLongArray(), hist.toLongArray() );
+						assertEquals( expected.distributionCount(), hist.distributionCount() );
+						assertEquals( expected.ignoredCount(), hist.ignoredCount() );
+						assertEquals( img.size(), hist.totalCount() );
+						assertEquals( img.firstElement().get(), hist.firstDataValue().get() );
+					}
+				}
+			}
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testPrimitiveCounting()
+	{
+		final Random random = new Random( 13 );
+		final long[] dims = new long[] { 31, 17, 4 };
+		final List< ImgFactory< UnsignedByteType > > byteFactories = new ArrayList< ImgFactory< UnsignedByteType > >();
+		byteFactories.add( new ArrayImgFactory< UnsignedByteType >() );
+		byteFactories.add( new PlanarImgFactory< UnsignedByteType >() );
+		for ( final ImgFactory< UnsignedByteType > factory : byteFactories )
+		{
+			final Img< UnsignedByteType > img = factory.create( dims, new UnsignedByteType() );
+			for ( final UnsignedByteType t : img )
+				t.set( random.nextInt( 256 ) );
+			assertSameCounts( img, new Integer1dBinMapper< UnsignedByteType >( 0, 256, false ) );
+			assertSameCounts( img, new Integer1dBinMapper< UnsignedByteType >( 20, 50, true ) );
+			assertSameCounts( img, new Integer1dBinMapper< UnsignedByteType >( 20, 50, false ) );
+			assertSameCounts( img, new Real1dBinMapper< UnsignedByteType >( 10, 200, 7, true ) );
+		}
+
+		final List< ImgFactory< UnsignedShortType > > shortFactories = new ArrayList< ImgFactory< UnsignedShortType > >();
+		shortFactories.add( new ArrayImgFactory< UnsignedShortType >() );
+		shortFactories.add( new PlanarImgFactory< UnsignedShortType >() );
+		for ( final ImgFactory< UnsignedShortType > factory : shortFactories )
+		{
+			final Img< UnsignedShortType > img = factory.create( dims, new UnsignedShortType() );
+			for ( final UnsignedShortType t : img )
+				t.set( random.nextInt( 65536 ) );
+			assertSameCounts( img, new Integer1dBinMapper< UnsignedShortType >( 0, 65536, false ) );
+			assertSameCounts( img, new Integer1dBinMapper< UnsignedShortType >( 1000, 3000, true ) );
+			assertSameCounts( img, new Real1dBinMapper< UnsignedShortType >( 0, 40000, 100, false ) );
+		}
+
+		final List< ImgFactory< FloatType > > floatFactories = new ArrayList< ImgFactory< FloatType > >();
+		floatFactories.add( new ArrayImgFactory< FloatType >() );
+		floatFactories.add( new PlanarImgFactory< FloatType >() );
+		for ( final ImgFactory< FloatType > factory : floatFactories )
+		{
+			final Img< FloatType > img = factory.create( dims, new FloatType() );
+			for ( final FloatType t : img )
+				t.set( ( float ) ( random.nextGaussian() * 10 ) );
+			img.firstElement().set( Float.NaN );
+			assertSameCounts( img, new Real1dBinMapper< FloatType >( -10, 10, 20, true ) );
+			assertSameCounts( img, new Real1dBinMapper< FloatType >( -10, 10, 20, false ) );
+			assertSameCounts( img, new Real1dBinMapper< FloatType >( 0, 0, 1, false ) );
+		}
+
+		// backing array larger than the image
+		final byte[] array = new byte[ 100 ];
+		Arrays.fill( array, ( byte ) 7 );
+		final Img< UnsignedByteType > img = ArrayImgs.unsignedBytes( array, 10, 5 );
+		final Histogram1d< UnsignedByteType > hist =
+				new Histogram1d< UnsignedByteType >( img, new Integer1dBinMapper< UnsignedByteType >( 0, 256, false ) );
+		assertEquals( 50, hist.totalCount() );
+		assertEquals( 50, hist.frequency( 7 ) );
+		hist.addData( img );
+		assertEquals( 100, hist.frequency( 7 ) );
+	}
+
+	@Test
+	public void testQuantiles()
+	{
+		final Random random = new Random( 11 );
+		final List< UnsignedByteType > data = new ArrayList< UnsignedByteType >();
+		final int[] values = new int[ 1001 ];
+		for ( int i = 0; i < values.length; ++i )
+		{
+			values[ i ] = random.nextInt( 200 );
+			data.add( new UnsignedByteType( values[ i ] ) );
+		}
+		Arrays.sort( values );
+
+		final Histogram1d< UnsignedByteType > hist =
+				new Histogram1d< UnsignedByteType >( data, new Integer1dBinMapper< UnsignedByteType >( 0, 256, false ) );
+		final UnsignedByteType value = new UnsignedByteType();
+		for ( final double q : new double[] { 0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 1 } )
+		{
+			final int rank = Math.max( 1, ( int ) Math.ceil( q * values.length ) );
+			hist.quantile( q, value );
+			assertEquals( values[ rank - 1 ], value.get() );
+		}
+		for ( int v = 0; v < 256; v += 17 )
+		{
+			int expected = 0;
+			while ( expected < values.length && values[ expected ] <= v )
+				++expected;
+			value.set( v );
+			assertEquals( expected, hist.rank( value ) );
+			assertEquals( expected, hist.cumulativeCount( v ) );
+		}
+		assertEquals( values.length, hist.cumulativeCount( 1000 ) );
+		assertEquals( 0, hist.cumulativeCount( -1 ) );
+
+		// cumulative counts follow modifications
+		value.set( 250 );
+		hist.increment( value );
+		hist.increment( value );
+		hist.quantile( 1, value );
+		assertEquals( 250, value.get() );
+		value.set( 249 );
+		assertEquals( values.length, hist.rank( value ) );
+
+		// modifications through the Img methods need explicit invalidation
+		final RandomAccess< LongType > access = hist.randomAccess();
+		access.setPosition( 255, 0 );
+		access.get().inc();
+		assertEquals( values.length + 2, hist.cumulativeCount( 255 ) );
+		hist.invalidateCumulativeCounts();
+		assertEquals( values.length + 3, hist.cumulativeCount( 255 ) );
+
+		// values outside a histogram without tails
+		final Histogram1d< UnsignedByteType > narrow =
+				new Histogram1d< UnsignedByteType >( data, new Integer1dBinMapper< UnsignedByteType >( 50, 100, false ) );
+		value.set( 10 );
+		assertEquals( 0, narrow.rank( value ) );
+		value.set( 180 );
+		assertEquals( narrow.distributionCount(), narrow.rank( value ) );
+
+		hist.resetCounters();
+		try
+		{
+			hist.quantileBin( 0.5 );
+			fail();
+		}
+		catch ( final IllegalStateException e )
+		{}
+	}
+
+	/**
+	 * Compares counting <em>img</em> directly with counting it through a
+	 * generic {@link IterableInterval}.
+	 */
+	private static < T extends RealType< T > > void assertSameCounts( final Img< T > img, final BinMapper1d< T > mapper )
+	{
+		final Histogram1d< T > expected = new Histogram1d< T >( new IterableRandomAccessibleInterval< T >( img ), mapper );
+		final Histogram1d< T > hist = new Histogram1d< T >( img, mapper );
+		assertArrayEquals( expected.toLongArray(), hist.toLongArray() );
+		assertEquals( expected.ignoredCount(), hist.ignoredCount() );
+		assertEquals( expected.distributionCount(), hist.distributionCount() );
+		hist.addData( img );
+		assertEquals( 2 * expected.totalCount(), hist.totalCount() );
+		hist.subtractData( img );
+		assertArrayEquals( expected.toLongArray(), hist.toLongArray() );
+		assertEquals( expected.totalCount(), hist.totalCount() );
+	}
+
 	private List< UnsignedByteType > getData1()
 	{
 		final List< UnsignedByteType > data = new ArrayList< UnsignedByteType >();
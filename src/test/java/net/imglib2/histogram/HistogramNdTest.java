@@ -34,19 +34,28 @@
 
 package net.imglib2.histogram;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
 
 import org.junit.Test;
 
@@ -292,6 +301,182 @@ public class HistogramNdTest
 		assertEquals( 20000, hist.distributionCount() );
 	}
 
+	@Test
+	public void testParallelCountData()
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			final Random random = new Random( 42 );
+			final ArrayImgFactory< UnsignedByteType > factory = new ArrayImgFactory< UnsignedByteType >();
+			final List< Img< UnsignedByteType > > imgs = new ArrayList< Img< UnsignedByteType > >();
+			final List< Iterable< UnsignedByteType > > data = new ArrayList< Iterable< UnsignedByteType > >();
+			for ( int c = 0; c < 2; ++c )
+			{
+				final Img< UnsignedByteType > img = factory.create( new long[] { 50, 40 }, new UnsignedByteType() );
+				for ( final UnsignedByteType t : img )
+					t.set( random.nextInt( 20 ) );
+				imgs.add( img );
+				data.add( img );
+			}
+			final List< BinMapper1d< UnsignedByteType > > mappers = new ArrayList< BinMapper1d< UnsignedByteType > >();
+			mappers.add( new Integer1dBinMapper< UnsignedByteType >( 0, 16, false ) );
+			mappers.add( new Integer1dBinMapper< UnsignedByteType >( 2, 10, true ) );
+
+			final HistogramNd< UnsignedByteType > expected = new HistogramNd< UnsignedByteType >( data, mappers );
+			final HistogramNd< UnsignedByteType > hist = new HistogramNd< UnsignedByteType >( mappers );
+			hist.countData( imgs, service, 5 );
+
+			assertEquals( expected.distributionCount(), hist.distributionCount() );
+			assertEquals( expected.ignoredCount(), hist.ignoredCount() );
+			final Cursor< LongType > e = expected.cursor();
+			final Cursor< LongType > a = hist.cursor();
+			while ( e.hasNext() )
+				assertEquals( e.next().get(), a.next().get() );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testSparseJointHistogram()
+	{
+		final Random random = new Random( 3 );
+		final int numValues = 5000;
+		final List< Iterable< UnsignedShortType > > data = new ArrayList< Iterable< UnsignedShortType > >();
+		final List< BinMapper1d< UnsignedShortType > > mappers = new ArrayList< BinMapper1d< UnsignedShortType > >();
+		for ( int c = 0; c < 3; ++c )
+		{
+			final List< UnsignedShortType > channel = new ArrayList< UnsignedShortType >();
+			for ( int i = 0; i < numValues; ++i )
+				channel.add( new UnsignedShortType( i % 7 == 0 ? 1234 : random.nextInt( 65536 ) ) );
+			data.add( channel );
+			mappers.add( new Integer1dBinMapper< UnsignedShortType >( 0, 65536, false ) );
+		}
+
+		// 65536^3 bins would not fit into memory
+		final HistogramNd< UnsignedShortType > hist = new HistogramNd< UnsignedShortType >( mappers, true );
+		hist.countData( data );
+		assertTrue( hist.dfd().isSparse() );
+		assertEquals( 65536L * 65536L * 65536L, hist.size() );
+		assertEquals( numValues, hist.distributionCount() );
+
+		final int numRepeated = ( numValues + 6 ) / 7;
+		final long[] repeated = new long[] { 1234, 1234, 1234 };
+		assertEquals( numRepeated, hist.frequency( repeated ) );
+		assertEquals( ( double ) numRepeated / numValues, hist.relativeFrequency( repeated, true ), 0 );
+		assertEquals( numRepeated, hist.dfd().modeCount() );
+		assertArrayEquals( repeated, hist.dfd().modePositions().get( 0 ) );
+
+		final RandomAccess< LongType > access = hist.randomAccess();
+		access.setPosition( repeated );
+		assertEquals( numRepeated, access.get().get() );
+		access.setPosition( new long[] { 1, 2, 3 } );
+		assertEquals( 0, access.get().get() );
+
+		long sum = 0;
+		int numNonZero = 0;
+		final long[] binPos = new long[ 3 ];
+		final Cursor< LongType > cursor = hist.dfd().nonZeroCursor();
+		while ( cursor.hasNext() )
+		{
+			final long count = cursor.next().get();
+			cursor.localize( binPos );
+			assertEquals( hist.frequency( binPos ), count );
+			assertTrue( count > 0 );
+			sum += count;
+			++numNonZero;
+		}
+		assertEquals( numValues, sum );
+		assertEquals( numValues - numRepeated + 1, numNonZero );
+
+		hist.decrement( repeated );
+		assertEquals( numRepeated - 1, hist.frequency( repeated ) );
+		assertEquals( numValues - 1, hist.distributionCount() );
+
+		final HistogramNd< UnsignedShortType > copy = hist.copy();
+		assertTrue( copy.dfd().isSparse() );
+		assertEquals( 0, copy.distributionCount() );
+
+		hist.resetCounters();
+		assertEquals( 0, hist.distributionCount() );
+		assertEquals( 0, hist.frequency( repeated ) );
+		assertFalse( hist.dfd().nonZeroCursor().hasNext() );
+	}
+
+	@Test
+	public void testModesOfEmptyHistogram()
+	{
+		final List< BinMapper1d< UnsignedByteType > > mappers = new ArrayList< BinMapper1d< UnsignedByteType > >();
+		mappers.add( new Integer1dBinMapper< UnsignedByteType >( 0, 4, false ) );
+		mappers.add( new Integer1dBinMapper< UnsignedByteType >( 0, 3, false ) );
+		for ( final boolean sparse : new boolean[] { false, true } )
+		{
+			final HistogramNd< UnsignedByteType > hist = new HistogramNd< UnsignedByteType >( mappers, sparse );
+			assertTrue( hist.dfd().modePositions().isEmpty() );
+			assertEquals( 0, hist.dfd().modeCount() );
+
+			hist.increment( new long[] { 2, 1 } );
+			assertEquals( 1, hist.dfd().modePositions().size() );
+			assertArrayEquals( new long[] { 2, 1 }, hist.dfd().modePositions().get( 0 ) );
+			assertEquals( 1, hist.dfd().modeCount() );
+		}
+	}
+
+	@Test
+	public void testSparseMatchesDense()
+	{
+		final Random random = new Random( 5 );
+		final List< Iterable< UnsignedByteType > > data = new ArrayList< Iterable< UnsignedByteType > >();
+		final List< BinMapper1d< UnsignedByteType > > mappers = new ArrayList< BinMapper1d< UnsignedByteType > >();
+		for ( int c = 0; c < 2; ++c )
+		{
+			final List< UnsignedByteType > channel = new ArrayList< UnsignedByteType >();
+			for ( int i = 0; i < 300; ++i )
+				channel.add( new UnsignedByteType( random.nextInt( 20 ) ) );
+			data.add( channel );
+			mappers.add( new Integer1dBinMapper< UnsignedByteType >( 2, 12, true ) );
+		}
+		final HistogramNd< UnsignedByteType > dense = new HistogramNd< UnsignedByteType >( data, mappers );
+		final HistogramNd< UnsignedByteType > sparse = new HistogramNd< UnsignedByteType >( mappers, true );
+		sparse.countData( data );
+
+		assertEquals( dense.distributionCount(), sparse.distributionCount() );
+		assertEquals( dense.ignoredCount(), sparse.ignoredCount() );
+		assertEquals( dense.dfd().modeCount(), sparse.dfd().modeCount() );
+		final Cursor< LongType > d = dense.localizingCursor();
+		final Cursor< LongType > s = sparse.localizingCursor();
+		while ( d.hasNext() )
+		{
+			assertEquals( d.next().get(), s.next().get() );
+			assertEquals( d.getLongPosition( 0 ), s.getLongPosition( 0 ) );
+			assertEquals( d.getLongPosition( 1 ), s.getLongPosition( 1 ) );
+		}
+		assertFalse( s.hasNext() );
+
+		// non-zero bins of the dense histogram
+		long numNonZero = 0;
+		final Cursor< LongType > nz = dense.dfd().nonZeroCursor();
+		while ( nz.hasNext() )
+		{
+			assertTrue( nz.next().get() > 0 );
+			++numNonZero;
+		}
+		long expected = 0;
+		for ( final LongType t : dense )
+			if ( t.get() != 0 )
+				++expected;
+		assertEquals( expected, numNonZero );
+
+		// writing through the samplers of the sparse histogram
+		final RandomAccess< LongType > access = sparse.randomAccess();
+		access.setPosition( new long[] { 3, 4 } );
+		access.get().set( 42 );
+		assertEquals( 42, sparse.frequency( new long[] { 3, 4 } ) );
+	}
+
 	private List< UnsignedByteType > getData1()
 	{
 		final List< UnsignedByteType > data = new ArrayList< UnsignedByteType >();
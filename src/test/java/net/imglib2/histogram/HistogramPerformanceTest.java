@@ -34,6 +34,9 @@
 
 package net.imglib2.histogram;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
@@ -99,6 +102,18 @@ public class HistogramPerformanceTest< T extends IntegerType< T > & NativeType<
 		final long histMillis = end - start;
 		System.out.println( histMillis + " ms" );
 
+		// build histogram with parallel counting
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		System.out.print( "Building histogram with " + numThreads + " threads... " );
+		final ExecutorService service = Executors.newFixedThreadPool( numThreads );
+		start = System.currentTimeMillis();
+		final Histogram1d< T > parallelHist = new Histogram1d< T >( binMapper );
+		parallelHist.countData( img, service, numThreads );
+		end = System.currentTimeMillis();
+		service.shutdown();
+		final long parallelMillis = end - start;
+		System.out.println( parallelMillis + " ms" );
+
 		// check results
 		final T val = img.firstElement();
 		for ( int i = 0; i < max; i++ )
@@ -112,6 +127,12 @@ public class HistogramPerformanceTest< T extends IntegerType< T > & NativeType<
 				System.out.println( "Error: for bin #" + i + ": expected=" + expect +
 						", actual=" + actual );
 			}
+			final long parallelActual = parallelHist.frequency( binPos );
+			if ( parallelActual != expect )
+			{
+				System.out.println( "Error: for bin #" + i + " (parallel): expected=" + expect +
+						", actual=" + parallelActual );
+			}
 		}
 	}
 
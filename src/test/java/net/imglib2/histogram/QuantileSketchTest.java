@@ -0,0 +1,166 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link QuantileSketch}.
+ * 
+ * @author ImgLib2 developers
+ */
+public class QuantileSketchTest
+{
+	private static double[] randomValues( final int n, final long seed )
+	{
+		final Random random = new Random( seed );
+		final double[] values = new double[ n ];
+		for ( int i = 0; i < n; ++i )
+		{
+			switch ( i % 4 )
+			{
+			case 0:
+				values[ i ] = Math.exp( 8 * random.nextGaussian() );
+				break;
+			case 1:
+				values[ i ] = -Math.exp( 3 * random.nextGaussian() );
+				break;
+			case 2:
+				values[ i ] = 0;
+				break;
+			default:
+				values[ i ] = 1000 * random.nextDouble();
+			}
+		}
+		return values;
+	}
+
+	private static void assertQuantiles( final double[] sorted, final QuantileSketch sketch )
+	{
+		final double accuracy = sketch.relativeAccuracy();
+		for ( final double q : new double[] { 0, 0.001, 0.01, 0.1, 0.2, 0.3, 0.4, 0.5, 0.6, 0.7, 0.8, 0.9, 0.99, 0.999, 1 } )
+		{
+			final double exact = sorted[ ( int ) ( q * ( sorted.length - 1 ) ) ];
+			final double estimate = sketch.quantile( q );
+			assertTrue( "q=" + q + ": exact=" + exact + ", estimate=" + estimate,
+					Math.abs( estimate - exact ) <= accuracy * Math.abs( exact ) * ( 1 + 1e-9 ) );
+		}
+	}
+
+	@Test
+	public void testQuantiles()
+	{
+		final double[] values = randomValues( 100000, 1 );
+		for ( final double accuracy : new double[] { 0.05, 0.01, 0.001 } )
+		{
+			final QuantileSketch sketch = new QuantileSketch( accuracy );
+			for ( final double v : values )
+				sketch.add( v );
+			sketch.add( Double.NaN );
+			assertEquals( values.length, sketch.count() );
+
+			final double[] sorted = values.clone();
+			Arrays.sort( sorted );
+			assertEquals( sorted[ 0 ], sketch.min(), 0 );
+			assertEquals( sorted[ sorted.length - 1 ], sketch.max(), 0 );
+			assertEquals( sorted[ 0 ], sketch.quantile( 0 ), 0 );
+			assertEquals( sorted[ sorted.length - 1 ], sketch.quantile( 1 ), 0 );
+			assertQuantiles( sorted, sketch );
+		}
+	}
+
+	@Test
+	public void testMerge()
+	{
+		final double[] a = randomValues( 20000, 2 );
+		final double[] b = randomValues( 30000, 3 );
+		final QuantileSketch sa = new QuantileSketch();
+		final QuantileSketch sb = new QuantileSketch();
+		final QuantileSketch all = new QuantileSketch();
+		for ( final double v : a )
+		{
+			sa.add( v );
+			all.add( v );
+		}
+		for ( final double v : b )
+		{
+			sb.add( v );
+			all.add( v );
+		}
+		sa.merge( sb );
+		assertEquals( all.count(), sa.count() );
+		for ( double q = 0; q <= 1; q += 0.05 )
+			assertEquals( all.quantile( q ), sa.quantile( q ), 0 );
+
+		final double[] sorted = new double[ a.length + b.length ];
+		System.arraycopy( a, 0, sorted, 0, a.length );
+		System.arraycopy( b, 0, sorted, a.length, b.length );
+		Arrays.sort( sorted );
+		assertQuantiles( sorted, sa );
+	}
+
+	@Test
+	public void testAddData()
+	{
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( new long[] { 100, 50 }, new FloatType() );
+		int i = 0;
+		for ( final FloatType t : img )
+			t.set( i++ );
+		final QuantileSketch sketch = new QuantileSketch( 0.01 );
+		sketch.addData( img );
+		assertEquals( 5000, sketch.count() );
+		assertEquals( 2499.5, sketch.quantile( 0.5 ), 0.01 * 2500 );
+
+		sketch.clear();
+		assertEquals( 0, sketch.count() );
+		assertTrue( Double.isNaN( sketch.quantile( 0.5 ) ) );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testInvalidAccuracy()
+	{
+		new QuantileSketch( 0 );
+	}
+}
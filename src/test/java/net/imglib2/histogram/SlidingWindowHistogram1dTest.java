@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link SlidingWindowHistogram1d}.
+ * 
+ * @author ImgLib2 developers
+ */
+public class SlidingWindowHistogram1dTest
+{
+	private final Random random = new Random( 7 );
+
+	private Img< UnsignedShortType > createFrame( final boolean array )
+	{
+		final long[] dims = new long[] { 20, 15 };
+		final Img< UnsignedShortType > img = array
+				? new ArrayImgFactory< UnsignedShortType >().create( dims, new UnsignedShortType() )
+				: new ListImgFactory< UnsignedShortType >().create( dims, new UnsignedShortType() );
+		for ( final UnsignedShortType t : img )
+			t.set( random.nextInt( 500 ) );
+		return img;
+	}
+
+	@Test
+	public void testWindow()
+	{
+		final int windowSize = 3;
+		final Integer1dBinMapper< UnsignedShortType > mapper = new Integer1dBinMapper< UnsignedShortType >( 100, 200, false );
+		final SlidingWindowHistogram1d< UnsignedShortType > window = new SlidingWindowHistogram1d< UnsignedShortType >( mapper, windowSize );
+		final List< Img< UnsignedShortType > > frames = new ArrayList< Img< UnsignedShortType > >();
+		for ( int f = 0; f < 10; ++f )
+		{
+			final Img< UnsignedShortType > frame = createFrame( f % 2 == 0 );
+			frames.add( frame );
+			window.addFrame( frame );
+			assertEquals( Math.min( f + 1, windowSize ), window.numFrames() );
+
+			final Histogram1d< UnsignedShortType > expected = new Histogram1d< UnsignedShortType >( mapper );
+			for ( int i = Math.max( 0, frames.size() - windowSize ); i < frames.size(); ++i )
+				expected.addData( frames.get( i ) );
+			assertArrayEquals( expected.toLongArray(), window.histogram().toLongArray() );
+			assertEquals( expected.ignoredCount(), window.histogram().ignoredCount() );
+			assertEquals( expected.totalCount(), window.histogram().totalCount() );
+		}
+
+		window.clear();
+		assertEquals( 0, window.numFrames() );
+		assertEquals( 0, window.histogram().totalCount() );
+	}
+
+	@Test
+	public void testAddRemove()
+	{
+		final Integer1dBinMapper< UnsignedShortType > mapper = new Integer1dBinMapper< UnsignedShortType >( 0, 10, true );
+		final SlidingWindowHistogram1d< UnsignedShortType > window = new SlidingWindowHistogram1d< UnsignedShortType >( mapper, 2 );
+		window.add( new UnsignedShortType( 3 ) );
+		window.add( new UnsignedShortType( 3 ) );
+		window.add( new UnsignedShortType( 50 ) );
+		window.remove( new UnsignedShortType( 3 ) );
+		assertEquals( 1, window.numFrames() );
+		assertEquals( 1, window.histogram().frequency( new UnsignedShortType( 3 ) ) );
+		assertEquals( 1, window.histogram().upperTailCount() );
+
+		window.nextFrame();
+		window.add( new UnsignedShortType( 5 ) );
+		final Img< UnsignedShortType > frame = createFrame( true );
+		window.addData( frame );
+		window.removeData( frame );
+		assertEquals( 3, window.histogram().totalCount() );
+
+		// evicts the first frame
+		window.nextFrame();
+		assertEquals( 1, window.histogram().totalCount() );
+		assertEquals( 0, window.histogram().frequency( new UnsignedShortType( 3 ) ) );
+		assertEquals( 1, window.histogram().frequency( new UnsignedShortType( 5 ) ) );
+
+		// evicts the second frame
+		window.nextFrame();
+		assertEquals( 0, window.histogram().totalCount() );
+	}
+}
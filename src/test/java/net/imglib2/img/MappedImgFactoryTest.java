@@ -0,0 +1,171 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel.MapMode;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.MappedArrayImgFactory;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.MappedFile;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.MappedCellImgFactory;
+import net.imglib2.img.planar.MappedPlanarImgFactory;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.IntervalIndexer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for images on memory-mapped files.
+ * 
+ * @author ImgLib2 developers
+ */
+public class MappedImgFactoryTest
+{
+	final long[] dimensions = new long[] { 13, 7, 5 };
+
+	final int numPixels = 13 * 7 * 5;
+
+	final int headerSize = 16;
+
+	File file;
+
+	@Before
+	public void createFile() throws IOException
+	{
+		file = File.createTempFile( "imglib2-mapped", ".raw" );
+		final ByteBuffer buffer = ByteBuffer.allocate( headerSize + numPixels * 4 ).order( ByteOrder.LITTLE_ENDIAN );
+		buffer.position( headerSize );
+		for ( int i = 0; i < numPixels; ++i )
+			buffer.putFloat( i );
+		final RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+		raf.write( buffer.array() );
+		raf.close();
+	}
+
+	@After
+	public void deleteFile()
+	{
+		file.delete();
+	}
+
+	@Test
+	public void testArrayImg() throws IOException
+	{
+		final MappedFile mapped = new MappedFile( file, MapMode.READ_ONLY, ByteOrder.LITTLE_ENDIAN, headerSize );
+		final ArrayImg< FloatType, ? > img = new MappedArrayImgFactory< FloatType >( mapped ).create( dimensions, new FloatType() );
+		mapped.close();
+
+		int i = 0;
+		for ( final FloatType t : img )
+			assertEquals( i++, t.get(), 0 );
+		assertEquals( headerSize + numPixels * 4, mapped.position() );
+	}
+
+	@Test
+	public void testPlanarImg() throws IOException
+	{
+		final MappedFile mapped = new MappedFile( file, MapMode.READ_ONLY, ByteOrder.LITTLE_ENDIAN, headerSize );
+		final PlanarImg< FloatType, ? > img = new MappedPlanarImgFactory< FloatType >( mapped ).create( dimensions, new FloatType() );
+		mapped.close();
+
+		final RandomAccess< FloatType > a = img.randomAccess();
+		final long[] pos = new long[ dimensions.length ];
+		for ( int i = 0; i < numPixels; ++i )
+		{
+			IntervalIndexer.indexToPosition( i, dimensions, pos );
+			a.setPosition( pos );
+			assertEquals( i, a.get().get(), 0 );
+		}
+	}
+
+	@Test
+	public void testCellImgWriteThrough() throws IOException
+	{
+		final int[] cellDimensions = new int[] { 4, 4, 4 };
+
+		MappedFile mapped = new MappedFile( file, MapMode.READ_WRITE, ByteOrder.LITTLE_ENDIAN, headerSize );
+		final CellImg< FloatType, ?, ? > img = new MappedCellImgFactory< FloatType >( mapped, cellDimensions ).create( dimensions, new FloatType() );
+		mapped.close();
+
+		final Cursor< FloatType > c = img.localizingCursor();
+		final long[] pos = new long[ dimensions.length ];
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( pos );
+			c.get().set( IntervalIndexer.positionToIndex( pos, dimensions ) );
+		}
+
+		// cells are stored one after the other, so a flat view of the file
+		// contains the pixels in cell iteration order
+		mapped = new MappedFile( file, MapMode.READ_ONLY, ByteOrder.LITTLE_ENDIAN, headerSize );
+		final FloatBufferAccess access = new FloatBufferAccess( mapped, numPixels );
+		mapped.close();
+
+		int i = 0;
+		for ( final FloatType t : img )
+			assertEquals( t.get(), access.getValue( i++ ), 0 );
+	}
+
+	@Test
+	public void testDirectBuffer()
+	{
+		final FloatBufferAccess access = new FloatBufferAccess( numPixels );
+		final ArrayImg< FloatType, FloatBufferAccess > img = new ArrayImg< FloatType, FloatBufferAccess >( access, dimensions, new Fraction() );
+		img.setLinkedType( new FloatType( img ) );
+
+		int i = 0;
+		for ( final FloatType t : img )
+			t.set( i++ );
+		for ( i = 0; i < numPixels; ++i )
+			assertEquals( i, access.getValue( i ), 0 );
+		assertEquals( ByteOrder.nativeOrder(), access.getByteBuffer().order() );
+	}
+}
@@ -0,0 +1,307 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.ImgUtil;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Util;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CellImg CellImgs} on {@link CachedCells}.
+ * 
+ * @author ImgLib2 developers
+ */
+public class CachedCellImgTest
+{
+	/**
+	 * Creates empty cells.
+	 */
+	static class EmptyCellLoader implements CellLoader
+	{
+		int numLoaded = 0;
+
+		@Override
+		public < A extends ArrayDataAccess< A > > A load( final A creator, final int numEntities, final long[] min, final int[] dimensions )
+		{
+			++numLoaded;
+			return creator.createArray( numEntities );
+		}
+	}
+
+	/**
+	 * Keeps written cells in a map, and loads them from there if present.
+	 */
+	static class MapCellStore extends EmptyCellLoader implements CellWriter
+	{
+		final HashMap< String, float[] > store = new HashMap< String, float[] >();
+
+		int numWritten = 0;
+
+		@Override
+		public < A extends ArrayDataAccess< A > > A load( final A creator, final int numEntities, final long[] min, final int[] dimensions )
+		{
+			final A data = super.load( creator, numEntities, min, dimensions );
+			final float[] stored = store.get( Util.printCoordinates( min ) );
+			if ( stored != null )
+				System.arraycopy( stored, 0, data.getCurrentStorageArray(), 0, numEntities );
+			return data;
+		}
+
+		@Override
+		public < A extends ArrayDataAccess< A > > void write( final A data, final long[] min, final int[] dimensions )
+		{
+			++numWritten;
+			store.put( Util.printCoordinates( min ), ( ( float[] ) data.getCurrentStorageArray() ).clone() );
+		}
+	}
+
+	@Test
+	public void testCachedCellImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			if ( dim[ i ].length > 1 )
+			{
+				final CachedCellImgFactory< FloatType > factory = new CachedCellImgFactory< FloatType >( new EmptyCellLoader(), null, Integer.MAX_VALUE, 10 );
+				assertTrue( "ArrayImg vs cached CellImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+						ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory< FloatType >(), factory ) );
+				assertTrue( "cached CellImg vs ArrayImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+						ImgTestHelper.testImg( dim[ i ], factory, new ArrayImgFactory< FloatType >() ) );
+			}
+		}
+	}
+
+	@Test
+	public void testLazyLoading()
+	{
+		final long[] dimensions = new long[] { 100, 100, 100 };
+		final EmptyCellLoader loader = new EmptyCellLoader();
+		final CellImg< FloatType, ?, ? > img = new CachedCellImgFactory< FloatType >( loader, 4, new int[] { 10, 10, 10 } ).create( dimensions, new FloatType() );
+		assertEquals( 0, loader.numLoaded );
+
+		// the random access is initialized at the origin
+		final RandomAccess< FloatType > a = img.randomAccess();
+		assertEquals( 1, loader.numLoaded );
+		a.setPosition( new long[] { 55, 42, 3 } );
+		a.get().set( 1 );
+		a.setPosition( new long[] { 56, 43, 4 } );
+		assertEquals( 2, loader.numLoaded );
+
+		final CachedCells< ? > cells = ( CachedCells< ? > ) img.getCells();
+		for ( int i = 0; i < 10; ++i )
+			a.setPosition( 10 * i, 2 );
+		assertEquals( 4, cells.numCachedCells() );
+	}
+
+	@Test
+	public void testWriteBack()
+	{
+		final long[] dimensions = new long[] { 45, 37, 23 };
+		final int[] cellDimensions = new int[] { 8, 8, 8 };
+		final MapCellStore store = new MapCellStore();
+
+		final CachedCellImgFactory< FloatType > factory = new CachedCellImgFactory< FloatType >( store, store, 3, cellDimensions );
+		final CellImg< FloatType, ?, ? > img = factory.create( dimensions, new FloatType() );
+
+		final long[] position = new long[ dimensions.length ];
+		final Cursor< FloatType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( position );
+			c.get().set( IntervalIndexer.positionToIndex( position, dimensions ) );
+		}
+		( ( CachedCells< ? > ) img.getCells() ).flush();
+
+		final CellImg< FloatType, ?, ? > reloaded = factory.create( dimensions, new FloatType() );
+		final RandomAccess< FloatType > a = reloaded.randomAccess();
+		final Random random = new Random( 0 );
+		for ( int i = 0; i < 1000; ++i )
+		{
+			for ( int d = 0; d < dimensions.length; ++d )
+				position[ d ] = random.nextInt( ( int ) dimensions[ d ] );
+			a.setPosition( position );
+			assertEquals( IntervalIndexer.positionToIndex( position, dimensions ), a.get().get(), 0 );
+		}
+	}
+
+	@Test
+	public void testWriteOnlyDirtyCells()
+	{
+		final long[] dimensions = new long[] { 40, 40 };
+		final MapCellStore store = new MapCellStore();
+		final CellImg< FloatType, ?, ? > img = new CachedCellImgFactory< FloatType >( store, store, 2, new int[] { 10, 10 } ).create( dimensions, new FloatType() );
+		final CachedCells< ? > cells = ( CachedCells< ? > ) img.getCells();
+
+		// reading evicts cells, but does not write them
+		for ( final FloatType t : img )
+			t.get();
+		cells.flush();
+		assertEquals( 0, store.numWritten );
+
+		final RandomAccess< FloatType > a = img.randomAccess();
+		a.setPosition( new long[] { 15, 25 } );
+		a.get().set( 1 );
+		assertEquals( 1, cells.numDirtyCells() );
+		for ( final FloatType t : img )
+			t.get();
+		assertEquals( 1, store.numWritten );
+		assertEquals( 0, cells.numDirtyCells() );
+		cells.flush();
+		assertEquals( 1, store.numWritten );
+	}
+
+	@Test
+	public void testWriteAfterEviction()
+	{
+		final long[] dimensions = new long[] { 40, 40 };
+		final MapCellStore store = new MapCellStore();
+		final CachedCellImgFactory< FloatType > factory = new CachedCellImgFactory< FloatType >( store, store, 2, new int[] { 10, 10 } );
+		final CellImg< FloatType, ?, ? > img = factory.create( dimensions, new FloatType() );
+		final CachedCells< ? > cells = ( CachedCells< ? > ) img.getCells();
+
+		// enter the cell at the origin, then evict it
+		final RandomAccess< FloatType > a = img.randomAccess();
+		final RandomAccess< FloatType > b = img.randomAccess();
+		b.setPosition( new long[] { 35, 35 } );
+		b.setPosition( new long[] { 25, 35 } );
+
+		// modify the evicted cell, then leave it
+		a.setPosition( new long[] { 3, 4 } );
+		a.get().set( 7 );
+		assertEquals( 1, cells.numDirtyCells() );
+		a.setPosition( new long[] { 35, 35 } );
+		System.gc();
+		assertEquals( 1, cells.numDirtyCells() );
+		assertEquals( 0, store.numWritten );
+
+		cells.flush();
+		assertEquals( 1, store.numWritten );
+		final RandomAccess< FloatType > r = factory.create( dimensions, new FloatType() ).randomAccess();
+		r.setPosition( new long[] { 3, 4 } );
+		assertEquals( 7, r.get().get(), 0 );
+	}
+
+	@Test
+	public void testCopyMarksDirty()
+	{
+		final long[] dimensions = new long[] { 40, 40 };
+		final int[] cellDimensions = new int[] { 10, 10 };
+		final MapCellStore store = new MapCellStore();
+		final CellImg< FloatType, ?, ? > img = new CachedCellImgFactory< FloatType >( store, store, 100, cellDimensions ).create( dimensions, new FloatType() );
+		final CellImg< FloatType, ?, ? > src = new CellImgFactory< FloatType >( cellDimensions ).create( dimensions, new FloatType() );
+		for ( final FloatType t : src )
+			t.set( 1 );
+
+		assertTrue( ImgUtil.copy( src, img ).isBulk() );
+		( ( CachedCells< ? > ) img.getCells() ).flush();
+		assertEquals( 16, store.numWritten );
+	}
+
+	@Test( expected = IllegalStateException.class )
+	public void testNullLoaderResult()
+	{
+		final CellLoader loader = new CellLoader()
+		{
+			@Override
+			public < A extends ArrayDataAccess< A > > A load( final A creator, final int numEntities, final long[] min, final int[] dimensions )
+			{
+				return null;
+			}
+		};
+		new CachedCells< FloatArray >( new FloatArray( 1 ), new Fraction(), new long[] { 20, 20 }, new int[] { 10, 10 }, loader, null, 10 ).get( 0 );
+	}
+
+	@Test
+	public void testConcurrentLoading() throws InterruptedException
+	{
+		final EmptyCellLoader loader = new EmptyCellLoader()
+		{
+			@Override
+			public synchronized < A extends ArrayDataAccess< A > > A load( final A creator, final int numEntities, final long[] min, final int[] dimensions )
+			{
+				try
+				{
+					Thread.sleep( 20 );
+				}
+				catch ( final InterruptedException e )
+				{
+					Thread.currentThread().interrupt();
+				}
+				return super.load( creator, numEntities, min, dimensions );
+			}
+		};
+		final CachedCells< FloatArray > cells = new CachedCells< FloatArray >( new FloatArray( 1 ), new Fraction(), new long[] { 20, 20 }, new int[] { 10, 10 }, loader, null, 10 );
+		final Object[] data = new Object[ 4 ];
+		final Thread[] threads = new Thread[ data.length ];
+		for ( int i = 0; i < threads.length; ++i )
+		{
+			final int t = i;
+			threads[ i ] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					data[ t ] = cells.get( 3 ).getData();
+				}
+			};
+			threads[ i ].start();
+		}
+		for ( final Thread thread : threads )
+			thread.join();
+
+		assertEquals( 1, loader.numLoaded );
+		for ( int i = 1; i < data.length; ++i )
+			assertSame( data[ 0 ], data[ i ] );
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.type.volatiles.VolatileRealType;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link VolatileCellImg} and {@link CellFetchQueue}.
+ * 
+ * @author ImgLib2 developers
+ */
+public class VolatileCellImgTest
+{
+	/**
+	 * Fills every pixel of a cell with the x coordinate of the cell min plus
+	 * one, after waiting for the latch to be released.
+	 */
+	static class LatchedCellLoader implements CellLoader
+	{
+		final CountDownLatch latch = new CountDownLatch( 1 );
+
+		@Override
+		public < A extends ArrayDataAccess< A > > A load( final A creator, final int numEntities, final long[] min, final int[] dimensions )
+		{
+			try
+			{
+				latch.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				throw new RuntimeException( e );
+			}
+			final A data = creator.createArray( numEntities );
+			Arrays.fill( ( float[] ) data.getCurrentStorageArray(), min[ 0 ] + 1 );
+			return data;
+		}
+	}
+
+	@Test
+	public void testNonBlockingAccess() throws InterruptedException
+	{
+		final CellFetchQueue fetchQueue = new CellFetchQueue( 2 );
+		final LatchedCellLoader loader = new LatchedCellLoader();
+		final CachedCellImgFactory< FloatType > factory = new CachedCellImgFactory< FloatType >( loader, fetchQueue, 0, 100, new int[] { 10, 10 } );
+		final CellImg< FloatType, ?, CachedCell< ? > > img = factory.create( new long[] { 40, 30 }, new FloatType() );
+		final VolatileCellImg< FloatType > volatileImg = new VolatileCellImg< FloatType >( img );
+		final CachedCells< ? > cells = ( CachedCells< ? > ) ( Object ) img.getCells();
+
+		// nothing is loaded, so all pixels are invalid placeholders
+		final VolatileCellRandomAccess< FloatType > a = volatileImg.randomAccess();
+		a.setPosition( new long[] { 25, 15 } );
+		VolatileRealType< FloatType > v = a.get();
+		assertFalse( v.isValid() );
+		assertEquals( 0, v.getRealFloat(), 0 );
+		assertEquals( 2, cells.numPendingCells() );
+
+		// requesting the same cell again does not enqueue it again
+		volatileImg.randomAccess().setPosition( new long[] { 21, 11 } );
+		assertEquals( 2, cells.numPendingCells() );
+
+		loader.latch.countDown();
+		while ( cells.numPendingCells() > 0 )
+			Thread.sleep( 1 );
+
+		// a sampler that stays in the placeholder cell still sees it
+		assertFalse( a.get().isValid() );
+
+		final VolatileCellRandomAccess< FloatType > b = volatileImg.randomAccess();
+		b.setPosition( new long[] { 25, 15 } );
+		v = b.get();
+		assertTrue( v.isValid() );
+		assertEquals( 21, v.getRealFloat(), 0 );
+
+		// moving to a cell that is not loaded gives an invalid pixel again
+		b.setPosition( 35, 0 );
+		assertFalse( b.get().isValid() );
+
+		fetchQueue.shutdown();
+	}
+
+	@Test
+	public void testFetchQueueOrder() throws InterruptedException
+	{
+		final CellFetchQueue fetchQueue = new CellFetchQueue( 1 );
+		final CountDownLatch started = new CountDownLatch( 1 );
+		final CountDownLatch blocker = new CountDownLatch( 1 );
+		final CountDownLatch done = new CountDownLatch( 5 );
+		final List< Integer > order = Collections.synchronizedList( new ArrayList< Integer >() );
+
+		// occupy the only worker, such that the following requests queue up
+		fetchQueue.enqueue( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				started.countDown();
+				try
+				{
+					blocker.await();
+				}
+				catch ( final InterruptedException e )
+				{}
+			}
+		}, 0 );
+		started.await();
+
+		final int[][] requests = { { 1, 1 }, { 2, 0 }, { 3, 1 }, { 4, 2 }, { 5, 0 } };
+		for ( final int[] request : requests )
+		{
+			final int id = request[ 0 ];
+			fetchQueue.enqueue( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					order.add( id );
+					done.countDown();
+				}
+			}, request[ 1 ] );
+		}
+		blocker.countDown();
+		done.await();
+
+		// by priority, most recent first within the same priority
+		assertEquals( Arrays.asList( 5, 2, 3, 1, 4 ), order );
+		fetchQueue.shutdown();
+	}
+
+	@Test
+	public void testLoadFailure() throws InterruptedException
+	{
+		final CellFetchQueue fetchQueue = new CellFetchQueue( 1 );
+		final CachedCellImgTest.EmptyCellLoader loader = new CachedCellImgTest.EmptyCellLoader()
+		{
+			@Override
+			public < A extends ArrayDataAccess< A > > A load( final A creator, final int numEntities, final long[] min, final int[] dimensions )
+			{
+				super.load( creator, numEntities, min, dimensions );
+				throw new IllegalStateException( "cell not available" );
+			}
+		};
+		final CachedCellImgFactory< FloatType > factory = new CachedCellImgFactory< FloatType >( loader, fetchQueue, 0, 100, new int[] { 10, 10 } );
+		final CellImg< FloatType, ?, CachedCell< ? > > img = factory.create( new long[] { 10, 10 }, new FloatType() );
+		final CachedCells< ? > cells = ( CachedCells< ? > ) ( Object ) img.getCells();
+
+		assertFalse( cells.get( 0 ).isValid() );
+		while ( cells.numPendingCells() > 0 )
+			Thread.sleep( 1 );
+		assertEquals( 1, loader.numLoaded );
+		assertEquals( 1, cells.numFailedCells() );
+
+		// the failure is recorded on the placeholder, which is not enqueued again
+		final CachedCell< ? > cell = cells.get( 0 );
+		assertFalse( cell.isValid() );
+		assertTrue( cell.getLoadFailure() instanceof IllegalStateException );
+		assertEquals( 0, cells.numPendingCells() );
+
+		cells.clearLoadFailures();
+		cells.get( 0 );
+		while ( cells.numPendingCells() > 0 )
+			Thread.sleep( 1 );
+		assertEquals( 2, loader.numLoaded );
+		fetchQueue.shutdown();
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.paged;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Util;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PagedArrayImg}.
+ * 
+ * @author ImgLib2 developers
+ */
+public class PagedArrayImgTest
+{
+	@Test
+	public void testPagedArrayImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "PagedArrayImg failed for: dim=" + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new PagedArrayImgFactory< FloatType >( 8 ), new ArrayImgFactory< FloatType >() ) );
+			assertTrue( "PagedArrayImg failed for: dim=" + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory< FloatType >(), new PagedArrayImgFactory< FloatType >( 10 ) ) );
+		}
+	}
+
+	@Test
+	public void testPages()
+	{
+		final long[] dimensions = new long[] { 21, 13, 7 };
+		final PagedArrayImg< FloatType, ? > img = new PagedArrayImgFactory< FloatType >( 6 ).create( dimensions, new FloatType() );
+		assertEquals( ( 21 * 13 * 7 - 1 ) / 64 + 1, img.numPages() );
+
+		final long[] position = new long[ dimensions.length ];
+		final long[] expected = new long[ dimensions.length ];
+		final Cursor< FloatType > c = img.cursor();
+		long i = 0;
+		while ( c.hasNext() )
+		{
+			c.next().set( i );
+			c.localize( position );
+			IntervalIndexer.indexToPosition( i, dimensions, expected );
+			assertArrayEquals( expected, position );
+			++i;
+		}
+		assertEquals( img.size(), i );
+
+		final RandomAccess< FloatType > a = img.randomAccess();
+		final Random random = new Random( 0 );
+		for ( int k = 0; k < 1000; ++k )
+		{
+			final long index = random.nextInt( ( int ) img.size() );
+			IntervalIndexer.indexToPosition( index, dimensions, position );
+			a.setPosition( position );
+			assertEquals( index, a.get().get(), 0 );
+		}
+
+		final Cursor< FloatType > jumping = img.localizingCursor();
+		jumping.jumpFwd( 1000 );
+		assertEquals( 999, jumping.get().get(), 0 );
+		jumping.localize( position );
+		IntervalIndexer.indexToPosition( 999, dimensions, expected );
+		assertArrayEquals( expected, position );
+		jumping.fwd();
+		assertEquals( 1000, jumping.get().get(), 0 );
+	}
+
+	@Test
+	public void testSubEntityType()
+	{
+		final long[] dimensions = new long[] { 1000, 3 };
+		final PagedArrayImg< BitType, ? > img = new PagedArrayImgFactory< BitType >( 7 ).create( dimensions, new BitType() );
+		final ArrayImg< BitType, ? > reference = new ArrayImgFactory< BitType >().create( dimensions, new BitType() );
+
+		final Random random = new Random( 1 );
+		final Cursor< BitType > r = reference.cursor();
+		for ( final BitType t : img )
+		{
+			final boolean b = random.nextBoolean();
+			t.set( b );
+			r.next().set( b );
+		}
+
+		final Cursor< BitType > c = img.localizingCursor();
+		final RandomAccess< BitType > a = reference.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			assertEquals( a.get().get(), c.get().get() );
+		}
+	}
+}
@@ -34,9 +34,17 @@
 
 package net.imglib2.img.sparse;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 
 /**
@@ -94,4 +102,83 @@ public class NtreeTest
 
 		assertFalse( t.root.hasChildren() );
 	}
+
+	@Test
+	public void test_compact()
+	{
+		final int v = 10;
+		final Ntree< Integer > t = new Ntree< Integer >( new long[] { 256, 257, 100 }, v );
+		final long[] pos = new long[] { 27, 38, 99 };
+		t.createNode( pos ).setValue( v + 1 );
+		final long numNodes = t.numNodes();
+		assertEquals( 1 + 8 * ( t.numTreeLevels - 1 ), numNodes );
+
+		// setting the value on the node directly does not merge
+		t.getNode( pos ).setValue( v );
+		assertEquals( numNodes, t.numNodes() );
+
+		final Ntree.CompactionStatistics stats = t.compact();
+		assertEquals( numNodes, stats.getNumNodesBefore() );
+		assertEquals( 1, stats.getNumNodesAfter() );
+		assertEquals( numNodes - 1, stats.getNumNodesFreed() );
+		assertFalse( t.root.hasChildren() );
+		assertEquals( v, t.root.getValue().intValue() );
+	}
+
+	@Test
+	public void test_concurrentWrites() throws Exception
+	{
+		final int v = 0;
+		final long[] dimensions = new long[] { 64, 48, 33 };
+		final Ntree< Integer > t = new Ntree< Integer >( dimensions, v );
+		final int numThreads = 8;
+
+		// each thread labels the voxels of every numThreads-th z slice
+		// with its own label, then erases them again
+		final ExecutorService service = Executors.newFixedThreadPool( numThreads );
+		try
+		{
+			for ( final boolean erase : new boolean[] { false, true } )
+			{
+				final List< Callable< Void > > tasks = new ArrayList< Callable< Void > >();
+				for ( int i = 0; i < numThreads; ++i )
+				{
+					final int thread = i;
+					tasks.add( new Callable< Void >()
+					{
+						@Override
+						public Void call()
+						{
+							final long[] pos = new long[ 3 ];
+							final int label = erase ? v : thread + 1;
+							for ( pos[ 2 ] = thread; pos[ 2 ] < dimensions[ 2 ]; pos[ 2 ] += numThreads )
+								for ( pos[ 1 ] = 0; pos[ 1 ] < dimensions[ 1 ]; ++pos[ 1 ] )
+									for ( pos[ 0 ] = 0; pos[ 0 ] < dimensions[ 0 ]; ++pos[ 0 ] )
+									{
+										t.createNodeWithValue( pos, label );
+										assertEquals( label, t.getNode( pos ).getValue().intValue() );
+									}
+							return null;
+						}
+					} );
+				}
+				for ( final Future< Void > f : service.invokeAll( tasks ) )
+					f.get();
+
+				final long[] pos = new long[ 3 ];
+				for ( pos[ 2 ] = 0; pos[ 2 ] < dimensions[ 2 ]; ++pos[ 2 ] )
+					for ( pos[ 1 ] = 0; pos[ 1 ] < dimensions[ 1 ]; ++pos[ 1 ] )
+						for ( pos[ 0 ] = 0; pos[ 0 ] < dimensions[ 0 ]; ++pos[ 0 ] )
+							assertEquals( erase ? v : ( int ) ( pos[ 2 ] % numThreads ) + 1, t.getNode( pos ).getValue().intValue() );
+			}
+		}
+		finally
+		{
+			service.shutdown();
+		}
+
+		// erasing everything merges the tree back into the root
+		assertFalse( t.root.hasChildren() );
+		assertEquals( v, t.root.getValue().intValue() );
+	}
 }
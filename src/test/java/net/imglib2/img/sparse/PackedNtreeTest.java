@@ -0,0 +1,237 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.Util;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PackedNtree} and {@link PackedNtreeImgFactory}.
+ * 
+ * @author ImgLib2 developers
+ */
+public class PackedNtreeTest
+{
+	@Test
+	public void testSetAndMerge()
+	{
+		final long[] dimensions = new long[] { 256, 257, 100 };
+		final PackedNtree t = new PackedNtree( dimensions, 10 );
+		final long[] pos = new long[] { 27, 38, 99 };
+		final long[] pos2 = new long[] { 28, 38, 99 };
+
+		t.set( pos, 11 );
+		assertEquals( 11, t.get( pos ) );
+		assertEquals( 10, t.get( pos2 ) );
+		assertEquals( 1 + 8 * ( t.numTreeLevels - 1 ), t.numNodes() );
+
+		t.set( pos, 10 );
+		assertEquals( 10, t.get( pos ) );
+		assertEquals( 1, t.numNodes() );
+
+		// released blocks are recycled
+		final long bytes = t.sizeInBytes();
+		t.set( pos2, 12 );
+		assertEquals( bytes, t.sizeInBytes() );
+	}
+
+	@Test
+	public void testCompact()
+	{
+		final long[] dimensions = new long[] { 64, 64, 64 };
+		final NtreeImg< IntType, ? > img = new PackedNtreeImgFactory< IntType >().create( dimensions, new IntType() );
+		final PackedNtree t = ( ( PackedIntNtree ) img.update( img.randomAccess() ) ).getPackedNtree();
+
+		// paint a checkerboard, then erase it
+		for ( final int value : new int[] { 1, 0 } )
+		{
+			final Cursor< IntType > c = img.cursor();
+			while ( c.hasNext() )
+			{
+				c.fwd();
+				if ( ( c.getLongPosition( 0 ) + c.getLongPosition( 1 ) + c.getLongPosition( 2 ) ) % 2 == 0 )
+					c.get().set( value );
+			}
+		}
+		// merging on write leaves a single node, but keeps the memory
+		assertEquals( 1, t.numNodes() );
+		final long bytes = t.sizeInBytes();
+
+		// statistics count live nodes, like Ntree.compact()
+		final Ntree.CompactionStatistics stats = img.compact();
+		assertEquals( 1, stats.getNumNodesBefore() );
+		assertEquals( 1, stats.getNumNodesAfter() );
+		assertTrue( t.sizeInBytes() < bytes );
+		assertEquals( 0, img.firstElement().get() );
+
+		// the compacted tree can be written again
+		final RandomAccess< IntType > ra = img.randomAccess();
+		ra.setPosition( new long[] { 5, 6, 7 } );
+		ra.get().set( 3 );
+		assertEquals( 3, ra.get().get() );
+		ra.setPosition( new long[] { 5, 6, 8 } );
+		assertEquals( 0, ra.get().get() );
+	}
+
+	@Test
+	public void testCompactKeepsContent()
+	{
+		final long[] dimensions = new long[] { 20, 13 };
+		final PackedNtree t = new PackedNtree( dimensions, 0 );
+		final long[] pos = new long[ 2 ];
+		for ( pos[ 1 ] = 0; pos[ 1 ] < dimensions[ 1 ]; ++pos[ 1 ] )
+			for ( pos[ 0 ] = 0; pos[ 0 ] < dimensions[ 0 ]; ++pos[ 0 ] )
+				t.set( pos, ( pos[ 0 ] * pos[ 1 ] ) % 3 );
+		for ( pos[ 1 ] = 0; pos[ 1 ] < dimensions[ 1 ]; pos[ 1 ] += 2 )
+			for ( pos[ 0 ] = 0; pos[ 0 ] < dimensions[ 0 ]; ++pos[ 0 ] )
+				t.set( pos, 0 );
+
+		final long numNodes = t.numNodes();
+		t.compact();
+		assertEquals( numNodes, t.numNodes() );
+		for ( pos[ 1 ] = 0; pos[ 1 ] < dimensions[ 1 ]; ++pos[ 1 ] )
+			for ( pos[ 0 ] = 0; pos[ 0 ] < dimensions[ 0 ]; ++pos[ 0 ] )
+				assertEquals( pos[ 1 ] % 2 == 0 ? 0 : ( pos[ 0 ] * pos[ 1 ] ) % 3, t.get( pos ) );
+	}
+
+	@Test
+	public void testToNtree()
+	{
+		final long[] dimensions = new long[] { 17, 9 };
+		final PackedIntNtree packed = new PackedIntNtree( dimensions, new long[ 2 ], 3 );
+		final long[] pos = new long[ 2 ];
+		for ( pos[ 1 ] = 0; pos[ 1 ] < dimensions[ 1 ]; ++pos[ 1 ] )
+			for ( pos[ 0 ] = 0; pos[ 0 ] < dimensions[ 0 ]; pos[ 0 ] += 3 )
+				packed.createInstance( pos ).setValue( 0, ( int ) ( pos[ 0 ] + pos[ 1 ] ) );
+
+		final Ntree< Integer > ntree = packed.getCurrentStorageNtree();
+		for ( pos[ 1 ] = 0; pos[ 1 ] < dimensions[ 1 ]; ++pos[ 1 ] )
+			for ( pos[ 0 ] = 0; pos[ 0 ] < dimensions[ 0 ]; ++pos[ 0 ] )
+				assertEquals( packed.createInstance( pos ).getValue( 0 ), ntree.getNode( pos ).getValue().intValue() );
+	}
+
+	@Test
+	public void testPackedNtreeImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "PackedNtreeImg failed for: dim=" + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new PackedNtreeImgFactory< FloatType >(), new ArrayImgFactory< FloatType >() ) );
+		}
+	}
+
+	@Test
+	public void testSameContentAsNtreeImg()
+	{
+		final long[] dimensions = new long[] { 40, 33, 7 };
+		final NtreeImg< IntType, ? > packed = new PackedNtreeImgFactory< IntType >().create( dimensions, new IntType() );
+		final NtreeImg< IntType, ? > ntree = new NtreeImgFactory< IntType >().create( dimensions, new IntType() );
+
+		final RandomAccess< IntType > ra1 = packed.randomAccess();
+		final RandomAccess< IntType > ra2 = ntree.randomAccess();
+		final long[] pos = new long[ 3 ];
+		for ( int i = 0; i < 2000; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				pos[ d ] = ( i * 7919l * ( d + 1 ) ) % dimensions[ d ];
+			ra1.setPosition( pos );
+			ra2.setPosition( pos );
+			ra1.get().set( i % 5 );
+			ra2.get().set( i % 5 );
+		}
+
+		final Cursor< IntType > c1 = packed.cursor();
+		final Cursor< IntType > c2 = ntree.cursor();
+		while ( c1.hasNext() )
+			assertEquals( c2.next().get(), c1.next().get() );
+
+		assertTrue( packed.factory() instanceof PackedNtreeImgFactory );
+		final Cursor< IntType > c3 = packed.copy().cursor();
+		final Cursor< IntType > c4 = ntree.cursor();
+		while ( c3.hasNext() )
+			assertEquals( c4.next().get(), c3.next().get() );
+	}
+
+	@Test
+	public void testConcurrentReads() throws InterruptedException
+	{
+		final long[] dimensions = new long[] { 64, 64 };
+		final PackedNtree t = new PackedNtree( dimensions, 0 );
+		final long[] fixed = new long[] { 50, 50 };
+		t.set( fixed, 42 );
+
+		// splits and merges elsewhere recycle blocks while reading
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicLong wrong = new AtomicLong();
+		final Thread reader = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				final long[] pos = fixed.clone();
+				while ( !done.get() )
+					if ( t.get( pos ) != 42 )
+						wrong.incrementAndGet();
+			}
+		};
+		reader.start();
+		final long[] pos = new long[ 2 ];
+		for ( int i = 0; i < 20000; ++i )
+		{
+			pos[ 0 ] = i % 40;
+			pos[ 1 ] = ( i / 40 ) % 40;
+			t.set( pos, i % 7 + 1 );
+			t.set( pos, 0 );
+		}
+		done.set( true );
+		reader.join();
+		assertEquals( 0, wrong.get() );
+		assertEquals( 42, t.get( fixed ) );
+	}
+}
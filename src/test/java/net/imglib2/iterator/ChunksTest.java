@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.iterator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellCursor;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.paged.PagedArrayImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.img.sparse.NtreeImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Chunks} and the {@link SplittableIterable}
+ * implementations of the {@link Img} containers.
+ * 
+ * @author ImgLib2 developers
+ */
+public class ChunksTest
+{
+	final long[] dimensions = new long[] { 23, 17, 5 };
+
+	@SuppressWarnings( "unchecked" )
+	final ImgFactory< IntType >[] factories = new ImgFactory[] {
+			new ArrayImgFactory< IntType >(),
+			new PlanarImgFactory< IntType >(),
+			new CellImgFactory< IntType >( new int[] { 10, 7, 3 } ),
+			new ListImgFactory< IntType >(),
+			new NtreeImgFactory< IntType >(),
+			new PagedArrayImgFactory< IntType >( 6 ) };
+
+	Img< IntType > createImg( final ImgFactory< IntType > factory )
+	{
+		final Img< IntType > img = factory.create( dimensions, new IntType() );
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( i++ );
+		return img;
+	}
+
+	@Test
+	public void testChunksCoverIteration()
+	{
+		for ( final ImgFactory< IntType > factory : factories )
+		{
+			final Img< IntType > img = createImg( factory );
+			assertTrue( img instanceof SplittableIterable );
+			for ( int numChunks = 1; numChunks <= 12; ++numChunks )
+			{
+				final List< Chunk > chunks = Chunks.split( img, numChunks );
+				assertTrue( chunks.size() <= numChunks );
+
+				final Cursor< IntType > expected = img.localizingCursor();
+				final long[] expectedPosition = new long[ img.numDimensions() ];
+				final long[] position = new long[ img.numDimensions() ];
+				long offset = 0;
+				for ( final Chunk chunk : chunks )
+				{
+					assertEquals( offset, chunk.getOffset() );
+					assertTrue( chunk.getSize() > 0 );
+					final Cursor< IntType > cursor = Chunks.cursor( img, chunk );
+					for ( int pass = 0; pass < 2; ++pass )
+					{
+						long n = 0;
+						while ( cursor.hasNext() )
+						{
+							final int value = cursor.next().get();
+							assertEquals( factory.getClass().getSimpleName(), offset + n, value );
+							if ( pass == 0 )
+							{
+								expected.fwd();
+								expected.localize( expectedPosition );
+								cursor.localize( position );
+								assertArrayEquals( expectedPosition, position );
+							}
+							++n;
+						}
+						assertEquals( chunk.getSize(), n );
+						cursor.reset();
+					}
+					offset += chunk.getSize();
+				}
+				assertEquals( img.size(), offset );
+			}
+		}
+	}
+
+	@Test
+	public void testPlanarChunkStart()
+	{
+		final SplittableIterable< ? > img = ( SplittableIterable< ? > ) createImg( new PlanarImgFactory< IntType >() );
+		for ( final Chunk chunk : Chunks.split( ( Img< ? > ) img, 4 ) )
+			assertEquals( 0, chunk.getOffset() % ( 23 * 17 ) );
+	}
+
+	@Test
+	public void testCellChunkStart()
+	{
+		final CellImg< IntType, ?, ? > img = ( CellImg< IntType, ?, ? > ) createImg( new CellImgFactory< IntType >( new int[] { 10, 7, 3 } ) );
+
+		// brute force the first index of each cell
+		final CellCursor< IntType, ?, ? > cursor = img.cursor();
+		Object cell = null;
+		long cellStart = 0;
+		for ( long i = 0; cursor.hasNext(); ++i )
+		{
+			cursor.fwd();
+			if ( cursor.getCell() != cell )
+			{
+				cell = cursor.getCell();
+				cellStart = i;
+			}
+			assertEquals( cellStart, img.chunkStart( i ) );
+		}
+	}
+
+	@Test
+	public void testMap()
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		final Chunks.Task< IntType, Long > sum = new Chunks.Task< IntType, Long >()
+		{
+			@Override
+			public Long run( final Cursor< IntType > cursor )
+			{
+				long s = 0;
+				while ( cursor.hasNext() )
+					s += cursor.next().get();
+				return s;
+			}
+		};
+		final long n = dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ];
+		for ( final ImgFactory< IntType > factory : factories )
+		{
+			final List< Long > sums = new ArrayList< Long >( Chunks.map( createImg( factory ), service, 4, sum ) );
+			long total = 0;
+			for ( final long s : sums )
+				total += s;
+			assertEquals( n * ( n - 1 ) / 2, total );
+		}
+		service.shutdown();
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import net.imglib2.KDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.ApproximateKNearestNeighborSearchOnKDTree;
+import net.imglib2.neighborsearch.ApproximateNearestNeighborSearchOnKDTree;
+import net.imglib2.neighborsearch.BestBinFirstKNearestNeighborSearchOnKDTree;
+
+import org.junit.Test;
+
+/**
+ * Tests the error bounds of approximate nearest neighbor searches.
+ * 
+ * @author ImgLib2 developers
+ */
+public class ApproximateNearestNeighborSearchTest
+{
+	final Random rnd = new Random( 435435435 );
+
+	final ArrayList< RealPoint > points = FlatKDTreeTest.createPoints( 3, 2000, rnd );
+
+	final ArrayList< RealPoint > references = FlatKDTreeTest.createPoints( 3, 200, rnd );
+
+	final KDTree< RealPoint > tree = new KDTree< RealPoint >( new ArrayList< RealPoint >( points ), new ArrayList< RealPoint >( points ) );
+
+	@Test
+	public void testApproximateNearestNeighbor()
+	{
+		for ( final double epsilon : new double[] { 0, 0.5, 2 } )
+		{
+			final ApproximateNearestNeighborSearchOnKDTree< RealPoint > search = new ApproximateNearestNeighborSearchOnKDTree< RealPoint >( tree, epsilon );
+			for ( final RealPoint t : references )
+			{
+				final double[] expected = FlatKDTreeTest.sortedSquDistances( points, t );
+				search.search( t );
+				assertEquals( search.getSquareDistance(), FlatKDTreeTest.squDistance( search.getSampler().get(), t ), 0 );
+				assertTrue( search.getDistance() <= ( 1 + epsilon ) * Math.sqrt( expected[ 0 ] ) + 1e-9 );
+				if ( epsilon == 0 )
+					assertEquals( expected[ 0 ], search.getSquareDistance(), 0 );
+			}
+		}
+	}
+
+	@Test
+	public void testApproximateKNearestNeighbor()
+	{
+		final int k = 4;
+		for ( final double epsilon : new double[] { 0, 0.5, 2 } )
+		{
+			final ApproximateKNearestNeighborSearchOnKDTree< RealPoint > search = new ApproximateKNearestNeighborSearchOnKDTree< RealPoint >( tree, k, epsilon );
+			for ( final RealPoint t : references )
+			{
+				final double[] expected = FlatKDTreeTest.sortedSquDistances( points, t );
+				search.search( t );
+				for ( int i = 0; i < k; ++i )
+				{
+					assertEquals( search.getSquareDistance( i ), FlatKDTreeTest.squDistance( search.getSampler( i ).get(), t ), 0 );
+					assertTrue( search.getDistance( i ) <= ( 1 + epsilon ) * Math.sqrt( expected[ i ] ) + 1e-9 );
+					if ( epsilon == 0 )
+						assertEquals( expected[ i ], search.getSquareDistance( i ), 0 );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBestBinFirst()
+	{
+		final int k = 3;
+		final BestBinFirstKNearestNeighborSearchOnKDTree< RealPoint > exact = new BestBinFirstKNearestNeighborSearchOnKDTree< RealPoint >( tree, k, points.size() );
+		final BestBinFirstKNearestNeighborSearchOnKDTree< RealPoint > budget = new BestBinFirstKNearestNeighborSearchOnKDTree< RealPoint >( tree, k, 20 );
+		final BestBinFirstKNearestNeighborSearchOnKDTree< RealPoint > approximate = new BestBinFirstKNearestNeighborSearchOnKDTree< RealPoint >( tree, k, points.size(), 1 );
+		int numExactWithinBudget = 0;
+		for ( final RealPoint t : references )
+		{
+			final double[] expected = FlatKDTreeTest.sortedSquDistances( points, t );
+
+			exact.search( t );
+			budget.search( t );
+			approximate.search( t );
+			assertTrue( budget.getNumVisitedNodes() <= 20 );
+			for ( int i = 0; i < k; ++i )
+			{
+				assertEquals( expected[ i ], exact.getSquareDistance( i ), 0 );
+				assertEquals( exact.getSquareDistance( i ), FlatKDTreeTest.squDistance( exact.getSampler( i ).get(), t ), 0 );
+				assertTrue( budget.getSquareDistance( i ) >= expected[ i ] );
+				assertTrue( approximate.getDistance( i ) <= 2 * Math.sqrt( expected[ i ] ) + 1e-9 );
+			}
+			if ( budget.getSquareDistance( 0 ) == expected[ 0 ] )
+				++numExactWithinBudget;
+		}
+		// the closest bins are explored first, so a small budget mostly finds
+		// the nearest neighbor
+		assertTrue( numExactWithinBudget > references.size() / 2 );
+	}
+}
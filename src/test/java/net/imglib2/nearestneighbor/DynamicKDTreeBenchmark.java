@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnDynamicKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
+import net.imglib2.util.BenchmarkHelper;
+
+/**
+ * Compares moving a few points per frame in a {@link DynamicKDTree} to
+ * rebuilding a {@link FlatKDTree} per frame, with nearest-neighbor queries
+ * after each frame.
+ * 
+ * @author ImgLib2 developers
+ */
+public class DynamicKDTreeBenchmark
+{
+	public static void main( final String[] args )
+	{
+		final int numRuns = 10;
+		final boolean printIndividualTimes = false;
+		final int numPoints = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 200000;
+		final int numMoved = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 1000;
+		final int numQueries = args.length > 2 ? Integer.parseInt( args[ 2 ] ) : 5000;
+		final int numFrames = 10;
+
+		final Random rnd = new Random( 435435435 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >( numPoints );
+		for ( int i = 0; i < numPoints; ++i )
+			points.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() ) );
+		final ArrayList< RealPoint > queries = new ArrayList< RealPoint >( numQueries );
+		for ( int i = 0; i < numQueries; ++i )
+			queries.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() ) );
+
+		// indices and new positions of the points moved in each frame
+		final int[][] moved = new int[ numFrames ][ numMoved ];
+		final RealPoint[][] targets = new RealPoint[ numFrames ][ numMoved ];
+		for ( int f = 0; f < numFrames; ++f )
+			for ( int i = 0; i < numMoved; ++i )
+			{
+				moved[ f ][ i ] = rnd.nextInt( numPoints );
+				targets[ f ][ i ] = new RealPoint( rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() );
+			}
+
+		System.out.println( "FlatKDTree rebuilt per frame, " + numPoints + " points, " + numMoved + " moved, " + numQueries + " queries, " + numFrames + " frames" );
+		BenchmarkHelper.benchmarkAndPrint( numRuns, printIndividualTimes, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				final ArrayList< RealPoint > current = new ArrayList< RealPoint >( points );
+				for ( int f = 0; f < numFrames; ++f )
+				{
+					for ( int i = 0; i < numMoved; ++i )
+						current.set( moved[ f ][ i ], targets[ f ][ i ] );
+					final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( current, current );
+					final NearestNeighborSearchOnFlatKDTree< RealPoint > search = new NearestNeighborSearchOnFlatKDTree< RealPoint >( tree );
+					for ( final RealPoint q : queries )
+						search.search( q );
+				}
+			}
+		} );
+
+		final DynamicKDTree< RealPoint > tree = new DynamicKDTree< RealPoint >( 3 );
+		final int[] ids = new int[ numPoints ];
+		for ( int i = 0; i < numPoints; ++i )
+			ids[ i ] = tree.insert( points.get( i ), points.get( i ) );
+		final NearestNeighborSearchOnDynamicKDTree< RealPoint > search = new NearestNeighborSearchOnDynamicKDTree< RealPoint >( tree );
+
+		System.out.println( "DynamicKDTree updated per frame, " + numPoints + " points, " + numMoved + " moved, " + numQueries + " queries, " + numFrames + " frames" );
+		BenchmarkHelper.benchmarkAndPrint( numRuns, printIndividualTimes, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for ( int f = 0; f < numFrames; ++f )
+				{
+					for ( int i = 0; i < numMoved; ++i )
+						tree.move( ids[ moved[ f ][ i ] ], targets[ f ][ i ] );
+					for ( final RealPoint q : queries )
+						search.search( q );
+				}
+			}
+		} );
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnDynamicKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnDynamicKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnDynamicKDTree;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link DynamicKDTree} and its searches against exhaustive search
+ * while points are inserted, removed, and moved.
+ * 
+ * @author ImgLib2 developers
+ */
+public class DynamicKDTreeTest
+{
+	@Test
+	public void testInsertRemoveMove()
+	{
+		final int n = 3;
+		final int k = 5;
+		final double radius = 2.5;
+		final Random rnd = new Random( 1234 );
+		final DynamicKDTree< RealPoint > tree = new DynamicKDTree< RealPoint >( n, 8 );
+		final NearestNeighborSearchOnDynamicKDTree< RealPoint > nn = new NearestNeighborSearchOnDynamicKDTree< RealPoint >( tree );
+		final KNearestNeighborSearchOnDynamicKDTree< RealPoint > knn = new KNearestNeighborSearchOnDynamicKDTree< RealPoint >( tree, k );
+		final RadiusNeighborSearchOnDynamicKDTree< RealPoint > rn = new RadiusNeighborSearchOnDynamicKDTree< RealPoint >( tree );
+
+		// expected contents: id -> position, the value is the initial position
+		final HashMap< Integer, RealPoint > points = new HashMap< Integer, RealPoint >();
+		final ArrayList< Integer > ids = new ArrayList< Integer >();
+		for ( int step = 0; step < 3000; ++step )
+		{
+			final int op = rnd.nextInt( 10 );
+			if ( op < 5 || ids.isEmpty() )
+			{
+				final RealPoint p = FlatKDTreeTest.createPoints( n, 1, rnd ).get( 0 );
+				final int id = tree.insert( p, p );
+				assertFalse( points.containsKey( id ) );
+				points.put( id, p );
+				ids.add( id );
+			}
+			else if ( op < 8 )
+			{
+				final int id = ids.remove( rnd.nextInt( ids.size() ) );
+				assertTrue( tree.remove( id ) );
+				assertFalse( tree.remove( id ) );
+				points.remove( id );
+			}
+			else
+			{
+				final int id = ids.get( rnd.nextInt( ids.size() ) );
+				final RealPoint p = FlatKDTreeTest.createPoints( n, 1, rnd ).get( 0 );
+				final RealPoint value = tree.getValue( id );
+				tree.move( id, p );
+				assertSame( value, tree.getValue( id ) );
+				points.put( id, p );
+			}
+			assertEquals( points.size(), tree.intSize() );
+
+			if ( step % 10 != 0 )
+				continue;
+
+			final ArrayList< RealPoint > expected = new ArrayList< RealPoint >( points.values() );
+			final RealPoint t = FlatKDTreeTest.createPoints( n, 1, rnd ).get( 0 );
+			final double[] distances = FlatKDTreeTest.sortedSquDistances( expected, t );
+
+			nn.search( t );
+			if ( expected.isEmpty() )
+				assertEquals( -1, nn.getId() );
+			else
+			{
+				assertEquals( distances[ 0 ], nn.getSquareDistance(), 0 );
+				assertEquals( distances[ 0 ], FlatKDTreeTest.squDistance( points.get( nn.getId() ), t ), 0 );
+			}
+
+			knn.search( t );
+			for ( int i = 0; i < Math.min( k, distances.length ); ++i )
+			{
+				assertEquals( distances[ i ], knn.getSquareDistance( i ), 0 );
+				assertEquals( knn.getSquareDistance( i ), FlatKDTreeTest.squDistance( new RealPoint( knn.getPosition( i ) ), t ), 0 );
+			}
+
+			rn.search( t, radius, true );
+			int numWithinRadius = 0;
+			while ( numWithinRadius < distances.length && distances[ numWithinRadius ] <= radius * radius )
+				++numWithinRadius;
+			assertEquals( numWithinRadius, rn.numNeighbors() );
+			final double[] found = new double[ rn.numNeighbors() ];
+			for ( int i = 0; i < found.length; ++i )
+			{
+				found[ i ] = rn.getSquareDistance( i );
+				assertTrue( points.containsKey( rn.getId( i ) ) );
+			}
+			assertArrayEquals( Arrays.copyOf( distances, numWithinRadius ), found, 0 );
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Random;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.FlatKDTreeIO;
+import net.imglib2.KDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests writing and reading {@link FlatKDTree}s with {@link FlatKDTreeIO}.
+ * 
+ * @author ImgLib2 developers
+ */
+public class FlatKDTreeIOTest
+{
+	File file;
+
+	@Before
+	public void createFile() throws IOException
+	{
+		file = File.createTempFile( "imglib2-kdtree", ".bin" );
+	}
+
+	@After
+	public void deleteFile()
+	{
+		file.delete();
+	}
+
+	@Test
+	public void testRealValues() throws IOException
+	{
+		final Random rnd = new Random( 1 );
+		final ArrayList< RealPoint > points = FlatKDTreeTest.createPoints( 3, 1000, rnd );
+		final ArrayList< FloatType > values = new ArrayList< FloatType >();
+		for ( int i = 0; i < points.size(); ++i )
+			values.add( new FloatType( rnd.nextFloat() ) );
+		final FlatKDTree< FloatType > tree = new FlatKDTree< FloatType >( values, points );
+
+		FlatKDTreeIO.write( tree, file );
+		final FlatKDTree< FloatType > read = FlatKDTreeIO.read( file, new FloatType() );
+
+		assertEquals( tree.size(), read.size() );
+		assertArrayEquals( tree.getPositions(), read.getPositions(), 0 );
+		for ( int d = 0; d < 3; ++d )
+		{
+			assertEquals( tree.realMin( d ), read.realMin( d ), 0 );
+			assertEquals( tree.realMax( d ), read.realMax( d ), 0 );
+		}
+		for ( int i = 0; i < tree.intSize(); ++i )
+			assertEquals( tree.getValue( i ).get(), read.getValue( i ).get(), 0 );
+
+		final NearestNeighborSearchOnFlatKDTree< FloatType > nn = new NearestNeighborSearchOnFlatKDTree< FloatType >( tree );
+		final NearestNeighborSearchOnFlatKDTree< FloatType > nnRead = new NearestNeighborSearchOnFlatKDTree< FloatType >( read );
+		for ( final RealPoint t : FlatKDTreeTest.createPoints( 3, 100, rnd ) )
+		{
+			nn.search( t );
+			nnRead.search( t );
+			assertEquals( nn.getIndex(), nnRead.getIndex() );
+			assertEquals( nn.getSampler().get().get(), nnRead.getSampler().get().get(), 0 );
+		}
+	}
+
+	@Test
+	public void testIntegerValuesFromKDTree() throws IOException
+	{
+		final Random rnd = new Random( 2 );
+		final ArrayList< RealPoint > points = FlatKDTreeTest.createPoints( 2, 500, rnd );
+		final ArrayList< LongType > values = new ArrayList< LongType >();
+		for ( int i = 0; i < points.size(); ++i )
+			values.add( new LongType( rnd.nextLong() ) );
+		final FlatKDTree< LongType > tree = new FlatKDTree< LongType >( new KDTree< LongType >( values, points ) );
+
+		FlatKDTreeIO.write( tree, file );
+		final FlatKDTree< LongType > read = FlatKDTreeIO.read( file, new LongType() );
+
+		assertArrayEquals( tree.getPositions(), read.getPositions(), 0 );
+		for ( int i = 0; i < tree.intSize(); ++i )
+			assertEquals( tree.getValue( i ).get(), read.getValue( i ).get() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testIntegerValuesRequireIntegerType() throws IOException
+	{
+		final ArrayList< RealPoint > points = FlatKDTreeTest.createPoints( 2, 10, new Random( 3 ) );
+		final ArrayList< LongType > values = new ArrayList< LongType >();
+		for ( int i = 0; i < points.size(); ++i )
+			values.add( new LongType( i ) );
+		FlatKDTreeIO.write( new FlatKDTree< LongType >( values, points ), file );
+		FlatKDTreeIO.read( file, new FloatType() );
+	}
+
+	static FlatKDTree< FloatType > createTree( final int numPoints, final Random rnd )
+	{
+		final ArrayList< RealPoint > points = FlatKDTreeTest.createPoints( 3, numPoints, rnd );
+		final ArrayList< FloatType > values = new ArrayList< FloatType >();
+		for ( int i = 0; i < points.size(); ++i )
+			values.add( new FloatType( rnd.nextFloat() ) );
+		return new FlatKDTree< FloatType >( values, points );
+	}
+
+	@Test( expected = IOException.class )
+	public void testTruncatedFile() throws IOException
+	{
+		FlatKDTreeIO.write( createTree( 100, new Random( 4 ) ), file );
+		final RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+		raf.setLength( raf.length() - 8 );
+		raf.close();
+		FlatKDTreeIO.read( file, new FloatType() );
+	}
+
+	@Test( expected = IOException.class )
+	public void testTooManyCoordinates() throws IOException
+	{
+		FlatKDTreeIO.write( createTree( 100, new Random( 5 ) ), file );
+
+		// size * n overflows int
+		final RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+		final ByteBuffer size = ByteBuffer.allocate( 4 ).order( ByteOrder.nativeOrder() );
+		size.putInt( 0, Integer.MAX_VALUE / 2 );
+		raf.seek( 16 );
+		raf.write( size.array() );
+		raf.close();
+		FlatKDTreeIO.read( file, new FloatType() );
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealCursor;
+import net.imglib2.RealPoint;
+import net.imglib2.RealPointSampleList;
+import net.imglib2.neighborsearch.BatchKNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link FlatKDTree} and its searches against exhaustive search.
+ * 
+ * @author ImgLib2 developers
+ */
+public class FlatKDTreeTest
+{
+	static ArrayList< RealPoint > createPoints( final int numDimensions, final int numPoints, final Random rnd )
+	{
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final double[] p = new double[ numDimensions ];
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			for ( int d = 0; d < numDimensions; ++d )
+				p[ d ] = rnd.nextInt( 100 ) * 0.1 - 5;
+			points.add( new RealPoint( p ) );
+		}
+		return points;
+	}
+
+	static double squDistance( final RealPoint a, final RealPoint b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	static double[] sortedSquDistances( final ArrayList< RealPoint > points, final RealPoint t )
+	{
+		final double[] distances = new double[ points.size() ];
+		for ( int i = 0; i < distances.length; ++i )
+			distances[ i ] = squDistance( points.get( i ), t );
+		Arrays.sort( distances );
+		return distances;
+	}
+
+	@Test
+	public void testTreeStructure()
+	{
+		for ( int numPoints = 1; numPoints < 70; ++numPoints )
+		{
+			final ArrayList< RealPoint > points = createPoints( 2, numPoints, new Random( numPoints ) );
+			final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+			assertEquals( numPoints, tree.size() );
+			final double[] positions = tree.getPositions();
+			for ( int node = 0; node < numPoints; ++node )
+			{
+				final int d = tree.splitDimension( node );
+				final double split = positions[ node * 2 + d ];
+				checkSubtree( tree, 2 * node + 1, d, split, true );
+				checkSubtree( tree, 2 * node + 2, d, split, false );
+			}
+		}
+	}
+
+	private static void checkSubtree( final FlatKDTree< ? > tree, final int node, final int d, final double split, final boolean left )
+	{
+		if ( node >= tree.size() )
+			return;
+		final double x = tree.getPositions()[ node * tree.numDimensions() + d ];
+		assertTrue( left ? x <= split : x >= split );
+		checkSubtree( tree, 2 * node + 1, d, split, left );
+		checkSubtree( tree, 2 * node + 2, d, split, left );
+	}
+
+	@Test
+	public void testParallelConstruction()
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			for ( final int numPoints : new int[] { 1, 2, 3, 17, 1000 } )
+			{
+				final ArrayList< RealPoint > points = createPoints( 3, numPoints, new Random( numPoints ) );
+				final FlatKDTree< RealPoint > expected = new FlatKDTree< RealPoint >( points, points );
+				final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points, service, 7 );
+				assertArrayEquals( expected.getPositions(), tree.getPositions(), 0 );
+				for ( int i = 0; i < numPoints; ++i )
+					assertTrue( expected.getValue( i ) == tree.getValue( i ) );
+			}
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testSearches()
+	{
+		final Random rnd = new Random( 435435435 );
+		final ArrayList< RealPoint > points = createPoints( 3, 1000, rnd );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final NearestNeighborSearchOnFlatKDTree< RealPoint > nn = new NearestNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		final int k = 5;
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > knn = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+		final RadiusNeighborSearchOnFlatKDTree< RealPoint > radius = new RadiusNeighborSearchOnFlatKDTree< RealPoint >( tree );
+
+		for ( final RealPoint t : createPoints( 3, 100, rnd ) )
+		{
+			final double[] expected = sortedSquDistances( points, t );
+
+			nn.search( t );
+			assertEquals( expected[ 0 ], nn.getSquareDistance(), 0 );
+			assertEquals( expected[ 0 ], squDistance( nn.getSampler().get(), t ), 0 );
+
+			knn.search( t );
+			for ( int i = 0; i < k; ++i )
+			{
+				assertEquals( expected[ i ], knn.getSquareDistance( i ), 0 );
+				assertEquals( expected[ i ], squDistance( knn.getSampler( i ).get(), t ), 0 );
+			}
+
+			final double r = 1.5;
+			radius.search( t, r, true );
+			int expectedNumNeighbors = 0;
+			while ( expectedNumNeighbors < expected.length && expected[ expectedNumNeighbors ] <= r * r )
+				++expectedNumNeighbors;
+			assertEquals( expectedNumNeighbors, radius.numNeighbors() );
+			for ( int i = 0; i < radius.numNeighbors(); ++i )
+			{
+				assertEquals( expected[ i ], radius.getSquareDistance( i ), 0 );
+				assertEquals( expected[ i ], squDistance( ( RealPoint ) radius.getSampler( i ).get(), t ), 0 );
+			}
+		}
+	}
+
+	@Test
+	public void testBatchSearch()
+	{
+		final Random rnd = new Random( 435435435 );
+		final ArrayList< RealPoint > points = createPoints( 3, 1000, rnd );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final ArrayList< RealPoint > references = createPoints( 3, 200, rnd );
+		final RealPointSampleList< RealPoint > referenceList = new RealPointSampleList< RealPoint >( 3 );
+		for ( final RealPoint t : references )
+			referenceList.add( t, t );
+
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			for ( final int k : new int[] { 1, 5, 1001 } )
+			{
+				final BatchKNearestNeighborSearchOnFlatKDTree< RealPoint > batch = new BatchKNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+				final int[] indices = new int[ references.size() * k ];
+				final double[] squDistances = new double[ references.size() * k ];
+				batch.search( referenceList, indices, squDistances, service, 7 );
+
+				final KNearestNeighborSearchOnFlatKDTree< RealPoint > knn = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+				for ( int q = 0; q < references.size(); ++q )
+				{
+					knn.search( references.get( q ) );
+					for ( int i = 0; i < k; ++i )
+					{
+						assertEquals( knn.getSquareDistance( i ), squDistances[ q * k + i ], 0 );
+						if ( knn.getIndex( i ) >= 0 )
+							assertEquals( knn.getSquareDistance( i ), squDistance( tree.getValue( indices[ q * k + i ] ), references.get( q ) ), 0 );
+						else
+							assertEquals( -1, indices[ q * k + i ] );
+					}
+				}
+			}
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testIterableRealInterval()
+	{
+		final RealPointSampleList< IntType > list = new RealPointSampleList< IntType >( 2 );
+		final Random rnd = new Random( 1 );
+		for ( int i = 0; i < 100; ++i )
+			list.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble() ), new IntType( i ) );
+		final FlatKDTree< IntType > tree = new FlatKDTree< IntType >( list );
+
+		// every value is in the tree once, at its position
+		final boolean[] found = new boolean[ 100 ];
+		final RealCursor< IntType > c = tree.cursor();
+		final NearestNeighborSearchOnFlatKDTree< IntType > nn = new NearestNeighborSearchOnFlatKDTree< IntType >( tree );
+		while ( c.hasNext() )
+		{
+			final int i = c.next().get();
+			found[ i ] = true;
+			nn.search( c );
+			assertEquals( 0, nn.getSquareDistance(), 0 );
+			assertEquals( i, nn.getSampler().get().get() );
+		}
+		for ( int i = 0; i < 100; ++i )
+			assertTrue( found[ i ] );
+		assertEquals( 0, tree.realMin( 0 ), 0.1 );
+		assertEquals( 1, tree.realMax( 1 ), 0.1 );
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.GridIndex;
+import net.imglib2.KDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.NearestNeighborSearch;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnGridIndex;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
+import net.imglib2.util.BenchmarkHelper;
+
+/**
+ * Compares construction and nearest-neighbor search of {@link GridIndex},
+ * {@link KDTree}, and {@link FlatKDTree} for uniformly distributed points.
+ * 
+ * @author ImgLib2 developers
+ */
+public class GridIndexBenchmark
+{
+	public static void main( final String[] args )
+	{
+		final int numRuns = 10;
+		final boolean printIndividualTimes = false;
+		final int numPoints = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 1000000;
+		final int numQueries = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 1000000;
+
+		final Random rnd = new Random( 435435435 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >( numPoints );
+		for ( int i = 0; i < numPoints; ++i )
+			points.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() ) );
+		final ArrayList< RealPoint > queries = new ArrayList< RealPoint >( numQueries );
+		for ( int i = 0; i < numQueries; ++i )
+			queries.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() ) );
+
+		System.out.println( "GridIndex construction, " + numPoints + " points" );
+		BenchmarkHelper.benchmarkAndPrint( numRuns, printIndividualTimes, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				new GridIndex< RealPoint >( points, points );
+			}
+		} );
+
+		System.out.println( "FlatKDTree construction, " + numPoints + " points" );
+		BenchmarkHelper.benchmarkAndPrint( numRuns, printIndividualTimes, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				new FlatKDTree< RealPoint >( points, points );
+			}
+		} );
+
+		final ArrayList< RealPoint > list = new ArrayList< RealPoint >( points );
+		benchmarkSearch( "KDTree", new NearestNeighborSearchOnKDTree< RealPoint >( new KDTree< RealPoint >( list, list ) ), queries, numRuns, printIndividualTimes );
+		benchmarkSearch( "FlatKDTree", new NearestNeighborSearchOnFlatKDTree< RealPoint >( new FlatKDTree< RealPoint >( points, points ) ), queries, numRuns, printIndividualTimes );
+		benchmarkSearch( "GridIndex", new NearestNeighborSearchOnGridIndex< RealPoint >( new GridIndex< RealPoint >( points, points ) ), queries, numRuns, printIndividualTimes );
+	}
+
+	private static void benchmarkSearch( final String name, final NearestNeighborSearch< RealPoint > search, final ArrayList< RealPoint > queries, final int numRuns, final boolean printIndividualTimes )
+	{
+		System.out.println( name + " nearest-neighbor search, " + queries.size() + " queries" );
+		BenchmarkHelper.benchmarkAndPrint( numRuns, printIndividualTimes, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for ( final RealPoint q : queries )
+					search.search( q );
+			}
+		} );
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.GridIndex;
+import net.imglib2.RealCursor;
+import net.imglib2.RealPoint;
+import net.imglib2.RealPointSampleList;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnGridIndex;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnGridIndex;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnGridIndex;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link GridIndex} and its searches against exhaustive search.
+ * 
+ * @author ImgLib2 developers
+ */
+public class GridIndexTest
+{
+	@Test
+	public void testCells()
+	{
+		final ArrayList< RealPoint > points = FlatKDTreeTest.createPoints( 3, 1000, new Random( 1 ) );
+		final GridIndex< RealPoint > grid = new GridIndex< RealPoint >( points, points );
+		assertEquals( 1000, grid.size() );
+
+		// every point is in its cell
+		final int[] cellStart = grid.getCellStarts();
+		assertEquals( 1000, cellStart[ cellStart.length - 1 ] );
+		for ( int cell = 0; cell + 1 < cellStart.length; ++cell )
+		{
+			for ( int i = cellStart[ cell ]; i < cellStart[ cell + 1 ]; ++i )
+			{
+				int c = cell;
+				for ( int d = 0; d < 3; ++d )
+				{
+					assertEquals( c % grid.gridDimension( d ), grid.gridCoordinate( grid.getPositions()[ i * 3 + d ], d ) );
+					c /= grid.gridDimension( d );
+				}
+			}
+		}
+
+		// about DEFAULT_POINTS_PER_CELL points per cell
+		final double pointsPerCell = 1000.0 / ( cellStart.length - 1 );
+		assertTrue( pointsPerCell > GridIndex.DEFAULT_POINTS_PER_CELL / 2 && pointsPerCell < GridIndex.DEFAULT_POINTS_PER_CELL * 2 );
+	}
+
+	@Test
+	public void testParallelConstruction()
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			final ArrayList< RealPoint > points = FlatKDTreeTest.createPoints( 3, 10000, new Random( 1 ) );
+			final GridIndex< RealPoint > expected = new GridIndex< RealPoint >( points, points );
+			final GridIndex< RealPoint > grid = new GridIndex< RealPoint >( points, points, 0, service, 7 );
+			assertArrayEquals( expected.getCellStarts(), grid.getCellStarts() );
+			assertArrayEquals( expected.getPositions(), grid.getPositions(), 0 );
+			for ( int i = 0; i < points.size(); ++i )
+				assertTrue( expected.getValue( i ) == grid.getValue( i ) );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testSearches()
+	{
+		final Random rnd = new Random( 435435435 );
+		final ArrayList< RealPoint > points = FlatKDTreeTest.createPoints( 3, 1000, rnd );
+		final ArrayList< RealPoint > references = FlatKDTreeTest.createPoints( 3, 100, rnd );
+		for ( final RealPoint t : FlatKDTreeTest.createPoints( 3, 20, rnd ) )
+		{
+			// references outside the grid
+			t.move( new double[] { 8, -8, 3 } );
+			references.add( t );
+		}
+
+		final int k = 5;
+		for ( final double cellSize : new double[] { 0, 0.3, 2, 100 } )
+		{
+			final GridIndex< RealPoint > grid = new GridIndex< RealPoint >( points, points, cellSize, null, 1 );
+			final NearestNeighborSearchOnGridIndex< RealPoint > nn = new NearestNeighborSearchOnGridIndex< RealPoint >( grid );
+			final KNearestNeighborSearchOnGridIndex< RealPoint > knn = new KNearestNeighborSearchOnGridIndex< RealPoint >( grid, k );
+			final RadiusNeighborSearchOnGridIndex< RealPoint > radius = new RadiusNeighborSearchOnGridIndex< RealPoint >( grid );
+
+			for ( final RealPoint t : references )
+			{
+				final double[] expected = FlatKDTreeTest.sortedSquDistances( points, t );
+
+				nn.search( t );
+				assertEquals( expected[ 0 ], nn.getSquareDistance(), 0 );
+				assertEquals( expected[ 0 ], FlatKDTreeTest.squDistance( nn.getSampler().get(), t ), 0 );
+
+				knn.search( t );
+				for ( int i = 0; i < k; ++i )
+				{
+					assertEquals( expected[ i ], knn.getSquareDistance( i ), 0 );
+					assertEquals( expected[ i ], FlatKDTreeTest.squDistance( knn.getSampler( i ).get(), t ), 0 );
+				}
+
+				final double r = 1.5;
+				radius.search( t, r, true );
+				int expectedNumNeighbors = 0;
+				while ( expectedNumNeighbors < expected.length && expected[ expectedNumNeighbors ] <= r * r )
+					++expectedNumNeighbors;
+				assertEquals( expectedNumNeighbors, radius.numNeighbors() );
+				for ( int i = 0; i < radius.numNeighbors(); ++i )
+				{
+					assertEquals( expected[ i ], radius.getSquareDistance( i ), 0 );
+					assertEquals( expected[ i ], FlatKDTreeTest.squDistance( radius.getSampler( i ).get(), t ), 0 );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFlatBoundingBox()
+	{
+		// all points on a line in 2D
+		final RealPointSampleList< IntType > list = new RealPointSampleList< IntType >( 2 );
+		final Random rnd = new Random( 1 );
+		for ( int i = 0; i < 100; ++i )
+			list.add( new RealPoint( rnd.nextDouble(), 0.5 ), new IntType( i ) );
+		final GridIndex< IntType > grid = new GridIndex< IntType >( list );
+		assertEquals( 1, grid.gridDimension( 1 ) );
+		assertTrue( grid.gridDimension( 0 ) > 10 );
+
+		final NearestNeighborSearchOnGridIndex< IntType > nn = new NearestNeighborSearchOnGridIndex< IntType >( grid );
+		final RealPoint t = new RealPoint( 2 );
+		for ( final RealPoint p : new RealPoint[] { new RealPoint( 0.3, 0.5 ), new RealPoint( -1.0, 3.0 ), new RealPoint( 2.0, -3.0 ) } )
+		{
+			t.setPosition( p );
+			nn.search( t );
+			double best = Double.MAX_VALUE;
+			int bestValue = -1;
+			for ( final RealCursor< IntType > c = list.localizingCursor(); c.hasNext(); )
+			{
+				c.fwd();
+				final double dx = c.getDoublePosition( 0 ) - t.getDoublePosition( 0 );
+				final double dy = c.getDoublePosition( 1 ) - t.getDoublePosition( 1 );
+				if ( dx * dx + dy * dy < best )
+				{
+					best = dx * dx + dy * dy;
+					bestValue = c.get().get();
+				}
+			}
+			assertEquals( best, nn.getSquareDistance(), 0 );
+			assertEquals( bestValue, nn.getSampler().get().get() );
+		}
+	}
+}
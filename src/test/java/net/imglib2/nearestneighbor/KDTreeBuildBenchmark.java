@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.KDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.util.BenchmarkHelper;
+
+/**
+ * Compares single-threaded and parallel construction of {@link KDTree} and
+ * {@link FlatKDTree}.
+ * 
+ * @author ImgLib2 developers
+ */
+public class KDTreeBuildBenchmark
+{
+	public static void main( final String[] args )
+	{
+		final int numRuns = 10;
+		final boolean printIndividualTimes = false;
+		final int numPoints = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 2000000;
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+
+		final Random rnd = new Random( 435435435 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >( numPoints );
+		for ( int i = 0; i < numPoints; ++i )
+			points.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() ) );
+
+		final ExecutorService service = Executors.newFixedThreadPool( numThreads );
+
+		System.out.println( "KDTree, " + numPoints + " points, single-threaded" );
+		BenchmarkHelper.benchmarkAndPrint( numRuns, printIndividualTimes, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				final ArrayList< RealPoint > list = new ArrayList< RealPoint >( points );
+				new KDTree< RealPoint >( list, list );
+			}
+		} );
+
+		System.out.println( "KDTree, " + numPoints + " points, " + numThreads + " threads" );
+		BenchmarkHelper.benchmarkAndPrint( numRuns, printIndividualTimes, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				final ArrayList< RealPoint > list = new ArrayList< RealPoint >( points );
+				new KDTree< RealPoint >( list, list, service, 4 * numThreads );
+			}
+		} );
+
+		System.out.println( "FlatKDTree, " + numPoints + " points, single-threaded" );
+		BenchmarkHelper.benchmarkAndPrint( numRuns, printIndividualTimes, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				new FlatKDTree< RealPoint >( points, points );
+			}
+		} );
+
+		System.out.println( "FlatKDTree, " + numPoints + " points, " + numThreads + " threads" );
+		BenchmarkHelper.benchmarkAndPrint( numRuns, printIndividualTimes, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				new FlatKDTree< RealPoint >( points, points, service, 4 * numThreads );
+			}
+		} );
+
+		service.shutdown();
+	}
+}
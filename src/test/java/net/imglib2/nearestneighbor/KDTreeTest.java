@@ -34,14 +34,18 @@
 
 package net.imglib2.nearestneighbor;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import net.imglib2.KDTree;
+import net.imglib2.KDTreeNode;
 import net.imglib2.RealPoint;
 import net.imglib2.neighborsearch.KNearestNeighborSearchOnKDTree;
 import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
@@ -331,6 +335,25 @@ public class KDTreeTest
 			if ( neighbors != radiusExhaustive.size() )
 				return false;
 
+			if ( kd.count( t, radius ) != neighbors )
+				return false;
+
+			for ( int i = 1; i < neighbors; ++i )
+				if ( kd.getSquareDistance( i - 1 ) > kd.getSquareDistance( i ) )
+					return false;
+
+			final ArrayList< RealPoint > visited = new ArrayList< RealPoint >();
+			kd.visit( t, radius, new RadiusNeighborSearchOnKDTree.Visitor< RealPoint >()
+			{
+				@Override
+				public void visit( final KDTreeNode< RealPoint > neighbor, final double squDistance )
+				{
+					visited.add( neighbor.get() );
+				}
+			} );
+			if ( visited.size() != neighbors )
+				return false;
+
 			for ( int i = 0; i < neighbors; ++i )
 			{
 				boolean equal = true;
@@ -436,6 +459,70 @@ public class KDTreeTest
 		assertTrue( testRadiusNeighbor( 3, 1000, 100, -5, 5 ) );
 	}
 
+	@Test
+	public void testKDTreeRadiusNeighborSearchKeepsOrderOfTies()
+	{
+		// integer grid points, so many neighbors are at equal distance
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		for ( int x = -6; x <= 6; ++x )
+			for ( int y = -6; y <= 6; ++y )
+				points.add( new RealPoint( new double[] { x, y } ) );
+		final KDTree< RealPoint > kdtree = new KDTree< RealPoint >( points, points );
+		final RadiusNeighborSearchOnKDTree< RealPoint > search = new RadiusNeighborSearchOnKDTree< RealPoint >( kdtree );
+		final RealPoint reference = new RealPoint( new double[] { 0.0, 0.0 } );
+
+		// neighbors in the order they are found, sorted stably
+		final ArrayList< ValuePair< KDTreeNode< RealPoint >, Double > > expected = new ArrayList< ValuePair< KDTreeNode< RealPoint >, Double > >();
+		search.visit( reference, 5, new RadiusNeighborSearchOnKDTree.Visitor< RealPoint >()
+		{
+			@Override
+			public void visit( final KDTreeNode< RealPoint > neighbor, final double squDistance )
+			{
+				expected.add( new ValuePair< KDTreeNode< RealPoint >, Double >( neighbor, squDistance ) );
+			}
+		} );
+		Collections.sort( expected, new Comparator< ValuePair< KDTreeNode< RealPoint >, Double > >()
+		{
+			@Override
+			public int compare( final ValuePair< KDTreeNode< RealPoint >, Double > o1, final ValuePair< KDTreeNode< RealPoint >, Double > o2 )
+			{
+				return Double.compare( o1.b, o2.b );
+			}
+		} );
+
+		search.search( reference, 5, true );
+		assertEquals( expected.size(), search.numNeighbors() );
+		for ( int i = 0; i < expected.size(); ++i )
+			assertTrue( expected.get( i ).a == search.getPosition( i ) );
+	}
+
+	@Test
+	public void testKDTreeParallelConstruction()
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			for ( final int numPoints : new int[] { 1, 2, 3, 17, 1000 } )
+			{
+				final ArrayList< RealPoint > points = FlatKDTreeTest.createPoints( 3, numPoints, new Random( numPoints ) );
+				final ArrayList< Integer > values = new ArrayList< Integer >();
+				for ( int i = 0; i < numPoints; ++i )
+					values.add( i );
+
+				final String expected = new KDTree< RealPoint >( new ArrayList< RealPoint >( points ), new ArrayList< RealPoint >( points ) ).toString();
+				final ArrayList< RealPoint > copy = new ArrayList< RealPoint >( points );
+				assertEquals( expected, new KDTree< RealPoint >( copy, copy, service, 7 ).toString() );
+
+				final String expectedValues = new KDTree< Integer >( values, new ArrayList< RealPoint >( points ) ).toString();
+				assertEquals( expectedValues, new KDTree< Integer >( values, new ArrayList< RealPoint >( points ), service, 7 ).toString() );
+			}
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
 	public static void main( final String[] args )
 	{
 		for ( int i = 0; i < 5; ++i )
@@ -36,9 +36,22 @@ package net.imglib2.util;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.Cursor;
 import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.paged.PagedArrayImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.Type;
+import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.integer.IntType;
 import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.real.DoubleType;
@@ -333,4 +346,90 @@ public class ImgUtilTest
 		}
 	}
 
+	static < T extends Type< T > > void assertSameValues( final Img< T > expected, final Img< T > actual )
+	{
+		final Cursor< T > c = expected.localizingCursor();
+		final RandomAccess< T > ra = actual.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			ra.setPosition( c );
+			assertEquals( c.get(), ra.get() );
+		}
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testCopyImgImg()
+	{
+		final ImgFactory< IntType >[] factories = new ImgFactory[] {
+				new ArrayImgFactory< IntType >(),
+				new PlanarImgFactory< IntType >(),
+				new PagedArrayImgFactory< IntType >( 6 ),
+				new CellImgFactory< IntType >( 5 ),
+				new CellImgFactory< IntType >( 7 ),
+				new ListImgFactory< IntType >() };
+		// which pairs of factories have the same storage layout
+		final int[] layout = { 0, 0, 0, 1, 2, -1 };
+
+		final long[] dimensions = { 13, 11, 4 };
+		final Random rnd = new Random( 4321 );
+		final ExecutorService service = Executors.newFixedThreadPool( 3 );
+		for ( int i = 0; i < factories.length; ++i )
+		{
+			final Img< IntType > src = factories[ i ].create( dimensions, new IntType() );
+			for ( final IntType t : src )
+				t.set( rnd.nextInt() );
+			for ( int j = 0; j < factories.length; ++j )
+			{
+				for ( int numTasks = 1; numTasks <= 4; numTasks += 3 )
+				{
+					final Img< IntType > dest = factories[ j ].create( dimensions, new IntType() );
+					final ImgUtil.CopyStatistics stats = ImgUtil.copy( src, dest, service, numTasks );
+					assertEquals( layout[ i ] >= 0 && layout[ i ] == layout[ j ], stats.isBulk() );
+					assertEquals( src.size(), stats.getNumPixels() );
+					assertSameValues( src, dest );
+				}
+			}
+			assertSameValues( src, src.copy() );
+		}
+		service.shutdown();
+	}
+
+	@Test
+	public void testCopyFractionalEntities()
+	{
+		final long[] dimensions = { 10, 10, 3 };
+		final Img< BitType > src = new ArrayImgFactory< BitType >().create( dimensions, new BitType() );
+		final Random rnd = new Random( 1 );
+		for ( final BitType t : src )
+			t.set( rnd.nextBoolean() );
+
+		// planes of 100 bits are padded to 2 longs each
+		final Img< BitType > planar = new PlanarImgFactory< BitType >().create( dimensions, new BitType() );
+		assertEquals( false, ImgUtil.copy( src, planar ).isBulk() );
+		assertSameValues( src, planar );
+
+		final Img< BitType > array = new ArrayImgFactory< BitType >().create( dimensions, new BitType() );
+		assertEquals( true, ImgUtil.copy( src, array ).isBulk() );
+		assertSameValues( src, array );
+	}
+
+	@Test
+	public void testCopyDenseArray()
+	{
+		final float[] input = new float[ 2 + 4 * 3 * 2 ];
+		for ( int i = 0; i < input.length; ++i )
+			input[ i ] = i;
+		final Img< FloatType > img = new PlanarImgFactory< FloatType >().create( new long[] { 4, 3, 2 }, new FloatType() );
+		ImgUtil.copy( input, 2, new int[] { 1, 4, 12 }, img );
+		float expected = 2;
+		for ( final FloatType t : img )
+			assertEquals( expected++, t.get(), 0 );
+
+		final float[] output = new float[ input.length ];
+		ImgUtil.copy( img, output, 2, new int[] { 1, 4, 12 } );
+		for ( int i = 2; i < input.length; ++i )
+			assertEquals( input[ i ], output[ i ], 0 );
+	}
 }
@@ -0,0 +1,89 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2015 Tobias Pietzsch, Stephan Preibisch, Barry DeZonia,
+ * Stephan Saalfeld, Curtis Rueden, Albert Cardona, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Jonathan Hale, Lee Kamentsky, Larry Lindsey, Mark
+ * Hiner, Michael Zinsmaier, Martin Horn, Grant Harris, Aivar Grislis, John
+ * Bogovic, Steffen Jaensch, Stefan Helfrich, Jan Funke, Nick Perry, Mark Longair,
+ * Melissa Linkert and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link SquareDistance} against a plain loop, for the specialized and
+ * the generic number of dimensions.
+ * 
+ * @author ImgLib2 developers
+ */
+public class SquareDistanceTest
+{
+	private static double squDistance( final double[] a, final int aOffset, final double[] b, final int bOffset, final int n )
+	{
+		double sum = 0;
+		for ( int d = 0; d < n; ++d )
+			sum += ( a[ aOffset + d ] - b[ bOffset + d ] ) * ( a[ aOffset + d ] - b[ bOffset + d ] );
+		return sum;
+	}
+
+	@Test
+	public void testSquDistance()
+	{
+		final Random rnd = new Random( 1 );
+		for ( int n = 1; n <= 5; ++n )
+		{
+			final int numPoints = 37;
+			final double[] positions = new double[ numPoints * n ];
+			for ( int i = 0; i < positions.length; ++i )
+				positions[ i ] = rnd.nextDouble() * 10 - 5;
+			final double[] p = new double[ n ];
+			for ( int d = 0; d < n; ++d )
+				p[ d ] = rnd.nextDouble() * 10 - 5;
+
+			final double[] squDistances = new double[ numPoints ];
+			final int from = 3;
+			SquareDistance.squDistances( positions, from, numPoints, p, n, squDistances );
+			for ( int i = 0; i < numPoints; ++i )
+			{
+				final double expected = squDistance( positions, i * n, p, 0, n );
+				assertEquals( expected, SquareDistance.squDistance( positions, i * n, p, n ), 1e-12 );
+				assertEquals( expected, SquareDistance.squDistance( p, 0, positions, i * n, n ), 1e-12 );
+				if ( i >= from )
+					assertEquals( expected, squDistances[ i - from ], 1e-12 );
+			}
+			final double[] q = new double[ n ];
+			System.arraycopy( positions, 0, q, 0, n );
+			assertEquals( squDistance( q, 0, p, 0, n ), SquareDistance.squDistance( q, p ), 1e-12 );
+		}
+	}
+}